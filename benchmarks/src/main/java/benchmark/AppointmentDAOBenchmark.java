@@ -0,0 +1,65 @@
+package benchmark;
+
+import DAO.AppointmentDAO;
+import DAO.DBConnection;
+import javafx.collections.ObservableList;
+import model.Appointment;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures loading every appointment: the query, mapping each row to an Appointment, and rebuilding the overlap index.
+ *
+ * @author James Carney
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class AppointmentDAOBenchmark {
+    @Param({"1000", "10000"})
+    public int appointmentCount;
+
+    /**
+     * Fills the database.
+     *
+     * @throws Exception If the database can't be created.
+     */
+    @Setup(Level.Trial)
+    public void setUp() throws Exception {
+        BenchmarkDatabase.create(appointmentCount);
+    }
+
+    /**
+     * Closes the connection pool.
+     */
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        DBConnection.closePool();
+    }
+
+    /**
+     * Loads every appointment.
+     *
+     * @return The appointments, so the JIT can't discard the work.
+     */
+    @Benchmark
+    public ObservableList<Appointment> getAllAppointments() {
+        return AppointmentDAO.getAllAppointments();
+    }
+}
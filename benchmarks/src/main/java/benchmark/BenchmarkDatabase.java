@@ -0,0 +1,182 @@
+package benchmark;
+
+import DAO.DBConnection;
+import DAO.SchemaMigrator;
+import util.TimeZone;
+
+import java.io.IOException;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.sql.Timestamp;
+import java.time.DayOfWeek;
+import java.time.LocalDate;
+import java.time.LocalTime;
+import java.time.ZonedDateTime;
+import java.util.Random;
+
+/**
+ * An in-memory H2 database with the same tables as the client_schedule schema, filled with synthetic data.
+ *
+ * H2 runs in MySQL mode so the application's SQL runs unchanged. DBConnection is pointed at it through the db.*
+ * system properties, which must be set before DBConnection is first used; every benchmark calls
+ * {@link #create(int)} from its setup method.
+ *
+ * @author James Carney
+ */
+public class BenchmarkDatabase {
+    /**
+     * The first day appointments are generated for.
+     */
+    public static final LocalDate firstDay = LocalDate.of(2026, 1, 5);
+
+    /**
+     * The number of days appointments are spread over.
+     */
+    public static final int days = 365;
+
+    /**
+     * The number of contacts generated.
+     */
+    public static final int contactCount = 20;
+
+    /**
+     * The number of users generated.
+     */
+    public static final int userCount = 10;
+
+    private static final String[] types = {"Planning Session", "De-Briefing", "Financial", "Performance Review", "Board Meeting"};
+    private static final String[] countries = {"U.S", "UK", "Canada"};
+    private static final int divisionsPerCountry = 10;
+    private static final long seed = 42;
+
+    static {
+        System.setProperty("db.url", "jdbc:h2:mem:client_schedule;MODE=MySQL;DATABASE_TO_LOWER=TRUE;NON_KEYWORDS=END,VALUE;DB_CLOSE_DELAY=-1");
+        System.setProperty("db.driver", "org.h2.Driver");
+        System.setProperty("db.user", "sa");
+        System.setProperty("db.password", "");
+    }
+
+    /**
+     * Recreates the database with a given number of appointments. There is one customer for every ten appointments.
+     *
+     * @param appointmentCount The number of appointments to generate.
+     * @throws SQLException An exception related to the database query.
+     * @throws IOException An exception related to reading a migration script.
+     */
+    public static synchronized void create(int appointmentCount) throws SQLException, IOException {
+        int customerCount = Math.max(1, appointmentCount / 10);
+        Random random = new Random(seed);
+
+        try (Connection conn = DBConnection.getConnection()) {
+            try (Statement statement = conn.createStatement()) {
+                statement.execute("DROP ALL OBJECTS");
+                statement.execute("CREATE TABLE countries (Country_ID INT AUTO_INCREMENT PRIMARY KEY, Country VARCHAR(50))");
+                statement.execute("CREATE TABLE first_level_divisions (Division_ID INT AUTO_INCREMENT PRIMARY KEY, Division VARCHAR(50), COUNTRY_ID INT)");
+                statement.execute("CREATE TABLE customers (Customer_ID INT AUTO_INCREMENT PRIMARY KEY, Customer_Name VARCHAR(50), Address VARCHAR(100), Postal_Code VARCHAR(50), Phone VARCHAR(50), Division_ID INT)");
+                statement.execute("CREATE TABLE users (User_ID INT AUTO_INCREMENT PRIMARY KEY, User_Name VARCHAR(50) UNIQUE, Password TEXT)");
+                statement.execute("CREATE TABLE contacts (Contact_ID INT AUTO_INCREMENT PRIMARY KEY, Contact_Name VARCHAR(50), Email VARCHAR(50))");
+                statement.execute("CREATE TABLE appointments (Appointment_ID INT AUTO_INCREMENT PRIMARY KEY, Title VARCHAR(50), Description VARCHAR(50), Location VARCHAR(50), Type VARCHAR(50), Start DATETIME, End DATETIME, Customer_ID INT, User_ID INT, Contact_ID INT)");
+            }
+
+            conn.setAutoCommit(false);
+            insertReferenceData(conn, customerCount, random);
+            insertAppointments(conn, appointmentCount, customerCount, random);
+            conn.commit();
+        }
+
+        // Build the same indexes the real database has.
+        SchemaMigrator.migrate();
+    }
+
+    private static void insertReferenceData(Connection conn, int customerCount, Random random) throws SQLException {
+        try (PreparedStatement ps = conn.prepareStatement("INSERT INTO countries(Country) VALUES(?)")) {
+            for (String country : countries) {
+                ps.setString(1, country);
+                ps.addBatch();
+            }
+            ps.executeBatch();
+        }
+
+        try (PreparedStatement ps = conn.prepareStatement("INSERT INTO first_level_divisions(Division, COUNTRY_ID) VALUES(?, ?)")) {
+            for (int country = 1; country <= countries.length; country++) {
+                for (int division = 1; division <= divisionsPerCountry; division++) {
+                    ps.setString(1, "Division " + country + "-" + division);
+                    ps.setInt(2, country);
+                    ps.addBatch();
+                }
+            }
+            ps.executeBatch();
+        }
+
+        try (PreparedStatement ps = conn.prepareStatement("INSERT INTO customers(Customer_Name, Address, Postal_Code, Phone, Division_ID) VALUES(?, ?, ?, ?, ?)")) {
+            for (int customer = 1; customer <= customerCount; customer++) {
+                ps.setString(1, "Customer " + customer);
+                ps.setString(2, customer + " Main Street");
+                ps.setString(3, String.format("%05d", customer % 100000));
+                ps.setString(4, String.format("555-%04d", customer % 10000));
+                ps.setInt(5, 1 + random.nextInt(countries.length * divisionsPerCountry));
+                ps.addBatch();
+            }
+            ps.executeBatch();
+        }
+
+        try (PreparedStatement ps = conn.prepareStatement("INSERT INTO users(User_Name, Password) VALUES(?, ?)")) {
+            for (int user = 1; user <= userCount; user++) {
+                ps.setString(1, "user" + user);
+                ps.setString(2, "password" + user);
+                ps.addBatch();
+            }
+            ps.executeBatch();
+        }
+
+        try (PreparedStatement ps = conn.prepareStatement("INSERT INTO contacts(Contact_Name, Email) VALUES(?, ?)")) {
+            for (int contact = 1; contact <= contactCount; contact++) {
+                ps.setString(1, "Contact " + contact);
+                ps.setString(2, "contact" + contact + "@example.com");
+                ps.addBatch();
+            }
+            ps.executeBatch();
+        }
+    }
+
+    private static void insertAppointments(Connection conn, int appointmentCount, int customerCount, Random random) throws SQLException {
+        try (PreparedStatement ps = conn.prepareStatement("INSERT INTO appointments(Title, Description, Location, Type, Start, End, Customer_ID, User_ID, Contact_ID) VALUES(?, ?, ?, ?, ?, ?, ?, ?, ?)")) {
+            for (int appointment = 1; appointment <= appointmentCount; appointment++) {
+                ZonedDateTime start = randomBusinessHoursStart(random);
+                ZonedDateTime end = start.plusMinutes(15L * (1 + random.nextInt(4)));
+
+                ps.setString(1, "Appointment " + appointment);
+                ps.setString(2, "Synthetic appointment");
+                ps.setString(3, "Room " + (1 + random.nextInt(20)));
+                ps.setString(4, types[random.nextInt(types.length)]);
+                ps.setTimestamp(5, Timestamp.from(start.toInstant()));
+                ps.setTimestamp(6, Timestamp.from(end.toInstant()));
+                ps.setInt(7, 1 + random.nextInt(customerCount));
+                ps.setInt(8, 1 + random.nextInt(userCount));
+                ps.setInt(9, 1 + random.nextInt(contactCount));
+                ps.addBatch();
+                if (appointment % 1000 == 0) {
+                    ps.executeBatch();
+                }
+            }
+            ps.executeBatch();
+        }
+    }
+
+    /**
+     * Picks a random quarter-hour on a weekday between 8:00 and 21:00 Eastern time.
+     *
+     * @param random The source of randomness.
+     * @return The start time.
+     */
+    public static ZonedDateTime randomBusinessHoursStart(Random random) {
+        LocalDate day = firstDay.plusDays(random.nextInt(days));
+        if (day.getDayOfWeek() == DayOfWeek.SATURDAY || day.getDayOfWeek() == DayOfWeek.SUNDAY) {
+            day = day.plusDays(2);
+        }
+        LocalTime time = LocalTime.of(8, 0).plusMinutes(15L * random.nextInt(13 * 4));
+        return ZonedDateTime.of(day, time, TimeZone.EST);
+    }
+}
@@ -0,0 +1,115 @@
+package benchmark;
+
+import DAO.AppointmentDAO;
+import DAO.DBConnection;
+import controller.AddAppointmentController;
+import controller.EditAppointmentController;
+import javafx.beans.property.ReadOnlyObjectWrapper;
+import javafx.beans.value.ObservableValue;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.sql.SQLException;
+import java.time.ZonedDateTime;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures the overlap checks run when an appointment is added or edited. Each operation checks the next of a fixed
+ * set of random candidate appointments, so roughly the same mix of overlapping and free slots is tested every run.
+ *
+ * @author James Carney
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class OverlapBenchmark {
+    private static final int candidateCount = 1024;
+
+    @Param({"1000", "10000"})
+    public int appointmentCount;
+
+    private final AddAppointmentController addController = new AddAppointmentController();
+    private final EditAppointmentController editController = new EditAppointmentController();
+
+    private final int[] contactIds = new int[candidateCount];
+    private final int[] customerIds = new int[candidateCount];
+    private final int[] appointmentIds = new int[candidateCount];
+    private final ObservableValue<ZonedDateTime>[] starts = newArray(candidateCount);
+    private final ObservableValue<ZonedDateTime>[] ends = newArray(candidateCount);
+    private int next = 0;
+
+    /**
+     * Fills the database, loads the overlap index and generates the candidate appointments.
+     *
+     * @throws Exception If the database can't be created.
+     */
+    @Setup(Level.Trial)
+    public void setUp() throws Exception {
+        BenchmarkDatabase.create(appointmentCount);
+        // Loading every appointment builds the in-memory index the checks consult first.
+        AppointmentDAO.getAllAppointments();
+
+        Random random = new Random(7);
+        int customerCount = Math.max(1, appointmentCount / 10);
+        for (int i = 0; i < candidateCount; i++) {
+            ZonedDateTime start = BenchmarkDatabase.randomBusinessHoursStart(random);
+            contactIds[i] = 1 + random.nextInt(BenchmarkDatabase.contactCount);
+            customerIds[i] = 1 + random.nextInt(customerCount);
+            appointmentIds[i] = 1 + random.nextInt(appointmentCount);
+            starts[i] = new ReadOnlyObjectWrapper<>(start);
+            ends[i] = new ReadOnlyObjectWrapper<>(start.plusMinutes(30));
+        }
+    }
+
+    /**
+     * Closes the connection pool.
+     */
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        DBConnection.closePool();
+    }
+
+    /**
+     * Checks a new appointment for overlaps.
+     *
+     * @return Whether it overlaps.
+     * @throws SQLException An exception related to the database query.
+     */
+    @Benchmark
+    public boolean addAppointmentOverlap() throws SQLException {
+        int i = next++ & (candidateCount - 1);
+        return addController.isOverlappingAppointment(contactIds[i], customerIds[i], starts[i], ends[i]);
+    }
+
+    /**
+     * Checks an edited appointment for overlaps.
+     *
+     * @return Whether it overlaps.
+     * @throws SQLException An exception related to the database query.
+     */
+    @Benchmark
+    public boolean editAppointmentOverlap() throws SQLException {
+        int i = next++ & (candidateCount - 1);
+        return editController.isOverlappingAppointment(appointmentIds[i], contactIds[i], customerIds[i], starts[i], ends[i]);
+    }
+
+    @SuppressWarnings("unchecked")
+    private static ObservableValue<ZonedDateTime>[] newArray(int length) {
+        return (ObservableValue<ZonedDateTime>[]) new ObservableValue[length];
+    }
+}
@@ -0,0 +1,91 @@
+package benchmark;
+
+import DAO.DBConnection;
+import javafx.collections.ObservableList;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import util.ReportGenerator;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures generating each of the reports on the Reports screen. A new generator is used per operation, as the
+ * Reports screen does each time it opens.
+ *
+ * @author James Carney
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ReportGeneratorBenchmark {
+    @Param({"1000", "10000"})
+    public int appointmentCount;
+
+    /**
+     * Fills the database.
+     *
+     * @throws Exception If the database can't be created.
+     */
+    @Setup(Level.Trial)
+    public void setUp() throws Exception {
+        BenchmarkDatabase.create(appointmentCount);
+    }
+
+    /**
+     * Closes the connection pool.
+     */
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        DBConnection.closePool();
+    }
+
+    /**
+     * Generates the "Appointments by Type" report.
+     *
+     * @return The report rows.
+     */
+    @Benchmark
+    public ObservableList<ReportGenerator.AppointmentsByType> processAppointmentsByType() {
+        ReportGenerator rg = new ReportGenerator();
+        rg.processAppointmentsByType();
+        return rg.getAppointmentsByType();
+    }
+
+    /**
+     * Generates the "Schedule by Contact" report.
+     *
+     * @return The report rows.
+     */
+    @Benchmark
+    public ObservableList<ReportGenerator.ScheduleByContact> processScheduleByContact() {
+        ReportGenerator rg = new ReportGenerator();
+        rg.processScheduleByContact();
+        return rg.getSchedulesByContact();
+    }
+
+    /**
+     * Generates the "Customers by Country" report.
+     *
+     * @return The report rows.
+     */
+    @Benchmark
+    public ObservableList<ReportGenerator.CustomersByCountry> processCustomersByCountry() {
+        ReportGenerator rg = new ReportGenerator();
+        rg.processCustomersByCountry();
+        return rg.getCustomersByCountry();
+    }
+}
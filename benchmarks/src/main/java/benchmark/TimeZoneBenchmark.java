@@ -0,0 +1,70 @@
+package benchmark;
+
+import javafx.beans.property.ReadOnlyObjectWrapper;
+import javafx.beans.value.ObservableValue;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import util.TimeZone;
+
+import java.time.ZonedDateTime;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures checking an appointment against business hours. No database is involved.
+ *
+ * @author James Carney
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class TimeZoneBenchmark {
+    private static final int candidateCount = 1024;
+
+    private final ObservableValue<ZonedDateTime>[] starts = newArray(candidateCount);
+    private final ObservableValue<ZonedDateTime>[] ends = newArray(candidateCount);
+    private int next = 0;
+
+    /**
+     * Generates appointments in the user's zone, some inside and some outside business hours.
+     */
+    @Setup(Level.Trial)
+    public void setUp() {
+        Random random = new Random(11);
+        for (int i = 0; i < candidateCount; i++) {
+            ZonedDateTime start = BenchmarkDatabase.randomBusinessHoursStart(random)
+                    .plusHours(random.nextInt(5) - 2)
+                    .withZoneSameInstant(TimeZone.userZoneId);
+            starts[i] = new ReadOnlyObjectWrapper<>(start);
+            ends[i] = new ReadOnlyObjectWrapper<>(start.plusMinutes(30));
+        }
+    }
+
+    /**
+     * Validates one appointment.
+     *
+     * @return Whether it is within business hours.
+     */
+    @Benchmark
+    public boolean validateAppointmentAgainstEST() {
+        int i = next++ & (candidateCount - 1);
+        return TimeZone.validateAppointmentAgainstEST(starts[i], ends[i]);
+    }
+
+    @SuppressWarnings("unchecked")
+    private static ObservableValue<ZonedDateTime>[] newArray(int length) {
+        return (ObservableValue<ZonedDateTime>[]) new ObservableValue[length];
+    }
+}
@@ -1,18 +1,22 @@
 package DAO;
 
-import javafx.beans.property.ReadOnlyObjectWrapper;
-import javafx.beans.value.ObservableValue;
 import javafx.collections.FXCollections;
 import javafx.collections.ObservableList;
 import model.Appointment;
+import util.CalendarFeed;
+import util.ReminderScheduler;
 import util.TimeZone;
 
 import java.sql.*;
+import java.time.Instant;
 import java.time.LocalDateTime;
-import java.time.ZoneId;
 import java.time.ZoneOffset;
 import java.time.ZonedDateTime;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
 import java.util.Locale;
+import java.util.Map;
 
 /**
  * Handles database queries related to scheduling appointments.
@@ -20,50 +24,165 @@ import java.util.Locale;
  * @author James Carney
  */
 public class AppointmentDAO {
-    private static ObservableList<Appointment> allAppointments = FXCollections.observableArrayList();
 
     /**
-     * Creates a new appointment in the database.
+     * Creates a new appointment in the database. If the database can't be reached, earlier changes are still waiting
+     * in the {@link OfflineJournal}, or the customer was created offline and isn't in the database yet, the appointment
+     * is added to the journal instead and created when it is synchronized.
      *
      * @param appointment The appointment to be created.
      * @return boolean indicating success/failure of the create operation.
      */
     public static boolean createAppointment(Appointment appointment) {
         try {
-            Connection conn = DBConnection.getConnection();
+            appointment.setCustomerId(OfflineJournal.resolveId(appointment.getCustomerId()));
+            if (OfflineJournal.hasPending() || appointment.getCustomerId() < 0) {
+                OfflineJournal.appointmentCreated(appointment);
+                return true;
+            }
+            return insertAppointment(appointment);
+        }
+        catch (SQLException e) {
+            if (DBConnection.isConnectionFailure(e)) {
+                try {
+                    OfflineJournal.appointmentCreated(appointment);
+                    return true;
+                }
+                catch (SQLException journalError) {
+                    journalError.printStackTrace();
+                    return false;
+                }
+            }
+            e.printStackTrace();
+            return false;
+        }
+    }
+
+    /**
+     * Inserts a new appointment into the database.
+     *
+     * @param appointment The appointment to be created. It is given its database-assigned ID.
+     * @return boolean indicating whether a row was inserted.
+     * @throws SQLException An exception related to the database query.
+     */
+    static boolean insertAppointment(Appointment appointment) throws SQLException {
+        long reportVersion = ReportAggregates.getVersion();
+        try (Connection conn = DBConnection.getConnection()) {
             String sqlStatement = "INSERT INTO appointments(title, description, location, type, start, end, Customer_ID, User_ID, Contact_ID) VALUES(?, ?, ?, ?, ?, ?, ?, ?, ?)";
-            Query.setPreparedStatement(conn, sqlStatement);
-            PreparedStatement ps = Query.getPreparedStatement();
+            PreparedStatement ps = Query.prepareWithGeneratedKeys(conn, sqlStatement);
 
-            ps.setString(1, appointment.getTitle().getValue());
-            ps.setString(2, appointment.getDescription().getValue());
-            ps.setString(3, appointment.getLocation().getValue());
-            ps.setString(4, appointment.getType().getValue());
+            ps.setString(1, appointment.getTitle());
+            ps.setString(2, appointment.getDescription());
+            ps.setString(3, appointment.getLocation());
+            ps.setString(4, appointment.getType());
             //Store appointment times in database as a Timestamp value
-            ps.setTimestamp(5,Timestamp.valueOf(appointment.getStart().getValue().toLocalDateTime()));
-            ps.setTimestamp(6, Timestamp.valueOf(appointment.getEnd().getValue().toLocalDateTime()));
-            ps.setInt(7, appointment.getCustomerId().getValue());
-            ps.setInt(8, appointment.getUserId().getValue());
-            ps.setInt(9, appointment.getContactId().getValue());
+            ps.setTimestamp(5,Timestamp.valueOf(appointment.getStart().toLocalDateTime()));
+            ps.setTimestamp(6, Timestamp.valueOf(appointment.getEnd().toLocalDateTime()));
+            ps.setInt(7, appointment.getCustomerId());
+            ps.setInt(8, appointment.getUserId());
+            ps.setInt(9, appointment.getContactId());
 
             ps.execute();
 
             if (ps.getUpdateCount() > 0) {
                 System.out.println(ps.getUpdateCount() + " row(s) affected.");
-                DBConnection.closeConnection();
+                ResultSet keys = ps.getGeneratedKeys();
+                if (keys.next()) {
+                    appointment.setAppointmentId(keys.getInt(1));
+                    AppointmentIndex.add(appointment);
+                    ReminderScheduler.schedule(appointment);
+                }
+                ReportAggregates.appointmentAdded(reportVersion, appointment.getStart().getMonthValue(), appointment.getType());
+                ReportCube.invalidate();
+                CalendarFeed.appointmentChanged(appointment.getContactId(), appointment.getCustomerId());
                 return true;
             }
             else {
                 System.out.println("No change");
-                DBConnection.closeConnection();
                 return false;
             }
         }
-        catch (Exception e) {
-            e.printStackTrace();
-            DBConnection.closeConnection();
-            return false;
+    }
+
+    /**
+     * Creates several appointments in one transaction, sent to the database as a single JDBC batch. If any insert
+     * fails, none of the appointments are created.
+     *
+     * @param appointments The appointments to be created. Each is given its database-assigned ID.
+     * @return The number of appointments created.
+     * @throws SQLException An exception related to the database query.
+     */
+    public static int createAppointments(List<Appointment> appointments) throws SQLException {
+        if (appointments.isEmpty()) {
+            return 0;
         }
+
+        boolean allKeysReturned;
+        long reportVersion = ReportAggregates.getVersion();
+        try (Connection conn = DBConnection.getConnection()) {
+            conn.setAutoCommit(false);
+            try {
+                String sqlStatement = "INSERT INTO appointments(title, description, location, type, start, end, Customer_ID, User_ID, Contact_ID) VALUES(?, ?, ?, ?, ?, ?, ?, ?, ?)";
+                PreparedStatement ps = Query.prepareWithGeneratedKeys(conn, sqlStatement);
+
+                for (Appointment appointment : appointments) {
+                    ps.setString(1, appointment.getTitle());
+                    ps.setString(2, appointment.getDescription());
+                    ps.setString(3, appointment.getLocation());
+                    ps.setString(4, appointment.getType());
+                    ps.setTimestamp(5, Timestamp.valueOf(appointment.getStart().toLocalDateTime()));
+                    ps.setTimestamp(6, Timestamp.valueOf(appointment.getEnd().toLocalDateTime()));
+                    ps.setInt(7, appointment.getCustomerId());
+                    ps.setInt(8, appointment.getUserId());
+                    ps.setInt(9, appointment.getContactId());
+                    ps.addBatch();
+                }
+                ps.executeBatch();
+
+                ResultSet keys = ps.getGeneratedKeys();
+                int assigned = 0;
+                while (assigned < appointments.size() && keys.next()) {
+                    appointments.get(assigned++).setAppointmentId(keys.getInt(1));
+                }
+                allKeysReturned = assigned == appointments.size();
+
+                conn.commit();
+            }
+            catch (SQLException e) {
+                conn.rollback();
+                throw e;
+            }
+        }
+
+        if (allKeysReturned) {
+            for (Appointment appointment : appointments) {
+                AppointmentIndex.add(appointment);
+                ReminderScheduler.schedule(appointment);
+            }
+        }
+        else {
+            // Without the IDs the new appointments can't be added to the index one by one, so reload it instead, and
+            // find each new appointment in it by customer and start time, which no two appointments share.
+            List<Appointment> reloaded = getAllAppointments();
+            if (reloaded != null) {
+                Map<String, Appointment> byCustomerAndStart = new HashMap<>();
+                for (Appointment saved : reloaded) {
+                    byCustomerAndStart.put(saved.getCustomerId() + "@" + saved.getStartEpochSecond(), saved);
+                }
+                for (Appointment appointment : appointments) {
+                    Appointment saved = byCustomerAndStart.get(appointment.getCustomerId() + "@" + appointment.getStartEpochSecond());
+                    if (saved != null) {
+                        ReminderScheduler.schedule(saved);
+                    }
+                }
+            }
+        }
+        for (Appointment appointment : appointments) {
+            ReportAggregates.appointmentAdded(reportVersion, appointment.getStart().getMonthValue(), appointment.getType());
+            CalendarFeed.appointmentChanged(appointment.getContactId(), appointment.getCustomerId());
+        }
+        ReportCube.invalidate();
+        return appointments.size();
     }
 
     /**
@@ -75,39 +194,38 @@ public class AppointmentDAO {
      * @throws SQLException An exception related to the database query.
      */
     public static Appointment getAppointment(int customerId, LocalDateTime startTime) throws SQLException {
-        Connection conn = DBConnection.getConnection();
-        String sqlStatement = "SELECT * FROM appointments WHERE Customer_ID = ? and Start = ?";
-        Query.setPreparedStatement(conn, sqlStatement);
-        PreparedStatement ps = Query.getPreparedStatement();
-
-        ps.setInt(1, customerId);
-        ps.setString(2, startTime.toString());
-
-        ResultSet rs = ps.getResultSet();
-
-        while (rs.next()) {
-            ObservableValue<Integer> appointmentId = new ReadOnlyObjectWrapper<>(rs.getInt("Appointment_ID"));
-            ObservableValue<String> title = new ReadOnlyObjectWrapper<>(rs.getString("Title"));
-            ObservableValue<String> description = new ReadOnlyObjectWrapper<>(rs.getString("Description"));
-            ObservableValue<String> location = new ReadOnlyObjectWrapper<>(rs.getString("Location"));
-            ObservableValue<String> type = new ReadOnlyObjectWrapper<>(rs.getString("Type"));
-            Timestamp startTimestamp = rs.getTimestamp("Start");
-            Timestamp endTimestamp = rs.getTimestamp("End");
-            ObservableValue<Integer> custId = new ReadOnlyObjectWrapper<>(rs.getInt("Customer_ID"));
-            ObservableValue<Integer> userId = new ReadOnlyObjectWrapper<>(rs.getInt("User_ID"));
-            ObservableValue<Integer> contactId = new ReadOnlyObjectWrapper<>(rs.getInt("Contact_ID"));
-            //Convert UTC times from database to user time
-            LocalDateTime startUnzoned = startTimestamp.toLocalDateTime();
-            LocalDateTime endUnzoned = endTimestamp.toLocalDateTime();
-            ZonedDateTime startUTC = ZonedDateTime.of(startUnzoned, TimeZone.UTC);
-            ZonedDateTime endUTC = ZonedDateTime.of(endUnzoned, TimeZone.EST);
-            ZonedDateTime startUserTime = startUTC.withZoneSameInstant(TimeZone.userZoneId);
-            ZonedDateTime endUserTime = endUTC.withZoneSameInstant(TimeZone.userZoneId);
-            Appointment appointment = new Appointment(appointmentId, title, description, location, type, new ReadOnlyObjectWrapper<>(startUserTime), new ReadOnlyObjectWrapper<>(endUserTime), custId, userId, contactId);
-            return appointment;
-        }
-        DBConnection.closeConnection();
-        return null;
+        try (Connection conn = DBConnection.getConnection()) {
+            String sqlStatement = "SELECT * FROM appointments WHERE Customer_ID = ? and Start = ?";
+            PreparedStatement ps = Query.prepare(conn, sqlStatement);
+
+            ps.setInt(1, customerId);
+            ps.setTimestamp(2, Timestamp.valueOf(startTime));
+
+            ResultSet rs = ps.executeQuery();
+
+            while (rs.next()) {
+                int appointmentId = rs.getInt("Appointment_ID");
+                String title = rs.getString("Title");
+                String description = rs.getString("Description");
+                String location = rs.getString("Location");
+                String type = rs.getString("Type");
+                Timestamp startTimestamp = rs.getTimestamp("Start");
+                Timestamp endTimestamp = rs.getTimestamp("End");
+                int custId = rs.getInt("Customer_ID");
+                int userId = rs.getInt("User_ID");
+                int contactId = rs.getInt("Contact_ID");
+                //Convert UTC times from database to user time
+                LocalDateTime startUnzoned = startTimestamp.toLocalDateTime();
+                LocalDateTime endUnzoned = endTimestamp.toLocalDateTime();
+                ZonedDateTime startUTC = ZonedDateTime.of(startUnzoned, TimeZone.UTC);
+                ZonedDateTime endUTC = ZonedDateTime.of(endUnzoned, TimeZone.EST);
+                ZonedDateTime startUserTime = startUTC.withZoneSameInstant(TimeZone.userZoneId);
+                ZonedDateTime endUserTime = endUTC.withZoneSameInstant(TimeZone.userZoneId);
+                Appointment appointment = new Appointment(appointmentId, title, description, location, type, startUserTime, endUserTime, custId, userId, contactId);
+                return appointment;
+            }
+            return null;
+        }
     }
 
     /**
@@ -116,34 +234,18 @@ public class AppointmentDAO {
      * @return A list of all appointments.
      */
     public static ObservableList<Appointment> getAllAppointments() {
-        allAppointments.clear();
+        // A new list per call, since this may run on a background thread while a screen still shows the last result.
+        ObservableList<Appointment> allAppointments = FXCollections.observableArrayList();
 
-        try {
-            Connection conn = DBConnection.getConnection();
+        try (Connection conn = DBConnection.getConnection()) {
             String sqlStatement = "SELECT * FROM appointments";
-            Query.setPreparedStatement(conn, sqlStatement);
-            PreparedStatement ps = Query.getPreparedStatement();
+            PreparedStatement ps = Query.prepare(conn, sqlStatement);
 
             ResultSet rs = ps.executeQuery();
             while (rs.next()) {
-                ObservableValue<Integer> appointmentId = new ReadOnlyObjectWrapper<>(rs.getInt("Appointment_ID"));
-                ObservableValue<String> title = new ReadOnlyObjectWrapper<>(rs.getString("Title"));
-                ObservableValue<String> description = new ReadOnlyObjectWrapper<>(rs.getString("Description"));
-                ObservableValue<String> location = new ReadOnlyObjectWrapper<>(rs.getString("Location"));
-                ObservableValue<String> type = new ReadOnlyObjectWrapper<>(rs.getString("Type"));
-                Timestamp startTime = rs.getTimestamp("Start");
-                Timestamp endTime = rs.getTimestamp("End");
-                ObservableValue<Integer> custId = new ReadOnlyObjectWrapper<>(rs.getInt("Customer_ID"));
-                ObservableValue<Integer> userId = new ReadOnlyObjectWrapper<>(rs.getInt("User_ID"));
-                ObservableValue<Integer> contactId = new ReadOnlyObjectWrapper<>(rs.getInt("Contact_ID"));
-
-                // Convert the timestamp to a ZonedDateTime
-                ZonedDateTime userStart = startTime.toLocalDateTime().atZone(ZoneId.of(ZoneId.systemDefault().getId()));
-                ZonedDateTime userEnd = endTime.toLocalDateTime().atZone(ZoneId.of(ZoneId.systemDefault().getId()));
-
-                Appointment appointment = new Appointment(appointmentId, title, description, location, type, new ReadOnlyObjectWrapper<>(userStart), new ReadOnlyObjectWrapper<>(userEnd), custId, userId, contactId);
-                allAppointments.add(appointment);
+                allAppointments.add(mapAppointment(rs));
             }
+            AppointmentIndex.rebuild(allAppointments);
             return allAppointments;
         }
         catch (SQLException e) {
@@ -153,58 +255,416 @@ public class AppointmentDAO {
     }
 
     /**
-     * Updates an appointment already in the database.
+     * Gets the appointments starting within a time window, in order of start time, with the changes waiting in the
+     * {@link OfflineJournal} applied. If the database can't be reached, the appointments in the appointment index are
+     * returned instead.
+     *
+     * @param from The start of the window, inclusive.
+     * @param to The end of the window, exclusive.
+     * @return A list of the appointments in the window.
+     * @throws SQLException An exception related to the database query.
+     */
+    public static ObservableList<Appointment> getAppointmentsBetween(Instant from, Instant to) throws SQLException {
+        ObservableList<Appointment> appointments;
+        try {
+            appointments = getAppointmentsBetween("SELECT * FROM appointments WHERE Start >= ? AND Start < ? ORDER BY Start", 0, from, to);
+        }
+        catch (SQLException e) {
+            if (!DBConnection.isConnectionFailure(e)) {
+                throw e;
+            }
+            return FXCollections.observableArrayList(AppointmentIndex.getAppointmentsBetween(from.getEpochSecond(), to.getEpochSecond()));
+        }
+        return FXCollections.observableArrayList(AppointmentIndex.withPending(appointments, from.getEpochSecond(), to.getEpochSecond()));
+    }
+
+    /**
+     * Gets every appointment known without querying: those in the appointment index, with the changes waiting in the
+     * {@link OfflineJournal} applied. Used to list the appointments while the database can't be reached.
+     *
+     * @return A list of the appointments, in order of start time.
+     */
+    public static ObservableList<Appointment> getOfflineAppointments() {
+        return FXCollections.observableArrayList(AppointmentIndex.getAppointmentsBetween(Long.MIN_VALUE, Long.MAX_VALUE));
+    }
+
+    /**
+     * Gets a contact's appointments starting within a time window, in order of start time.
+     *
+     * @param contactId The ID of the contact.
+     * @param from The start of the window, inclusive.
+     * @param to The end of the window, exclusive.
+     * @return A list of the contact's appointments in the window.
+     * @throws SQLException An exception related to the database query.
+     */
+    public static ObservableList<Appointment> getContactAppointmentsBetween(int contactId, Instant from, Instant to) throws SQLException {
+        return getAppointmentsBetween("SELECT * FROM appointments WHERE Contact_ID = ? AND Start >= ? AND Start < ? ORDER BY Start", contactId, from, to);
+    }
+
+    /**
+     * Gets a customer's appointments starting within a time window, in order of start time.
+     *
+     * @param customerId The ID of the customer.
+     * @param from The start of the window, inclusive.
+     * @param to The end of the window, exclusive.
+     * @return A list of the customer's appointments in the window.
+     * @throws SQLException An exception related to the database query.
+     */
+    public static ObservableList<Appointment> getCustomerAppointmentsBetween(int customerId, Instant from, Instant to) throws SQLException {
+        return getAppointmentsBetween("SELECT * FROM appointments WHERE Customer_ID = ? AND Start >= ? AND Start < ? ORDER BY Start", customerId, from, to);
+    }
+
+    /**
+     * Gets a user's appointments starting within a time window, in order of start time.
+     *
+     * @param userId The ID of the user.
+     * @param from The start of the window, inclusive.
+     * @param to The end of the window, exclusive.
+     * @return A list of the user's appointments in the window.
+     * @throws SQLException An exception related to the database query.
+     */
+    public static ObservableList<Appointment> getUserAppointmentsBetween(int userId, Instant from, Instant to) throws SQLException {
+        return getAppointmentsBetween("SELECT * FROM appointments WHERE User_ID = ? AND Start >= ? AND Start < ? ORDER BY Start", userId, from, to);
+    }
+
+    /**
+     * Gets one page of appointments in (Start, Appointment_ID) order using keyset pagination.
+     *
+     * Rather than skipping rows with an OFFSET, each page continues from the key of the last row of the page before
+     * it, so fetching any page is an index seek no matter how far into the table it is.
+     *
+     * @param afterStart The start time of the last row of the previous page, or null for the first page.
+     * @param afterAppointmentId The ID of the last row of the previous page. Ignored for the first page.
+     * @param limit The maximum number of rows in the page.
+     * @return A list of up to limit appointments.
+     * @throws SQLException An exception related to the database query.
+     */
+    public static List<Appointment> getAppointmentPage(Instant afterStart, int afterAppointmentId, int limit) throws SQLException {
+        List<Appointment> page = new ArrayList<>(limit);
+
+        try (Connection conn = DBConnection.getConnection()) {
+            PreparedStatement ps;
+            if (afterStart == null) {
+                ps = Query.prepare(conn, "SELECT * FROM appointments ORDER BY Start, Appointment_ID LIMIT ?");
+                ps.setInt(1, limit);
+            }
+            else {
+                ps = Query.prepare(conn, "SELECT * FROM appointments WHERE Start > ? OR (Start = ? AND Appointment_ID > ?) ORDER BY Start, Appointment_ID LIMIT ?");
+                Timestamp afterTimestamp = Timestamp.from(afterStart);
+                ps.setTimestamp(1, afterTimestamp);
+                ps.setTimestamp(2, afterTimestamp);
+                ps.setInt(3, afterAppointmentId);
+                ps.setInt(4, limit);
+            }
+
+            ResultSet rs = ps.executeQuery();
+            while (rs.next()) {
+                page.add(mapAppointment(rs));
+            }
+        }
+        return page;
+    }
+
+    /**
+     * Gets every appointment between two keys in (Start, Appointment_ID) order, however many there are. Used to fetch a
+     * page again, since rows may have been added to or removed from its range since it was first read.
+     *
+     * @param afterStart The start time of the key the range begins after, or null to begin with the first appointment.
+     * @param afterAppointmentId The ID of the key the range begins after. Ignored if afterStart is null.
+     * @param throughStart The start time of the last key in the range.
+     * @param throughAppointmentId The ID of the last key in the range.
+     * @return A list of the appointments in the range.
+     * @throws SQLException An exception related to the database query.
+     */
+    public static List<Appointment> getAppointmentRange(Instant afterStart, int afterAppointmentId, Instant throughStart,
+                                                        int throughAppointmentId) throws SQLException {
+        List<Appointment> range = new ArrayList<>();
+
+        try (Connection conn = DBConnection.getConnection()) {
+            PreparedStatement ps;
+            Timestamp throughTimestamp = Timestamp.from(throughStart);
+            int parameter = 1;
+            if (afterStart == null) {
+                ps = Query.prepare(conn, "SELECT * FROM appointments WHERE Start < ? OR (Start = ? AND Appointment_ID <= ?) ORDER BY Start, Appointment_ID");
+            }
+            else {
+                ps = Query.prepare(conn, "SELECT * FROM appointments WHERE (Start > ? OR (Start = ? AND Appointment_ID > ?)) AND (Start < ? OR (Start = ? AND Appointment_ID <= ?)) ORDER BY Start, Appointment_ID");
+                Timestamp afterTimestamp = Timestamp.from(afterStart);
+                ps.setTimestamp(parameter++, afterTimestamp);
+                ps.setTimestamp(parameter++, afterTimestamp);
+                ps.setInt(parameter++, afterAppointmentId);
+            }
+            ps.setTimestamp(parameter++, throughTimestamp);
+            ps.setTimestamp(parameter++, throughTimestamp);
+            ps.setInt(parameter, throughAppointmentId);
+
+            ResultSet rs = ps.executeQuery();
+            while (rs.next()) {
+                range.add(mapAppointment(rs));
+            }
+        }
+        return range;
+    }
+
+    /**
+     * Gets every appointment that hasn't started yet, in order of start time.
+     *
+     * @param from The current time; only appointments starting after it are returned.
+     * @return A list of the upcoming appointments.
+     * @throws SQLException An exception related to the database query.
+     */
+    public static List<Appointment> getAppointmentsStartingAfter(Instant from) throws SQLException {
+        List<Appointment> appointments = new ArrayList<>();
+
+        try (Connection conn = DBConnection.getConnection()) {
+            PreparedStatement ps = Query.prepare(conn, "SELECT * FROM appointments WHERE Start > ? ORDER BY Start");
+            ps.setTimestamp(1, Timestamp.from(from));
+
+            ResultSet rs = ps.executeQuery();
+            while (rs.next()) {
+                appointments.add(mapAppointment(rs));
+            }
+        }
+        return appointments;
+    }
+
+    /**
+     * Runs a time window query, binding the optional ID filter followed by the window bounds.
+     *
+     * @param sqlStatement The query, with an ID parameter first if filterId is not 0.
+     * @param filterId The contact, customer or user ID to filter by, or 0 for no filter.
+     * @param from The start of the window, inclusive.
+     * @param to The end of the window, exclusive.
+     * @return A list of the matching appointments.
+     * @throws SQLException An exception related to the database query.
+     */
+    private static ObservableList<Appointment> getAppointmentsBetween(String sqlStatement, int filterId, Instant from, Instant to) throws SQLException {
+        ObservableList<Appointment> appointments = FXCollections.observableArrayList();
+
+        try (Connection conn = DBConnection.getConnection()) {
+            PreparedStatement ps = Query.prepare(conn, sqlStatement);
+            int index = 1;
+            if (filterId != 0) {
+                ps.setInt(index++, filterId);
+            }
+            ps.setTimestamp(index++, Timestamp.from(from));
+            ps.setTimestamp(index, Timestamp.from(to));
+
+            ResultSet rs = ps.executeQuery();
+            while (rs.next()) {
+                appointments.add(mapAppointment(rs));
+            }
+        }
+        return appointments;
+    }
+
+    /**
+     * Builds an appointment from the current row of a query on the appointments table.
+     *
+     * @param rs The result set, positioned on a row.
+     * @return The appointment.
+     * @throws SQLException An exception related to reading the row.
+     */
+    private static Appointment mapAppointment(ResultSet rs) throws SQLException {
+        // Timestamps are read in the system default zone, which is also the user's zone.
+        return new Appointment(
+                rs.getInt("Appointment_ID"),
+                rs.getString("Title"),
+                rs.getString("Description"),
+                rs.getString("Location"),
+                rs.getString("Type"),
+                rs.getTimestamp("Start").toInstant().getEpochSecond(),
+                rs.getTimestamp("End").toInstant().getEpochSecond(),
+                rs.getInt("Customer_ID"),
+                rs.getInt("User_ID"),
+                rs.getInt("Contact_ID"));
+    }
+
+    /**
+     * Checks the database for an appointment with the same contact or customer that overlaps the given times.
+     *
+     * Each EXISTS probe is answered from the (Contact_ID, Start, End) or (Customer_ID, Start, End) index, so the check
+     * stays cheap however many appointments are stored, and sees appointments booked by other running copies of the
+     * program.
+     *
+     * @param customerId The ID of the customer with whom the appointment is scheduled.
+     * @param contactId The ID of the contact attending the appointment.
+     * @param start The appointment start time.
+     * @param end The appointment end time.
+     * @param excludeAppointmentId The ID of an appointment being edited, which can't conflict with itself. Use 0 for a
+     *                             new appointment.
+     * @return boolean representing whether a conflicting appointment exists.
+     * @throws SQLException An exception related to the database query.
+     */
+    public static boolean hasConflict(int customerId, int contactId, ZonedDateTime start, ZonedDateTime end, int excludeAppointmentId) throws SQLException {
+        try (Connection conn = DBConnection.getConnection()) {
+            String sqlStatement = "SELECT EXISTS(SELECT 1 FROM appointments WHERE Contact_ID = ? AND Start < ? AND End > ? AND Appointment_ID <> ?)"
+                    + " OR EXISTS(SELECT 1 FROM appointments WHERE Customer_ID = ? AND Start < ? AND End > ? AND Appointment_ID <> ?)";
+            PreparedStatement ps = Query.prepare(conn, sqlStatement);
+            Timestamp startTimestamp = Timestamp.from(start.toInstant());
+            Timestamp endTimestamp = Timestamp.from(end.toInstant());
+
+            ps.setInt(1, contactId);
+            ps.setTimestamp(2, endTimestamp);
+            ps.setTimestamp(3, startTimestamp);
+            ps.setInt(4, excludeAppointmentId);
+            ps.setInt(5, customerId);
+            ps.setTimestamp(6, endTimestamp);
+            ps.setTimestamp(7, startTimestamp);
+            ps.setInt(8, excludeAppointmentId);
+
+            ResultSet rs = ps.executeQuery();
+            return rs.next() && rs.getBoolean(1);
+        }
+    }
+
+    /**
+     * Updates an appointment already in the database. If the database can't be reached, earlier changes are still
+     * waiting in the {@link OfflineJournal}, or the appointment or its customer was created offline and isn't in the
+     * database yet, the change is added to the journal instead.
      *
      * @param appointment The appointment to be updated.
      * @throws SQLException An exception related to the database query.
      */
     public static void updateAppointment(Appointment appointment) throws SQLException {
-        Connection conn = DBConnection.getConnection();
-        String sqlStatement = "UPDATE appointments SET Title = ?, Description = ?, Location = ?, Type = ?, Start = ?, End = ?, Customer_ID = ?, User_ID = ?, Contact_ID = ? WHERE Appointment_ID = ?";
-        Query.setPreparedStatement(conn, sqlStatement);
-        PreparedStatement ps = Query.getPreparedStatement();
+        appointment.setAppointmentId(OfflineJournal.resolveId(appointment.getAppointmentId()));
+        appointment.setCustomerId(OfflineJournal.resolveId(appointment.getCustomerId()));
+        if (OfflineJournal.hasPending() || appointment.getAppointmentId() < 0 || appointment.getCustomerId() < 0) {
+            OfflineJournal.appointmentUpdated(appointment);
+            return;
+        }
+        try {
+            writeAppointment(appointment);
+        }
+        catch (SQLException e) {
+            if (!DBConnection.isConnectionFailure(e)) {
+                throw e;
+            }
+            OfflineJournal.appointmentUpdated(appointment);
+        }
+    }
 
+    /**
+     * Writes an appointment's new details over the row in the database.
+     *
+     * @param appointment The appointment to be updated.
+     * @return boolean indicating whether the appointment was still in the database.
+     * @throws SQLException An exception related to the database query.
+     */
+    static boolean writeAppointment(Appointment appointment) throws SQLException {
+        long reportVersion = ReportAggregates.getVersion();
+        try (Connection conn = DBConnection.getConnection()) {
+            // Read the old month, type, contact and customer first, so the report aggregates can move the appointment between
+            // groups and the calendar feeds it was in are refreshed.
+            PreparedStatement old = Query.prepare(conn, "SELECT month(Start), Type, Contact_ID, Customer_ID FROM appointments WHERE Appointment_ID = ?");
+            old.setInt(1, appointment.getAppointmentId());
+            ResultSet oldRs = old.executeQuery();
+            boolean found = oldRs.next();
+            int oldMonth = found ? oldRs.getInt(1) : 0;
+            String oldType = found ? oldRs.getString(2) : null;
+            int oldContactId = found ? oldRs.getInt(3) : 0;
+            int oldCustomerId = found ? oldRs.getInt(4) : 0;
 
-        ps.setString(1, appointment.getTitle().getValue());
-        ps.setString(2,appointment.getDescription().getValue());
-        ps.setString(3, appointment.getLocation().getValue());
-        ps.setString(4, appointment.getType().getValue());
-        ps.setTimestamp(5, Timestamp.valueOf(appointment.getStart().getValue().toLocalDateTime()));
-        ps.setTimestamp(6, Timestamp.valueOf(appointment.getEnd().getValue().toLocalDateTime()));
-        ps.setInt(7, appointment.getCustomerId().getValue());
-        ps.setInt(8, appointment.getUserId().getValue());
-        ps.setInt(9, appointment.getContactId().getValue());
-        ps.setInt(10, appointment.getAppointmentId().getValue());
+            String sqlStatement = "UPDATE appointments SET Title = ?, Description = ?, Location = ?, Type = ?, Start = ?, End = ?, Customer_ID = ?, User_ID = ?, Contact_ID = ? WHERE Appointment_ID = ?";
+            PreparedStatement ps = Query.prepare(conn, sqlStatement);
 
-        ps.execute();
-        //return ps.getUpdateCount() > 0;
+            ps.setString(1, appointment.getTitle());
+            ps.setString(2,appointment.getDescription());
+            ps.setString(3, appointment.getLocation());
+            ps.setString(4, appointment.getType());
+            ps.setTimestamp(5, Timestamp.valueOf(appointment.getStart().toLocalDateTime()));
+            ps.setTimestamp(6, Timestamp.valueOf(appointment.getEnd().toLocalDateTime()));
+            ps.setInt(7, appointment.getCustomerId());
+            ps.setInt(8, appointment.getUserId());
+            ps.setInt(9, appointment.getContactId());
+            ps.setInt(10, appointment.getAppointmentId());
+
+            ps.execute();
+            if (ps.getUpdateCount() > 0) {
+                AppointmentIndex.update(appointment);
+                ReminderScheduler.schedule(appointment);
+                ReportCube.invalidate();
+                CalendarFeed.appointmentChanged(appointment.getContactId(), appointment.getCustomerId());
+                if (found) {
+                    ReportAggregates.appointmentMoved(reportVersion, oldMonth, oldType, appointment.getStart().getMonthValue(), appointment.getType());
+                    CalendarFeed.appointmentChanged(oldContactId, oldCustomerId);
+                }
+                return true;
+            }
+            return false;
+        }
     }
 
     /**
-     * Deletes an appointment from the database.
+     * Deletes an appointment from the database. If the database can't be reached, earlier changes are still waiting
+     * in the {@link OfflineJournal}, or the appointment was created offline and isn't in the database yet, the deletion
+     * is added to the journal instead.
      *
-     * @param appointmentId The ID of the appointment to be deleted.
+     * @param id The ID of the appointment to be deleted.
      * @return Boolean representing success or failure of the delete operation.
      */
-    public static boolean deleteAppointment(int appointmentId)  {
+    public static boolean deleteAppointment(int id)  {
+        int appointmentId = OfflineJournal.resolveId(id);
         try {
-            Connection conn = DBConnection.getConnection();
+            if (OfflineJournal.hasPending() || appointmentId < 0) {
+                OfflineJournal.appointmentDeleted(appointmentId);
+                return true;
+            }
+            return removeAppointment(appointmentId);
+        }
+        catch (SQLException e) {
+            if (DBConnection.isConnectionFailure(e)) {
+                try {
+                    OfflineJournal.appointmentDeleted(appointmentId);
+                    return true;
+                }
+                catch (SQLException journalError) {
+                    journalError.printStackTrace();
+                    return false;
+                }
+            }
+            e.printStackTrace();
+            return false;
+        }
+    }
+
+    /**
+     * Deletes an appointment row from the database.
+     *
+     * @param appointmentId The ID of the appointment to be deleted.
+     * @return boolean indicating whether the appointment was in the database.
+     * @throws SQLException An exception related to the database query.
+     */
+    static boolean removeAppointment(int appointmentId) throws SQLException {
+        long reportVersion = ReportAggregates.getVersion();
+        try (Connection conn = DBConnection.getConnection()) {
+            PreparedStatement old = Query.prepare(conn, "SELECT month(Start), Type, Contact_ID, Customer_ID FROM appointments WHERE Appointment_ID = ?");
+            old.setInt(1, appointmentId);
+            ResultSet oldRs = old.executeQuery();
+            boolean found = oldRs.next();
+            int oldMonth = found ? oldRs.getInt(1) : 0;
+            String oldType = found ? oldRs.getString(2) : null;
+            int oldContactId = found ? oldRs.getInt(3) : 0;
+            int oldCustomerId = found ? oldRs.getInt(4) : 0;
+
             String sqlStatement = "DELETE FROM appointments WHERE Appointment_ID = ?";
-            Query.setPreparedStatement(conn, sqlStatement);
-            PreparedStatement ps = Query.getPreparedStatement();
+            PreparedStatement ps = Query.prepare(conn, sqlStatement);
 
             ps.setInt(1, appointmentId);
             ps.execute();
 
             if (ps.getUpdateCount() > 0) {
+                AppointmentIndex.remove(appointmentId);
+                ReminderScheduler.cancel(appointmentId);
+                ReportCube.invalidate();
+                if (found) {
+                    ReportAggregates.appointmentsRemoved(reportVersion, oldMonth, oldType, 1);
+                    CalendarFeed.appointmentChanged(oldContactId, oldCustomerId);
+                }
                 return true;
             }
             else return false;
         }
-        catch (Exception e) {
-            e.printStackTrace();
-            return false;
-        }
     }
 
     /**
@@ -214,16 +674,43 @@ public class AppointmentDAO {
      */
     public static void deleteAllAppointmentsByCustomer(int customerId) {
         try {
-            Connection conn = DBConnection.getConnection();
+            removeAppointmentsByCustomer(customerId);
+        }
+        catch (SQLException e) {
+            e.printStackTrace();
+        }
+    }
+
+    /**
+     * Deletes every appointment row belonging to a customer from the database.
+     *
+     * @param customerId The ID of the customer whose appointments will be deleted.
+     * @throws SQLException An exception related to the database query.
+     */
+    static void removeAppointmentsByCustomer(int customerId) throws SQLException {
+        long reportVersion = ReportAggregates.getVersion();
+        try (Connection conn = DBConnection.getConnection()) {
+            // Count what is about to be deleted, so the report aggregates can subtract it.
+            PreparedStatement groups = Query.prepare(conn, "SELECT month(Start), Type, COUNT(*) FROM appointments WHERE Customer_ID = ? GROUP BY month(Start), Type");
+            groups.setInt(1, customerId);
+            ResultSet rs = groups.executeQuery();
+            List<Object[]> removed = new ArrayList<>();
+            while (rs.next()) {
+                removed.add(new Object[] {rs.getInt(1), rs.getString(2), rs.getInt(3)});
+            }
+
             String sqlStatement = "DELETE FROM appointments WHERE Customer_ID = ?";
-            Query.setPreparedStatement(conn, sqlStatement);
-            PreparedStatement ps = Query.getPreparedStatement();
+            PreparedStatement ps = Query.prepare(conn, sqlStatement);
 
             ps.setInt(1, customerId);
             ps.execute();
-        }
-        catch (SQLException e) {
-            e.printStackTrace();
+            AppointmentIndex.removeByCustomer(customerId);
+            ReminderScheduler.cancelCustomer(customerId);
+            ReportCube.invalidate();
+            CalendarFeed.customerAppointmentsDeleted(customerId);
+            for (Object[] group : removed) {
+                ReportAggregates.appointmentsRemoved(reportVersion, (Integer) group[0], (String) group[1], (Integer) group[2]);
+            }
         }
     }
 
@@ -0,0 +1,325 @@
+package DAO;
+
+import model.Appointment;
+import util.IntervalTree;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * An in-memory index of scheduled appointments, used to check for overlapping appointments without querying the
+ * database.
+ *
+ * Appointments are kept in one interval tree per contact, one per customer and one per user. The index is loaded the first time it
+ * is used, rebuilt whenever AppointmentDAO loads every appointment, and kept in sync by AppointmentDAO's
+ * create/update/delete methods. Appointment changes waiting in the {@link OfflineJournal} are applied over the
+ * database's rows after every rebuild, so reloading doesn't lose them.
+ *
+ * @author James Carney
+ */
+public class AppointmentIndex {
+    /**
+     * The kinds of resource an appointment books.
+     */
+    public enum Resource {
+        CONTACT,
+        CUSTOMER,
+        USER
+    }
+
+    private static final Map<Integer, IntervalTree> byContact = new HashMap<>();
+    private static final Map<Integer, IntervalTree> byCustomer = new HashMap<>();
+    private static final Map<Integer, IntervalTree> byUser = new HashMap<>();
+    private static final Map<Integer, Appointment> byId = new HashMap<>();
+    private static boolean loaded = false;
+
+    private static final Comparator<Appointment> byStart = Comparator.comparingLong(Appointment::getStartEpochSecond)
+            .thenComparingInt(Appointment::getAppointmentId);
+
+    // The appointment changes waiting in the offline journal: the new version of each appointment by ID, or null if it
+    // was deleted, and the customers whose appointments were deleted.
+    private static Map<Integer, Appointment> pendingAppointments = new HashMap<>();
+    private static Set<Integer> pendingCustomerDeletions = new HashSet<>();
+
+    /**
+     * Checks whether an appointment would overlap another appointment with the same contact or the same customer.
+     *
+     * @param contactId The ID of the contact attending the appointment.
+     * @param customerId The ID of the customer with whom the appointment is scheduled.
+     * @param start The appointment start time, in epoch seconds.
+     * @param end The appointment end time, in epoch seconds.
+     * @param excludeAppointmentId The ID of an appointment being edited, which can't overlap itself. Use 0 for a new
+     *                             appointment.
+     * @return boolean representing whether the appointment overlaps another.
+     */
+    public static synchronized boolean hasOverlap(int contactId, int customerId, long start, long end, int excludeAppointmentId) {
+        ensureLoaded();
+        IntervalTree contactTree = byContact.get(contactId);
+        if (contactTree != null && contactTree.overlaps(start, end, excludeAppointmentId)) {
+            return true;
+        }
+        IntervalTree customerTree = byCustomer.get(customerId);
+        return customerTree != null && customerTree.overlaps(start, end, excludeAppointmentId);
+    }
+
+    /**
+     * Visits every appointment with a contact or a customer that overlaps a period. An appointment with both is
+     * visited twice.
+     *
+     * @param contactId The ID of the contact, or 0 for none.
+     * @param customerId The ID of the customer, or 0 for none.
+     * @param start The start of the period, in epoch seconds.
+     * @param end The end of the period, in epoch seconds.
+     * @param excludeAppointmentId The ID of an appointment being edited, which is skipped. Use 0 for none.
+     * @param consumer Receives the ID, start and end of each appointment, while the index is locked.
+     */
+    public static synchronized void forEachOverlapping(int contactId, int customerId, long start, long end,
+                                                       int excludeAppointmentId, IntervalTree.IntervalConsumer consumer) {
+        ensureLoaded();
+        IntervalTree.IntervalConsumer filtered = (id, from, to) -> {
+            if (id != excludeAppointmentId) {
+                consumer.accept(id, from, to);
+            }
+        };
+        IntervalTree contactTree = byContact.get(contactId);
+        if (contactTree != null) {
+            contactTree.forEachOverlapping(start, end, filtered);
+        }
+        IntervalTree customerTree = byCustomer.get(customerId);
+        if (customerTree != null) {
+            customerTree.forEachOverlapping(start, end, filtered);
+        }
+    }
+
+    /**
+     * Lists when one contact, customer or user is booked during a period.
+     *
+     * @param resource The kind of resource.
+     * @param id The ID of the contact, customer or user.
+     * @param start The start of the period, in epoch seconds.
+     * @param end The end of the period, in epoch seconds.
+     * @param excludeAppointmentId The ID of an appointment to leave out. Use 0 for none.
+     * @return The start and end, in epoch seconds, of each appointment overlapping the period, in order of start.
+     */
+    public static synchronized List<long[]> getBookedPeriods(Resource resource, int id, long start, long end, int excludeAppointmentId) {
+        ensureLoaded();
+        List<long[]> periods = new ArrayList<>();
+        IntervalTree tree = trees(resource).get(id);
+        if (tree != null) {
+            tree.forEachOverlapping(start, end, (appointmentId, from, to) -> {
+                if (appointmentId != excludeAppointmentId) {
+                    periods.add(new long[] {from, to});
+                }
+            });
+        }
+        return periods;
+    }
+
+    /**
+     * Lists the appointments the index holds starting within a time window, without querying. Used to show the
+     * appointments while the database can't be reached; if the index was never loaded, only the appointments changed
+     * offline are known.
+     *
+     * @param from The start of the window, inclusive, in epoch seconds.
+     * @param to The end of the window, exclusive, in epoch seconds.
+     * @return The appointments, in order of start.
+     */
+    static synchronized List<Appointment> getAppointmentsBetween(long from, long to) {
+        List<Appointment> appointments = new ArrayList<>();
+        for (Appointment appointment : loaded ? byId.values() : pendingAppointments.values()) {
+            if (appointment != null && appointment.getStartEpochSecond() >= from && appointment.getStartEpochSecond() < to) {
+                appointments.add(appointment);
+            }
+        }
+        appointments.sort(byStart);
+        return appointments;
+    }
+
+    /**
+     * Applies the appointment changes waiting in the offline journal to appointments read from the database, so a list
+     * shows them as they will be once synchronized.
+     *
+     * @param appointments The appointments starting within a time window, as read from the database.
+     * @param from The start of the window, inclusive, in epoch seconds.
+     * @param to The end of the window, exclusive, in epoch seconds.
+     * @return The appointments with the waiting changes applied, in order of start.
+     */
+    static synchronized List<Appointment> withPending(List<Appointment> appointments, long from, long to) {
+        if (pendingAppointments.isEmpty() && pendingCustomerDeletions.isEmpty()) {
+            return appointments;
+        }
+        List<Appointment> merged = new ArrayList<>();
+        for (Appointment appointment : appointments) {
+            if (!pendingAppointments.containsKey(appointment.getAppointmentId())
+                    && !pendingCustomerDeletions.contains(appointment.getCustomerId())) {
+                merged.add(appointment);
+            }
+        }
+        for (Appointment appointment : pendingAppointments.values()) {
+            if (appointment != null && appointment.getStartEpochSecond() >= from && appointment.getStartEpochSecond() < to) {
+                merged.add(appointment);
+            }
+        }
+        merged.sort(byStart);
+        return merged;
+    }
+
+    /**
+     * Replaces the contents of the index.
+     *
+     * @param appointments Every appointment in the database.
+     */
+    static synchronized void rebuild(List<Appointment> appointments) {
+        byContact.clear();
+        byCustomer.clear();
+        byUser.clear();
+        byId.clear();
+        for (Appointment appointment : appointments) {
+            insert(appointment);
+        }
+        applyPending();
+        loaded = true;
+    }
+
+    /**
+     * Replaces the appointment changes waiting in the offline journal, and applies them to the index. They are applied
+     * again after every rebuild until the journal replaces them.
+     *
+     * @param appointments The new version of each appointment changed offline by ID, or null if it was deleted.
+     * @param deletedCustomerIds The customers deleted offline, whose appointments are removed.
+     */
+    static synchronized void setPending(Map<Integer, Appointment> appointments, Set<Integer> deletedCustomerIds) {
+        pendingAppointments = appointments;
+        pendingCustomerDeletions = deletedCustomerIds;
+        if (loaded) {
+            applyPending();
+        }
+    }
+
+    /**
+     * Adds a newly created appointment to the index.
+     *
+     * @param appointment The appointment, with its database-assigned ID.
+     */
+    static synchronized void add(Appointment appointment) {
+        if (loaded) {
+            insert(appointment);
+        }
+    }
+
+    /**
+     * Replaces an appointment in the index with its updated version.
+     *
+     * @param appointment The updated appointment.
+     */
+    static synchronized void update(Appointment appointment) {
+        if (loaded) {
+            delete(appointment.getAppointmentId());
+            insert(appointment);
+        }
+    }
+
+    /**
+     * Removes a deleted appointment from the index.
+     *
+     * @param appointmentId The ID of the deleted appointment.
+     */
+    static synchronized void remove(int appointmentId) {
+        if (loaded) {
+            delete(appointmentId);
+        }
+    }
+
+    /**
+     * Removes every appointment with a customer from the index.
+     *
+     * @param customerId The ID of the customer whose appointments were deleted.
+     */
+    static synchronized void removeByCustomer(int customerId) {
+        if (loaded) {
+            deleteByCustomer(customerId);
+        }
+    }
+
+    /**
+     * Loads every appointment from the database the first time the index is used.
+     */
+    private static void ensureLoaded() {
+        if (!loaded) {
+            // getAllAppointments rebuilds the index as a side effect. If it fails, loading is retried on the next call.
+            AppointmentDAO.getAllAppointments();
+        }
+    }
+
+    private static void applyPending() {
+        for (Map.Entry<Integer, Appointment> pending : pendingAppointments.entrySet()) {
+            delete(pending.getKey());
+            if (pending.getValue() != null) {
+                insert(pending.getValue());
+            }
+        }
+        for (int customerId : pendingCustomerDeletions) {
+            deleteByCustomer(customerId);
+        }
+    }
+
+    private static void insert(Appointment appointment) {
+        int appointmentId = appointment.getAppointmentId();
+        long start = appointment.getStartEpochSecond();
+        long end = appointment.getEndEpochSecond();
+
+        byId.put(appointmentId, appointment);
+        byContact.computeIfAbsent(appointment.getContactId(), id -> new IntervalTree()).insert(appointmentId, start, end);
+        byCustomer.computeIfAbsent(appointment.getCustomerId(), id -> new IntervalTree()).insert(appointmentId, start, end);
+        byUser.computeIfAbsent(appointment.getUserId(), id -> new IntervalTree()).insert(appointmentId, start, end);
+    }
+
+    private static void delete(int appointmentId) {
+        Appointment appointment = byId.remove(appointmentId);
+        if (appointment == null) {
+            return;
+        }
+        long start = appointment.getStartEpochSecond();
+        removeFrom(byContact, appointment.getContactId(), appointmentId, start);
+        removeFrom(byCustomer, appointment.getCustomerId(), appointmentId, start);
+        removeFrom(byUser, appointment.getUserId(), appointmentId, start);
+    }
+
+    private static void deleteByCustomer(int customerId) {
+        List<Integer> appointmentIds = new ArrayList<>();
+        for (Appointment appointment : byId.values()) {
+            if (appointment.getCustomerId() == customerId) {
+                appointmentIds.add(appointment.getAppointmentId());
+            }
+        }
+        for (int appointmentId : appointmentIds) {
+            delete(appointmentId);
+        }
+    }
+
+    private static Map<Integer, IntervalTree> trees(Resource resource) {
+        switch (resource) {
+            case CONTACT:
+                return byContact;
+            case CUSTOMER:
+                return byCustomer;
+            default:
+                return byUser;
+        }
+    }
+
+    private static void removeFrom(Map<Integer, IntervalTree> trees, int key, int appointmentId, long start) {
+        IntervalTree tree = trees.get(key);
+        if (tree != null) {
+            tree.remove(appointmentId, start);
+            if (tree.size() == 0) {
+                trees.remove(key);
+            }
+        }
+    }
+}
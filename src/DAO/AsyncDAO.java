@@ -0,0 +1,145 @@
+package DAO;
+
+import javafx.application.Platform;
+
+import java.lang.reflect.Method;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+
+/**
+ * Runs DAO calls off the JavaFX application thread.
+ *
+ * Calls are executed on virtual threads when the running JVM supports them, and on a small fixed pool of daemon
+ * threads otherwise. Either way, no more calls run at once than the connection pool has connections, so a burst of
+ * requests queues here instead of timing out waiting for a connection.
+ *
+ * @author James Carney
+ */
+public class AsyncDAO {
+    private static final int maxConcurrentCalls = DBConnection.maxPoolSize;
+    private static final int maxQueuedCalls = 1000;
+    private static final Semaphore permits = new Semaphore(maxConcurrentCalls);
+    private static final ExecutorService executor = createExecutor();
+
+    /**
+     * A DAO call that produces a result.
+     *
+     * @param <T> The type of the result.
+     */
+    @FunctionalInterface
+    public interface DAOCall<T> {
+        /**
+         * Runs the call.
+         *
+         * @return The result.
+         * @throws Exception An exception related to the database query.
+         */
+        T call() throws Exception;
+    }
+
+    /**
+     * A DAO call that produces no result.
+     */
+    @FunctionalInterface
+    public interface DAOAction {
+        /**
+         * Runs the call.
+         *
+         * @throws Exception An exception related to the database query.
+         */
+        void run() throws Exception;
+    }
+
+    /**
+     * Runs a DAO call in the background.
+     *
+     * @param call The call to run.
+     * @param <T> The type of the result.
+     * @return A future completed with the call's result, or exceptionally with whatever it threw.
+     */
+    public static <T> CompletableFuture<T> supply(DAOCall<T> call) {
+        return CompletableFuture.supplyAsync(() -> {
+            permits.acquireUninterruptibly();
+            try {
+                return call.call();
+            }
+            catch (RuntimeException e) {
+                throw e;
+            }
+            catch (Exception e) {
+                throw new CompletionException(e);
+            }
+            finally {
+                permits.release();
+            }
+        }, executor);
+    }
+
+    /**
+     * Runs a DAO call with no result in the background.
+     *
+     * @param action The call to run.
+     * @return A future completed when the call finishes.
+     */
+    public static CompletableFuture<Void> run(DAOAction action) {
+        return supply(() -> {
+            action.run();
+            return null;
+        });
+    }
+
+    /**
+     * Hands the outcome of a background call back to the JavaFX application thread.
+     *
+     * @param future The background call.
+     * @param onSuccess Called on the FX thread with the result.
+     * @param onFailure Called on the FX thread with the exception the call threw.
+     * @param <T> The type of the result.
+     */
+    public static <T> void onFxThread(CompletableFuture<T> future, Consumer<T> onSuccess, Consumer<Throwable> onFailure) {
+        future.whenCompleteAsync((result, error) -> {
+            if (error == null) {
+                onSuccess.accept(result);
+            }
+            else {
+                onFailure.accept(error instanceof CompletionException && error.getCause() != null ? error.getCause() : error);
+            }
+        }, Platform::runLater);
+    }
+
+    /**
+     * Stops accepting new calls. Calls already running are allowed to finish.
+     */
+    public static void shutdown() {
+        executor.shutdown();
+    }
+
+    /**
+     * Creates a virtual thread per task executor if the JVM has one, or a bounded pool of daemon threads otherwise.
+     *
+     * @return The executor.
+     */
+    private static ExecutorService createExecutor() {
+        try {
+            // Looked up reflectively so the program still runs on JVMs older than Java 21.
+            Method factory = java.util.concurrent.Executors.class.getMethod("newVirtualThreadPerTaskExecutor");
+            return (ExecutorService) factory.invoke(null);
+        }
+        catch (ReflectiveOperationException e) {
+            AtomicInteger threadCount = new AtomicInteger();
+            return new ThreadPoolExecutor(maxConcurrentCalls, maxConcurrentCalls, 60, TimeUnit.SECONDS,
+                    new LinkedBlockingQueue<>(maxQueuedCalls), runnable -> {
+                        Thread thread = new Thread(runnable, "dao-worker-" + threadCount.incrementAndGet());
+                        thread.setDaemon(true);
+                        return thread;
+                    });
+        }
+    }
+}
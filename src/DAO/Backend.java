@@ -0,0 +1,82 @@
+package DAO;
+
+import java.io.IOException;
+import java.sql.Connection;
+import java.sql.SQLException;
+
+/**
+ * The database the DAOs store their data in.
+ *
+ * Every DAO reaches the database through {@link DBConnection}, which opens its pool against the backend chosen at
+ * startup with the db.backend system property: {@code mysql} (the default) for the shared MySQL server, or
+ * {@code embedded} for a file-backed database on the local disk, which needs no server and works offline.
+ *
+ * @author James Carney
+ */
+public interface Backend {
+
+    /**
+     * Gets the backend named by a db.backend setting.
+     *
+     * @param name The name of the backend, "mysql" or "embedded".
+     * @return The backend.
+     * @throws IllegalArgumentException If no backend has that name.
+     */
+    static Backend forName(String name) {
+        switch (name.trim().toLowerCase()) {
+            case "mysql":
+                return new MySqlBackend();
+            case "embedded":
+                return new EmbeddedBackend();
+            default:
+                throw new IllegalArgumentException("Unknown database backend: " + name + " (expected mysql or embedded)");
+        }
+    }
+
+    /**
+     * Gets the name of the backend.
+     *
+     * @return The name, as given to db.backend.
+     */
+    String getName();
+
+    /**
+     * Gets the class name of the JDBC driver.
+     *
+     * @return The driver class name.
+     */
+    String getDriver();
+
+    /**
+     * Gets the JDBC URL of the database.
+     *
+     * @return The JDBC URL.
+     */
+    String getJdbcUrl();
+
+    /**
+     * Gets the database user name.
+     *
+     * @return The user name.
+     */
+    String getUserName();
+
+    /**
+     * Gets the database password.
+     *
+     * @return The password.
+     */
+    String getPassword();
+
+    /**
+     * Prepares the database for use. Called by DBConnection with the first connection borrowed from the pool, before
+     * it is handed to a DAO; if it fails, the connection is closed and it is called again with the next connection
+     * borrowed, until it succeeds. It may therefore run more than once against the same database, after applying
+     * only part of its work, and must be safe to repeat.
+     *
+     * @param conn A connection to the database.
+     * @throws SQLException An exception related to the database query.
+     * @throws IOException An exception related to reading a schema script.
+     */
+    void initialize(Connection conn) throws SQLException, IOException;
+}
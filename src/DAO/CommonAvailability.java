@@ -0,0 +1,186 @@
+package DAO;
+
+import util.SlotAvailability;
+import util.TimeZone;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.ZonedDateTime;
+import java.time.format.DateTimeFormatter;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+/**
+ * Finds times at which several contacts, customers and users are all free, for booking an appointment that involves
+ * all of them.
+ *
+ * Each resource's bookings over the whole date range are read from the {@link AppointmentIndex} once. Each day is then
+ * searched on its own: every resource's free slots are worked out as a bitset, the bitsets are intersected with each
+ * other and with the business-hours mask, and the runs of free slots long enough for the appointment are the windows.
+ * Days are searched in parallel, a batch at a time, and the search stops once enough windows are found.
+ *
+ * @author James Carney
+ */
+public class CommonAvailability {
+    /**
+     * The longest date range that can be searched, in days.
+     */
+    public static final int maxDays = 366;
+
+    private static final DateTimeFormatter windowFormatter = DateTimeFormatter.ofPattern("EEE yyyy-MM-dd HH:mm");
+    private static final DateTimeFormatter timeFormatter = DateTimeFormatter.ofPattern("HH:mm");
+
+    /**
+     * A period in which every resource searched for is free.
+     */
+    public static class Window {
+        private final ZonedDateTime start;
+        private final ZonedDateTime end;
+
+        private Window(ZonedDateTime start, ZonedDateTime end) {
+            this.start = start;
+            this.end = end;
+        }
+
+        /**
+         * Gets the start of the window.
+         *
+         * @return The start, in the user's time zone.
+         */
+        public ZonedDateTime getStart() {
+            return start;
+        }
+
+        /**
+         * Gets the end of the window.
+         *
+         * @return The end, in the user's time zone.
+         */
+        public ZonedDateTime getEnd() {
+            return end;
+        }
+
+        @Override
+        public String toString() {
+            return start.format(windowFormatter) + " - " + end.format(timeFormatter);
+        }
+    }
+
+    /**
+     * Finds the earliest windows in which every contact, customer and user given is free for an appointment of the given
+     * length, within business hours and not in the past. Windows start on a slot boundary and don't cross midnight.
+     *
+     * @param contactIds The IDs of the contacts attending.
+     * @param customerIds The IDs of the customers attending.
+     * @param userIds The IDs of the users attending.
+     * @param duration The length of the appointment. It is rounded up to a whole number of slots.
+     * @param from The first day to search, in the user's time zone.
+     * @param to The last day to search, in the user's time zone.
+     * @param limit The most windows to return.
+     * @return The windows, earliest first.
+     */
+    public static List<Window> findCommonWindows(Set<Integer> contactIds, Set<Integer> customerIds, Set<Integer> userIds,
+                                                 Duration duration, LocalDate from, LocalDate to, int limit) {
+        if (duration.isNegative() || duration.isZero()) {
+            throw new IllegalArgumentException("The duration must be positive");
+        }
+        if (to.isBefore(from)) {
+            throw new IllegalArgumentException("The last day is before the first day");
+        }
+        int days = (int) Math.min(ChronoUnit.DAYS.between(from, to) + 1, maxDays);
+        int slotsNeeded = (int) ((duration.toMinutes() + SlotAvailability.slotMinutes - 1) / SlotAvailability.slotMinutes);
+        if (limit <= 0 || slotsNeeded >= SlotAvailability.slotsPerDay) {
+            return Collections.emptyList();
+        }
+
+        // Read every booking in the range once, so the days can be searched without holding the index's lock.
+        long rangeStart = from.atStartOfDay(TimeZone.userZoneId).toEpochSecond();
+        long rangeEnd = from.plusDays(days).atStartOfDay(TimeZone.userZoneId).toEpochSecond();
+        List<List<long[]>> bookings = new ArrayList<>();
+        for (int contactId : contactIds) {
+            bookings.add(AppointmentIndex.getBookedPeriods(AppointmentIndex.Resource.CONTACT, contactId, rangeStart, rangeEnd, 0));
+        }
+        for (int customerId : customerIds) {
+            bookings.add(AppointmentIndex.getBookedPeriods(AppointmentIndex.Resource.CUSTOMER, customerId, rangeStart, rangeEnd, 0));
+        }
+        for (int userId : userIds) {
+            bookings.add(AppointmentIndex.getBookedPeriods(AppointmentIndex.Resource.USER, userId, rangeStart, rangeEnd, 0));
+        }
+
+        long now = Instant.now().getEpochSecond();
+        int batchDays = Runtime.getRuntime().availableProcessors();
+        List<Window> windows = new ArrayList<>();
+        for (int first = 0; first < days && windows.size() < limit; first += batchDays) {
+            List<List<Window>> byDay = IntStream.range(first, Math.min(first + batchDays, days))
+                    .parallel()
+                    .mapToObj(day -> findWindows(from.plusDays(day), bookings, slotsNeeded, now, limit))
+                    .collect(Collectors.toList());
+            for (List<Window> dayWindows : byDay) {
+                for (Window window : dayWindows) {
+                    if (windows.size() < limit) {
+                        windows.add(window);
+                    }
+                }
+            }
+        }
+        return windows;
+    }
+
+    /**
+     * Finds the windows on one day.
+     *
+     * @param day The day.
+     * @param bookings Each resource's bookings, in order of start.
+     * @param slotsNeeded The length of the appointment, in slots.
+     * @param now The current time, in epoch seconds. Windows starting earlier are skipped.
+     * @param limit The most windows to return.
+     * @return The day's windows, earliest first.
+     */
+    private static List<Window> findWindows(LocalDate day, List<List<long[]>> bookings, int slotsNeeded, long now, int limit) {
+        BitSet free = TimeZone.getBusinessHoursSlots(day);
+        if (free.isEmpty()) {
+            return Collections.emptyList();
+        }
+
+        long[] slotStarts = SlotAvailability.getSlotStarts(day);
+        long dayStart = slotStarts[0];
+        long dayEnd = slotStarts[SlotAvailability.slotsPerDay];
+        for (List<long[]> periods : bookings) {
+            BitSet resourceFree = new BitSet(SlotAvailability.slotsPerDay);
+            resourceFree.set(0, SlotAvailability.slotsPerDay);
+            for (long[] period : periods) {
+                if (period[0] >= dayEnd) {
+                    break;
+                }
+                if (period[1] > dayStart) {
+                    SlotAvailability.clearSlots(resourceFree, slotStarts, period[0], period[1]);
+                }
+            }
+            free.and(resourceFree);
+            if (free.isEmpty()) {
+                return Collections.emptyList();
+            }
+        }
+
+        List<Window> windows = new ArrayList<>();
+        // The last slot can't start a window, since an appointment can't end at midnight.
+        for (int slot = free.nextSetBit(0); slot >= 0 && windows.size() < limit; slot = free.nextSetBit(slot + 1)) {
+            int end = slot + slotsNeeded;
+            if (end >= SlotAvailability.slotsPerDay) {
+                break;
+            }
+            if (slotStarts[slot] >= now && free.nextClearBit(slot) >= end) {
+                windows.add(new Window(ZonedDateTime.of(day, SlotAvailability.slotTime(slot), TimeZone.userZoneId),
+                        ZonedDateTime.of(day, SlotAvailability.slotTime(end), TimeZone.userZoneId)));
+            }
+        }
+        return windows;
+    }
+}
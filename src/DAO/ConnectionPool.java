@@ -0,0 +1,641 @@
+package DAO;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.DatabaseMetaData;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingDeque;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * A bounded pool of database connections.
+ *
+ * Connections are borrowed with {@link #borrow()} and handed back by calling close() on the borrowed connection,
+ * which makes the pool safe to use with try-with-resources. Idle connections are validated before reuse and are
+ * evicted by a background thread once they have been idle for longer than the configured timeout. Each pooled
+ * connection keeps its own {@link StatementCache}, so repeated queries reuse their prepared statements.
+ *
+ * @author James Carney
+ */
+public class ConnectionPool {
+    private final String jdbcUrl;
+    private final String userName;
+    private final String password;
+    private final int maxSize;
+    private final int minIdle;
+    private final long borrowTimeoutMillis;
+    private final long idleTimeoutMillis;
+    private final long validationIntervalMillis;
+    private final int statementCacheSize;
+
+    private final Semaphore permits;
+    private final LinkedBlockingDeque<PooledConnection> idleConnections = new LinkedBlockingDeque<>();
+    private final ScheduledExecutorService evictor;
+    private volatile boolean closed = false;
+
+    private final AtomicLong created = new AtomicLong();
+    private final AtomicLong destroyed = new AtomicLong();
+    private final AtomicLong borrowed = new AtomicLong();
+    private final AtomicLong returned = new AtomicLong();
+    private final AtomicLong timeouts = new AtomicLong();
+    private final AtomicLong validationFailures = new AtomicLong();
+    private final AtomicLong evicted = new AtomicLong();
+    private final AtomicLong totalWaitNanos = new AtomicLong();
+    private final AtomicLong statementHits = new AtomicLong();
+    private final AtomicLong statementMisses = new AtomicLong();
+    private final AtomicLong statementEvictions = new AtomicLong();
+
+    /**
+     * Class constructor.
+     *
+     * @param jdbcUrl The JDBC URL of the database.
+     * @param userName The database user name.
+     * @param password The database password.
+     * @param maxSize The maximum number of connections, idle or in use, the pool will hold.
+     * @param minIdle The number of idle connections kept open by the evictor.
+     * @param borrowTimeoutMillis How long a caller waits for a free connection before giving up.
+     * @param idleTimeoutMillis How long a connection may sit idle before it is closed.
+     * @param validationIntervalMillis Idle time after which a connection is validated before being handed out.
+     * @param statementCacheSize The number of prepared statements cached per connection.
+     */
+    public ConnectionPool(String jdbcUrl, String userName, String password, int maxSize, int minIdle,
+                          long borrowTimeoutMillis, long idleTimeoutMillis, long validationIntervalMillis,
+                          int statementCacheSize) {
+        this.jdbcUrl = jdbcUrl;
+        this.userName = userName;
+        this.password = password;
+        this.maxSize = maxSize;
+        this.minIdle = Math.min(minIdle, maxSize);
+        this.borrowTimeoutMillis = borrowTimeoutMillis;
+        this.idleTimeoutMillis = idleTimeoutMillis;
+        this.validationIntervalMillis = validationIntervalMillis;
+        this.statementCacheSize = statementCacheSize;
+        this.permits = new Semaphore(maxSize, true);
+
+        evictor = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "connection-pool-evictor");
+            thread.setDaemon(true);
+            return thread;
+        });
+        long evictionPeriod = Math.max(1000, idleTimeoutMillis / 2);
+        evictor.scheduleWithFixedDelay(this::evictIdleConnections, evictionPeriod, evictionPeriod, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Borrows a connection from the pool, opening a new one if no idle connection is available.
+     *
+     * @return A connection that is returned to the pool when closed.
+     * @throws SQLException If the pool is exhausted for longer than the borrow timeout or a connection can't be opened.
+     */
+    public Connection borrow() throws SQLException {
+        if (closed) {
+            throw new SQLException("Connection pool is closed.");
+        }
+
+        long waitStart = System.nanoTime();
+        try {
+            if (!permits.tryAcquire(borrowTimeoutMillis, TimeUnit.MILLISECONDS)) {
+                timeouts.incrementAndGet();
+                throw new SQLException("Timed out after " + borrowTimeoutMillis + "ms waiting for a database connection.");
+            }
+        }
+        catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new SQLException("Interrupted while waiting for a database connection.", e);
+        }
+        totalWaitNanos.addAndGet(System.nanoTime() - waitStart);
+
+        try {
+            PooledConnection pooled;
+            while ((pooled = idleConnections.pollFirst()) != null) {
+                if (isUsable(pooled)) {
+                    break;
+                }
+                validationFailures.incrementAndGet();
+                destroy(pooled);
+            }
+            if (pooled == null) {
+                pooled = new PooledConnection(DriverManager.getConnection(jdbcUrl, userName, password));
+                created.incrementAndGet();
+            }
+            borrowed.incrementAndGet();
+            return pooled.open();
+        }
+        catch (SQLException | RuntimeException e) {
+            permits.release();
+            throw e;
+        }
+    }
+
+    /**
+     * Returns a connection to the pool. Called when a borrowed connection is closed.
+     *
+     * @param pooled The connection being returned.
+     */
+    private void release(PooledConnection pooled) {
+        returned.incrementAndGet();
+        try {
+            pooled.reset();
+            pooled.lastUsed = System.currentTimeMillis();
+            if (closed) {
+                destroy(pooled);
+            }
+            else {
+                idleConnections.offerFirst(pooled);
+            }
+        }
+        catch (SQLException e) {
+            destroy(pooled);
+        }
+        finally {
+            permits.release();
+        }
+    }
+
+    /**
+     * Checks whether an idle connection can be handed out again.
+     *
+     * @param pooled The idle connection.
+     * @return boolean representing whether the connection is still usable.
+     */
+    private boolean isUsable(PooledConnection pooled) {
+        try {
+            if (pooled.physical.isClosed()) {
+                return false;
+            }
+            if (System.currentTimeMillis() - pooled.lastUsed < validationIntervalMillis) {
+                return true;
+            }
+            return pooled.physical.isValid(2);
+        }
+        catch (SQLException e) {
+            return false;
+        }
+    }
+
+    /**
+     * Closes connections that have been idle for longer than the idle timeout, keeping at least minIdle open.
+     */
+    private void evictIdleConnections() {
+        long cutoff = System.currentTimeMillis() - idleTimeoutMillis;
+        // The deque is ordered most recently used first, so the stalest connections are at the tail.
+        Iterator<PooledConnection> iterator = idleConnections.descendingIterator();
+        while (iterator.hasNext() && idleConnections.size() > minIdle) {
+            PooledConnection pooled = iterator.next();
+            if (pooled.lastUsed < cutoff && idleConnections.remove(pooled)) {
+                evicted.incrementAndGet();
+                destroy(pooled);
+            }
+        }
+    }
+
+    /**
+     * Physically closes a connection.
+     *
+     * @param pooled The connection to be closed.
+     */
+    private void destroy(PooledConnection pooled) {
+        destroyed.incrementAndGet();
+        try {
+            pooled.physical.close();
+        }
+        catch (SQLException e) {
+            System.out.println("Error:" + e.getMessage());
+        }
+    }
+
+    /**
+     * Closes the pool and every idle connection. Connections still in use are closed when they are returned.
+     */
+    public void close() {
+        closed = true;
+        evictor.shutdownNow();
+        PooledConnection pooled;
+        while ((pooled = idleConnections.pollFirst()) != null) {
+            destroy(pooled);
+        }
+    }
+
+    /**
+     * Gets a snapshot of the pool's usage counters.
+     *
+     * @return The pool statistics.
+     */
+    public Statistics getStatistics() {
+        int idle = idleConnections.size();
+        int active = maxSize - permits.availablePermits();
+        return new Statistics(maxSize, active, idle, created.get(), destroyed.get(), borrowed.get(), returned.get(),
+                timeouts.get(), validationFailures.get(), evicted.get(), totalWaitNanos.get(),
+                statementHits.get(), statementMisses.get(), statementEvictions.get());
+    }
+
+    /**
+     * A physical connection owned by the pool, along with the bookkeeping needed to lend it out.
+     */
+    private class PooledConnection {
+        private final Connection physical;
+        private final StatementCache statementCache;
+        private final List<Statement> openStatements = new ArrayList<>();
+        private volatile long lastUsed = System.currentTimeMillis();
+
+        private PooledConnection(Connection physical) {
+            this.physical = physical;
+            this.statementCache = new StatementCache(physical, openStatements, statementCacheSize, statementHits, statementMisses, statementEvictions);
+        }
+
+        /**
+         * Creates the proxy handed to a borrower. Each borrower gets a new lease, so a proxy kept after it was closed
+         * can't reach the connection once it has been lent to someone else.
+         *
+         * @return A connection whose close() returns it to the pool.
+         */
+        private Connection open() {
+            return new Lease(this).proxy;
+        }
+
+        /**
+         * Checks cached statements back in, closes any other statements the borrower left open and restores default
+         * connection state.
+         *
+         * @throws SQLException An exception related to resetting the connection.
+         */
+        private void reset() throws SQLException {
+            statementCache.checkInAll();
+            for (Statement statement : openStatements) {
+                try {
+                    statement.close();
+                }
+                catch (SQLException e) {
+                    //Statement is already unusable, nothing else to do
+                }
+            }
+            openStatements.clear();
+            if (!physical.getAutoCommit()) {
+                physical.rollback();
+                physical.setAutoCommit(true);
+            }
+        }
+    }
+
+    /**
+     * One borrower's use of a pooled connection, from borrow() until the connection is closed.
+     *
+     * Statements, result sets and metadata obtained through the lease are wrapped as well, so that neither
+     * getConnection() nor unwrap() hands the borrower the physical connection, which would let them keep using it
+     * after it has gone back to the pool.
+     */
+    private class Lease implements InvocationHandler {
+        private final PooledConnection pooled;
+        private final Connection proxy;
+        private volatile boolean open = true;
+
+        private Lease(PooledConnection pooled) {
+            this.pooled = pooled;
+            this.proxy = (Connection) Proxy.newProxyInstance(Connection.class.getClassLoader(), new Class<?>[]{Connection.class}, this);
+        }
+
+        /**
+         * Ends the lease.
+         *
+         * @return boolean representing whether this call ended it, false if it had already ended.
+         */
+        private synchronized boolean end() {
+            if (!open) {
+                return false;
+            }
+            open = false;
+            return true;
+        }
+
+        private void checkOpen() throws SQLException {
+            if (!open) {
+                throw new SQLException("Connection closed.");
+            }
+        }
+
+        /**
+         * Wraps a JDBC object obtained through the lease if it could lead back to the physical connection.
+         *
+         * @param type The declared return type of the method that produced the object.
+         * @param target The object.
+         * @param parent The proxy the object was obtained through.
+         * @return The wrapped object, or the object itself if it needs no wrapping.
+         */
+        private Object guard(Class<?> type, Object target, Object parent) {
+            if (target == null || !(Statement.class.isAssignableFrom(type) || type == ResultSet.class
+                    || type == DatabaseMetaData.class)) {
+                return target;
+            }
+            return Proxy.newProxyInstance(type.getClassLoader(), new Class<?>[]{type}, new Guard(this, target, parent));
+        }
+
+        @Override
+        public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+            String name = method.getName();
+            if (method.getDeclaringClass() == Object.class) {
+                return invokeObjectMethod(proxy, method, args);
+            }
+            if (name.equals("close")) {
+                if (end()) {
+                    release(pooled);
+                }
+                return null;
+            }
+            if (name.equals("isClosed")) {
+                return !open || pooled.physical.isClosed();
+            }
+            checkOpen();
+            if (name.equals("unwrap") || name.equals("isWrapperFor")) {
+                return unwrap(proxy, name, (Class<?>) args[0]);
+            }
+
+            if (name.equals("prepareStatement") && args.length == 1) {
+                return guard(PreparedStatement.class, pooled.statementCache.prepare((String) args[0], Statement.NO_GENERATED_KEYS), proxy);
+            }
+            if (name.equals("prepareStatement") && args.length == 2 && args[1] instanceof Integer) {
+                return guard(PreparedStatement.class, pooled.statementCache.prepare((String) args[0], (Integer) args[1]), proxy);
+            }
+
+            Object result = invokeOn(pooled.physical, method, args);
+            if (result instanceof Statement) {
+                pooled.openStatements.add((Statement) result);
+            }
+            return guard(method.getReturnType(), result, proxy);
+        }
+    }
+
+    /**
+     * A statement, result set or metadata object obtained through a lease. Stops working once the lease ends, and
+     * answers getConnection() and getStatement() with the borrower's proxies rather than the physical objects.
+     */
+    private static class Guard implements InvocationHandler {
+        private final Lease lease;
+        private final Object target;
+        private final Object parent;
+
+        private Guard(Lease lease, Object target, Object parent) {
+            this.lease = lease;
+            this.target = target;
+            this.parent = parent;
+        }
+
+        @Override
+        public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+            String name = method.getName();
+            if (method.getDeclaringClass() == Object.class) {
+                return invokeObjectMethod(proxy, method, args);
+            }
+            if (!lease.open) {
+                // The pool closed or checked in the target when the connection was returned.
+                if (name.equals("close")) {
+                    return null;
+                }
+                if (name.equals("isClosed")) {
+                    return true;
+                }
+            }
+            lease.checkOpen();
+            if (name.equals("getConnection")) {
+                return lease.proxy;
+            }
+            if (name.equals("getStatement") && target instanceof ResultSet) {
+                return parent instanceof Statement ? parent : null;
+            }
+            if (name.equals("unwrap") || name.equals("isWrapperFor")) {
+                return unwrap(proxy, name, (Class<?>) args[0]);
+            }
+            return lease.guard(method.getReturnType(), invokeOn(target, method, args), proxy);
+        }
+    }
+
+    /**
+     * Answers unwrap() and isWrapperFor() for a proxy without exposing the object behind it.
+     *
+     * @param proxy The proxy.
+     * @param name The name of the method called.
+     * @param iface The interface asked for.
+     * @return The proxy itself for unwrap(), or whether it implements the interface for isWrapperFor().
+     * @throws SQLException If unwrap() asks for an interface the proxy doesn't implement.
+     */
+    private static Object unwrap(Object proxy, String name, Class<?> iface) throws SQLException {
+        if (name.equals("isWrapperFor")) {
+            return iface.isInstance(proxy);
+        }
+        if (!iface.isInstance(proxy)) {
+            throw new SQLException("Pooled connections can't be unwrapped as " + iface.getName() + ".");
+        }
+        return proxy;
+    }
+
+    /**
+     * Answers equals(), hashCode() and toString() by identity, so that proxies behave in collections even once their
+     * lease has ended.
+     */
+    private static Object invokeObjectMethod(Object proxy, Method method, Object[] args) {
+        switch (method.getName()) {
+            case "equals":
+                return proxy == args[0];
+            case "hashCode":
+                return System.identityHashCode(proxy);
+            default:
+                return proxy.getClass().getName() + "@" + Integer.toHexString(System.identityHashCode(proxy));
+        }
+    }
+
+    private static Object invokeOn(Object target, Method method, Object[] args) throws Throwable {
+        try {
+            return method.invoke(target, args);
+        }
+        catch (InvocationTargetException e) {
+            throw e.getCause();
+        }
+    }
+
+    /**
+     * An immutable snapshot of pool usage.
+     */
+    public static class Statistics {
+        private final int maxSize;
+        private final int active;
+        private final int idle;
+        private final long created;
+        private final long destroyed;
+        private final long borrowed;
+        private final long returned;
+        private final long timeouts;
+        private final long validationFailures;
+        private final long evicted;
+        private final long totalWaitNanos;
+        private final long statementHits;
+        private final long statementMisses;
+        private final long statementEvictions;
+
+        private Statistics(int maxSize, int active, int idle, long created, long destroyed, long borrowed, long returned,
+                           long timeouts, long validationFailures, long evicted, long totalWaitNanos,
+                           long statementHits, long statementMisses, long statementEvictions) {
+            this.maxSize = maxSize;
+            this.active = active;
+            this.idle = idle;
+            this.created = created;
+            this.destroyed = destroyed;
+            this.borrowed = borrowed;
+            this.returned = returned;
+            this.timeouts = timeouts;
+            this.validationFailures = validationFailures;
+            this.evicted = evicted;
+            this.totalWaitNanos = totalWaitNanos;
+            this.statementHits = statementHits;
+            this.statementMisses = statementMisses;
+            this.statementEvictions = statementEvictions;
+        }
+
+        /**
+         * Gets the maximum size of the pool.
+         *
+         * @return The maximum size.
+         */
+        public int getMaxSize() {
+            return maxSize;
+        }
+
+        /**
+         * Gets the number of connections currently borrowed.
+         *
+         * @return The number of active connections.
+         */
+        public int getActive() {
+            return active;
+        }
+
+        /**
+         * Gets the number of open connections waiting in the pool.
+         *
+         * @return The number of idle connections.
+         */
+        public int getIdle() {
+            return idle;
+        }
+
+        /**
+         * Gets the number of physical connections opened.
+         *
+         * @return The number of connections created.
+         */
+        public long getCreated() {
+            return created;
+        }
+
+        /**
+         * Gets the number of physical connections closed.
+         *
+         * @return The number of connections destroyed.
+         */
+        public long getDestroyed() {
+            return destroyed;
+        }
+
+        /**
+         * Gets the number of times a connection was borrowed.
+         *
+         * @return The borrow count.
+         */
+        public long getBorrowed() {
+            return borrowed;
+        }
+
+        /**
+         * Gets the number of times a connection was returned.
+         *
+         * @return The return count.
+         */
+        public long getReturned() {
+            return returned;
+        }
+
+        /**
+         * Gets the number of borrow attempts that timed out.
+         *
+         * @return The timeout count.
+         */
+        public long getTimeouts() {
+            return timeouts;
+        }
+
+        /**
+         * Gets the number of idle connections that failed validation.
+         *
+         * @return The validation failure count.
+         */
+        public long getValidationFailures() {
+            return validationFailures;
+        }
+
+        /**
+         * Gets the number of connections closed for sitting idle too long.
+         *
+         * @return The eviction count.
+         */
+        public long getEvicted() {
+            return evicted;
+        }
+
+        /**
+         * Gets the average time a borrower waited for a connection.
+         *
+         * @return The average wait in milliseconds.
+         */
+        public double getAverageWaitMillis() {
+            return borrowed == 0 ? 0 : totalWaitNanos / 1_000_000.0 / borrowed;
+        }
+
+        /**
+         * Gets the number of prepared statements served from a connection's statement cache.
+         *
+         * @return The cache hit count.
+         */
+        public long getStatementHits() {
+            return statementHits;
+        }
+
+        /**
+         * Gets the number of prepared statements that had to be prepared on the server.
+         *
+         * @return The cache miss count.
+         */
+        public long getStatementMisses() {
+            return statementMisses;
+        }
+
+        /**
+         * Gets the number of cached statements closed to make room for newer ones.
+         *
+         * @return The eviction count.
+         */
+        public long getStatementEvictions() {
+            return statementEvictions;
+        }
+
+        @Override
+        public String toString() {
+            return "active=" + active + "/" + maxSize + " idle=" + idle + " created=" + created + " destroyed=" + destroyed
+                    + " borrowed=" + borrowed + " timeouts=" + timeouts + " validationFailures=" + validationFailures
+                    + " evicted=" + evicted + String.format(" avgWait=%.3fms", getAverageWaitMillis())
+                    + " statementHits=" + statementHits + " statementMisses=" + statementMisses
+                    + " statementEvictions=" + statementEvictions;
+        }
+    }
+}
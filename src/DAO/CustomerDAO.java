@@ -17,38 +17,65 @@ import java.sql.SQLException;
  * @author James Carney
  */
 public class CustomerDAO {
-    private static ObservableList<Customer> allCustomers = FXCollections.observableArrayList();
 
     /**
-     * Creates a new customer in the database.
+     * Creates a new customer in the database. If the database can't be reached, or earlier changes are still waiting in
+     * the {@link OfflineJournal}, the customer is added to the journal instead and created when it is synchronized.
      *
      * @param customer The customer to be created.
      * @return boolean indicating success/failure of the create operation.
      * @throws SQLException An exception related to the database query.
      */
     public static boolean createCustomer(Customer customer) throws SQLException {
-        Connection conn = DBConnection.getConnection();
-        String sqlStatement = "INSERT INTO customers(Customer_Name, address, Postal_Code, Phone, Division_ID) VALUES(?, ?, ?, ?, ?)";
-        Query.setPreparedStatement(conn, sqlStatement);
-        PreparedStatement ps = Query.getPreparedStatement();
-
-        ps.setString(1, customer.getCustomerName().getValue());
-        ps.setString(2, customer.getAddress().getValue());
-        ps.setString(3, customer.getPostalCode().getValue());
-        ps.setString(4, customer.getPhone().getValue());
-        ps.setInt(5, customer.getDivisionId().getValue());
-
-        ps.execute();
-
-        if (ps.getUpdateCount() > 0) {
-            System.out.println(ps.getUpdateCount() + " row(s) affected.");
-            DBConnection.closeConnection();
+        if (OfflineJournal.hasPending()) {
+            OfflineJournal.customerCreated(customer);
             return true;
         }
-        else {
-            System.out.println("No change.");
-            DBConnection.closeConnection();
-            return false;
+        try {
+            return insertCustomer(customer) > 0;
+        }
+        catch (SQLException e) {
+            if (!DBConnection.isConnectionFailure(e)) {
+                throw e;
+            }
+            OfflineJournal.customerCreated(customer);
+            return true;
+        }
+    }
+
+    /**
+     * Inserts a new customer into the database.
+     *
+     * @param customer The customer to be created.
+     * @return The database-assigned ID of the customer, or 0 if no row was inserted.
+     * @throws SQLException An exception related to the database query.
+     */
+    static int insertCustomer(Customer customer) throws SQLException {
+        long reportVersion = ReportAggregates.getVersion();
+        try (Connection conn = DBConnection.getConnection()) {
+            String sqlStatement = "INSERT INTO customers(Customer_Name, address, Postal_Code, Phone, Division_ID) VALUES(?, ?, ?, ?, ?)";
+            PreparedStatement ps = Query.prepareWithGeneratedKeys(conn, sqlStatement);
+
+            ps.setString(1, customer.getCustomerName().getValue());
+            ps.setString(2, customer.getAddress().getValue());
+            ps.setString(3, customer.getPostalCode().getValue());
+            ps.setString(4, customer.getPhone().getValue());
+            ps.setInt(5, customer.getDivisionId().getValue());
+
+            ps.execute();
+
+            if (ps.getUpdateCount() > 0) {
+                System.out.println(ps.getUpdateCount() + " row(s) affected.");
+                ResultSet keys = ps.getGeneratedKeys();
+                int customerId = keys.next() ? keys.getInt(1) : 0;
+                ReferenceData.invalidateCustomers();
+                ReportAggregates.customerAdded(reportVersion, getCountryId(customer.getDivisionId().getValue()));
+                return customerId;
+            }
+            else {
+                System.out.println("No change.");
+                return 0;
+            }
         }
     }
 
@@ -60,43 +87,41 @@ public class CustomerDAO {
      * @throws SQLException An exception related to the database query.
      */
     public static Customer getCustomer(int customerId) throws Exception {
-        Connection conn = DBConnection.getConnection();
-        String sqlStatement = "SELECT * FROM customers WHERE Customer_ID = ?";
-        Query.setPreparedStatement(conn, sqlStatement);
-        PreparedStatement ps = Query.getPreparedStatement();
+        try (Connection conn = DBConnection.getConnection()) {
+            String sqlStatement = "SELECT * FROM customers WHERE Customer_ID = ?";
+            PreparedStatement ps = Query.prepare(conn, sqlStatement);
 
-        ps.setInt(1, customerId);
+            ps.setInt(1, customerId);
 
-        ResultSet rs = ps.executeQuery();
+            ResultSet rs = ps.executeQuery();
 
-        while (rs.next()) {
-            ObservableValue<Integer> custId = new ReadOnlyObjectWrapper<>(rs.getInt("Customer_ID"));
-            ObservableValue<String> customerName = new ReadOnlyObjectWrapper<>(rs.getString("Customer_Name"));
-            ObservableValue<String> address = new ReadOnlyObjectWrapper<>(rs.getString("Address"));
-            ObservableValue<String> postalCode = new ReadOnlyObjectWrapper<>(rs.getString("Postal_Code"));
-            ObservableValue<String> phone = new ReadOnlyObjectWrapper<>(rs.getString("Phone"));
-            ObservableValue<Integer> divisionId = new ReadOnlyObjectWrapper<>(rs.getInt("Division_ID"));
-            Customer customer = new Customer(custId, customerName, address, postalCode, phone, divisionId);
-            DBConnection.closeConnection();
-            return customer;
+            while (rs.next()) {
+                ObservableValue<Integer> custId = new ReadOnlyObjectWrapper<>(rs.getInt("Customer_ID"));
+                ObservableValue<String> customerName = new ReadOnlyObjectWrapper<>(rs.getString("Customer_Name"));
+                ObservableValue<String> address = new ReadOnlyObjectWrapper<>(rs.getString("Address"));
+                ObservableValue<String> postalCode = new ReadOnlyObjectWrapper<>(rs.getString("Postal_Code"));
+                ObservableValue<String> phone = new ReadOnlyObjectWrapper<>(rs.getString("Phone"));
+                ObservableValue<Integer> divisionId = new ReadOnlyObjectWrapper<>(rs.getInt("Division_ID"));
+                Customer customer = new Customer(custId, customerName, address, postalCode, phone, divisionId);
+                return customer;
+            }
+            return null;
         }
-        DBConnection.closeConnection();
-        return null;
     }
 
     /**
-     * Gets a list of all customers from the database.
+     * Gets a list of all customers from the database, with the changes waiting in the {@link OfflineJournal} applied. If
+     * the database can't be reached, the customers last loaded are listed instead.
      *
      * @return A list of all customers.
      */
     public static ObservableList<Customer> getAllCustomers()  {
-            allCustomers.clear();
+            // A new list per call, since this may run on a background thread while a screen still shows the last result.
+            ObservableList<Customer> allCustomers = FXCollections.observableArrayList();
 
-            try {
-                Connection conn = DBConnection.getConnection();
+            try (Connection conn = DBConnection.getConnection()) {
                 String sqlStatement = "SELECT * FROM customers";
-                Query.setPreparedStatement(conn, sqlStatement);
-                PreparedStatement ps = Query.getPreparedStatement();
+                PreparedStatement ps = Query.prepare(conn, sqlStatement);
 
                 ResultSet rs = ps.executeQuery();
 
@@ -110,27 +135,68 @@ public class CustomerDAO {
                     Customer customer = new Customer(custId, customerName, address, postalCode, phone, divisionId);
                     allCustomers.add(customer);
                 }
-                return allCustomers;
+                return FXCollections.observableArrayList(OfflineJournal.withPendingCustomers(allCustomers));
             }
             catch (SQLException e) {
+                if (DBConnection.isConnectionFailure(e)) {
+                    // Show the customers last loaded, with the changes made offline.
+                    return FXCollections.observableArrayList(OfflineJournal.withPendingCustomers(ReferenceData.getLoadedCustomers()));
+                }
                 System.out.println(e.getStackTrace());
                 return null;
             }
     }
 
     /**
-     * Updates a customer already in the database.
+     * Updates a customer already in the database. If the database can't be reached, earlier changes are still waiting
+     * in the {@link OfflineJournal}, or the customer was created offline and isn't in the database yet, the change is
+     * added to the journal instead.
      *
-     * @param customerId The ID of the customer to be updated.
+     * @param id The ID of the customer to be updated.
      * @param customer The customer to be updated.
      * @return boolean representing whether the customer was updated.
      */
-    public static boolean updateCustomer(int customerId, Customer customer) {
+    public static boolean updateCustomer(int id, Customer customer) {
+        int customerId = OfflineJournal.resolveId(id);
+        customer.setCustomerId(new ReadOnlyObjectWrapper<>(OfflineJournal.resolveId(customer.getCustomerId().getValue())));
         try {
-            Connection conn = DBConnection.getConnection();
+            if (OfflineJournal.hasPending() || customerId < 0) {
+                OfflineJournal.customerUpdated(customerId, customer);
+                return true;
+            }
+            return writeCustomer(customerId, customer);
+        }
+        catch (SQLException e) {
+            if (DBConnection.isConnectionFailure(e)) {
+                try {
+                    OfflineJournal.customerUpdated(customerId, customer);
+                    return true;
+                }
+                catch (SQLException journalError) {
+                    journalError.printStackTrace();
+                    return false;
+                }
+            }
+            e.printStackTrace();
+        }
+        return false;
+    }
+
+    /**
+     * Writes a customer's new details over the row in the database.
+     *
+     * @param customerId The ID of the customer to be updated.
+     * @param customer The customer to be updated.
+     * @return boolean indicating whether the customer was still in the database.
+     * @throws SQLException An exception related to the database query.
+     */
+    static boolean writeCustomer(int customerId, Customer customer) throws SQLException {
+        long reportVersion = ReportAggregates.getVersion();
+        try (Connection conn = DBConnection.getConnection()) {
+            int oldDivisionId = getDivisionId(conn, customerId);
+
             String sqlStatement = "UPDATE customers SET Customer_ID = ?, Customer_Name = ?, Address = ?, Postal_Code = ?, Phone = ?, Division_ID = ? WHERE Customer_ID = ?";
-            Query.setPreparedStatement(conn, sqlStatement);
-            PreparedStatement ps = Query.getPreparedStatement();
+            PreparedStatement ps = Query.prepare(conn, sqlStatement);
 
             ps.setInt(1, customer.getCustomerId().getValue());
             ps.setString(2, customer.getCustomerName().getValue());
@@ -142,39 +208,77 @@ public class CustomerDAO {
 
             ps.execute();
 
-            return ps.getUpdateCount() > 0;
-        }
-        catch (Exception e) {
-            e.printStackTrace();
+            ReferenceData.invalidateCustomers();
+            if (ps.getUpdateCount() > 0) {
+                ReportAggregates.customerMoved(reportVersion, getCountryId(oldDivisionId), getCountryId(customer.getDivisionId().getValue()));
+                ReportCube.invalidate();
+                return true;
+            }
+            return false;
         }
-        return false;
     }
 
     /**
-     * Deletes a customer from the database.
+     * Deletes a customer and all of their appointments from the database. If the database can't be reached, or earlier
+     * changes are still waiting in the {@link OfflineJournal}, the deletion is added to the journal instead.
      *
      * @param customer The customer to be deleted.
      * @return Boolean representing success or failure of the delete operation.
      */
     public static boolean deleteCustomer(Customer customer)  {
+        int customerId = OfflineJournal.resolveId(customer.getCustomerId().getValue());
         try {
-            Connection conn = DBConnection.getConnection();
-            // We must delete all the customer's appointments before deleting the customer
-            AppointmentDAO.deleteAllAppointmentsByCustomer(customer.getCustomerId().getValue());
+            if (OfflineJournal.hasPending() || customerId < 0) {
+                OfflineJournal.customerDeleted(customerId);
+                return true;
+            }
+            return removeCustomer(customerId);
+        }
+        catch (SQLException e) {
+            if (DBConnection.isConnectionFailure(e)) {
+                try {
+                    OfflineJournal.customerDeleted(customerId);
+                    return true;
+                }
+                catch (SQLException journalError) {
+                    journalError.printStackTrace();
+                    return false;
+                }
+            }
+            e.printStackTrace();
+        }
+        return false;
+    }
+
+    /**
+     * Deletes a customer row, and the customer's appointments, from the database.
+     *
+     * @param customerId The ID of the customer to be deleted.
+     * @return boolean indicating whether the customer was in the database.
+     * @throws SQLException An exception related to the database query.
+     */
+    static boolean removeCustomer(int customerId) throws SQLException {
+        // We must delete all the customer's appointments before deleting the customer
+        AppointmentDAO.removeAppointmentsByCustomer(customerId);
+        long reportVersion = ReportAggregates.getVersion();
+        try (Connection conn = DBConnection.getConnection()) {
+            int oldDivisionId = getDivisionId(conn, customerId);
+
             //Now delete the customer
             String sqlStatement = "DELETE FROM customers WHERE Customer_ID = ?";
-            Query.setPreparedStatement(conn, sqlStatement);
-            PreparedStatement ps = Query.getPreparedStatement();
+            PreparedStatement ps = Query.prepare(conn, sqlStatement);
 
-            ps.setInt(1, customer.getCustomerId().getValue());
+            ps.setInt(1, customerId);
             ps.execute();
 
-            return ps.getUpdateCount() > 0;
-        }
-        catch (Exception e) {
-            e.printStackTrace();
+            ReferenceData.invalidateCustomers();
+            if (ps.getUpdateCount() > 0) {
+                ReportAggregates.customerRemoved(reportVersion, getCountryId(oldDivisionId));
+                ReportCube.invalidate();
+                return true;
+            }
+            return false;
         }
-        return false;
     }
 
     /**
@@ -185,26 +289,38 @@ public class CustomerDAO {
      */
     public static FirstLevelDivision getFLDbyId(int divId) {
         try {
-            Connection conn = DBConnection.getConnection();
-            String sqlStatement = "SELECT * FROM first_level_divisions WHERE Division_ID = ?";
-            Query.setPreparedStatement(conn, sqlStatement);
-            PreparedStatement ps = Query.getPreparedStatement();
-
-            ps.setInt(1, divId);
-            ResultSet rs = ps.executeQuery();
-            if (rs.next()) {
-                int divisionId = rs.getInt("Division_ID");
-                String division = rs.getString("Division");
-                int countryId = rs.getInt("COUNTRY_ID");
-
-                FirstLevelDivision result = new FirstLevelDivision(divisionId, division, countryId);
-                return result;
-            }
-
+            return ReferenceData.getDivision(divId);
         }
         catch (Exception e) {
             e.printStackTrace();
         }
         return null;
     }
+
+    /**
+     * Reads the division a customer is currently in, before it is changed.
+     *
+     * @param conn The connection to query on.
+     * @param customerId The ID of the customer.
+     * @return The division ID, or 0 if there is no such customer.
+     * @throws SQLException An exception related to the database query.
+     */
+    private static int getDivisionId(Connection conn, int customerId) throws SQLException {
+        PreparedStatement ps = Query.prepare(conn, "SELECT Division_ID FROM customers WHERE Customer_ID = ?");
+        ps.setInt(1, customerId);
+        ResultSet rs = ps.executeQuery();
+        return rs.next() ? rs.getInt(1) : 0;
+    }
+
+    /**
+     * Looks up the country a division belongs to.
+     *
+     * @param divisionId The ID of the division.
+     * @return The country ID, or 0 if the division isn't known.
+     * @throws SQLException An exception related to the database query.
+     */
+    private static int getCountryId(int divisionId) throws SQLException {
+        FirstLevelDivision fld = ReferenceData.getDivision(divisionId);
+        return fld == null ? 0 : fld.getCountryId();
+    }
 }
@@ -1,50 +1,141 @@
 package DAO;
 
+import java.io.IOException;
 import java.sql.Connection;
-import java.sql.DriverManager;
+import java.sql.SQLException;
+import java.sql.SQLNonTransientConnectionException;
+import java.sql.SQLRecoverableException;
+import java.sql.SQLTransientConnectionException;
+import java.util.logging.Logger;
 
 /**
  * Manages connections to the database.
+ *
+ * Connections are lent out by a shared {@link ConnectionPool}. Callers should close the connection they receive,
+ * preferably with try-with-resources, which returns it to the pool rather than closing the underlying socket.
+ *
+ * The database is the {@link Backend} named by the db.backend system property, which is read once at startup: the
+ * local MySQL schema by default, or an embedded file-backed database with db.backend=embedded. The db.url, db.driver,
+ * db.user and db.password system properties override the backend's settings, e.g. to point the program at the
+ * in-memory database the benchmarks run against.
+ *
  * @author James Carney
  */
 public class DBConnection {
 
-    private static final String protocol = "jdbc";
-    private static final String vendor = ":mysql:";
-    private static final String location = "//localhost/";
-    private static final String databaseName = "client_schedule";
-    private static final String jdbcUrl = protocol + vendor + location + databaseName + "?connectionTimeZone=SERVER"; // LOCAL
-    private static final String driver = "com.mysql.cj.jdbc.Driver"; // Driver reference
-    private static final String userName = "sqlUser"; // Username
-    private static String password = "Passw0rd!"; // Password
-    public static Connection connection;  // Connection Interface
+    private static final Backend backend = Backend.forName(System.getProperty("db.backend", "mysql"));
+    private static final String jdbcUrl = System.getProperty("db.url", backend.getJdbcUrl());
+    private static final String driver = System.getProperty("db.driver", backend.getDriver()); // Driver reference
+    private static final String userName = System.getProperty("db.user", backend.getUserName()); // Username
+    private static String password = System.getProperty("db.password", backend.getPassword()); // Password
+
+    static final int maxPoolSize = 8;
+    private static final int minIdleConnections = 1;
+    private static final long borrowTimeoutMillis = 10_000;
+    private static final long idleTimeoutMillis = 5 * 60_000;
+    private static final long validationIntervalMillis = 30_000;
+    private static final int statementCacheSize = 64;
+
+    private static final Logger logger = Logger.getLogger(DBConnection.class.getName());
+    private static final Object initializeLock = new Object();
+
+    private static ConnectionPool pool;
+    private static volatile boolean initialized = false;
 
     /**
-     * Creates a connection to the database.
+     * Borrows a connection to the database from the connection pool. The first connection borrowed initializes the
+     * database for the backend; if that fails the error is thrown and it is tried again with the next connection.
      *
-     * @return the connection to the database.
+     * @return the connection to the database. Closing it returns it to the pool.
+     * @throws SQLException If no connection could be obtained, or the database couldn't be initialized.
      */
-    public static Connection getConnection() {
-        try {
-            Class.forName(driver);
-            connection = DriverManager.getConnection(jdbcUrl, userName, password);
-        } catch (Exception e) {
-            //Do nothing
+    public static Connection getConnection() throws SQLException {
+        Connection conn = getPool().borrow();
+        if (!initialized) {
+            try {
+                initialize(conn);
+            }
+            catch (SQLException e) {
+                conn.close();
+                throw e;
+            }
+        }
+        return conn;
+    }
+
+    private static void initialize(Connection conn) throws SQLException {
+        synchronized (initializeLock) {
+            if (initialized) {
+                return;
+            }
+            try {
+                backend.initialize(conn);
+            }
+            catch (IOException e) {
+                throw new SQLException("Error initializing the " + backend.getName() + " database: " + e.getMessage(), e);
+            }
+            initialized = true;
         }
-        return connection;
     }
 
     /**
-     * Closes an open connection to the database.
+     * Gets the shared connection pool, creating it on first use.
+     *
+     * @return the connection pool.
      */
-    public static void closeConnection() {
-        try {
-            connection.close();
+    public static synchronized ConnectionPool getPool() {
+        if (pool == null) {
+            try {
+                Class.forName(driver);
+            }
+            catch (ClassNotFoundException e) {
+                System.out.println("Error:" + e.getMessage());
+            }
+            pool = new ConnectionPool(jdbcUrl, userName, password, maxPoolSize, minIdleConnections,
+                    borrowTimeoutMillis, idleTimeoutMillis, validationIntervalMillis, statementCacheSize);
         }
-        catch(Exception e)
-        {
-            System.out.println("Error:" + e.getMessage());
+        return pool;
+    }
+
+    /**
+     * Checks whether a database error means the database couldn't be reached, rather than that a query was rejected.
+     * Such failures are worth retrying later, which is what the {@link OfflineJournal} does with the failed change.
+     *
+     * @param e The error.
+     * @return boolean representing whether the error, or one of its causes, is a connection failure.
+     */
+    public static boolean isConnectionFailure(SQLException e) {
+        for (Throwable cause = e; cause != null; cause = cause.getCause()) {
+            if (cause instanceof SQLTransientConnectionException || cause instanceof SQLNonTransientConnectionException
+                    || cause instanceof SQLRecoverableException) {
+                return true;
+            }
+            // SQL state class 08 is "connection exception".
+            if (cause instanceof SQLException && ((SQLException) cause).getSQLState() != null
+                    && ((SQLException) cause).getSQLState().startsWith("08")) {
+                return true;
+            }
         }
+        return false;
+    }
+
+    /**
+     * Gets the backend chosen at startup.
+     *
+     * @return the database backend.
+     */
+    public static Backend getBackend() {
+        return backend;
     }
-}
 
+    /**
+     * Closes the connection pool and every idle connection it holds. Called when the program exits.
+     */
+    public static synchronized void closePool() {
+        if (pool != null) {
+            logger.fine(() -> "Connection pool: " + pool.getStatistics());
+            pool.close();
+            pool = null;
+        }
+    }
+}
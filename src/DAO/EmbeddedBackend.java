@@ -0,0 +1,81 @@
+package DAO;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+
+/**
+ * An H2 database kept in a file on the local disk, for running without the MySQL server, e.g. in the field or for
+ * load tests.
+ *
+ * H2 runs in MySQL mode, so the DAOs' SQL runs unchanged. The database is kept in .appointment-scheduler under the
+ * user's home directory unless the db.file system property gives another path. The tables are created the first time the file is opened and filled
+ * with the countries, divisions, contacts and users the program needs to be usable; the indexes are added by
+ * {@link SchemaMigrator} as for any other database. AUTO_SERVER lets a second process, such as main.ImportRunner,
+ * open the file while the program is running.
+ *
+ * @author James Carney
+ */
+public class EmbeddedBackend implements Backend {
+
+    private static final Path defaultFile = Paths.get(System.getProperty("user.home"), ".appointment-scheduler", "client_schedule");
+    private static final String options = ";MODE=MySQL;DATABASE_TO_LOWER=TRUE;NON_KEYWORDS=END,VALUE;AUTO_SERVER=TRUE";
+
+    private final Path file = Paths.get(System.getProperty("db.file", defaultFile.toString())).toAbsolutePath();
+
+    @Override
+    public String getName() {
+        return "embedded";
+    }
+
+    @Override
+    public String getDriver() {
+        return "org.h2.Driver";
+    }
+
+    @Override
+    public String getJdbcUrl() {
+        return "jdbc:h2:file:" + file + options;
+    }
+
+    @Override
+    public String getUserName() {
+        return "sa";
+    }
+
+    @Override
+    public String getPassword() {
+        return "";
+    }
+
+    /**
+     * Creates any missing tables, and fills the reference tables if the database is new.
+     *
+     * @param conn A connection to the database.
+     * @throws SQLException An exception related to the database query.
+     * @throws IOException An exception related to reading a schema script.
+     */
+    @Override
+    public void initialize(Connection conn) throws SQLException, IOException {
+        try (Statement statement = conn.createStatement()) {
+            for (String sqlStatement : SchemaMigrator.readScript("embedded_schema")) {
+                statement.execute(sqlStatement);
+            }
+
+            boolean empty;
+            try (ResultSet rs = statement.executeQuery("SELECT COUNT(*) FROM countries")) {
+                empty = rs.next() && rs.getInt(1) == 0;
+            }
+            if (empty) {
+                for (String sqlStatement : SchemaMigrator.readScript("embedded_seed")) {
+                    statement.execute(sqlStatement);
+                }
+                System.out.println("Created embedded database at " + file);
+            }
+        }
+    }
+}
@@ -0,0 +1,49 @@
+package DAO;
+
+import java.sql.Connection;
+
+/**
+ * The shared MySQL server holding the client_schedule schema. The tables are created and filled outside the program;
+ * {@link SchemaMigrator} adds its schema_migrations table and the indexes the DAOs rely on.
+ *
+ * @author James Carney
+ */
+public class MySqlBackend implements Backend {
+
+    private static final String protocol = "jdbc";
+    private static final String vendor = ":mysql:";
+    private static final String location = "//localhost/";
+    private static final String databaseName = "client_schedule";
+    // Kept short so an unreachable server is noticed quickly and changes go to the offline journal.
+    private static final int connectTimeoutMillis = 5_000;
+
+    @Override
+    public String getName() {
+        return "mysql";
+    }
+
+    @Override
+    public String getDriver() {
+        return "com.mysql.cj.jdbc.Driver";
+    }
+
+    @Override
+    public String getJdbcUrl() {
+        return protocol + vendor + location + databaseName + "?connectionTimeZone=SERVER&useCursorFetch=true&connectTimeout=" + connectTimeoutMillis;
+    }
+
+    @Override
+    public String getUserName() {
+        return "sqlUser";
+    }
+
+    @Override
+    public String getPassword() {
+        return "Passw0rd!";
+    }
+
+    @Override
+    public void initialize(Connection conn) {
+        // The tables already exist on the server, and SchemaMigrator applies the program's own changes at startup.
+    }
+}
@@ -0,0 +1,1105 @@
+package DAO;
+
+import javafx.beans.property.ReadOnlyObjectWrapper;
+import model.Appointment;
+import model.Customer;
+import util.TimeZone;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.SeekableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.sql.SQLException;
+import java.time.Instant;
+import java.time.ZonedDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Keeps appointment and customer changes made while the database can't be reached, and replays them once it can.
+ *
+ * The DAOs add a change here when their write fails with a connection error, and also while earlier changes are still
+ * waiting, so changes always reach the database in the order they were made. Each change is appended to
+ * {@link #journalFileName} as one line, and so is every later outcome (applied, conflicting, forced or discarded), so
+ * the journal survives a restart and is only ever appended to; once every change has been dealt with it is cut back to
+ * one line recording the last sequence number, which is never handed out again.
+ *
+ * New appointments and customers get a temporary negative ID, the negated sequence number of the change that creates
+ * them. The program may go on holding a temporary ID after the record is created, so the DAOs map every ID through
+ * {@link #resolveId(int)} before writing, and queue any change to a record that hasn't been created yet. Appointment changes still in the
+ * journal, whether waiting or set aside, are applied over the database's rows in the {@link AppointmentIndex}, so the
+ * overlap checks on the appointment forms see them even after the index is reloaded.
+ *
+ * {@link #synchronize()} replays the waiting changes in order, on a background thread every
+ * {@link #syncIntervalSeconds} seconds, and also on that thread as soon as a change is queued behind others and the
+ * database hasn't failed to answer within that time. Synchronizing holds the journal's lock only while it reads or
+ * records a change, never while it waits on the database, so the DAOs and the Offline Changes screen aren't held up by
+ * it. Runs of new
+ * appointments are inserted {@link #syncBatchSize} at a time in one transaction. Each new or edited appointment is
+ * checked for overlaps against the database, and against the rest of its batch, before it is written; one that
+ * overlaps, or that edits an appointment or customer deleted meanwhile, is set aside as a conflict for the user to
+ * force through or discard on the Offline Changes screen.
+ *
+ * @author James Carney
+ */
+public class OfflineJournal {
+    /**
+     * The file the journal is kept in.
+     */
+    public static final String journalFileName = "offline_journal.txt";
+
+    /**
+     * The most new appointments inserted in one transaction while synchronizing.
+     */
+    public static final int syncBatchSize = 200;
+
+    /**
+     * How often waiting changes are retried, in seconds.
+     */
+    public static final long syncIntervalSeconds = 30;
+
+    private static final String appliedMarker = "APPLIED";
+    private static final String conflictMarker = "CONFLICT";
+    private static final String forcedMarker = "FORCE";
+    private static final String discardedMarker = "DISCARDED";
+    private static final String compactedMarker = "COMPACTED";
+    private static final DateTimeFormatter descriptionFormatter = DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm");
+
+    private static final Path journalFile = Paths.get(journalFileName);
+
+    // The changes not yet applied or discarded, in the order they were made.
+    private static final List<Change> changes = new ArrayList<>();
+    // The ID each created appointment or customer was given, by the sequence number of its change; 0 if discarded.
+    // Kept for as long as the program runs, since screens may still hold the temporary IDs.
+    private static final Map<Long, Integer> assignedIds = new HashMap<>();
+    private static boolean loaded = false;
+    private static long nextSequence = 1;
+    private static int journalLines = 0;
+    // Set if the journal file couldn't be read in full; it is then never compacted, so no unread record is deleted.
+    private static boolean loadFailed = false;
+    // Set if the file may end partway through a line, e.g. after a crash while writing, so the next record starts a new one.
+    private static boolean lineBroken = false;
+    private static volatile long lastFailureMillis = 0;
+
+    private static final Logger logger = Logger.getLogger(OfflineJournal.class.getName());
+    // Held for a whole synchronization, and while a change is forced or discarded, so those can't overlap.
+    private static final Object syncLock = new Object();
+    private static ScheduledExecutorService syncer;
+    private static volatile boolean syncRequested = false;
+
+    /**
+     * A kind of change.
+     */
+    public enum Operation {
+        CREATE_APPOINTMENT,
+        UPDATE_APPOINTMENT,
+        DELETE_APPOINTMENT,
+        CREATE_CUSTOMER,
+        UPDATE_CUSTOMER,
+        DELETE_CUSTOMER
+    }
+
+    /**
+     * A change waiting to be applied to the database.
+     *
+     * Appointment changes hold the ID, title, description, location, type, start and end in epoch seconds, customer
+     * ID, user ID and contact ID; customer changes hold the ID, name, address, postal code, phone and division ID;
+     * deletions hold just the ID.
+     */
+    public static class Change {
+        private final long sequence;
+        private final Operation operation;
+        private final String[] fields;
+        private String conflict;
+        private boolean forced;
+
+        private Change(long sequence, Operation operation, String[] fields) {
+            this.sequence = sequence;
+            this.operation = operation;
+            this.fields = fields;
+        }
+
+        /**
+         * Gets the change's position in the journal.
+         *
+         * @return The sequence number.
+         */
+        public long getSequence() {
+            return sequence;
+        }
+
+        /**
+         * Gets the kind of change.
+         *
+         * @return The operation.
+         */
+        public Operation getOperation() {
+            return operation;
+        }
+
+        /**
+         * Gets why the change couldn't be applied.
+         *
+         * @return The reason, or null if the change is waiting to be applied.
+         */
+        public String getConflict() {
+            return conflict;
+        }
+
+        /**
+         * Describes where the change stands, for display.
+         *
+         * @return "Waiting", "Waiting (forced)" or the reason it conflicts.
+         */
+        public String getStatus() {
+            if (conflict != null && !forced) {
+                return conflict;
+            }
+            return forced ? "Waiting (forced)" : "Waiting";
+        }
+
+        /**
+         * Describes the change for display.
+         *
+         * @return A description such as "Update appointment 12: Planning on 2026-01-05 09:00".
+         */
+        public String getDescription() {
+            String name = operation.name().charAt(0) + operation.name().substring(1).toLowerCase().replace('_', ' ');
+            int id = Integer.parseInt(fields[0]);
+            String subject = name + (id > 0 ? " " + id : "");
+            switch (operation) {
+                case CREATE_APPOINTMENT:
+                case UPDATE_APPOINTMENT:
+                    ZonedDateTime start = Instant.ofEpochSecond(Long.parseLong(fields[5])).atZone(TimeZone.userZoneId);
+                    return subject + ": " + fields[1] + " on " + start.format(descriptionFormatter);
+                case CREATE_CUSTOMER:
+                case UPDATE_CUSTOMER:
+                    return subject + ": " + fields[1];
+                default:
+                    return subject;
+            }
+        }
+
+        @Override
+        public String toString() {
+            return "#" + sequence + " " + getDescription() + (conflict == null ? "" : " - " + conflict);
+        }
+    }
+
+    /**
+     * The outcome of a synchronization.
+     */
+    public static class SyncResult {
+        private final int applied;
+        private final int conflicts;
+        private final int waiting;
+        private final boolean reachable;
+
+        private SyncResult(int applied, int conflicts, int waiting, boolean reachable) {
+            this.applied = applied;
+            this.conflicts = conflicts;
+            this.waiting = waiting;
+            this.reachable = reachable;
+        }
+
+        /**
+         * Gets the number of changes written to the database.
+         *
+         * @return The applied count.
+         */
+        public int getApplied() {
+            return applied;
+        }
+
+        /**
+         * Gets the number of changes set aside as conflicts, including earlier ones still unresolved.
+         *
+         * @return The conflict count.
+         */
+        public int getConflicts() {
+            return conflicts;
+        }
+
+        /**
+         * Gets the number of changes still waiting to be applied.
+         *
+         * @return The waiting count.
+         */
+        public int getWaiting() {
+            return waiting;
+        }
+
+        /**
+         * Gets whether the database could be reached.
+         *
+         * @return false if synchronizing stopped because the database was unreachable.
+         */
+        public boolean isReachable() {
+            return reachable;
+        }
+
+        @Override
+        public String toString() {
+            return applied + " change(s) synchronized, " + conflicts + " conflict(s) to resolve, " + waiting + " waiting"
+                    + (reachable ? "" : " (the database can't be reached)");
+        }
+    }
+
+    /**
+     * Starts retrying waiting changes in the background. Called when the program starts.
+     */
+    public static synchronized void start() {
+        if (syncer == null) {
+            syncer = Executors.newSingleThreadScheduledExecutor(runnable -> {
+                Thread thread = new Thread(runnable, "offline-journal-sync");
+                thread.setDaemon(true);
+                return thread;
+            });
+            syncer.scheduleWithFixedDelay(OfflineJournal::synchronizeInBackground, 0, syncIntervalSeconds, TimeUnit.SECONDS);
+        }
+    }
+
+    /**
+     * Stops retrying waiting changes. Called when the program exits; the changes stay in the journal file.
+     */
+    public static synchronized void stop() {
+        if (syncer != null) {
+            syncer.shutdownNow();
+            syncer = null;
+        }
+    }
+
+    /**
+     * Checks whether any change is waiting to be applied. Changes set aside as conflicts don't count, and neither do
+     * changes to a record whose creation is set aside, which can't be applied until the user resolves it.
+     *
+     * @return boolean representing whether new changes must be queued behind waiting ones.
+     */
+    public static synchronized boolean hasPending() {
+        ensureLoaded();
+        Map<Long, Change> bySequence = new HashMap<>();
+        for (Change change : changes) {
+            bySequence.put(change.sequence, change);
+        }
+        for (Change change : changes) {
+            if ((change.conflict == null || change.forced) && !isBlocked(change, bySequence)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Gets the changes not yet applied, in order, including those set aside as conflicts.
+     *
+     * @return A copy of the changes.
+     */
+    public static synchronized List<Change> getChanges() {
+        ensureLoaded();
+        return new ArrayList<>(changes);
+    }
+
+    /**
+     * Maps an appointment or customer ID held by the program to the one in the database.
+     *
+     * @param id The ID, which may be the temporary ID of a record created offline.
+     * @return The database ID, 0 if the record's creation was discarded, or the temporary ID if it hasn't been created
+     * yet.
+     */
+    static synchronized int resolveId(int id) {
+        if (id >= 0) {
+            return id;
+        }
+        ensureLoaded();
+        return resolve(id);
+    }
+
+    /**
+     * Applies the customer changes still in the journal, waiting or set aside, to a list of customers, so customers
+     * created, edited or deleted offline are listed as they will be once synchronized.
+     *
+     * @param customers The customers as read from the database.
+     * @return The customers with the changes applied, new ones last with their temporary IDs.
+     */
+    static synchronized List<Customer> withPendingCustomers(List<Customer> customers) {
+        ensureLoaded();
+        if (changes.isEmpty()) {
+            return customers;
+        }
+        Map<Integer, Customer> byId = new LinkedHashMap<>();
+        for (Customer customer : customers) {
+            byId.put(customer.getCustomerId().getValue(), customer);
+        }
+        for (Change change : changes) {
+            try {
+                switch (change.operation) {
+                    case CREATE_CUSTOMER:
+                        int temporaryId = temporaryId(change.sequence);
+                        byId.put(temporaryId, toCustomer(change, temporaryId));
+                        break;
+                    case UPDATE_CUSTOMER:
+                        int customerId = resolve(Integer.parseInt(change.fields[0]));
+                        if (customerId != 0) {
+                            byId.put(customerId, toCustomer(change, customerId));
+                        }
+                        break;
+                    case DELETE_CUSTOMER:
+                        byId.remove(resolve(Integer.parseInt(change.fields[0])));
+                        break;
+                    default:
+                        break;
+                }
+            }
+            catch (RuntimeException e) {
+                // An unreadable change is set aside by the next synchronization, and has nothing to show meanwhile.
+            }
+        }
+        return new ArrayList<>(byId.values());
+    }
+
+    /**
+     * Queues a new appointment. It is given a temporary ID and added to the appointment index.
+     *
+     * @param appointment The appointment to be created.
+     * @throws SQLException If the change couldn't be written to the journal file either.
+     */
+    static synchronized void appointmentCreated(Appointment appointment) throws SQLException {
+        boolean queuedBehindOthers = hasPending();
+        Change change = append(Operation.CREATE_APPOINTMENT, appointmentFields(appointment, 0));
+        appointment.setAppointmentId(temporaryId(change.sequence));
+        refreshIndex();
+        syncIfDue(queuedBehindOthers);
+    }
+
+    /**
+     * Queues a change to an appointment and applies it to the appointment index.
+     *
+     * @param appointment The updated appointment.
+     * @throws SQLException If the change couldn't be written to the journal file either.
+     */
+    static synchronized void appointmentUpdated(Appointment appointment) throws SQLException {
+        boolean queuedBehindOthers = hasPending();
+        append(Operation.UPDATE_APPOINTMENT, appointmentFields(appointment, appointment.getAppointmentId()));
+        refreshIndex();
+        syncIfDue(queuedBehindOthers);
+    }
+
+    /**
+     * Queues the deletion of an appointment and removes it from the appointment index.
+     *
+     * @param appointmentId The ID of the appointment.
+     * @throws SQLException If the change couldn't be written to the journal file either.
+     */
+    static synchronized void appointmentDeleted(int appointmentId) throws SQLException {
+        boolean queuedBehindOthers = hasPending();
+        append(Operation.DELETE_APPOINTMENT, new String[] {String.valueOf(appointmentId)});
+        refreshIndex();
+        syncIfDue(queuedBehindOthers);
+    }
+
+    /**
+     * Queues a new customer. It is given a temporary ID.
+     *
+     * @param customer The customer to be created.
+     * @throws SQLException If the change couldn't be written to the journal file either.
+     */
+    static synchronized void customerCreated(Customer customer) throws SQLException {
+        boolean queuedBehindOthers = hasPending();
+        Change change = append(Operation.CREATE_CUSTOMER, customerFields(0, customer));
+        customer.setCustomerId(new ReadOnlyObjectWrapper<>(temporaryId(change.sequence)));
+        syncIfDue(queuedBehindOthers);
+    }
+
+    /**
+     * Queues a change to a customer.
+     *
+     * @param customerId The ID of the customer.
+     * @param customer The customer's new details.
+     * @throws SQLException If the change couldn't be written to the journal file either.
+     */
+    static synchronized void customerUpdated(int customerId, Customer customer) throws SQLException {
+        boolean queuedBehindOthers = hasPending();
+        append(Operation.UPDATE_CUSTOMER, customerFields(customerId, customer));
+        syncIfDue(queuedBehindOthers);
+    }
+
+    /**
+     * Queues the deletion of a customer and their appointments.
+     *
+     * @param customerId The ID of the customer.
+     * @throws SQLException If the change couldn't be written to the journal file either.
+     */
+    static synchronized void customerDeleted(int customerId) throws SQLException {
+        boolean queuedBehindOthers = hasPending();
+        append(Operation.DELETE_CUSTOMER, new String[] {String.valueOf(customerId)});
+        refreshIndex();
+        syncIfDue(queuedBehindOthers);
+    }
+
+    /**
+     * Applies the waiting changes to the database, in order. Stops at the first connection failure, leaving the rest
+     * waiting. Changes that conflict are set aside; a change to an appointment or customer whose creation is set aside
+     * waits until that is resolved.
+     *
+     * @return How many changes were applied, set aside and left waiting.
+     */
+    public static SyncResult synchronize() {
+        synchronized (syncLock) {
+            List<Change> waiting;
+            synchronized (OfflineJournal.class) {
+                ensureLoaded();
+                waiting = new ArrayList<>(changes);
+            }
+            int appliedCount = 0;
+            boolean reachable = true;
+            List<Change> batch = new ArrayList<>();
+            List<Appointment> batchAppointments = new ArrayList<>();
+
+            try {
+                for (Change change : waiting) {
+                    if (change.conflict != null && !change.forced) {
+                        continue;
+                    }
+                    if (change.operation != Operation.CREATE_APPOINTMENT) {
+                        appliedCount += writeBatch(batch, batchAppointments);
+                    }
+                    try {
+                        switch (change.operation) {
+                            case CREATE_APPOINTMENT:
+                                Appointment appointment = toAppointment(change);
+                                if (appointment != null && (change.forced || !overlaps(change, appointment, batchAppointments, 0))) {
+                                    batch.add(change);
+                                    batchAppointments.add(appointment);
+                                    if (batch.size() >= syncBatchSize) {
+                                        appliedCount += writeBatch(batch, batchAppointments);
+                                    }
+                                }
+                                break;
+                            case UPDATE_APPOINTMENT:
+                                appliedCount += applyAppointmentUpdate(change);
+                                break;
+                            case DELETE_APPOINTMENT:
+                                appliedCount += applyDeletion(change, true);
+                                break;
+                            case CREATE_CUSTOMER:
+                                appliedCount += applyCustomerCreation(change);
+                                break;
+                            case UPDATE_CUSTOMER:
+                                appliedCount += applyCustomerUpdate(change);
+                                break;
+                            case DELETE_CUSTOMER:
+                                appliedCount += applyDeletion(change, false);
+                                break;
+                        }
+                    }
+                    catch (SQLException e) {
+                        if (DBConnection.isConnectionFailure(e)) {
+                            throw e;
+                        }
+                        setConflict(change, "The database rejected the change: " + e.getMessage());
+                    }
+                    catch (RuntimeException e) {
+                        setConflict(change, "The change couldn't be read from the journal: " + e.getMessage());
+                    }
+                }
+                appliedCount += writeBatch(batch, batchAppointments);
+            }
+            catch (SQLException e) {
+                reachable = false;
+                lastFailureMillis = System.currentTimeMillis();
+            }
+            catch (IOException e) {
+                e.printStackTrace();
+            }
+
+            synchronized (OfflineJournal.class) {
+                compactIfDone();
+                int conflicts = 0;
+                for (Change change : changes) {
+                    if (change.conflict != null) {
+                        conflicts++;
+                    }
+                }
+                return new SyncResult(appliedCount, conflicts, changes.size() - conflicts, reachable);
+            }
+        }
+    }
+
+    /**
+     * Applies a conflicting change at the next synchronization without checking it for overlaps.
+     *
+     * @param change The change, from {@link #getChanges()}.
+     * @throws IOException If the decision couldn't be written to the journal file.
+     */
+    public static void force(Change change) throws IOException {
+        synchronized (syncLock) {
+            synchronized (OfflineJournal.class) {
+                if (changes.contains(change) && change.conflict != null) {
+                    writeRecord(change.sequence, forcedMarker);
+                    change.forced = true;
+                }
+            }
+        }
+    }
+
+    /**
+     * Drops a change without applying it. Changes to an appointment or customer whose creation is dropped are dropped
+     * with it at the next synchronization. A dropped change to an appointment in the database is undone in the
+     * appointment index by reloading it, which applies the changes still in the journal again.
+     *
+     * @param change The change, from {@link #getChanges()}.
+     * @throws IOException If the decision couldn't be written to the journal file.
+     */
+    public static void discard(Change change) throws IOException {
+        synchronized (syncLock) {
+            synchronized (OfflineJournal.class) {
+                if (!changes.contains(change)) {
+                    return;
+                }
+                drop(change);
+                compactIfDone();
+            }
+        }
+        if (change.operation == Operation.UPDATE_APPOINTMENT || change.operation == Operation.DELETE_APPOINTMENT
+                || change.operation == Operation.DELETE_CUSTOMER) {
+            AppointmentDAO.getAllAppointments();
+        }
+    }
+
+    /**
+     * Writes a batch of new appointments in one transaction and records each as applied.
+     *
+     * @return The number of appointments written.
+     */
+    private static int writeBatch(List<Change> batch, List<Appointment> batchAppointments) throws SQLException, IOException {
+        if (batch.isEmpty()) {
+            return 0;
+        }
+        int written = batch.size();
+        try {
+            AppointmentDAO.createAppointments(batchAppointments);
+        }
+        catch (SQLException e) {
+            if (DBConnection.isConnectionFailure(e)) {
+                throw e;
+            }
+            for (Change change : batch) {
+                setConflict(change, "The database rejected the batch: " + e.getMessage());
+            }
+            written = 0;
+        }
+        for (int i = 0; written > 0 && i < batch.size(); i++) {
+            Change change = batch.get(i);
+            AppointmentIndex.remove(temporaryId(change.sequence));
+            markApplied(change, batchAppointments.get(i).getAppointmentId());
+        }
+        batch.clear();
+        batchAppointments.clear();
+        return written;
+    }
+
+    private static int applyAppointmentUpdate(Change change) throws SQLException, IOException {
+        int appointmentId = resolve(Integer.parseInt(change.fields[0]));
+        if (appointmentId < 0) {
+            return 0;
+        }
+        if (appointmentId == 0) {
+            drop(change);
+            return 0;
+        }
+        Appointment appointment = toAppointment(change);
+        if (appointment == null || (!change.forced && overlaps(change, appointment, null, appointmentId))) {
+            return 0;
+        }
+        appointment.setAppointmentId(appointmentId);
+        if (!AppointmentDAO.writeAppointment(appointment)) {
+            setConflict(change, "The appointment was deleted on the server");
+            return 0;
+        }
+        markApplied(change, appointmentId);
+        return 1;
+    }
+
+    private static int applyDeletion(Change change, boolean appointment) throws SQLException, IOException {
+        int id = resolve(Integer.parseInt(change.fields[0]));
+        if (id < 0) {
+            return 0;
+        }
+        if (id > 0) {
+            // Deleting something already deleted on the server leaves the database as intended, so it isn't a conflict.
+            if (appointment) {
+                AppointmentDAO.removeAppointment(id);
+            }
+            else {
+                CustomerDAO.removeCustomer(id);
+            }
+        }
+        markApplied(change, id);
+        return 1;
+    }
+
+    private static int applyCustomerCreation(Change change) throws SQLException, IOException {
+        int customerId = CustomerDAO.insertCustomer(toCustomer(change, 0));
+        markApplied(change, customerId);
+        return 1;
+    }
+
+    private static int applyCustomerUpdate(Change change) throws SQLException, IOException {
+        int customerId = resolve(Integer.parseInt(change.fields[0]));
+        if (customerId < 0) {
+            return 0;
+        }
+        if (customerId == 0) {
+            drop(change);
+            return 0;
+        }
+        if (!CustomerDAO.writeCustomer(customerId, toCustomer(change, customerId))) {
+            setConflict(change, "The customer was deleted on the server");
+            return 0;
+        }
+        markApplied(change, customerId);
+        return 1;
+    }
+
+    /**
+     * Checks an appointment against the database and against the appointments already in the batch being built, and
+     * sets the change aside if it overlaps any of them.
+     *
+     * @return boolean representing whether the appointment overlaps another.
+     */
+    private static boolean overlaps(Change change, Appointment appointment, List<Appointment> batchAppointments,
+                                    int excludeAppointmentId) throws SQLException, IOException {
+        if (batchAppointments != null) {
+            for (Appointment other : batchAppointments) {
+                if ((other.getContactId() == appointment.getContactId() || other.getCustomerId() == appointment.getCustomerId())
+                        && other.getStartEpochSecond() < appointment.getEndEpochSecond()
+                        && other.getEndEpochSecond() > appointment.getStartEpochSecond()) {
+                    setConflict(change, "Overlaps another appointment made offline");
+                    return true;
+                }
+            }
+        }
+        if (AppointmentDAO.hasConflict(appointment.getCustomerId(), appointment.getContactId(), appointment.getStart(),
+                appointment.getEnd(), excludeAppointmentId)) {
+            setConflict(change, "Overlaps an appointment booked on the server");
+            return true;
+        }
+        return false;
+    }
+
+    /**
+     * Builds the appointment a change describes, with any temporary customer ID replaced by the real one.
+     *
+     * @return The appointment, or null if its customer hasn't been created yet or was discarded.
+     */
+    private static Appointment toAppointment(Change change) throws IOException {
+        String[] fields = change.fields;
+        int customerId = resolve(Integer.parseInt(fields[7]));
+        if (customerId < 0) {
+            return null;
+        }
+        if (customerId == 0) {
+            setConflict(change, "The customer was discarded");
+            return null;
+        }
+        return new Appointment(0, fields[1], fields[2], fields[3], fields[4], Long.parseLong(fields[5]),
+                Long.parseLong(fields[6]), customerId, Integer.parseInt(fields[8]), Integer.parseInt(fields[9]));
+    }
+
+    private static Customer toCustomer(Change change, int customerId) {
+        String[] fields = change.fields;
+        return new Customer(new ReadOnlyObjectWrapper<>(customerId), new ReadOnlyObjectWrapper<>(fields[1]),
+                new ReadOnlyObjectWrapper<>(fields[2]), new ReadOnlyObjectWrapper<>(fields[3]),
+                new ReadOnlyObjectWrapper<>(fields[4]), new ReadOnlyObjectWrapper<>(Integer.parseInt(fields[5])));
+    }
+
+    private static String[] appointmentFields(Appointment appointment, int appointmentId) {
+        return new String[] {String.valueOf(appointmentId), appointment.getTitle(), appointment.getDescription(),
+                appointment.getLocation(), appointment.getType(), String.valueOf(appointment.getStartEpochSecond()),
+                String.valueOf(appointment.getEndEpochSecond()), String.valueOf(appointment.getCustomerId()),
+                String.valueOf(appointment.getUserId()), String.valueOf(appointment.getContactId())};
+    }
+
+    private static String[] customerFields(int customerId, Customer customer) {
+        return new String[] {String.valueOf(customerId), customer.getCustomerName().getValue(),
+                customer.getAddress().getValue(), customer.getPostalCode().getValue(), customer.getPhone().getValue(),
+                String.valueOf(customer.getDivisionId().getValue())};
+    }
+
+    /**
+     * Maps an ID to the real one. Temporary IDs are the negated sequence number of the change that creates the record.
+     *
+     * @return The real ID, 0 if the creation was discarded, or a negative ID if it hasn't been applied yet.
+     */
+    private static synchronized int resolve(int id) {
+        if (id >= 0) {
+            return id;
+        }
+        Integer assigned = assignedIds.get((long) -id);
+        return assigned == null ? id : assigned;
+    }
+
+    private static int temporaryId(long sequence) {
+        return (int) -sequence;
+    }
+
+    /**
+     * Checks whether a change refers to a record whose creation is set aside as a conflict, directly or through the
+     * change creating it.
+     *
+     * @param change The change.
+     * @param bySequence The changes in the journal by sequence number.
+     * @return boolean representing whether the change has to wait until the user resolves that conflict.
+     */
+    private static boolean isBlocked(Change change, Map<Long, Change> bySequence) {
+        for (int id : referencedIds(change)) {
+            int resolved = resolve(id);
+            Change creation = resolved < 0 ? bySequence.get((long) -resolved) : null;
+            if (creation != null && creation.sequence < change.sequence
+                    && ((creation.conflict != null && !creation.forced) || isBlocked(creation, bySequence))) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Gets the IDs of the appointments and customers a change refers to.
+     *
+     * @param change The change.
+     * @return The IDs, any of which may be temporary.
+     */
+    private static int[] referencedIds(Change change) {
+        try {
+            switch (change.operation) {
+                case CREATE_APPOINTMENT:
+                    return new int[] {Integer.parseInt(change.fields[7])};
+                case UPDATE_APPOINTMENT:
+                    return new int[] {Integer.parseInt(change.fields[0]), Integer.parseInt(change.fields[7])};
+                case CREATE_CUSTOMER:
+                    return new int[0];
+                default:
+                    return new int[] {Integer.parseInt(change.fields[0])};
+            }
+        }
+        catch (RuntimeException e) {
+            // Synchronizing sets an unreadable change aside.
+            return new int[0];
+        }
+    }
+
+    /**
+     * Asks the background thread to synchronize after a change is queued behind others, unless the database was found
+     * unreachable recently, so changes made once it is back aren't held up until the next scheduled run. A change
+     * queued on its own was queued because the database has just failed to answer, so it is left for the scheduled run.
+     *
+     * @param queuedBehindOthers Whether other changes were already waiting.
+     */
+    private static void syncIfDue(boolean queuedBehindOthers) {
+        if (!queuedBehindOthers) {
+            lastFailureMillis = System.currentTimeMillis();
+        }
+        else if (System.currentTimeMillis() - lastFailureMillis >= syncIntervalSeconds * 1000
+                && syncer != null && !syncRequested) {
+            syncRequested = true;
+            syncer.execute(OfflineJournal::synchronizeInBackground);
+        }
+    }
+
+    /**
+     * Synchronizes on the background thread, if anything is waiting, and logs the outcome.
+     */
+    private static void synchronizeInBackground() {
+        syncRequested = false;
+        if (hasPending()) {
+            SyncResult result = synchronize();
+            logger.log(result.getApplied() > 0 || result.getConflicts() > 0 ? Level.INFO : Level.FINE, "Offline journal: {0}", result);
+        }
+    }
+
+    private static synchronized void drop(Change change) throws IOException {
+        writeRecord(change.sequence, discardedMarker);
+        changes.remove(change);
+        if (change.operation == Operation.CREATE_APPOINTMENT || change.operation == Operation.CREATE_CUSTOMER) {
+            assignedIds.put(change.sequence, 0);
+            AppointmentIndex.remove(temporaryId(change.sequence));
+        }
+        refreshIndex();
+    }
+
+    private static synchronized void markApplied(Change change, int id) throws IOException {
+        writeRecord(change.sequence, appliedMarker, String.valueOf(id));
+        changes.remove(change);
+        if (change.operation == Operation.CREATE_APPOINTMENT || change.operation == Operation.CREATE_CUSTOMER) {
+            assignedIds.put(change.sequence, id);
+        }
+        refreshIndex();
+    }
+
+    /**
+     * Hands the appointment changes still in the journal, waiting or set aside, to the appointment index, which applies
+     * them over the database's rows until they are applied or discarded.
+     */
+    private static void refreshIndex() {
+        Map<Integer, Appointment> appointments = new HashMap<>();
+        Set<Integer> deletedCustomerIds = new HashSet<>();
+        for (Change change : changes) {
+            try {
+                switch (change.operation) {
+                    case CREATE_APPOINTMENT:
+                        int temporaryId = temporaryId(change.sequence);
+                        appointments.put(temporaryId, indexedAppointment(change, temporaryId));
+                        break;
+                    case UPDATE_APPOINTMENT:
+                        int appointmentId = resolve(Integer.parseInt(change.fields[0]));
+                        if (appointmentId != 0) {
+                            appointments.put(appointmentId, indexedAppointment(change, appointmentId));
+                        }
+                        break;
+                    case DELETE_APPOINTMENT:
+                        appointments.put(resolve(Integer.parseInt(change.fields[0])), null);
+                        break;
+                    case DELETE_CUSTOMER:
+                        int customerId = resolve(Integer.parseInt(change.fields[0]));
+                        deletedCustomerIds.add(customerId);
+                        appointments.replaceAll((id, appointment) ->
+                                appointment != null && appointment.getCustomerId() == customerId ? null : appointment);
+                        break;
+                    default:
+                        break;
+                }
+            }
+            catch (RuntimeException e) {
+                // An unreadable change is set aside by the next synchronization, and has nothing to show meanwhile.
+            }
+        }
+        AppointmentIndex.setPending(appointments, deletedCustomerIds);
+    }
+
+    private static Appointment indexedAppointment(Change change, int appointmentId) {
+        String[] fields = change.fields;
+        return new Appointment(appointmentId, fields[1], fields[2], fields[3], fields[4], Long.parseLong(fields[5]),
+                Long.parseLong(fields[6]), resolve(Integer.parseInt(fields[7])), Integer.parseInt(fields[8]),
+                Integer.parseInt(fields[9]));
+    }
+
+    private static synchronized void setConflict(Change change, String reason) throws IOException {
+        writeRecord(change.sequence, conflictMarker, reason);
+        change.conflict = reason;
+        change.forced = false;
+    }
+
+    /**
+     * Cuts the journal file back to the last sequence number once no change is left in it. Never done if the file
+     * couldn't be read in full when it was loaded.
+     */
+    private static synchronized void compactIfDone() {
+        if (changes.isEmpty() && journalLines > 1 && !loadFailed) {
+            try {
+                Files.deleteIfExists(journalFile);
+                journalLines = 0;
+                writeRecord(nextSequence - 1, compactedMarker);
+            }
+            catch (IOException e) {
+                e.printStackTrace();
+            }
+        }
+    }
+
+    private static Change append(Operation operation, String[] fields) throws SQLException {
+        ensureLoaded();
+        Change change = new Change(nextSequence, operation, fields);
+        String[] record = new String[fields.length + 1];
+        record[0] = operation.name();
+        System.arraycopy(fields, 0, record, 1, fields.length);
+        writeLine(change.sequence, record);
+        nextSequence++;
+        changes.add(change);
+        return change;
+    }
+
+    private static void writeLine(long sequence, String... values) throws SQLException {
+        try {
+            writeRecord(sequence, values);
+        }
+        catch (IOException e) {
+            throw new SQLException("Couldn't write to the offline journal " + journalFile, e);
+        }
+    }
+
+    private static void writeRecord(long sequence, String... values) throws IOException {
+        StringBuilder line = new StringBuilder();
+        if (lineBroken) {
+            line.append(System.lineSeparator());
+        }
+        line.append(sequence);
+        for (String value : values) {
+            line.append('\t').append(escape(value));
+        }
+        line.append(System.lineSeparator());
+        try (BufferedWriter writer = Files.newBufferedWriter(journalFile, StandardCharsets.UTF_8,
+                StandardOpenOption.CREATE, StandardOpenOption.APPEND, StandardOpenOption.SYNC)) {
+            writer.write(line.toString());
+        }
+        catch (IOException e) {
+            // Part of the line may have been written.
+            lineBroken = true;
+            throw e;
+        }
+        lineBroken = false;
+        journalLines++;
+    }
+
+    /**
+     * Reads the journal file the first time the journal is used, replaying each change and outcome in it. A line that
+     * can't be read, e.g. one cut short by a crash, is logged and skipped, and the rest of the file is still read.
+     */
+    private static void ensureLoaded() {
+        if (loaded) {
+            return;
+        }
+        loaded = true;
+        if (!Files.exists(journalFile)) {
+            return;
+        }
+
+        Map<Long, Change> bySequence = new HashMap<>();
+        try (BufferedReader reader = Files.newBufferedReader(journalFile, StandardCharsets.UTF_8)) {
+            String line;
+            int lineNumber = 0;
+            while ((line = reader.readLine()) != null) {
+                lineNumber++;
+                if (line.isEmpty()) {
+                    continue;
+                }
+                journalLines++;
+                try {
+                    readRecord(line, bySequence);
+                }
+                catch (RuntimeException e) {
+                    loadFailed = true;
+                    logger.warning("Skipping unreadable line " + lineNumber + " of the offline journal: " + e);
+                }
+            }
+            lineBroken = !endsWithLineSeparator();
+        }
+        catch (IOException e) {
+            loadFailed = true;
+            lineBroken = true;
+            logger.warning("Error reading the offline journal: " + e.getMessage());
+        }
+        if (loadFailed) {
+            logger.warning("The offline journal won't be compacted this session, so no record in it is lost.");
+        }
+        refreshIndex();
+    }
+
+    /**
+     * Replays one line of the journal file.
+     *
+     * @param line The line.
+     * @param bySequence The changes read so far, by sequence number.
+     */
+    private static void readRecord(String line, Map<Long, Change> bySequence) {
+        String[] values = line.split("\t", -1);
+        for (int i = 0; i < values.length; i++) {
+            values[i] = unescape(values[i]);
+        }
+        long sequence = Long.parseLong(values[0]);
+        // Counted even if the rest of the line can't be read, so the sequence number is never handed out again.
+        nextSequence = Math.max(nextSequence, sequence + 1);
+        Change change = bySequence.get(sequence);
+
+        switch (values[1]) {
+            case appliedMarker:
+            case discardedMarker:
+                if (change != null) {
+                    int assignedId = values[1].equals(appliedMarker) ? Integer.parseInt(values[2]) : 0;
+                    changes.remove(change);
+                    if (change.operation == Operation.CREATE_APPOINTMENT || change.operation == Operation.CREATE_CUSTOMER) {
+                        assignedIds.put(sequence, assignedId);
+                    }
+                }
+                break;
+            case conflictMarker:
+                if (change != null) {
+                    change.conflict = values[2];
+                    change.forced = false;
+                }
+                break;
+            case forcedMarker:
+                if (change != null) {
+                    change.forced = true;
+                }
+                break;
+            case compactedMarker:
+                break;
+            default:
+                String[] fields = new String[values.length - 2];
+                System.arraycopy(values, 2, fields, 0, fields.length);
+                change = new Change(sequence, Operation.valueOf(values[1]), fields);
+                bySequence.put(sequence, change);
+                changes.add(change);
+        }
+    }
+
+    /**
+     * Checks whether the journal file ends with a line separator, as it does unless a write was cut short.
+     *
+     * @return true if the file is empty or its last character ends a line.
+     * @throws IOException An exception related to reading the file.
+     */
+    private static boolean endsWithLineSeparator() throws IOException {
+        try (SeekableByteChannel channel = Files.newByteChannel(journalFile, StandardOpenOption.READ)) {
+            if (channel.size() == 0) {
+                return true;
+            }
+            ByteBuffer last = ByteBuffer.allocate(1);
+            channel.position(channel.size() - 1);
+            channel.read(last);
+            return last.get(0) == '\n' || last.get(0) == '\r';
+        }
+    }
+
+    private static String escape(String value) {
+        if (value == null) {
+            return "\\0";
+        }
+        return value.replace("\\", "\\\\").replace("\t", "\\t").replace("\n", "\\n").replace("\r", "\\r");
+    }
+
+    private static String unescape(String value) {
+        if (value.equals("\\0")) {
+            return null;
+        }
+        StringBuilder unescaped = new StringBuilder(value.length());
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            if (c == '\\' && i + 1 < value.length()) {
+                char next = value.charAt(++i);
+                unescaped.append(next == 't' ? '\t' : next == 'n' ? '\n' : next == 'r' ? '\r' : next);
+            }
+            else {
+                unescaped.append(c);
+            }
+        }
+        return unescaped.toString();
+    }
+}
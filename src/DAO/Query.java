@@ -2,38 +2,62 @@ package DAO;
 
 import java.sql.Connection;
 import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
 
 /**
  * Manages queries to the database.
  *
+ * Statements are prepared on, and cached by, the connection the caller borrowed, so each caller gets its own
+ * statement rather than sharing one across the program. A statement is only valid until it is closed or its
+ * connection is returned to the pool.
+ *
  * @author James Carney
  */
-public class Query {
-    private static String query;
-    private static PreparedStatement preparedStatement;
+public final class Query {
+
+    private Query() {
+    }
 
     /**
-     * Creates a PreparedStatement for use in a database query.
+     * Gets a PreparedStatement for use in a database query, reusing the connection's cached statement if the same
+     * SQL has been prepared on it before.
      *
      * @param connection The connection to be used.
      * @param sqlStatement The SQL statement to be executed.
+     * @return a PreparedStatement to be used for a query.
+     * @throws SQLException An exception related to preparing the statement.
      */
-    public static void setPreparedStatement(Connection connection, String sqlStatement) {
+    public static PreparedStatement prepare(Connection connection, String sqlStatement) throws SQLException {
+        return connection.prepareStatement(sqlStatement);
+    }
 
-        try {
-            preparedStatement = connection.prepareStatement(sqlStatement);
-        }
-        catch (Exception e) {
-            System.out.println(e.getMessage());
-        }
+    /**
+     * Gets a PreparedStatement whose generated keys can be read after an insert.
+     *
+     * @param connection The connection to be used.
+     * @param sqlStatement The SQL statement to be executed.
+     * @return a PreparedStatement to be used for an insert.
+     * @throws SQLException An exception related to preparing the statement.
+     */
+    public static PreparedStatement prepareWithGeneratedKeys(Connection connection, String sqlStatement) throws SQLException {
+        return connection.prepareStatement(sqlStatement, Statement.RETURN_GENERATED_KEYS);
     }
 
     /**
-     * Gets a previously created PreparedStatement for use in a database query.
+     * Gets a forward-only, read-only PreparedStatement that fetches its results in batches rather than all at once,
+     * for reading more rows than should be held in memory. The statement is not cached, so the caller must close it.
      *
+     * @param connection The connection to be used.
+     * @param sqlStatement The SQL statement to be executed.
+     * @param fetchSize The number of rows to fetch from the database at a time.
      * @return a PreparedStatement to be used for a query.
+     * @throws SQLException An exception related to preparing the statement.
      */
-    public static PreparedStatement getPreparedStatement() {
-        return preparedStatement;
+    public static PreparedStatement prepareStreaming(Connection connection, String sqlStatement, int fetchSize) throws SQLException {
+        PreparedStatement ps = connection.prepareStatement(sqlStatement, ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY);
+        ps.setFetchSize(fetchSize);
+        return ps;
     }
 }
@@ -0,0 +1,246 @@
+package DAO;
+
+import javafx.beans.property.ReadOnlyObjectWrapper;
+import model.Contact;
+import model.Country;
+import model.Customer;
+import model.FirstLevelDivision;
+import model.User;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * An application-wide cache of the reference data the forms choose from: contacts, customers, users, countries and
+ * first-level divisions.
+ *
+ * Everything is loaded once, at login. Each table has a version number that the DAOs bump whenever they change that
+ * table; a table whose version has moved on since it was loaded is reloaded the next time it is read. Customers created,
+ * edited or deleted offline are applied over the loaded customers from the {@link OfflineJournal} on every read. Contacts,
+ * countries and divisions are never changed by this program, so they are only loaded once.
+ *
+ * @author James Carney
+ */
+public class ReferenceData {
+    private static List<Contact> contacts;
+    private static List<Country> countries;
+    private static Map<Integer, List<FirstLevelDivision>> divisionsByCountry;
+    private static Map<Integer, FirstLevelDivision> divisionsById;
+
+    private static List<Customer> customers;
+    private static final AtomicLong customersVersion = new AtomicLong();
+    private static long loadedCustomersVersion = -1;
+
+    private static List<User> users;
+    private static final AtomicLong usersVersion = new AtomicLong();
+    private static long loadedUsersVersion = -1;
+
+    /**
+     * Loads every table into the cache. Called at login so that opening a form costs no queries.
+     *
+     * @throws SQLException An exception related to the database query.
+     */
+    public static synchronized void load() throws SQLException {
+        try (Connection conn = DBConnection.getConnection()) {
+            loadContacts(conn);
+            loadCountriesAndDivisions(conn);
+            loadCustomers(conn);
+            loadUsers(conn);
+        }
+    }
+
+    /**
+     * Gets every contact.
+     *
+     * @return An unmodifiable list of contacts.
+     * @throws SQLException An exception related to the database query.
+     */
+    public static synchronized List<Contact> getContacts() throws SQLException {
+        if (contacts == null) {
+            try (Connection conn = DBConnection.getConnection()) {
+                loadContacts(conn);
+            }
+        }
+        return contacts;
+    }
+
+    /**
+     * Gets every customer, with the changes waiting in the {@link OfflineJournal} applied. If the database can't be
+     * reached, the customers last loaded are used.
+     *
+     * @return An unmodifiable list of customers.
+     * @throws SQLException An exception related to the database query.
+     */
+    public static synchronized List<Customer> getCustomers() throws SQLException {
+        if (loadedCustomersVersion != customersVersion.get()) {
+            try (Connection conn = DBConnection.getConnection()) {
+                loadCustomers(conn);
+            }
+            catch (SQLException e) {
+                if (!DBConnection.isConnectionFailure(e)) {
+                    throw e;
+                }
+            }
+        }
+        return Collections.unmodifiableList(OfflineJournal.withPendingCustomers(getLoadedCustomers()));
+    }
+
+    /**
+     * Gets the customers last loaded, without querying or applying the offline journal.
+     *
+     * @return An unmodifiable list of customers, empty if they have never been loaded.
+     */
+    static synchronized List<Customer> getLoadedCustomers() {
+        return customers == null ? Collections.emptyList() : customers;
+    }
+
+    /**
+     * Gets every user. Passwords are not cached.
+     *
+     * @return An unmodifiable list of users.
+     * @throws SQLException An exception related to the database query.
+     */
+    public static synchronized List<User> getUsers() throws SQLException {
+        if (loadedUsersVersion != usersVersion.get()) {
+            try (Connection conn = DBConnection.getConnection()) {
+                loadUsers(conn);
+            }
+        }
+        return users;
+    }
+
+    /**
+     * Gets every country.
+     *
+     * @return An unmodifiable list of countries.
+     * @throws SQLException An exception related to the database query.
+     */
+    public static synchronized List<Country> getCountries() throws SQLException {
+        ensureCountriesLoaded();
+        return countries;
+    }
+
+    /**
+     * Gets the first-level divisions of a country.
+     *
+     * @param countryId The ID of the country.
+     * @return An unmodifiable list of the country's divisions, empty if it has none.
+     * @throws SQLException An exception related to the database query.
+     */
+    public static synchronized List<FirstLevelDivision> getDivisions(int countryId) throws SQLException {
+        ensureCountriesLoaded();
+        return divisionsByCountry.getOrDefault(countryId, Collections.emptyList());
+    }
+
+    /**
+     * Gets a first-level division by ID.
+     *
+     * @param divisionId The ID of the division.
+     * @return The division, or null if there is no such division.
+     * @throws SQLException An exception related to the database query.
+     */
+    public static synchronized FirstLevelDivision getDivision(int divisionId) throws SQLException {
+        ensureCountriesLoaded();
+        return divisionsById.get(divisionId);
+    }
+
+    /**
+     * Marks the cached customers as stale. Called by CustomerDAO after every change to the customers table.
+     */
+    static void invalidateCustomers() {
+        customersVersion.incrementAndGet();
+    }
+
+    /**
+     * Marks the cached users as stale. Called by UserDAO after every change to the users table.
+     */
+    static void invalidateUsers() {
+        usersVersion.incrementAndGet();
+    }
+
+    private static void ensureCountriesLoaded() throws SQLException {
+        if (countries == null) {
+            try (Connection conn = DBConnection.getConnection()) {
+                loadCountriesAndDivisions(conn);
+            }
+        }
+    }
+
+    private static void loadContacts(Connection conn) throws SQLException {
+        PreparedStatement ps = Query.prepare(conn, "SELECT * FROM contacts");
+        ResultSet rs = ps.executeQuery();
+
+        List<Contact> loaded = new ArrayList<>();
+        while (rs.next()) {
+            loaded.add(new Contact(rs.getInt("Contact_ID"), rs.getString("Contact_Name"), rs.getString("Email")));
+        }
+        contacts = Collections.unmodifiableList(loaded);
+    }
+
+    private static void loadCountriesAndDivisions(Connection conn) throws SQLException {
+        PreparedStatement ps = Query.prepare(conn, "SELECT * FROM countries");
+        ResultSet rs = ps.executeQuery();
+
+        List<Country> loadedCountries = new ArrayList<>();
+        while (rs.next()) {
+            loadedCountries.add(new Country(rs.getInt("Country_ID"), rs.getString("Country")));
+        }
+
+        ps = Query.prepare(conn, "SELECT * FROM first_level_divisions");
+        rs = ps.executeQuery();
+
+        Map<Integer, List<FirstLevelDivision>> byCountry = new HashMap<>();
+        Map<Integer, FirstLevelDivision> byId = new HashMap<>();
+        while (rs.next()) {
+            FirstLevelDivision fld = new FirstLevelDivision(rs.getInt("Division_ID"), rs.getString("Division"), rs.getInt("COUNTRY_ID"));
+            byCountry.computeIfAbsent(fld.getCountryId(), id -> new ArrayList<>()).add(fld);
+            byId.put(fld.getDivisionId(), fld);
+        }
+        byCountry.replaceAll((id, divisions) -> Collections.unmodifiableList(divisions));
+
+        divisionsByCountry = byCountry;
+        divisionsById = byId;
+        countries = Collections.unmodifiableList(loadedCountries);
+    }
+
+    private static void loadCustomers(Connection conn) throws SQLException {
+        // Read the version first, so a change made while the query runs triggers another reload.
+        long version = customersVersion.get();
+        PreparedStatement ps = Query.prepare(conn, "SELECT * FROM customers");
+        ResultSet rs = ps.executeQuery();
+
+        List<Customer> loaded = new ArrayList<>();
+        while (rs.next()) {
+            loaded.add(new Customer(
+                    new ReadOnlyObjectWrapper<>(rs.getInt("Customer_ID")),
+                    new ReadOnlyObjectWrapper<>(rs.getString("Customer_Name")),
+                    new ReadOnlyObjectWrapper<>(rs.getString("Address")),
+                    new ReadOnlyObjectWrapper<>(rs.getString("Postal_Code")),
+                    new ReadOnlyObjectWrapper<>(rs.getString("Phone")),
+                    new ReadOnlyObjectWrapper<>(rs.getInt("Division_ID"))));
+        }
+        customers = Collections.unmodifiableList(loaded);
+        loadedCustomersVersion = version;
+    }
+
+    private static void loadUsers(Connection conn) throws SQLException {
+        long version = usersVersion.get();
+        PreparedStatement ps = Query.prepare(conn, "SELECT User_ID, User_Name FROM users");
+        ResultSet rs = ps.executeQuery();
+
+        List<User> loaded = new ArrayList<>();
+        while (rs.next()) {
+            loaded.add(new User(rs.getInt("User_ID"), rs.getString("User_Name")));
+        }
+        users = Collections.unmodifiableList(loaded);
+        loadedUsersVersion = version;
+    }
+}
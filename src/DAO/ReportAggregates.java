@@ -0,0 +1,281 @@
+package DAO;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.SortedMap;
+import java.util.TreeMap;
+
+/**
+ * In-memory copies of the "Appointments by Type" and "Customers by Country" aggregates.
+ *
+ * The aggregates are built from GROUP BY queries once, at login or on first use. After that AppointmentDAO and
+ * CustomerDAO apply each change they make as a delta, so reading a report costs one pass over its groups rather than a
+ * query. Changes made by other clients are not seen as deltas; to catch them, and any delta that was lost, each group is
+ * compared against the database's GROUP BY counts at most once every {@link #driftCheckIntervalMillis} milliseconds,
+ * and the aggregates are replaced if any group disagrees.
+ *
+ * A delta is only applied to the aggregates it was read against. The DAOs read {@link #getVersion()} before they write,
+ * and a rebuild between then and the delta may already have counted the write, so such a delta is dropped and the
+ * aggregates are checked against the database on the next read instead.
+ *
+ * @author James Carney
+ */
+public class ReportAggregates {
+    /**
+     * How often, in milliseconds, the aggregates are checked against the database when a report is read.
+     */
+    public static final long driftCheckIntervalMillis = 5 * 60 * 1000;
+
+    // Month (as stored in the database) -> appointment type -> number of appointments. Null until first loaded.
+    private static TreeMap<Integer, TreeMap<String, Integer>> appointmentsByMonthAndType;
+
+    // Country ID -> number of customers. Null until first loaded.
+    private static TreeMap<Integer, Integer> customersByCountry;
+
+    // Incremented each time the aggregates are replaced.
+    private static long version;
+    private static long lastDriftCheck;
+
+    /**
+     * Rebuilds both aggregates from the database.
+     *
+     * @throws SQLException An exception related to the database query.
+     */
+    public static synchronized void load() throws SQLException {
+        try (Connection conn = DBConnection.getConnection()) {
+            rebuild(conn);
+        }
+    }
+
+    /**
+     * Gets the number of appointments of each type in each month, sorted by month and then type.
+     *
+     * @return An unmodifiable copy of the aggregate.
+     * @throws SQLException An exception related to the database query.
+     */
+    public static synchronized SortedMap<Integer, SortedMap<String, Integer>> getAppointmentsByMonthAndType() throws SQLException {
+        ensureCurrent();
+
+        TreeMap<Integer, SortedMap<String, Integer>> copy = new TreeMap<>();
+        appointmentsByMonthAndType.forEach((month, types) -> copy.put(month, Collections.unmodifiableSortedMap(new TreeMap<>(types))));
+        return Collections.unmodifiableSortedMap(copy);
+    }
+
+    /**
+     * Gets the number of customers in each country, sorted by country ID. Countries with no customers are left out.
+     *
+     * @return An unmodifiable copy of the aggregate.
+     * @throws SQLException An exception related to the database query.
+     */
+    public static synchronized SortedMap<Integer, Integer> getCustomersByCountry() throws SQLException {
+        ensureCurrent();
+        return Collections.unmodifiableSortedMap(new TreeMap<>(customersByCountry));
+    }
+
+    /**
+     * Compares every group of the aggregates against the database now, and replaces them if any has drifted.
+     *
+     * @return true if the aggregates had drifted and were replaced.
+     * @throws SQLException An exception related to the database query.
+     */
+    public static synchronized boolean checkForDrift() throws SQLException {
+        try (Connection conn = DBConnection.getConnection()) {
+            if (appointmentsByMonthAndType == null) {
+                rebuild(conn);
+                return false;
+            }
+
+            lastDriftCheck = System.currentTimeMillis();
+            TreeMap<Integer, TreeMap<String, Integer>> byMonthAndType = countAppointments(conn);
+            TreeMap<Integer, Integer> byCountry = countCustomers(conn);
+            if (byMonthAndType.equals(appointmentsByMonthAndType) && byCountry.equals(customersByCountry)) {
+                return false;
+            }
+
+            System.out.println("Report aggregates have drifted from the database; rebuilding.");
+            replace(byMonthAndType, byCountry);
+            return true;
+        }
+    }
+
+    /**
+     * Gets the version of the aggregates, which the DAOs read before a write and hand back with its delta.
+     *
+     * @return The number of times the aggregates have been replaced.
+     */
+    static synchronized long getVersion() {
+        return version;
+    }
+
+    /**
+     * Counts a new appointment. Called by AppointmentDAO after an appointment is created.
+     *
+     * @param readVersion The version read before the appointment was inserted.
+     * @param month The month the appointment starts in.
+     * @param type The appointment type.
+     */
+    static synchronized void appointmentAdded(long readVersion, int month, String type) {
+        if (appointmentsByMonthAndType != null && isCurrent(readVersion)) {
+            adjustAppointments(month, type, 1);
+        }
+    }
+
+    /**
+     * Stops counting deleted appointments. Called by AppointmentDAO after appointments are deleted.
+     *
+     * @param readVersion The version read before the appointments were deleted.
+     * @param month The month the appointments started in.
+     * @param type The appointment type.
+     * @param count The number of appointments deleted.
+     */
+    static synchronized void appointmentsRemoved(long readVersion, int month, String type, int count) {
+        if (appointmentsByMonthAndType != null && isCurrent(readVersion)) {
+            adjustAppointments(month, type, -count);
+        }
+    }
+
+    /**
+     * Moves an edited appointment between groups. Called by AppointmentDAO after an appointment is updated.
+     *
+     * @param readVersion The version read before the appointment was updated.
+     * @param oldMonth The month the appointment started in before the change.
+     * @param oldType The appointment type before the change.
+     * @param newMonth The month the appointment starts in now.
+     * @param newType The appointment type now.
+     */
+    static synchronized void appointmentMoved(long readVersion, int oldMonth, String oldType, int newMonth, String newType) {
+        if (appointmentsByMonthAndType != null && isCurrent(readVersion)) {
+            adjustAppointments(oldMonth, oldType, -1);
+            adjustAppointments(newMonth, newType, 1);
+        }
+    }
+
+    /**
+     * Counts a new customer. Called by CustomerDAO after a customer is created.
+     *
+     * @param readVersion The version read before the customer was inserted.
+     * @param countryId The ID of the customer's country, or 0 if it isn't known.
+     */
+    static synchronized void customerAdded(long readVersion, int countryId) {
+        if (customersByCountry != null && isCurrent(readVersion)) {
+            adjustCustomers(countryId, 1);
+        }
+    }
+
+    /**
+     * Stops counting a deleted customer. Called by CustomerDAO after a customer is deleted.
+     *
+     * @param readVersion The version read before the customer was deleted.
+     * @param countryId The ID of the customer's country, or 0 if it isn't known.
+     */
+    static synchronized void customerRemoved(long readVersion, int countryId) {
+        if (customersByCountry != null && isCurrent(readVersion)) {
+            adjustCustomers(countryId, -1);
+        }
+    }
+
+    /**
+     * Moves an edited customer between countries. Called by CustomerDAO after a customer is updated.
+     *
+     * @param readVersion The version read before the customer was updated.
+     * @param oldCountryId The ID of the customer's country before the change, or 0 if it isn't known.
+     * @param newCountryId The ID of the customer's country now, or 0 if it isn't known.
+     */
+    static synchronized void customerMoved(long readVersion, int oldCountryId, int newCountryId) {
+        if (customersByCountry != null && oldCountryId != newCountryId && isCurrent(readVersion)) {
+            adjustCustomers(oldCountryId, -1);
+            adjustCustomers(newCountryId, 1);
+        }
+    }
+
+    /**
+     * Checks whether a delta was read against the current aggregates. If it wasn't, the aggregates were replaced while
+     * its write was being made and may or may not count it, so they are checked against the database on the next read.
+     *
+     * @param readVersion The version read before the write.
+     * @return boolean representing whether the delta can be applied.
+     */
+    private static boolean isCurrent(long readVersion) {
+        if (readVersion == version) {
+            return true;
+        }
+        lastDriftCheck = 0;
+        return false;
+    }
+
+    private static void ensureCurrent() throws SQLException {
+        if (appointmentsByMonthAndType == null || System.currentTimeMillis() - lastDriftCheck >= driftCheckIntervalMillis) {
+            checkForDrift();
+        }
+    }
+
+    private static void adjustAppointments(int month, String type, int delta) {
+        TreeMap<String, Integer> types = appointmentsByMonthAndType.computeIfAbsent(month, m -> newTypeMap());
+        int count = types.getOrDefault(type, 0) + delta;
+        if (count > 0) {
+            types.put(type, count);
+        }
+        else {
+            types.remove(type);
+            if (types.isEmpty()) {
+                appointmentsByMonthAndType.remove(month);
+            }
+        }
+    }
+
+    private static void adjustCustomers(int countryId, int delta) {
+        // Customers without a known division aren't counted by the report query either.
+        if (countryId <= 0) {
+            return;
+        }
+        int count = customersByCountry.getOrDefault(countryId, 0) + delta;
+        if (count > 0) {
+            customersByCountry.put(countryId, count);
+        }
+        else {
+            customersByCountry.remove(countryId);
+        }
+    }
+
+    private static void rebuild(Connection conn) throws SQLException {
+        replace(countAppointments(conn), countCustomers(conn));
+    }
+
+    private static void replace(TreeMap<Integer, TreeMap<String, Integer>> byMonthAndType, TreeMap<Integer, Integer> byCountry) {
+        appointmentsByMonthAndType = byMonthAndType;
+        customersByCountry = byCountry;
+        version++;
+        lastDriftCheck = System.currentTimeMillis();
+    }
+
+    private static TreeMap<Integer, TreeMap<String, Integer>> countAppointments(Connection conn) throws SQLException {
+        PreparedStatement ps = Query.prepare(conn, "SELECT month(Start), Type, COUNT(*) FROM appointments GROUP BY month(Start), Type");
+        ResultSet rs = ps.executeQuery();
+
+        TreeMap<Integer, TreeMap<String, Integer>> byMonthAndType = new TreeMap<>();
+        while (rs.next()) {
+            byMonthAndType.computeIfAbsent(rs.getInt(1), m -> newTypeMap()).put(rs.getString(2), rs.getInt(3));
+        }
+        return byMonthAndType;
+    }
+
+    private static TreeMap<Integer, Integer> countCustomers(Connection conn) throws SQLException {
+        PreparedStatement ps = Query.prepare(conn, "SELECT first_level_divisions.COUNTRY_ID, COUNT(*) FROM customers INNER JOIN first_level_divisions ON customers.Division_ID = first_level_divisions.Division_ID GROUP BY COUNTRY_ID");
+        ResultSet rs = ps.executeQuery();
+
+        TreeMap<Integer, Integer> byCountry = new TreeMap<>();
+        while (rs.next()) {
+            byCountry.put(rs.getInt(1), rs.getInt(2));
+        }
+        return byCountry;
+    }
+
+    private static TreeMap<String, Integer> newTypeMap() {
+        // Type is nullable in the schema, so appointments without one are grouped together first.
+        return new TreeMap<>(Comparator.nullsFirst(Comparator.naturalOrder()));
+    }
+}
@@ -0,0 +1,114 @@
+package DAO;
+
+import model.Contact;
+import model.Country;
+import model.FirstLevelDivision;
+import model.User;
+import util.AppointmentCube;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.time.LocalDate;
+import java.time.YearMonth;
+import java.time.temporal.IsoFields;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Loads and caches the appointment cube behind the Reports screen's pivot picker.
+ *
+ * The cube is built from one query that groups the appointments by day, type, contact, user and customer division;
+ * months, weeks, countries and names are filled in from the reference data. AppointmentDAO and CustomerDAO mark the
+ * cube stale whenever they change something it counts, and it is rebuilt the next time it is asked for.
+ *
+ * @author James Carney
+ */
+public class ReportCube {
+    /**
+     * The member used when an appointment's customer, contact or user can't be found.
+     */
+    public static final String unknownMember = "(unknown)";
+
+    private static final AppointmentCube.Member unknown = new AppointmentCube.Member(unknownMember);
+
+    private static AppointmentCube cube;
+    private static final AtomicLong version = new AtomicLong();
+    private static long loadedVersion = -1;
+
+    /**
+     * Gets the cube, building it first if it is stale.
+     *
+     * @return The cube.
+     * @throws SQLException An exception related to the database query.
+     */
+    public static synchronized AppointmentCube getCube() throws SQLException {
+        if (loadedVersion != version.get()) {
+            // Read the version first, so a change made while the cube is built triggers another rebuild.
+            long building = version.get();
+            cube = build();
+            loadedVersion = building;
+        }
+        return cube;
+    }
+
+    /**
+     * Marks the cube as stale. Called by AppointmentDAO and CustomerDAO after every change the cube counts.
+     */
+    static void invalidate() {
+        version.incrementAndGet();
+    }
+
+    private static AppointmentCube build() throws SQLException {
+        Map<Integer, String> contactNames = new HashMap<>();
+        for (Contact contact : ReferenceData.getContacts()) {
+            contactNames.put(contact.getContactId(), contact.getContactName());
+        }
+        Map<Integer, String> userNames = new HashMap<>();
+        for (User user : ReferenceData.getUsers()) {
+            userNames.put(user.getUserId(), user.getUserName());
+        }
+        Map<Integer, String> countryNames = new HashMap<>();
+        for (Country country : ReferenceData.getCountries()) {
+            countryNames.put(country.getCountryId(), country.getCountryName());
+        }
+
+        AppointmentCube built = new AppointmentCube();
+        try (Connection conn = DBConnection.getConnection()) {
+            String sqlStatement = "SELECT DATE(a.Start), a.Type, a.Contact_ID, a.User_ID, c.Division_ID, COUNT(*) FROM appointments a LEFT JOIN customers c ON a.Customer_ID = c.Customer_ID GROUP BY DATE(a.Start), a.Type, a.Contact_ID, a.User_ID, c.Division_ID";
+            PreparedStatement ps = Query.prepare(conn, sqlStatement);
+            ResultSet rs = ps.executeQuery();
+
+            AppointmentCube.Member[] members = new AppointmentCube.Member[AppointmentCube.Dimension.values().length];
+            while (rs.next()) {
+                LocalDate day = rs.getDate(1).toLocalDate();
+                FirstLevelDivision division = ReferenceData.getDivision(rs.getInt(5));
+
+                members[AppointmentCube.Dimension.MONTH.ordinal()] = new AppointmentCube.Member(YearMonth.from(day).toString());
+                members[AppointmentCube.Dimension.WEEK.ordinal()] = new AppointmentCube.Member(String.format("%d-W%02d", day.get(IsoFields.WEEK_BASED_YEAR), day.get(IsoFields.WEEK_OF_WEEK_BASED_YEAR)));
+                members[AppointmentCube.Dimension.TYPE.ordinal()] = new AppointmentCube.Member(rs.getString(2));
+                members[AppointmentCube.Dimension.CONTACT.ordinal()] = byId(rs.getInt(3), contactNames);
+                members[AppointmentCube.Dimension.USER.ordinal()] = byId(rs.getInt(4), userNames);
+                members[AppointmentCube.Dimension.DIVISION.ordinal()] = division == null ? unknown : new AppointmentCube.Member(String.valueOf(division.getDivisionId()), division.getDivisionName());
+                members[AppointmentCube.Dimension.COUNTRY.ordinal()] = division == null ? unknown : byId(division.getCountryId(), countryNames);
+
+                built.add(members, rs.getInt(6));
+            }
+        }
+        return built;
+    }
+
+    /**
+     * Gets the member for a contact, user or country, identified by its ID so two with the same name stay apart.
+     *
+     * @param id The ID.
+     * @param names The names, by ID.
+     * @return The member, or the unknown member if there is no name for the ID.
+     */
+    private static AppointmentCube.Member byId(int id, Map<Integer, String> names) {
+        String name = names.get(id);
+        return name == null ? unknown : new AppointmentCube.Member(String.valueOf(id), name);
+    }
+}
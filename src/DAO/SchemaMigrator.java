@@ -0,0 +1,133 @@
+package DAO;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Applies schema changes shipped with the program to the database.
+ *
+ * Each migration is a SQL script under /resources/sql. Applied versions are recorded in the schema_migrations table,
+ * so every script runs exactly once per database. DDL commits as it goes, so a script that failed or was interrupted
+ * partway may have applied some of its statements; when it is run again, a statement creating an index that already
+ * exists is treated as applied.
+ *
+ * @author James Carney
+ */
+public class SchemaMigrator {
+    // MySQL's error code, and the SQL state H2 uses, for an index name that is already taken.
+    private static final int duplicateKeyNameError = 1061;
+    private static final String duplicateIndexState = "42S11";
+
+    private static final String[] migrations = {
+            "V1__appointment_overlap_indexes",
+            "V2__appointment_start_indexes"
+    };
+
+    /**
+     * Applies every migration that hasn't been applied to the database yet, in order.
+     *
+     * @throws SQLException An exception related to the database query.
+     * @throws IOException An exception related to reading a migration script.
+     */
+    public static void migrate() throws SQLException, IOException {
+        try (Connection conn = DBConnection.getConnection()) {
+            try (Statement statement = conn.createStatement()) {
+                statement.execute("CREATE TABLE IF NOT EXISTS schema_migrations (Version VARCHAR(100) NOT NULL PRIMARY KEY, Applied_At TIMESTAMP DEFAULT CURRENT_TIMESTAMP)");
+            }
+
+            for (String version : migrations) {
+                if (isApplied(conn, version)) {
+                    continue;
+                }
+                try (Statement statement = conn.createStatement()) {
+                    for (String sqlStatement : readScript(version)) {
+                        try {
+                            statement.execute(sqlStatement);
+                        }
+                        catch (SQLException e) {
+                            if (!isDuplicateIndex(e)) {
+                                throw e;
+                            }
+                            System.out.println("Index already exists, skipping: " + sqlStatement);
+                        }
+                    }
+                }
+                PreparedStatement ps = Query.prepare(conn, "INSERT INTO schema_migrations(Version) VALUES(?)");
+                ps.setString(1, version);
+                ps.execute();
+                System.out.println("Applied schema migration " + version);
+            }
+        }
+    }
+
+    /**
+     * Checks whether a migration has already been applied.
+     *
+     * @param conn The connection to be used.
+     * @param version The migration version.
+     * @return boolean representing whether the migration was applied.
+     * @throws SQLException An exception related to the database query.
+     */
+    private static boolean isApplied(Connection conn, String version) throws SQLException {
+        PreparedStatement ps = Query.prepare(conn, "SELECT 1 FROM schema_migrations WHERE Version = ?");
+        ps.setString(1, version);
+        ResultSet rs = ps.executeQuery();
+        return rs.next();
+    }
+
+    /**
+     * Checks whether a statement failed because the index it creates already exists.
+     *
+     * @param e The error.
+     * @return boolean representing whether the index was already there.
+     */
+    private static boolean isDuplicateIndex(SQLException e) {
+        return e.getErrorCode() == duplicateKeyNameError || duplicateIndexState.equals(e.getSQLState());
+    }
+
+    /**
+     * Reads a SQL script under /resources/sql and splits it into statements.
+     *
+     * @param name The name of the script, e.g. a migration version.
+     * @return The SQL statements in the script.
+     * @throws IOException An exception related to reading the script.
+     */
+    static List<String> readScript(String name) throws IOException {
+        List<String> statements = new ArrayList<>();
+        InputStream in = SchemaMigrator.class.getResourceAsStream("/resources/sql/" + name + ".sql");
+        if (in == null) {
+            throw new IOException("Missing SQL script " + name);
+        }
+
+        try (BufferedReader reader = new BufferedReader(new InputStreamReader(in, StandardCharsets.UTF_8))) {
+            StringBuilder current = new StringBuilder();
+            String line;
+            while ((line = reader.readLine()) != null) {
+                String trimmed = line.trim();
+                if (trimmed.isEmpty() || trimmed.startsWith("--")) {
+                    continue;
+                }
+                current.append(line).append('\n');
+                if (trimmed.endsWith(";")) {
+                    String sqlStatement = current.toString().trim();
+                    statements.add(sqlStatement.substring(0, sqlStatement.length() - 1));
+                    current.setLength(0);
+                }
+            }
+            if (current.toString().trim().length() > 0) {
+                statements.add(current.toString().trim());
+            }
+        }
+        return statements;
+    }
+}
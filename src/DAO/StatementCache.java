@@ -0,0 +1,223 @@
+package DAO;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * A least-recently-used cache of prepared statements belonging to one pooled connection.
+ *
+ * The cache is only touched by the thread that currently holds its connection, so it needs no locking. A statement
+ * handed out by the cache stays checked out to the caller until it is closed or the connection is returned to the
+ * pool. Each checkout gets its own handle, which stops working once closed, so a caller that closes a statement twice
+ * or keeps using it can't disturb whoever checks it out next. If the same SQL is prepared again while the first
+ * statement is still checked out, the caller gets a fresh, uncached statement so the two can't overwrite each other's
+ * parameters or result sets. Uncached statements are added to the connection's open statements, which are closed when
+ * the connection is returned to the pool.
+ *
+ * @author James Carney
+ */
+class StatementCache {
+    private final Connection physical;
+    private final List<Statement> openStatements;
+    private final int maxSize;
+    private final AtomicLong hits;
+    private final AtomicLong misses;
+    private final AtomicLong evictions;
+    private final LinkedHashMap<String, CachedStatement> statements = new LinkedHashMap<>(16, 0.75f, true);
+
+    /**
+     * Class constructor.
+     *
+     * @param physical The physical connection the statements are prepared on.
+     * @param openStatements The connection's statements to close when it is returned, which uncached ones are added to.
+     * @param maxSize The maximum number of statements kept open.
+     * @param hits Counter incremented when a cached statement is reused.
+     * @param misses Counter incremented when a statement has to be prepared.
+     * @param evictions Counter incremented when the least recently used statement is closed to make room.
+     */
+    StatementCache(Connection physical, List<Statement> openStatements, int maxSize, AtomicLong hits, AtomicLong misses,
+                   AtomicLong evictions) {
+        this.physical = physical;
+        this.openStatements = openStatements;
+        this.maxSize = maxSize;
+        this.hits = hits;
+        this.misses = misses;
+        this.evictions = evictions;
+    }
+
+    /**
+     * Gets a prepared statement for the given SQL, reusing a cached one when possible.
+     *
+     * @param sqlStatement The SQL statement.
+     * @param autoGeneratedKeys Either Statement.RETURN_GENERATED_KEYS or Statement.NO_GENERATED_KEYS.
+     * @return A prepared statement checked out to the caller.
+     * @throws SQLException An exception related to preparing the statement.
+     */
+    PreparedStatement prepare(String sqlStatement, int autoGeneratedKeys) throws SQLException {
+        String key = autoGeneratedKeys == Statement.RETURN_GENERATED_KEYS ? "keys:" + sqlStatement : sqlStatement;
+        CachedStatement cached = statements.get(key);
+
+        if (cached != null && cached.checkout == null) {
+            hits.incrementAndGet();
+            return cached.checkOut();
+        }
+
+        misses.incrementAndGet();
+        PreparedStatement statement = physical.prepareStatement(sqlStatement, autoGeneratedKeys);
+        if (cached != null) {
+            // The cached copy is busy, so this one is only for the caller and is closed when the connection is returned.
+            openStatements.add(statement);
+            return statement;
+        }
+
+        cached = new CachedStatement(statement);
+        PreparedStatement handle = cached.checkOut();
+        statements.put(key, cached);
+        evictLeastRecentlyUsed();
+        return handle;
+    }
+
+    /**
+     * Checks every cached statement back in. Called when the connection is returned to the pool.
+     */
+    void checkInAll() {
+        for (CachedStatement cached : statements.values()) {
+            if (cached.checkout != null) {
+                cached.checkout.close();
+            }
+        }
+    }
+
+    /**
+     * Gets the number of statements currently cached.
+     *
+     * @return The number of statements.
+     */
+    int size() {
+        return statements.size();
+    }
+
+    /**
+     * Closes idle statements beyond the maximum size, least recently used first.
+     */
+    private void evictLeastRecentlyUsed() {
+        Iterator<Map.Entry<String, CachedStatement>> iterator = statements.entrySet().iterator();
+        while (statements.size() > maxSize && iterator.hasNext()) {
+            CachedStatement eldest = iterator.next().getValue();
+            if (eldest.checkout != null) {
+                continue;
+            }
+            iterator.remove();
+            evictions.incrementAndGet();
+            try {
+                eldest.statement.close();
+            }
+            catch (SQLException e) {
+                //Statement is already unusable, nothing else to do
+            }
+        }
+    }
+
+    /**
+     * A cached statement and its current checkout, if any.
+     */
+    private static class CachedStatement {
+        private final PreparedStatement statement;
+        private Checkout checkout;
+
+        private CachedStatement(PreparedStatement statement) {
+            this.statement = statement;
+        }
+
+        /**
+         * Checks the statement out to a caller.
+         *
+         * @return A handle that works until it is closed or the connection is returned.
+         */
+        private PreparedStatement checkOut() {
+            checkout = new Checkout(this);
+            return checkout.proxy;
+        }
+
+        /**
+         * Clears the caller's parameters and result set so the statement can be reused.
+         */
+        private void checkIn() {
+            checkout = null;
+            try {
+                if (statement.getResultSet() != null) {
+                    statement.getResultSet().close();
+                }
+                statement.clearParameters();
+            }
+            catch (SQLException e) {
+                //Reusing the statement will surface the problem
+            }
+        }
+    }
+
+    /**
+     * The handle given to one caller for one checkout of a cached statement. Closing it checks the statement back in;
+     * once closed it stays closed, so a caller holding on to it can't close or use a later caller's checkout.
+     */
+    private static class Checkout implements InvocationHandler {
+        private final CachedStatement cached;
+        private final PreparedStatement proxy;
+        private boolean closed = false;
+
+        private Checkout(CachedStatement cached) {
+            this.cached = cached;
+            this.proxy = (PreparedStatement) Proxy.newProxyInstance(PreparedStatement.class.getClassLoader(),
+                    new Class<?>[]{PreparedStatement.class}, this);
+        }
+
+        private void close() {
+            if (!closed) {
+                closed = true;
+                cached.checkIn();
+            }
+        }
+
+        @Override
+        public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+            String name = method.getName();
+            if (method.getDeclaringClass() == Object.class) {
+                // Identity, so that each checkout's handle is a distinct object.
+                if (name.equals("equals")) {
+                    return proxy == args[0];
+                }
+                if (name.equals("hashCode")) {
+                    return System.identityHashCode(proxy);
+                }
+                return "Cached statement checkout@" + Integer.toHexString(System.identityHashCode(proxy));
+            }
+            if (name.equals("close")) {
+                close();
+                return null;
+            }
+            if (name.equals("isClosed")) {
+                return closed || cached.statement.isClosed();
+            }
+            if (closed) {
+                throw new SQLException("Statement has already been closed.");
+            }
+            try {
+                return method.invoke(cached.statement, args);
+            }
+            catch (InvocationTargetException e) {
+                throw e.getCause();
+            }
+        }
+    }
+}
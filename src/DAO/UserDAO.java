@@ -8,13 +8,50 @@ import java.sql.Connection;
 import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.SQLException;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
 
 /**
  * Handles database queries related to users.
  *
+ * Users found by name when logging in are kept in a small cache, so repeated logins don't query. Only names that have
+ * been looked up are cached; the users table is never loaded as a whole, so the passwords of users who haven't tried
+ * to log in aren't held in memory. Names that don't belong to any user are cached too, for a shorter time, so mistyped
+ * or guessed names don't reach the database on every attempt. The cache holds at most {@link #maxCachedUsers} names,
+ * dropping the least recently used, and entries expire so changes made to the users table outside the program are
+ * picked up. Changes made through this class clear it straight away.
+ *
  * @author James Carney
  */
 public class UserDAO {
+    private static final int maxCachedUsers = 256;
+    private static final long userTtlNanos = TimeUnit.MINUTES.toNanos(5);
+    private static final long unknownUserTtlNanos = TimeUnit.SECONDS.toNanos(30);
+
+    // Bumped whenever the cache is cleared, so a lookup that started before a change isn't cached after it.
+    private static final AtomicLong cacheVersion = new AtomicLong();
+    // User names to their cached lookups, least recently used first. A null user records a name with no user.
+    private static final Map<String, CachedUser> cachedUsers = new LinkedHashMap<>(16, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, CachedUser> eldest) {
+            return size() > maxCachedUsers;
+        }
+    };
+
+    /**
+     * The result of looking up a user name, and when it expires.
+     */
+    private static class CachedUser {
+        private final User user;
+        private final long expiresAt;
+
+        private CachedUser(User user, long expiresAt) {
+            this.user = user;
+            this.expiresAt = expiresAt;
+        }
+    }
 
     /**
      * Creates a new user
@@ -24,55 +61,74 @@ public class UserDAO {
      * @throws SQLException An exception related to the database query.
      */
     public boolean createUser(User user) throws SQLException {
-        Connection conn = DBConnection.getConnection();
-        String sqlStatement = "INSERT INTO users(userId, userName, password) VALUES(?, ?, ?)";
-        Query.setPreparedStatement(conn, sqlStatement);
-        PreparedStatement ps = Query.getPreparedStatement();
-
-        ps.setInt(1, user.getUserId());
-        ps.setString(2, user.getUserName());
-        ps.setString(3, user.getPassword());
-
-        if (ps.getUpdateCount() > 0) {
-            System.out.println(ps.getUpdateCount() + " row(s) affected.");
-            DBConnection.closeConnection();
-            return true;
-        }
-        else {
-            System.out.println("No change.");
-            DBConnection.closeConnection();
-            return false;
+        try (Connection conn = DBConnection.getConnection()) {
+            String sqlStatement = "INSERT INTO users(userId, userName, password) VALUES(?, ?, ?)";
+            PreparedStatement ps = Query.prepare(conn, sqlStatement);
+
+            ps.setInt(1, user.getUserId());
+            ps.setString(2, user.getUserName());
+            ps.setString(3, user.getPassword());
+
+            if (ps.getUpdateCount() > 0) {
+                System.out.println(ps.getUpdateCount() + " row(s) affected.");
+                ReferenceData.invalidateUsers();
+                clearCachedUsers();
+                return true;
+            }
+            else {
+                System.out.println("No change.");
+                return false;
+            }
         }
     }
 
     /**
-     * Gets a user from the database.
+     * Gets a user, from the cache if it was looked up recently and from the database otherwise.
      *
      * @param userName Name of the requested user.
-     * @return A User object representing the requested user.
+     * @return A User object representing the requested user, or null if there isn't one.
      * @throws Exception A generic exception.
      */
     public static User getUser(String userName) throws Exception {
-        Connection conn = DBConnection.getConnection();
-        String sqlStatement = "SELECT * FROM users WHERE User_Name = ?";
+        synchronized (cachedUsers) {
+            CachedUser cached = cachedUsers.get(userName);
+            if (cached != null && cached.expiresAt - System.nanoTime() > 0) {
+                return cached.user;
+            }
+        }
 
-        Query.setPreparedStatement(conn, sqlStatement);
-        PreparedStatement ps = Query.getPreparedStatement();
+        long version = cacheVersion.get();
+        User user = queryUser(userName);
+        cacheUser(userName, user, version);
+        return user;
+    }
 
-        ps.setString(1, userName);
+    /**
+     * Gets a user from the database.
+     *
+     * @param userName Name of the requested user.
+     * @return A User object representing the requested user, or null if there isn't one.
+     * @throws SQLException An exception related to the database query.
+     */
+    private static User queryUser(String userName) throws SQLException {
+        try (Connection conn = DBConnection.getConnection()) {
+            String sqlStatement = "SELECT * FROM users WHERE User_Name = ?";
+
+            PreparedStatement ps = Query.prepare(conn, sqlStatement);
+
+            ps.setString(1, userName);
 
-        ResultSet rs = ps.executeQuery();
+            ResultSet rs = ps.executeQuery();
 
-        while (rs.next()) {
-            int userId = rs.getInt("User_ID");
-            String usrName = rs.getString("User_Name");
-            String password = rs.getString("Password");
-            User user = new User(userId, usrName, password);
-            DBConnection.closeConnection();
-            return user;
+            while (rs.next()) {
+                int userId = rs.getInt("User_ID");
+                String usrName = rs.getString("User_Name");
+                String password = rs.getString("Password");
+                User user = new User(userId, usrName, password);
+                return user;
+            }
+            return null;
         }
-        DBConnection.closeConnection();
-        return null;
     }
 
     /**
@@ -83,22 +139,21 @@ public class UserDAO {
      */
     public static ObservableList<User> getAllUsers() throws Exception {
 
-        Connection conn = DBConnection.getConnection();
-        String sqlStatement = "SELECT * FROM users";
-        Query.setPreparedStatement(conn, sqlStatement);
-        PreparedStatement ps = Query.getPreparedStatement();
-
-        ResultSet rs = ps.getResultSet();
-        ObservableList<User> allUsers = FXCollections.observableArrayList();
-        while (rs.next()) {
-            int userId = rs.getInt("User_ID");
-            String userName = rs.getString("User_Name");
-            String password = rs.getString("Password");
-            User user = new User(userId, userName, password);
-            allUsers.add(user);
+        try (Connection conn = DBConnection.getConnection()) {
+            String sqlStatement = "SELECT * FROM users";
+            PreparedStatement ps = Query.prepare(conn, sqlStatement);
+
+            ResultSet rs = ps.executeQuery();
+            ObservableList<User> allUsers = FXCollections.observableArrayList();
+            while (rs.next()) {
+                int userId = rs.getInt("User_ID");
+                String userName = rs.getString("User_Name");
+                String password = rs.getString("Password");
+                User user = new User(userId, userName, password);
+                allUsers.add(user);
+            }
+            return allUsers;
         }
-        DBConnection.closeConnection();
-        return allUsers;
     }
 
     /**
@@ -109,16 +164,22 @@ public class UserDAO {
      * @throws Exception A generic exception.
      */
     public static boolean updateUser(User user) throws Exception {
-        Connection conn = DBConnection.getConnection();
-        String sqlStatement = "UPDATE users SET User_ID = ?, User_Name = ?, Password = ? WHERE User_ID = ?";
-        Query.setPreparedStatement(conn, sqlStatement);
-        PreparedStatement ps = Query.getPreparedStatement();
+        try (Connection conn = DBConnection.getConnection()) {
+            String sqlStatement = "UPDATE users SET User_ID = ?, User_Name = ?, Password = ? WHERE User_ID = ?";
+            PreparedStatement ps = Query.prepare(conn, sqlStatement);
 
-        ps.setInt(1, user.getUserId());
-        ps.setString(2, user.getUserName());
-        ps.setString(3, user.getPassword());
+            ps.setInt(1, user.getUserId());
+            ps.setString(2, user.getUserName());
+            ps.setString(3, user.getPassword());
+            ps.setInt(4, user.getUserId());
 
-        return ps.getUpdateCount() > 0;
+            ps.execute();
+
+            ReferenceData.invalidateUsers();
+            ReportCube.invalidate();
+            clearCachedUsers();
+            return ps.getUpdateCount() > 0;
+        }
     }
 
     /**
@@ -129,14 +190,33 @@ public class UserDAO {
      * @throws Exception A generic exception.
      */
     public static boolean deleteUser(int userId) throws Exception {
-        Connection conn = DBConnection.getConnection();
-        String sqlStatement = "DELETE * FROM users WHERE User_ID = ?";
-        Query.setPreparedStatement(conn, sqlStatement);
-        PreparedStatement ps = Query.getPreparedStatement();
+        try (Connection conn = DBConnection.getConnection()) {
+            String sqlStatement = "DELETE FROM users WHERE User_ID = ?";
+            PreparedStatement ps = Query.prepare(conn, sqlStatement);
 
-        ps.setInt(1, userId);
+            ps.setInt(1, userId);
 
-        return ps.getUpdateCount() >0;
+            ps.execute();
+
+            ReferenceData.invalidateUsers();
+            clearCachedUsers();
+            return ps.getUpdateCount() >0;
+        }
+    }
+
+    private static void cacheUser(String userName, User user, long version) {
+        long ttl = user == null ? unknownUserTtlNanos : userTtlNanos;
+        synchronized (cachedUsers) {
+            if (cacheVersion.get() == version) {
+                cachedUsers.put(userName, new CachedUser(user, System.nanoTime() + ttl));
+            }
+        }
     }
-}
 
+    private static void clearCachedUsers() {
+        synchronized (cachedUsers) {
+            cacheVersion.incrementAndGet();
+            cachedUsers.clear();
+        }
+    }
+}
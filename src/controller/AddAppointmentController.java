@@ -1,8 +1,11 @@
 package controller;
 
 import DAO.AppointmentDAO;
+import DAO.AppointmentIndex;
+import DAO.AsyncDAO;
+import DAO.CommonAvailability;
 import DAO.DBConnection;
-import DAO.Query;
+import DAO.ReferenceData;
 import javafx.beans.property.ReadOnlyObjectWrapper;
 import javafx.beans.value.ObservableValue;
 import javafx.collections.FXCollections;
@@ -21,12 +24,18 @@ import model.Contact;
 import model.Customer;
 import model.User;
 import util.FormValidator;
+import util.Session;
+import util.SlotAvailability;
 import util.TimeZone;
 
 import java.net.URL;
-import java.sql.*;
+import java.sql.SQLException;
 import java.time.*;
+import java.util.Collections;
+import java.util.BitSet;
 import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
 import java.util.ResourceBundle;
 import java.util.Set;
 
@@ -48,12 +57,22 @@ public class AddAppointmentController implements Initializable {
     @FXML private ComboBox<LocalTime> appointmentEndBox;
     @FXML private ComboBox<Customer> appointmentCustomerBox;
     @FXML private ComboBox<User> appointmentUserBox;
+    @FXML private Button addButton;
+    @FXML private ListView<Contact> attendeeList;
+    @FXML private ComboBox<Integer> durationBox;
+    @FXML private Button findTimesButton;
+    @FXML private ListView<CommonAvailability.Window> suggestionList;
+    @FXML private ProgressIndicator progressIndicator;
 
     private ObservableList<Contact> allContacts = FXCollections.observableArrayList();
     private ObservableList<Customer> allCustomers = FXCollections.observableArrayList();
     private ObservableList<String> allTypes = FXCollections.observableArrayList();
     private ObservableList<User> allUsers = FXCollections.observableArrayList();
     private ObservableList<LocalTime> allTimes = FXCollections.observableArrayList();
+    private BitSet bookableSlots;
+    private static final int suggestionDays = 14;
+    private static final int suggestionCount = 10;
+    private int timesRequest;
 
     /**
      * Handler called when the "Add" button is clicked.
@@ -84,48 +103,65 @@ public class AddAppointmentController implements Initializable {
                 missingDataAlert.showAndWait();
             }
             else {
-                ObservableValue<String> title = new ReadOnlyObjectWrapper<>(appointmentTitleBox.getText());
-                ObservableValue<String> description = new ReadOnlyObjectWrapper<>(appointmentDescriptionBox.getText());
-                ObservableValue<String> location = new ReadOnlyObjectWrapper<>(appointmentLocationBox.getText());
-                ObservableValue<Integer> contactId = new ReadOnlyObjectWrapper<>(appointmentContactBox.getSelectionModel().getSelectedItem().getContactId());
-                ObservableValue<String> type = new ReadOnlyObjectWrapper<>(appointmentTypeBox.getSelectionModel().getSelectedItem());
+                String title = appointmentTitleBox.getText();
+                String description = appointmentDescriptionBox.getText();
+                String location = appointmentLocationBox.getText();
+                int contactId = appointmentContactBox.getSelectionModel().getSelectedItem().getContactId();
+                String type = appointmentTypeBox.getSelectionModel().getSelectedItem();
                 LocalDate appointmentDate = appointmentDatePicker.getValue();
                 LocalTime startTime = appointmentStartBox.getSelectionModel().getSelectedItem();
                 LocalTime endTime = appointmentEndBox.getSelectionModel().getSelectedItem();
-                ObservableValue<Integer> customer = new ReadOnlyObjectWrapper<>(appointmentCustomerBox.getSelectionModel().getSelectedItem().getCustomerId().getValue());
-                ObservableValue<Integer> user = new ReadOnlyObjectWrapper<>(appointmentUserBox.getSelectionModel().getSelectedItem().getUserId());
+                int customer = appointmentCustomerBox.getSelectionModel().getSelectedItem().getCustomerId().getValue();
+                int user = appointmentUserBox.getSelectionModel().getSelectedItem().getUserId();
                 LocalDateTime start = LocalDateTime.of(appointmentDate, startTime);
                 LocalDateTime end = LocalDateTime.of(appointmentDate, endTime);
                 ObservableValue<ZonedDateTime> zonedStart = new ReadOnlyObjectWrapper<>(ZonedDateTime.of(start, TimeZone.userZoneId));
                 ObservableValue<ZonedDateTime> zonedEnd = new ReadOnlyObjectWrapper<>(ZonedDateTime.of(end, TimeZone.userZoneId));
 
-                boolean overlappingAppointment = isOverlappingAppointment(zonedStart, zonedEnd);
-                if (!overlappingAppointment) {
-                    if (TimeZone.validateAppointmentAgainstEST(zonedStart, zonedEnd)) {
-
-                        Appointment newAppointment = new Appointment(title, description, location, type, zonedStart, zonedEnd, customer, user, contactId);
-                        AppointmentDAO.createAppointment(newAppointment);
-
-                        Parent AppointmentParent = FXMLLoader.load(getClass().getResource("/view/AppointmentsView.fxml"));
-                        Scene AppointmentScene = new Scene(AppointmentParent);
-                        Stage AppointmentWindow = (Stage) ((Node) event.getSource()).getScene().getWindow();
-
-                        AppointmentWindow.setScene(AppointmentScene);
-                        AppointmentWindow.show();
-                    } else {
-                        Alert businessHoursAlert = new Alert(Alert.AlertType.WARNING);
-                        businessHoursAlert.setTitle("Warning");
-                        businessHoursAlert.setHeaderText("Appointment start/end time are outside business hours.");
-                        businessHoursAlert.setContentText("Please change start/end time to continue.");
-                        businessHoursAlert.showAndWait();
-                    }
-                } else {
-                    Alert appointmentOverlapAlert = new Alert(Alert.AlertType.WARNING);
-                    appointmentOverlapAlert.setTitle("Warning");
-                    appointmentOverlapAlert.setHeaderText("Appointment overlaps with a previously-scheduled appointment.");
-                    appointmentOverlapAlert.setContentText("Please change start/end time to continue.");
-                    appointmentOverlapAlert.showAndWait();
-                }
+                Stage AppointmentWindow = (Stage) ((Node) event.getSource()).getScene().getWindow();
+
+                addButton.setDisable(true);
+                progressIndicator.setVisible(true);
+                AsyncDAO.onFxThread(AsyncDAO.supply(() -> isOverlappingAppointment(contactId, customer, zonedStart, zonedEnd)),
+                        overlappingAppointment -> {
+                            if (!overlappingAppointment) {
+                                if (TimeZone.validateAppointmentAgainstEST(zonedStart, zonedEnd)) {
+
+                                    Appointment newAppointment = new Appointment(title, description, location, type, zonedStart.getValue(), zonedEnd.getValue(), customer, user, contactId);
+                                    AsyncDAO.onFxThread(AsyncDAO.supply(() -> AppointmentDAO.createAppointment(newAppointment)),
+                                            created -> {
+                                                if (created) {
+                                                    showAppointments(AppointmentWindow);
+                                                    return;
+                                                }
+                                                Alert notSavedAlert = new Alert(Alert.AlertType.ERROR);
+                                                notSavedAlert.setTitle("Error");
+                                                notSavedAlert.setHeaderText("The appointment could not be saved.");
+                                                notSavedAlert.setContentText("Please try again.");
+                                                notSavedAlert.showAndWait();
+                                                addButton.setDisable(false);
+                                                progressIndicator.setVisible(false);
+                                            },
+                                            this::onSaveFailed);
+                                    return;
+                                } else {
+                                    Alert businessHoursAlert = new Alert(Alert.AlertType.WARNING);
+                                    businessHoursAlert.setTitle("Warning");
+                                    businessHoursAlert.setHeaderText("Appointment start/end time are outside business hours.");
+                                    businessHoursAlert.setContentText("Please change start/end time to continue.");
+                                    businessHoursAlert.showAndWait();
+                                }
+                            } else {
+                                Alert appointmentOverlapAlert = new Alert(Alert.AlertType.WARNING);
+                                appointmentOverlapAlert.setTitle("Warning");
+                                appointmentOverlapAlert.setHeaderText("Appointment overlaps with a previously-scheduled appointment.");
+                                appointmentOverlapAlert.setContentText("Please change start/end time to continue.");
+                                appointmentOverlapAlert.showAndWait();
+                            }
+                            addButton.setDisable(false);
+                            progressIndicator.setVisible(false);
+                        },
+                        this::onSaveFailed);
             }
         }
         catch (Exception e) {
@@ -133,6 +169,35 @@ public class AddAppointmentController implements Initializable {
         }
     }
 
+    /**
+     * Returns to the Appointments screen once the new appointment is saved.
+     *
+     * @param AppointmentWindow The window to show the Appointments screen in.
+     */
+    private void showAppointments(Stage AppointmentWindow) {
+        try {
+            Parent AppointmentParent = FXMLLoader.load(getClass().getResource("/view/AppointmentsView.fxml"));
+            Scene AppointmentScene = new Scene(AppointmentParent);
+
+            AppointmentWindow.setScene(AppointmentScene);
+            AppointmentWindow.show();
+        }
+        catch (Exception e) {
+            e.printStackTrace();
+        }
+    }
+
+    /**
+     * Lets the user try again after the background overlap check or save fails.
+     *
+     * @param error The exception thrown by the DAO call.
+     */
+    private void onSaveFailed(Throwable error) {
+        addButton.setDisable(false);
+        progressIndicator.setVisible(false);
+        error.printStackTrace();
+    }
+
     /**
      * The handler called when the "Cancel" button is clicked.
      *
@@ -173,20 +238,7 @@ public class AddAppointmentController implements Initializable {
      */
     public void populateContacts() {
         try {
-            Connection conn = DBConnection.getConnection();
-            String sqlStatement = "SELECT * FROM contacts";
-            Query.setPreparedStatement(conn, sqlStatement);
-            PreparedStatement ps = Query.getPreparedStatement();
-
-            ResultSet rs = ps.executeQuery(sqlStatement);
-
-            while (rs.next()) {
-                int contactId = rs.getInt("Contact_ID");
-                String contactName = rs.getString("Contact_Name");
-                String email = rs.getString("Email");
-                Contact contact = new Contact(contactId, contactName, email);
-                allContacts.add(contact);
-            }
+            allContacts.setAll(ReferenceData.getContacts());
         } catch (SQLException e) {
             System.out.println(e.getMessage());
         }
@@ -197,23 +249,7 @@ public class AddAppointmentController implements Initializable {
      */
     public void populateCustomers() {
         try {
-            Connection conn = DBConnection.getConnection();
-            String sqlStatement = "SELECT * FROM customers";
-            Query.setPreparedStatement(conn, sqlStatement);
-            PreparedStatement ps = Query.getPreparedStatement();
-
-            ResultSet rs = ps.executeQuery(sqlStatement);
-
-            while (rs.next()) {
-                ObservableValue<Integer> customerId = new ReadOnlyObjectWrapper<>(rs.getInt("Customer_ID"));
-                ObservableValue<String> customerName = new ReadOnlyObjectWrapper<>(rs.getString("Customer_Name"));
-                ObservableValue<String> address = new ReadOnlyObjectWrapper<>(rs.getString("Address"));
-                ObservableValue<String> postalCode = new ReadOnlyObjectWrapper<>(rs.getString("Postal_Code"));
-                ObservableValue<String> phone = new ReadOnlyObjectWrapper<>(rs.getString("Phone"));
-                ObservableValue<Integer> divisionId = new ReadOnlyObjectWrapper<>(rs.getInt("Division_ID"));
-                Customer customer = new Customer(customerId, customerName, address, postalCode, phone, divisionId);
-                allCustomers.add(customer);
-            }
+            allCustomers.setAll(ReferenceData.getCustomers());
         } catch (SQLException e) {
             System.out.println(e.getMessage());
         }
@@ -247,47 +283,152 @@ public class AddAppointmentController implements Initializable {
      * Populates the list of users for the Add Appointment screen.
      */
     public void populateUsers() {
-
         try {
-            Connection conn = DBConnection.getConnection();
-            String sqlStatement = "SELECT * FROM users";
-            Query.setPreparedStatement(conn, sqlStatement);
-            PreparedStatement ps = Query.getPreparedStatement();
-
-            ResultSet rs = ps.executeQuery(sqlStatement);
-
-            while (rs.next()) {
-                int userId = rs.getInt("User_ID");
-                String userName = rs.getString("User_Name");
-                User user = new User(userId, userName);
-                allUsers.add(user);
-            }
+            allUsers.setAll(ReferenceData.getUsers());
         } catch (SQLException e) {
             System.out.println(e.getMessage());
         }
     }
 
     /**
-     * Checks to see if the appointment a user has attempted to create overlaps with an appointment already scheduled.
+     * Checks to see if the appointment a user has attempted to create overlaps with an appointment already scheduled
+     * with the same contact or the same customer.
      *
+     * @param contactId The ID of the contact attending the appointment.
+     * @param customerId The ID of the customer with whom the appointment is scheduled.
      * @param start Start time of the user appointment.
      * @param end End time of the user appointment.
      * @return Boolean, with true representing an appointment that overlaps, and false representing an appointment
      *  that does not overlap.
+     * @throws SQLException An exception related to the database query.
      */
-    public boolean isOverlappingAppointment(ObservableValue<ZonedDateTime> start, ObservableValue<ZonedDateTime> end) {
-        for (Appointment appointment : AppointmentDAO.getAllAppointments()) {
-            // Yikes. Clean this up
-            if (start.getValue().toLocalDateTime().isAfter(appointment.getStart().getValue().toLocalDateTime()) &&
-                    (start.getValue().toLocalDateTime().isBefore(appointment.getEnd().getValue().toLocalDateTime()))) {
-                return true;
-            }
-            else   if (end.getValue().toLocalDateTime().isAfter(appointment.getStart().getValue().toLocalDateTime()) &&
-                    end.getValue().toLocalDateTime().isBefore(appointment.getEnd().getValue().toLocalDateTime())) {
-                    return true;
+    public boolean isOverlappingAppointment(int contactId, int customerId, ObservableValue<ZonedDateTime> start, ObservableValue<ZonedDateTime> end) throws SQLException {
+        // The in-memory index rules out most conflicts cheaply; the database check catches bookings made elsewhere.
+        if (AppointmentIndex.hasOverlap(contactId, customerId, start.getValue().toEpochSecond(), end.getValue().toEpochSecond(), 0)) {
+            return true;
+        }
+        try {
+            return AppointmentDAO.hasConflict(customerId, contactId, start.getValue(), end.getValue(), 0);
+        }
+        catch (SQLException e) {
+            if (!DBConnection.isConnectionFailure(e)) {
+                throw e;
             }
+            // Offline, so the index is all there is to go on. The offline journal checks again when it synchronizes.
+            return false;
+        }
+    }
+
+    /**
+     * Handler called when the "Find Times" button is clicked. Lists the earliest times over the next two weeks at
+     * which the chosen contact, the other attending contacts, the customer and the user are all free.
+     *
+     * @param event The click event.
+     */
+    public void onFindTimesButtonClicked(ActionEvent event) {
+        Set<Integer> contactIds = new LinkedHashSet<>();
+        if (appointmentContactBox.getValue() != null) {
+            contactIds.add(appointmentContactBox.getValue().getContactId());
+        }
+        for (Contact contact : attendeeList.getSelectionModel().getSelectedItems()) {
+            contactIds.add(contact.getContactId());
         }
-        return false;
+        if (contactIds.isEmpty()) {
+            Alert missingContactAlert = new Alert(Alert.AlertType.WARNING);
+            missingContactAlert.setTitle("Warning");
+            missingContactAlert.setHeaderText("No contacts are attending.");
+            missingContactAlert.setContentText("Please choose a contact to continue.");
+            missingContactAlert.showAndWait();
+            return;
+        }
+        Set<Integer> customerIds = appointmentCustomerBox.getValue() == null ? Collections.emptySet()
+                : Collections.singleton(appointmentCustomerBox.getValue().getCustomerId().getValue());
+        Set<Integer> userIds = appointmentUserBox.getValue() == null ? Collections.emptySet()
+                : Collections.singleton(appointmentUserBox.getValue().getUserId());
+        Duration duration = Duration.ofMinutes(durationBox.getValue() == null ? 60 : durationBox.getValue());
+
+        LocalDate today = LocalDate.now(TimeZone.userZoneId);
+        LocalDate from = appointmentDatePicker.getValue() == null || appointmentDatePicker.getValue().isBefore(today)
+                ? today : appointmentDatePicker.getValue();
+        LocalDate to = from.plusDays(suggestionDays - 1);
+
+        findTimesButton.setDisable(true);
+        progressIndicator.setVisible(true);
+        AsyncDAO.onFxThread(AsyncDAO.supply(() -> CommonAvailability.findCommonWindows(contactIds, customerIds, userIds,
+                        duration, from, to, suggestionCount)),
+                windows -> {
+                    findTimesButton.setDisable(false);
+                    progressIndicator.setVisible(false);
+                    suggestionList.setItems(FXCollections.observableArrayList(windows));
+                },
+                error -> {
+                    findTimesButton.setDisable(false);
+                    progressIndicator.setVisible(false);
+                    error.printStackTrace();
+                });
+    }
+
+    /**
+     * Fills in the date and times of a suggested window.
+     *
+     * @param window The window chosen from the suggestions, or null if the selection was cleared.
+     */
+    private void applySuggestion(CommonAvailability.Window window) {
+        if (window == null) {
+            return;
+        }
+        // Setting the date refreshes the offered times, which keeps the chosen start and end if they are still free.
+        appointmentStartBox.setValue(window.getStart().toLocalTime());
+        appointmentEndBox.setValue(window.getEnd().toLocalTime());
+        appointmentDatePicker.setValue(window.getStart().toLocalDate());
+        refreshTimes();
+    }
+
+    /**
+     * Offers only the start times at which the chosen contact and customer are both free during business hours. The
+     * free slots come from the in-memory appointment index, so nothing is queried once it is loaded.
+     */
+    private void refreshTimes() {
+        LocalDate day = appointmentDatePicker.getValue();
+        if (day == null) {
+            return;
+        }
+        Contact contact = appointmentContactBox.getValue();
+        Customer customer = appointmentCustomerBox.getValue();
+        int contactId = contact == null ? 0 : contact.getContactId();
+        int customerId = customer == null ? 0 : customer.getCustomerId().getValue();
+
+        // Only the latest request is shown, in case an earlier one finishes after it.
+        int request = ++timesRequest;
+        AsyncDAO.onFxThread(AsyncDAO.supply(() -> SlotAvailability.getBookableSlots(day, contactId, customerId, 0)),
+                bookable -> {
+                    if (request != timesRequest) {
+                        return;
+                    }
+                    bookableSlots = bookable;
+                    LocalTime start = appointmentStartBox.getValue();
+                    List<LocalTime> startTimes = SlotAvailability.getStartTimes(bookable);
+                    appointmentStartBox.setItems(FXCollections.observableArrayList(startTimes));
+                    appointmentStartBox.setValue(startTimes.contains(start) ? start : null);
+                    refreshEndTimes();
+                },
+                Throwable::printStackTrace);
+    }
+
+    /**
+     * Offers only the end times that keep the appointment within free slots after the chosen start time.
+     */
+    private void refreshEndTimes() {
+        LocalTime start = appointmentStartBox.getValue();
+        if (bookableSlots == null || start == null) {
+            appointmentEndBox.setItems(FXCollections.observableArrayList());
+            appointmentEndBox.setValue(null);
+            return;
+        }
+        LocalTime end = appointmentEndBox.getValue();
+        List<LocalTime> endTimes = SlotAvailability.getEndTimes(bookableSlots, start);
+        appointmentEndBox.setItems(FXCollections.observableArrayList(endTimes));
+        appointmentEndBox.setValue(endTimes.contains(end) ? end : null);
     }
 
     /**
@@ -298,16 +439,59 @@ public class AddAppointmentController implements Initializable {
      */
     @Override
     public void initialize(URL url, ResourceBundle resourceBundle) {
-        populateContacts();
-        appointmentContactBox.setItems(allContacts);
-        populateCustomers();
-        appointmentCustomerBox.setItems(allCustomers);
         populateTimes();
         appointmentStartBox.setItems(allTimes);
         appointmentEndBox.setItems(allTimes);
         populateTypes();
         appointmentTypeBox.setItems(allTypes);
-        populateUsers();
-        appointmentUserBox.setItems(allUsers);
+        durationBox.setItems(FXCollections.observableArrayList(15, 30, 45, 60, 90, 120, 180, 240));
+        durationBox.setValue(60);
+        attendeeList.getSelectionModel().setSelectionMode(SelectionMode.MULTIPLE);
+        suggestionList.getSelectionModel().selectedItemProperty().addListener((observable, oldWindow, window) -> applySuggestion(window));
+
+        // The database-backed lists are filled in the background and only handed to the ComboBoxes once complete.
+        addButton.setDisable(true);
+        progressIndicator.setVisible(true);
+        AsyncDAO.onFxThread(AsyncDAO.run(() -> {
+                    populateContacts();
+                    populateCustomers();
+                    populateUsers();
+                }),
+                loaded -> {
+                    progressIndicator.setVisible(false);
+                    addButton.setDisable(false);
+                    appointmentContactBox.setItems(allContacts);
+                    attendeeList.setItems(allContacts);
+                    appointmentCustomerBox.setItems(allCustomers);
+                    appointmentUserBox.setItems(allUsers);
+                    selectSessionUser();
+
+                    // Once the lists are in place, only bookable times are offered for the chosen day, contact and customer.
+                    appointmentDatePicker.setOnAction(event -> refreshTimes());
+                    appointmentContactBox.setOnAction(event -> refreshTimes());
+                    appointmentCustomerBox.setOnAction(event -> refreshTimes());
+                    appointmentStartBox.setOnAction(event -> refreshEndTimes());
+                    refreshTimes();
+                },
+                error -> {
+                    progressIndicator.setVisible(false);
+                    error.printStackTrace();
+                });
+    }
+
+    /**
+     * Chooses the logged-in user in the user box, since appointments are usually made by the person entering them.
+     */
+    private void selectSessionUser() {
+        Session session = Session.getCurrent();
+        if (session == null) {
+            return;
+        }
+        for (User user : allUsers) {
+            if (user.getUserId() == session.getUserId()) {
+                appointmentUserBox.getSelectionModel().select(user);
+                return;
+            }
+        }
     }
 }
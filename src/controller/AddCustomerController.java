@@ -1,8 +1,8 @@
 package controller;
 
+import DAO.AsyncDAO;
 import DAO.CustomerDAO;
-import DAO.DBConnection;
-import DAO.Query;
+import DAO.ReferenceData;
 import javafx.beans.property.ReadOnlyObjectWrapper;
 import javafx.beans.value.ObservableValue;
 import javafx.collections.FXCollections;
@@ -22,9 +22,6 @@ import model.FirstLevelDivision;
 import util.FormValidator;
 
 import java.net.URL;
-import java.sql.Connection;
-import java.sql.PreparedStatement;
-import java.sql.ResultSet;
 import java.sql.SQLException;
 import java.util.HashSet;
 import java.util.Objects;
@@ -46,6 +43,7 @@ public class AddCustomerController implements Initializable {
     @FXML private ComboBox<Country> countryComboBox;
     @FXML private Button addButton;
     @FXML private Button cancelButton;
+    @FXML private ProgressIndicator progressIndicator;
 
     private ObservableList<Country> allCountries = FXCollections.observableArrayList();
     private ObservableList<FirstLevelDivision> firstLevelDivisionsUS = FXCollections.observableArrayList();
@@ -83,14 +81,28 @@ public class AddCustomerController implements Initializable {
                 FirstLevelDivision fld = stateComboBox.getValue();
 
                 Customer newCustomer = new Customer(name, address, postalCode, phone, new ReadOnlyObjectWrapper<>(fld.getDivisionId()));
-                CustomerDAO.createCustomer(newCustomer);
-
-                Parent CustomerParent = FXMLLoader.load(Objects.requireNonNull(getClass().getResource("/view/CustomersView.fxml")));
-                Scene CustomerScene = new Scene(CustomerParent);
                 Stage CustomerWindow = (Stage) ((Node) event.getSource()).getScene().getWindow();
 
-                CustomerWindow.setScene(CustomerScene);
-                CustomerWindow.show();
+                addButton.setDisable(true);
+                progressIndicator.setVisible(true);
+                AsyncDAO.onFxThread(AsyncDAO.supply(() -> CustomerDAO.createCustomer(newCustomer)),
+                        created -> {
+                            try {
+                                Parent CustomerParent = FXMLLoader.load(Objects.requireNonNull(getClass().getResource("/view/CustomersView.fxml")));
+                                Scene CustomerScene = new Scene(CustomerParent);
+
+                                CustomerWindow.setScene(CustomerScene);
+                                CustomerWindow.show();
+                            }
+                            catch (Exception e) {
+                                e.printStackTrace();
+                            }
+                        },
+                        error -> {
+                            addButton.setDisable(false);
+                            progressIndicator.setVisible(false);
+                            error.printStackTrace();
+                        });
             }
         }
         catch (Exception e) {
@@ -137,19 +149,7 @@ public class AddCustomerController implements Initializable {
      */
     public void populateAllCountries() {
         try {
-            Connection conn = DBConnection.getConnection();
-            String sqlStatement = "SELECT * FROM countries";
-            Query.setPreparedStatement(conn, sqlStatement);
-            PreparedStatement ps = Query.getPreparedStatement();
-
-            ResultSet rs = ps.executeQuery(sqlStatement);
-
-            while (rs.next()) {
-                int countryId = rs.getInt("Country_ID");
-                String countryName = rs.getString("Country");
-                Country country = new Country(countryId, countryName);
-                allCountries.add(country);
-            }
+            allCountries.setAll(ReferenceData.getCountries());
         }
         catch (SQLException e) {
             System.out.println(e.getMessage());
@@ -179,50 +179,12 @@ public class AddCustomerController implements Initializable {
      */
     public void populateFLDs() {
         try {
-            Connection conn = DBConnection.getConnection();
-            String sqlStatement = "SELECT * FROM first_level_divisions WHERE COUNTRY_ID = ?";
-            Query.setPreparedStatement(conn, sqlStatement);
-            PreparedStatement ps = Query.getPreparedStatement();
-
-            //Populate US FLD list
-            ps.setInt(1, 1);
-            ResultSet rs = ps.executeQuery();
-
-            while (rs.next()) {
-                int divisionId = rs.getInt("Division_ID");
-                String divisionName = rs.getString("Division");
-                int countryId = rs.getInt("COUNTRY_ID");
-                FirstLevelDivision fld = new FirstLevelDivision(divisionId, divisionName, countryId);
-                firstLevelDivisionsUS.add(fld);
-            }
-
-            //Populate UK FLD list
-            ps.setInt(1, 2);
-            rs = ps.executeQuery();
-
-            while (rs.next()) {
-                int divisionId = rs.getInt("Division_ID");
-                String divisionName = rs.getString("Division");
-                int countryId = rs.getInt("COUNTRY_ID");
-                FirstLevelDivision fld = new FirstLevelDivision(divisionId, divisionName, countryId);
-                firstLevelDivisionsCanada.add(fld);
-            }
-
-            //Populate Canada FLD list
-            ps.setInt(1, 3);
-            rs = ps.executeQuery();
-
-            while (rs.next()) {
-                int divisionId = rs.getInt("Division_ID");
-                String divisionName = rs.getString("Division");
-                int countryId = rs.getInt("COUNTRY_ID");
-                FirstLevelDivision fld = new FirstLevelDivision(divisionId, divisionName, countryId);
-                firstLevelDivisionsUK.add(fld);
-            }
-
+            firstLevelDivisionsUS.setAll(ReferenceData.getDivisions(1));
+            firstLevelDivisionsCanada.setAll(ReferenceData.getDivisions(2));
+            firstLevelDivisionsUK.setAll(ReferenceData.getDivisions(3));
         }
         catch (SQLException e) {
-            e.getStackTrace();
+            e.printStackTrace();
         }
     }
 
@@ -234,8 +196,19 @@ public class AddCustomerController implements Initializable {
      */
     @Override
     public void initialize(URL url, ResourceBundle resourceBundle) {
-        populateAllCountries();
-        countryComboBox.setItems(allCountries);
-        populateFLDs();
+        // The lists are filled in the background and only handed to the ComboBoxes once they are complete.
+        progressIndicator.setVisible(true);
+        AsyncDAO.onFxThread(AsyncDAO.run(() -> {
+                    populateAllCountries();
+                    populateFLDs();
+                }),
+                loaded -> {
+                    progressIndicator.setVisible(false);
+                    countryComboBox.setItems(allCountries);
+                },
+                error -> {
+                    progressIndicator.setVisible(false);
+                    error.printStackTrace();
+                });
     }
 }
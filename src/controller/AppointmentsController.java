@@ -1,9 +1,11 @@
 package controller;
 
 import DAO.AppointmentDAO;
+import DAO.AsyncDAO;
+import DAO.DBConnection;
 import javafx.beans.property.ReadOnlyObjectWrapper;
+import javafx.beans.value.ObservableValue;
 import javafx.collections.ObservableList;
-import javafx.collections.transformation.FilteredList;
 import javafx.event.ActionEvent;
 import javafx.fxml.FXML;
 import javafx.fxml.FXMLLoader;
@@ -12,14 +14,23 @@ import javafx.scene.Node;
 import javafx.scene.Parent;
 import javafx.scene.Scene;
 import javafx.scene.control.*;
+import javafx.stage.FileChooser;
 import javafx.stage.Stage;
+import javafx.util.Callback;
 import model.Appointment;
+import util.AppointmentImporter;
+import util.PagedAppointmentList;
 import util.TimeZone;
 
+import java.io.File;
 import java.net.URL;
-import java.time.LocalDateTime;
+import java.sql.SQLException;
+import java.time.Instant;
+import java.time.temporal.ChronoUnit;
 import java.util.Objects;
 import java.util.ResourceBundle;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Function;
 
 /**
  *Controller for the Appointments screen.
@@ -41,48 +52,156 @@ public class AppointmentsController implements Initializable {
     @FXML private RadioButton weeklyRadioButton;
     @FXML private RadioButton monthlyRadioButton;
     @FXML private RadioButton allRadioButton;
+    @FXML private Button importAppointmentsButton;
     @FXML private Button addAppointmentButton;
     @FXML private Button editAppointmentButton;
     @FXML private Button deleteAppointmentButton;
     @FXML private Button cancelButton;
+    @FXML private ProgressIndicator progressIndicator;
 
-    private ObservableList<Appointment> allAppointments = AppointmentDAO.getAllAppointments();
+    private static final int pageSize = 100;
+    private static final int maxResidentPages = 10;
+
+    // Incremented for each load, so that a slow load finishing after a newer one doesn't overwrite the table.
+    private int loadGeneration = 0;
 
     /**
      * Handler called when the "Weekly" radio button is selected.
      */
     public void onWeeklyRadioButtonSelected() {
-        LocalDateTime now = LocalDateTime.now();
-        LocalDateTime nowPlusSeven = now.plusDays(7);
-        FilteredList<Appointment> weeklyAppointments = new FilteredList<>(allAppointments);
-        weeklyAppointments.setPredicate(row -> {
-            LocalDateTime rowStart = row.getStart().getValue().toLocalDateTime();
-
-            return rowStart.isAfter(now) && rowStart.isBefore(nowPlusSeven);
-        });
-        AppointmentsTable.setItems(weeklyAppointments);
+        Instant now = Instant.now();
+        showAppointmentsBetween(now, now.plus(7, ChronoUnit.DAYS));
     }
 
     /**
      * Handler called when the "Monthly" radio button is selected.
      */
     public void onMonthlyRadioButtonSelected() {
-        LocalDateTime now = LocalDateTime.now();
-        LocalDateTime nowPlusThirty = now.plusDays(30);
-        FilteredList<Appointment> monthlyAppointments = new FilteredList<>(allAppointments);
-        monthlyAppointments.setPredicate(row -> {
-            LocalDateTime rowStart = row.getStart().getValue().toLocalDateTime();
-
-            return rowStart.isAfter(now) && rowStart.isBefore(nowPlusThirty);
-        });
-        AppointmentsTable.setItems(monthlyAppointments);
+        Instant now = Instant.now();
+        showAppointmentsBetween(now, now.plus(30, ChronoUnit.DAYS));
+    }
+
+    /**
+     * Loads only the appointments starting within a time window and shows them in the table.
+     *
+     * @param from The start of the window.
+     * @param to The end of the window.
+     */
+    private void showAppointmentsBetween(Instant from, Instant to) {
+        showAppointments(AsyncDAO.supply(() -> AppointmentDAO.getAppointmentsBetween(from, to)));
     }
 
     /**
      * Handler called when the "All" radio button is selected.
      */
     public void onAllRadioButtonSelected() {
-        AppointmentsTable.setItems(allAppointments);
+        showAllAppointments();
+    }
+
+    /**
+     * Shows every appointment in the table, loading pages from the database as the table is scrolled. If the database
+     * can't be reached, the appointments already known are shown instead, including those changed offline.
+     */
+    private void showAllAppointments() {
+        showAppointments(AsyncDAO.supply(() -> {
+            try {
+                return (ObservableList<Appointment>) new PagedAppointmentList(pageSize, maxResidentPages);
+            }
+            catch (SQLException e) {
+                if (!DBConnection.isConnectionFailure(e)) {
+                    throw e;
+                }
+                return AppointmentDAO.getOfflineAppointments();
+            }
+        }));
+    }
+
+    /**
+     * Shows the progress indicator while appointments load in the background, then puts them in the table.
+     *
+     * @param appointments The background load.
+     */
+    private void showAppointments(CompletableFuture<? extends ObservableList<Appointment>> appointments) {
+        int generation = ++loadGeneration;
+        progressIndicator.setVisible(true);
+        AsyncDAO.onFxThread(appointments,
+                loaded -> {
+                    if (generation == loadGeneration) {
+                        progressIndicator.setVisible(false);
+                        AppointmentsTable.setItems(loaded);
+                    }
+                },
+                error -> {
+                    if (generation == loadGeneration) {
+                        progressIndicator.setVisible(false);
+                    }
+                    error.printStackTrace();
+                });
+    }
+
+    /**
+     * Reloads whichever view is selected.
+     */
+    private void refreshAppointments() {
+        if (allRadioButton.isSelected()) {
+            showAllAppointments();
+        }
+        else if (weeklyRadioButton.isSelected()) {
+            onWeeklyRadioButtonSelected();
+        }
+        else {
+            onMonthlyRadioButtonSelected();
+        }
+    }
+
+    /**
+     * Handler called when the "Import..." button is clicked. Imports the appointments in a CSV or iCalendar file in the
+     * background and then shows how many were imported and why any were rejected.
+     *
+     * @param event The click event, used to find the window to show the file picker over.
+     */
+    public void onImportAppointmentsButtonClicked(ActionEvent event) {
+        FileChooser chooser = new FileChooser();
+        chooser.setTitle("Import appointments");
+        chooser.getExtensionFilters().add(new FileChooser.ExtensionFilter("Calendars", "*.csv", "*.ics", "*.ical"));
+        File file = chooser.showOpenDialog(((Node) event.getSource()).getScene().getWindow());
+        if (file == null) {
+            return;
+        }
+
+        importAppointmentsButton.setDisable(true);
+        progressIndicator.setVisible(true);
+        AsyncDAO.onFxThread(AsyncDAO.supply(() -> AppointmentImporter.importFile(file.toPath(), AppointmentImporter.defaultChunkSize, null)),
+                result -> {
+                    importAppointmentsButton.setDisable(false);
+                    refreshAppointments();
+
+                    StringBuilder rejected = new StringBuilder();
+                    int shown = 0;
+                    for (AppointmentImporter.Rejection rejection : result.getRejections()) {
+                        if (shown++ == 20) {
+                            rejected.append("...and ").append(result.getRejections().size() - 20).append(" more\n");
+                            break;
+                        }
+                        rejected.append(rejection).append('\n');
+                    }
+
+                    Alert imported = new Alert(result.getRejections().isEmpty() ? Alert.AlertType.INFORMATION : Alert.AlertType.WARNING);
+                    imported.setTitle("Import complete");
+                    imported.setHeaderText(result.toString());
+                    imported.setContentText(rejected.toString());
+                    imported.showAndWait();
+                },
+                error -> {
+                    importAppointmentsButton.setDisable(false);
+                    progressIndicator.setVisible(false);
+                    error.printStackTrace();
+
+                    Alert failed = new Alert(Alert.AlertType.ERROR);
+                    failed.setTitle("Import failed");
+                    failed.setContentText(error.getMessage());
+                    failed.showAndWait();
+                });
     }
 
     /**
@@ -136,14 +255,25 @@ public class AppointmentsController implements Initializable {
         }
         else {
             Appointment appointmentToDelete = AppointmentsTable.getSelectionModel().getSelectedItem();
-            boolean appointmentDeleted = AppointmentDAO.deleteAppointment(appointmentToDelete.getAppointmentId().getValue());
-            if (appointmentDeleted) {
-                Alert deleteAlert = new Alert(Alert.AlertType.WARNING);
-                deleteAlert.setTitle("Success!");
-                deleteAlert.setContentText("Appointment " + appointmentToDelete.getAppointmentId().getValue() + " - " + appointmentToDelete.getType().getValue() + " successfully deleted");
-                deleteAlert.showAndWait();
-            }
-            AppointmentsTable.setItems(AppointmentDAO.getAllAppointments());
+            int appointmentId = appointmentToDelete.getAppointmentId();
+            deleteAppointmentButton.setDisable(true);
+            progressIndicator.setVisible(true);
+            AsyncDAO.onFxThread(AsyncDAO.supply(() -> AppointmentDAO.deleteAppointment(appointmentId)),
+                    appointmentDeleted -> {
+                        deleteAppointmentButton.setDisable(false);
+                        if (appointmentDeleted) {
+                            Alert deleteAlert = new Alert(Alert.AlertType.WARNING);
+                            deleteAlert.setTitle("Success!");
+                            deleteAlert.setContentText("Appointment " + appointmentId + " - " + appointmentToDelete.getType() + " successfully deleted");
+                            deleteAlert.showAndWait();
+                        }
+                        refreshAppointments();
+                    },
+                    error -> {
+                        deleteAppointmentButton.setDisable(false);
+                        progressIndicator.setVisible(false);
+                        error.printStackTrace();
+                    });
         }
     }
 
@@ -176,16 +306,28 @@ public class AppointmentsController implements Initializable {
     @Override
     public void initialize(URL url, ResourceBundle resourceBundle) {
         //Populate AppointmentsTable with Appointments
-        AppointmentsTable.setItems(allAppointments);
-        AppointmentsTableIdColumn.setCellValueFactory(cellData -> cellData.getValue().getAppointmentId());
-        AppointmentsTableTitleColumn.setCellValueFactory(cellData -> cellData.getValue().getTitle());
-        AppointmentsTableDescriptionColumn.setCellValueFactory(cellData -> cellData.getValue().getDescription());
-        AppointmentsTableLocationColumn.setCellValueFactory(cellData -> cellData.getValue().getLocation());
-        AppointmentsTableContactColumn.setCellValueFactory(cellData ->  cellData.getValue().getContactId());
-        AppointmentsTableTypeColumn.setCellValueFactory(cellData -> cellData.getValue().getType());
-        AppointmentsTableStartColumn.setCellValueFactory(cellData -> new ReadOnlyObjectWrapper<>(cellData.getValue().getStart().getValue().toLocalDateTime().format(TimeZone.dtf)));
-        AppointmentsTableEndColumn.setCellValueFactory(cellData -> new ReadOnlyObjectWrapper<>(cellData.getValue().getEnd().getValue().toLocalDateTime().format(TimeZone.dtf)));
-        AppointmentsTableCustomerIdColumn.setCellValueFactory(cellData -> cellData.getValue().getCustomerId());
-        AppointmentsTableUserIdColumn.setCellValueFactory(cellData -> cellData.getValue().getUserId());
+        showAllAppointments();
+        AppointmentsTableIdColumn.setCellValueFactory(ifLoaded(Appointment::appointmentIdProperty));
+        AppointmentsTableTitleColumn.setCellValueFactory(ifLoaded(Appointment::titleProperty));
+        AppointmentsTableDescriptionColumn.setCellValueFactory(ifLoaded(Appointment::descriptionProperty));
+        AppointmentsTableLocationColumn.setCellValueFactory(ifLoaded(Appointment::locationProperty));
+        AppointmentsTableContactColumn.setCellValueFactory(ifLoaded(Appointment::contactIdProperty));
+        AppointmentsTableTypeColumn.setCellValueFactory(ifLoaded(Appointment::typeProperty));
+        AppointmentsTableStartColumn.setCellValueFactory(ifLoaded(appointment -> new ReadOnlyObjectWrapper<>(appointment.getStart().toLocalDateTime().format(TimeZone.dtf))));
+        AppointmentsTableEndColumn.setCellValueFactory(ifLoaded(appointment -> new ReadOnlyObjectWrapper<>(appointment.getEnd().toLocalDateTime().format(TimeZone.dtf))));
+        AppointmentsTableCustomerIdColumn.setCellValueFactory(ifLoaded(Appointment::customerIdProperty));
+        AppointmentsTableUserIdColumn.setCellValueFactory(ifLoaded(Appointment::userIdProperty));
+    }
+
+    /**
+     * Creates a cell value factory that leaves the cell blank for rows whose page is still loading, which
+     * PagedAppointmentList returns as null.
+     *
+     * @param value Gets the cell's value from a loaded appointment.
+     * @param <T> The type of the cell's value.
+     * @return The cell value factory.
+     */
+    private static <T> Callback<TableColumn.CellDataFeatures<Appointment, T>, ObservableValue<T>> ifLoaded(Function<Appointment, ObservableValue<T>> value) {
+        return cellData -> cellData.getValue() == null ? null : value.apply(cellData.getValue());
     }
 }
@@ -1,5 +1,6 @@
 package controller;
 
+import DAO.AsyncDAO;
 import DAO.CustomerDAO;
 import javafx.event.ActionEvent;
 import javafx.fxml.FXML;
@@ -10,6 +11,7 @@ import javafx.scene.Parent;
 import javafx.scene.Scene;
 import javafx.scene.control.Alert;
 import javafx.scene.control.Button;
+import javafx.scene.control.ProgressIndicator;
 import javafx.scene.control.TableColumn;
 import javafx.scene.control.TableView;
 import javafx.stage.Stage;
@@ -35,6 +37,7 @@ public class CustomersController implements Initializable {
     @FXML private Button EditCustomerButton;
     @FXML private Button DeleteCustomerButton;
     @FXML private Button CancelButton;
+    @FXML private ProgressIndicator progressIndicator;
 
     /**
      * Handler called when the "Add" button is clicked.
@@ -94,17 +97,43 @@ public class CustomersController implements Initializable {
         }
         else {
             Customer customerToDelete = CustomersTable.getSelectionModel().getSelectedItem();
-            boolean customerDeleted = CustomerDAO.deleteCustomer(customerToDelete);
-            if (customerDeleted) {
-                Alert exitAlert = new Alert(Alert.AlertType.WARNING);
-                exitAlert.setTitle("Success!");
-                exitAlert.setContentText("Customer " + customerToDelete.getCustomerName().getValue() + " successfully deleted");
-                exitAlert.showAndWait();
-            }
-            CustomersTable.setItems(CustomerDAO.getAllCustomers());
+            DeleteCustomerButton.setDisable(true);
+            progressIndicator.setVisible(true);
+            AsyncDAO.onFxThread(AsyncDAO.supply(() -> CustomerDAO.deleteCustomer(customerToDelete)),
+                    customerDeleted -> {
+                        DeleteCustomerButton.setDisable(false);
+                        if (customerDeleted) {
+                            Alert exitAlert = new Alert(Alert.AlertType.WARNING);
+                            exitAlert.setTitle("Success!");
+                            exitAlert.setContentText("Customer " + customerToDelete.getCustomerName().getValue() + " successfully deleted");
+                            exitAlert.showAndWait();
+                        }
+                        loadCustomers();
+                    },
+                    error -> {
+                        DeleteCustomerButton.setDisable(false);
+                        progressIndicator.setVisible(false);
+                        error.printStackTrace();
+                    });
         }
     }
 
+    /**
+     * Loads every customer in the background and shows them in the table.
+     */
+    private void loadCustomers() {
+        progressIndicator.setVisible(true);
+        AsyncDAO.onFxThread(AsyncDAO.supply(CustomerDAO::getAllCustomers),
+                customers -> {
+                    progressIndicator.setVisible(false);
+                    CustomersTable.setItems(customers);
+                },
+                error -> {
+                    progressIndicator.setVisible(false);
+                    error.printStackTrace();
+                });
+    }
+
     /**
      * Handler called when the "Cancel" button is clicked.
      * @param event The click event used to trigger a change to the new scene.
@@ -132,7 +161,7 @@ public class CustomersController implements Initializable {
     @Override
     public void initialize(URL url, ResourceBundle resourceBundle) {
         //Populate CustomersTable with Customers
-        CustomersTable.setItems(CustomerDAO.getAllCustomers());
+        loadCustomers();
         CustomersTableIdColumn.setCellValueFactory(cellData -> {
             return cellData.getValue().getCustomerId();
         });
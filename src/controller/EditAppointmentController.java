@@ -1,8 +1,10 @@
 package controller;
 
 import DAO.AppointmentDAO;
+import DAO.AppointmentIndex;
+import DAO.AsyncDAO;
 import DAO.DBConnection;
-import DAO.Query;
+import DAO.ReferenceData;
 import javafx.beans.property.ReadOnlyObjectWrapper;
 import javafx.beans.value.ObservableValue;
 import javafx.collections.FXCollections;
@@ -15,8 +17,10 @@ import javafx.scene.Node;
 import javafx.scene.Parent;
 import javafx.scene.Scene;
 import javafx.scene.control.Alert;
+import javafx.scene.control.Button;
 import javafx.scene.control.ComboBox;
 import javafx.scene.control.DatePicker;
+import javafx.scene.control.ProgressIndicator;
 import javafx.scene.control.TextField;
 import javafx.stage.Stage;
 import model.Appointment;
@@ -24,19 +28,18 @@ import model.Contact;
 import model.Customer;
 import model.User;
 import util.FormValidator;
+import util.SlotAvailability;
 import util.TimeZone;
 
 import java.net.URL;
-import java.sql.Connection;
-import java.sql.PreparedStatement;
-import java.sql.ResultSet;
 import java.sql.SQLException;
 import java.time.LocalDate;
 import java.time.LocalDateTime;
 import java.time.LocalTime;
 import java.time.ZonedDateTime;
+import java.util.BitSet;
 import java.util.HashSet;
-import java.util.Objects;
+import java.util.List;
 import java.util.ResourceBundle;
 import java.util.Set;
 
@@ -56,12 +59,16 @@ public class EditAppointmentController implements Initializable {
     @FXML private ComboBox<LocalTime> appointmentEndBox;
     @FXML private ComboBox<Customer> appointmentCustomerBox;
     @FXML private ComboBox<User> appointmentUserBox;
+    @FXML private Button saveButton;
+    @FXML private ProgressIndicator progressIndicator;
 
     private ObservableList<Contact> allContacts = FXCollections.observableArrayList();
     private ObservableList<Customer> allCustomers = FXCollections.observableArrayList();
     private ObservableList<String> allTypes = FXCollections.observableArrayList();
     private ObservableList<User> allUsers = FXCollections.observableArrayList();
     private ObservableList<LocalTime> allTimes = FXCollections.observableArrayList();
+    private BitSet bookableSlots;
+    private int timesRequest;
 
     public static Appointment appointmentToEdit;
 
@@ -92,49 +99,54 @@ public class EditAppointmentController implements Initializable {
                 missingDataAlert.showAndWait();
             }
             else {
-                ObservableValue<Integer> appointmentId = new ReadOnlyObjectWrapper<>(Integer.parseInt(appointmentIdBox.getText()));
-                ObservableValue<String> title = new ReadOnlyObjectWrapper<>(appointmentTitleBox.getText());
-                ObservableValue<String> description = new ReadOnlyObjectWrapper<>(appointmentDescriptionBox.getText());
-                ObservableValue<String> location = new ReadOnlyObjectWrapper<>(appointmentLocationBox.getText());
-                ObservableValue<Integer> contactId = new ReadOnlyObjectWrapper<>(appointmentContactBox.getSelectionModel().getSelectedItem().getContactId());
-                ObservableValue<String> type = new ReadOnlyObjectWrapper<>(appointmentTypeBox.getSelectionModel().getSelectedItem());
+                int appointmentId = Integer.parseInt(appointmentIdBox.getText());
+                String title = appointmentTitleBox.getText();
+                String description = appointmentDescriptionBox.getText();
+                String location = appointmentLocationBox.getText();
+                int contactId = appointmentContactBox.getSelectionModel().getSelectedItem().getContactId();
+                String type = appointmentTypeBox.getSelectionModel().getSelectedItem();
                 LocalDate appointmentDate = appointmentDatePicker.getValue();
                 LocalTime startTime = appointmentStartBox.getSelectionModel().getSelectedItem();
                 LocalTime endTime = appointmentEndBox.getSelectionModel().getSelectedItem();
-                ObservableValue<Integer> customer = new ReadOnlyObjectWrapper<>(appointmentCustomerBox.getSelectionModel().getSelectedItem().getCustomerId().getValue());
-                ObservableValue<Integer> user = new ReadOnlyObjectWrapper<>(appointmentUserBox.getSelectionModel().getSelectedItem().getUserId());
+                int customer = appointmentCustomerBox.getSelectionModel().getSelectedItem().getCustomerId().getValue();
+                int user = appointmentUserBox.getSelectionModel().getSelectedItem().getUserId();
                 LocalDateTime start = LocalDateTime.of(appointmentDate, startTime);
                 LocalDateTime end = LocalDateTime.of(appointmentDate, endTime);
                 ObservableValue<ZonedDateTime> zonedStart = new ReadOnlyObjectWrapper<>(ZonedDateTime.of(start, TimeZone.userZoneId));
                 ObservableValue<ZonedDateTime> zonedEnd = new ReadOnlyObjectWrapper<>(ZonedDateTime.of(end, TimeZone.userZoneId));
 
-                boolean overlappingAppointment = isOverlappingAppointment(appointmentId, zonedStart, zonedEnd);
-                if (!overlappingAppointment) {
-                    if (TimeZone.validateAppointmentAgainstEST(zonedStart, zonedEnd)) {
-
-                        Appointment newAppointment = new Appointment(appointmentId, title, description, location, type, zonedStart, zonedEnd, customer, user, contactId);
-                        AppointmentDAO.updateAppointment(newAppointment);
-
-                        Parent AppointmentParent = FXMLLoader.load(getClass().getResource("/view/AppointmentsView.fxml"));
-                        Scene AppointmentScene = new Scene(AppointmentParent);
-                        Stage AppointmentWindow = (Stage) ((Node) event.getSource()).getScene().getWindow();
-
-                        AppointmentWindow.setScene(AppointmentScene);
-                        AppointmentWindow.show();
-                    } else {
-                        Alert businessHoursAlert = new Alert(Alert.AlertType.WARNING);
-                        businessHoursAlert.setTitle("Warning");
-                        businessHoursAlert.setHeaderText("Appointment start/end time are outside business hours.");
-                        businessHoursAlert.setContentText("Please change start/end time to continue.");
-                        businessHoursAlert.showAndWait();
-                    }
-                } else {
-                    Alert appointmentOverlapAlert = new Alert(Alert.AlertType.WARNING);
-                    appointmentOverlapAlert.setTitle("Warning");
-                    appointmentOverlapAlert.setHeaderText("Appointment overlaps with a previously-scheduled appointment.");
-                    appointmentOverlapAlert.setContentText("Please change start/end time to continue.");
-                    appointmentOverlapAlert.showAndWait();
-                }
+                Stage AppointmentWindow = (Stage) ((Node) event.getSource()).getScene().getWindow();
+
+                saveButton.setDisable(true);
+                progressIndicator.setVisible(true);
+                AsyncDAO.onFxThread(AsyncDAO.supply(() -> isOverlappingAppointment(appointmentId, contactId, customer, zonedStart, zonedEnd)),
+                        overlappingAppointment -> {
+                            if (!overlappingAppointment) {
+                                if (TimeZone.validateAppointmentAgainstEST(zonedStart, zonedEnd)) {
+
+                                    Appointment newAppointment = new Appointment(appointmentId, title, description, location, type, zonedStart.getValue(), zonedEnd.getValue(), customer, user, contactId);
+                                    AsyncDAO.onFxThread(AsyncDAO.run(() -> AppointmentDAO.updateAppointment(newAppointment)),
+                                            updated -> showAppointments(AppointmentWindow),
+                                            this::onSaveFailed);
+                                    return;
+                                } else {
+                                    Alert businessHoursAlert = new Alert(Alert.AlertType.WARNING);
+                                    businessHoursAlert.setTitle("Warning");
+                                    businessHoursAlert.setHeaderText("Appointment start/end time are outside business hours.");
+                                    businessHoursAlert.setContentText("Please change start/end time to continue.");
+                                    businessHoursAlert.showAndWait();
+                                }
+                            } else {
+                                Alert appointmentOverlapAlert = new Alert(Alert.AlertType.WARNING);
+                                appointmentOverlapAlert.setTitle("Warning");
+                                appointmentOverlapAlert.setHeaderText("Appointment overlaps with a previously-scheduled appointment.");
+                                appointmentOverlapAlert.setContentText("Please change start/end time to continue.");
+                                appointmentOverlapAlert.showAndWait();
+                            }
+                            saveButton.setDisable(false);
+                            progressIndicator.setVisible(false);
+                        },
+                        this::onSaveFailed);
             }
         }
         catch (Exception e) {
@@ -143,6 +155,35 @@ public class EditAppointmentController implements Initializable {
 
     }
 
+    /**
+     * Returns to the Appointments screen once the edited appointment is saved.
+     *
+     * @param AppointmentWindow The window to show the Appointments screen in.
+     */
+    private void showAppointments(Stage AppointmentWindow) {
+        try {
+            Parent AppointmentParent = FXMLLoader.load(getClass().getResource("/view/AppointmentsView.fxml"));
+            Scene AppointmentScene = new Scene(AppointmentParent);
+
+            AppointmentWindow.setScene(AppointmentScene);
+            AppointmentWindow.show();
+        }
+        catch (Exception e) {
+            e.printStackTrace();
+        }
+    }
+
+    /**
+     * Lets the user try again after the background overlap check or save fails.
+     *
+     * @param error The exception thrown by the DAO call.
+     */
+    private void onSaveFailed(Throwable error) {
+        saveButton.setDisable(false);
+        progressIndicator.setVisible(false);
+        error.printStackTrace();
+    }
+
     /**
      * Handler called when the "Cancel" button is clicked.
      * @param event The click event used to trigger a change to the new scene.
@@ -162,20 +203,7 @@ public class EditAppointmentController implements Initializable {
      */
     public void populateContacts() {
         try {
-            Connection conn = DBConnection.getConnection();
-            String sqlStatement = "SELECT * FROM contacts";
-            Query.setPreparedStatement(conn, sqlStatement);
-            PreparedStatement ps = Query.getPreparedStatement();
-
-            ResultSet rs = ps.executeQuery(sqlStatement);
-
-            while (rs.next()) {
-                int contactId = rs.getInt("Contact_ID");
-                String contactName = rs.getString("Contact_Name");
-                String email = rs.getString("Email");
-                Contact contact = new Contact(contactId, contactName, email);
-                allContacts.add(contact);
-            }
+            allContacts.setAll(ReferenceData.getContacts());
         } catch (SQLException e) {
             System.out.println(e.getMessage());
         }
@@ -186,23 +214,7 @@ public class EditAppointmentController implements Initializable {
      */
     public void populateCustomers() {
         try {
-            Connection conn = DBConnection.getConnection();
-            String sqlStatement = "SELECT * FROM customers";
-            Query.setPreparedStatement(conn, sqlStatement);
-            PreparedStatement ps = Query.getPreparedStatement();
-
-            ResultSet rs = ps.executeQuery(sqlStatement);
-
-            while (rs.next()) {
-                ObservableValue<Integer> customerId = new ReadOnlyObjectWrapper<>(rs.getInt("Customer_ID"));
-                ObservableValue<String> customerName = new ReadOnlyObjectWrapper<>(rs.getString("Customer_Name"));
-                ObservableValue<String> address = new ReadOnlyObjectWrapper<>(rs.getString("Address"));
-                ObservableValue<String> postalCode = new ReadOnlyObjectWrapper<>(rs.getString("Postal_Code"));
-                ObservableValue<String> phone = new ReadOnlyObjectWrapper<>(rs.getString("Phone"));
-                ObservableValue<Integer> divisionId = new ReadOnlyObjectWrapper<>(rs.getInt("Division_ID"));
-                Customer customer = new Customer(customerId, customerName, address, postalCode, phone, divisionId);
-                allCustomers.add(customer);
-            }
+            allCustomers.setAll(ReferenceData.getCustomers());
         } catch (SQLException e) {
             System.out.println(e.getMessage());
         }
@@ -237,49 +249,87 @@ public class EditAppointmentController implements Initializable {
      */
     public void populateUsers() {
         try {
-            Connection conn = DBConnection.getConnection();
-            String sqlStatement = "SELECT * FROM users";
-            Query.setPreparedStatement(conn, sqlStatement);
-            PreparedStatement ps = Query.getPreparedStatement();
-
-            ResultSet rs = ps.executeQuery(sqlStatement);
-
-            while (rs.next()) {
-                int userId = rs.getInt("User_ID");
-                String userName = rs.getString("User_Name");
-                User user = new User(userId, userName);
-                allUsers.add(user);
-            }
+            allUsers.setAll(ReferenceData.getUsers());
         } catch (SQLException e) {
             System.out.println(e.getMessage());
         }
     }
 
     /**
-     * Checks to see if the appointment a user has attempted to create overlaps with an appointment already scheduled.
+     * Checks to see if the edited appointment overlaps with another appointment already scheduled with the same
+     * contact or the same customer. The appointment being edited is ignored.
      *
+     * @param oldAppointmentId The ID of the appointment being edited.
+     * @param contactId The ID of the contact attending the appointment.
+     * @param customerId The ID of the customer with whom the appointment is scheduled.
      * @param start Start time of the user appointment.
      * @param end End time of the user appointment.
      * @return Boolean, with true representing an appointment that overlaps, and false representing an appointment
      *  that does not overlap.
+     * @throws SQLException An exception related to the database query.
      */
-    public boolean isOverlappingAppointment(ObservableValue<Integer> oldAppointmentId, ObservableValue<ZonedDateTime> start, ObservableValue<ZonedDateTime> end) {
-        for (Appointment appointment : Objects.requireNonNull(AppointmentDAO.getAllAppointments())) {
-            if (appointment.getAppointmentId().getValue() == oldAppointmentId.getValue()) {
-                return false;
-            }
-            else {
-                // Yikes. Clean this up
-                if (start.getValue().toLocalDateTime().isAfter(appointment.getStart().getValue().toLocalDateTime()) &&
-                        (start.getValue().toLocalDateTime().isBefore(appointment.getEnd().getValue().toLocalDateTime()))) {
-                    return true;
-                } else if (end.getValue().toLocalDateTime().isAfter(appointment.getStart().getValue().toLocalDateTime()) &&
-                        end.getValue().toLocalDateTime().isBefore(appointment.getEnd().getValue().toLocalDateTime())) {
-                    return true;
-                }
+    public boolean isOverlappingAppointment(int oldAppointmentId, int contactId, int customerId, ObservableValue<ZonedDateTime> start, ObservableValue<ZonedDateTime> end) throws SQLException {
+        // The in-memory index rules out most conflicts cheaply; the database check catches bookings made elsewhere.
+        if (AppointmentIndex.hasOverlap(contactId, customerId, start.getValue().toEpochSecond(), end.getValue().toEpochSecond(), oldAppointmentId)) {
+            return true;
+        }
+        try {
+            return AppointmentDAO.hasConflict(customerId, contactId, start.getValue(), end.getValue(), oldAppointmentId);
+        }
+        catch (SQLException e) {
+            if (!DBConnection.isConnectionFailure(e)) {
+                throw e;
             }
+            // Offline, so the index is all there is to go on. The offline journal checks again when it synchronizes.
+            return false;
         }
-        return false;
+    }
+
+    /**
+     * Offers only the start times at which the chosen contact and customer are both free during business hours. The
+     * free slots come from the in-memory appointment index, so nothing is queried once it is loaded.
+     */
+    private void refreshTimes() {
+        LocalDate day = appointmentDatePicker.getValue();
+        if (day == null) {
+            return;
+        }
+        Contact contact = appointmentContactBox.getValue();
+        Customer customer = appointmentCustomerBox.getValue();
+        int contactId = contact == null ? 0 : contact.getContactId();
+        int customerId = customer == null ? 0 : customer.getCustomerId().getValue();
+
+        // Only the latest request is shown, in case an earlier one finishes after it.
+        int request = ++timesRequest;
+        AsyncDAO.onFxThread(AsyncDAO.supply(() -> SlotAvailability.getBookableSlots(day, contactId, customerId, appointmentToEdit.getAppointmentId())),
+                bookable -> {
+                    if (request != timesRequest) {
+                        return;
+                    }
+                    bookableSlots = bookable;
+                    LocalTime start = appointmentStartBox.getValue();
+                    List<LocalTime> startTimes = SlotAvailability.getStartTimes(bookable);
+                    appointmentStartBox.setItems(FXCollections.observableArrayList(startTimes));
+                    appointmentStartBox.setValue(startTimes.contains(start) ? start : null);
+                    refreshEndTimes();
+                },
+                Throwable::printStackTrace);
+    }
+
+    /**
+     * Offers only the end times that keep the appointment within free slots after the chosen start time.
+     */
+    private void refreshEndTimes() {
+        LocalTime start = appointmentStartBox.getValue();
+        if (bookableSlots == null || start == null) {
+            appointmentEndBox.setItems(FXCollections.observableArrayList());
+            appointmentEndBox.setValue(null);
+            return;
+        }
+        LocalTime end = appointmentEndBox.getValue();
+        List<LocalTime> endTimes = SlotAvailability.getEndTimes(bookableSlots, start);
+        appointmentEndBox.setItems(FXCollections.observableArrayList(endTimes));
+        appointmentEndBox.setValue(endTimes.contains(end) ? end : null);
     }
 
     /**
@@ -291,30 +341,52 @@ public class EditAppointmentController implements Initializable {
     @Override
     public void initialize(URL url, ResourceBundle resourceBundle) {
         //Populate various choice boxes on the form
-        populateContacts();
-        appointmentContactBox.setItems(allContacts);
-        populateCustomers();
-        appointmentCustomerBox.setItems(allCustomers);
         populateTimes();
         appointmentStartBox.setItems(allTimes);
         appointmentEndBox.setItems(allTimes);
         populateTypes();
         appointmentTypeBox.setItems(allTypes);
-        populateUsers();
-        appointmentUserBox.setItems(allUsers);
 
         //Set default values for fields and boxes
-        //Subtracting 1 from some fields accounts for the 1-based indexing in the database
-        appointmentIdBox.setText(appointmentToEdit.getAppointmentId().getValue().toString());
-        appointmentTitleBox.setText(appointmentToEdit.getTitle().getValue());
-        appointmentDescriptionBox.setText(appointmentToEdit.getDescription().getValue());
-        appointmentLocationBox.setText(appointmentToEdit.getLocation().getValue());
-        appointmentContactBox.getSelectionModel().select(appointmentToEdit.getContactId().getValue() - 1);
-        appointmentTypeBox.getSelectionModel().select(appointmentToEdit.getType().getValue());
-        appointmentDatePicker.setValue(appointmentToEdit.getStart().getValue().toLocalDate());
-        appointmentStartBox.getSelectionModel().select(appointmentToEdit.getStart().getValue().toLocalTime());
-        appointmentEndBox.getSelectionModel().select(appointmentToEdit.getEnd().getValue().toLocalTime());
-        appointmentCustomerBox.getSelectionModel().select(appointmentToEdit.getCustomerId().getValue() - 1);
-        appointmentUserBox.getSelectionModel().select(appointmentToEdit.getUserId().getValue() - 1);
+        appointmentIdBox.setText(Integer.toString(appointmentToEdit.getAppointmentId()));
+        appointmentTitleBox.setText(appointmentToEdit.getTitle());
+        appointmentDescriptionBox.setText(appointmentToEdit.getDescription());
+        appointmentLocationBox.setText(appointmentToEdit.getLocation());
+        appointmentTypeBox.getSelectionModel().select(appointmentToEdit.getType());
+        appointmentDatePicker.setValue(appointmentToEdit.getStart().toLocalDate());
+        appointmentStartBox.getSelectionModel().select(appointmentToEdit.getStart().toLocalTime());
+        appointmentEndBox.getSelectionModel().select(appointmentToEdit.getEnd().toLocalTime());
+
+        // The database-backed lists are filled in the background and only handed to the ComboBoxes once complete.
+        saveButton.setDisable(true);
+        progressIndicator.setVisible(true);
+        AsyncDAO.onFxThread(AsyncDAO.run(() -> {
+                    populateContacts();
+                    populateCustomers();
+                    populateUsers();
+                }),
+                loaded -> {
+                    progressIndicator.setVisible(false);
+                    saveButton.setDisable(false);
+                    appointmentContactBox.setItems(allContacts);
+                    appointmentCustomerBox.setItems(allCustomers);
+                    appointmentUserBox.setItems(allUsers);
+
+                    //Subtracting 1 from some fields accounts for the 1-based indexing in the database
+                    appointmentContactBox.getSelectionModel().select(appointmentToEdit.getContactId() - 1);
+                    appointmentCustomerBox.getSelectionModel().select(appointmentToEdit.getCustomerId() - 1);
+                    appointmentUserBox.getSelectionModel().select(appointmentToEdit.getUserId() - 1);
+
+                    // Once the lists are in place, only bookable times are offered for the chosen day, contact and customer.
+                    appointmentDatePicker.setOnAction(event -> refreshTimes());
+                    appointmentContactBox.setOnAction(event -> refreshTimes());
+                    appointmentCustomerBox.setOnAction(event -> refreshTimes());
+                    appointmentStartBox.setOnAction(event -> refreshEndTimes());
+                    refreshTimes();
+                },
+                error -> {
+                    progressIndicator.setVisible(false);
+                    error.printStackTrace();
+                });
     }
 }
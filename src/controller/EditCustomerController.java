@@ -1,8 +1,8 @@
 package controller;
 
+import DAO.AsyncDAO;
 import DAO.CustomerDAO;
-import DAO.DBConnection;
-import DAO.Query;
+import DAO.ReferenceData;
 import javafx.beans.property.ReadOnlyObjectWrapper;
 import javafx.beans.value.ChangeListener;
 import javafx.beans.value.ObservableValue;
@@ -18,6 +18,7 @@ import javafx.scene.Scene;
 import javafx.scene.control.Alert;
 import javafx.scene.control.Button;
 import javafx.scene.control.ComboBox;
+import javafx.scene.control.ProgressIndicator;
 import javafx.scene.control.TextField;
 import javafx.stage.Stage;
 import model.Country;
@@ -26,9 +27,6 @@ import model.FirstLevelDivision;
 import util.FormValidator;
 
 import java.net.URL;
-import java.sql.Connection;
-import java.sql.PreparedStatement;
-import java.sql.ResultSet;
 import java.sql.SQLException;
 import java.util.HashSet;
 import java.util.Objects;
@@ -49,6 +47,8 @@ public class EditCustomerController implements Initializable {
     @FXML private ComboBox<Country> countryComboBox;
     @FXML private Button addButton;
     @FXML private Button cancelButton;
+    @FXML private Button saveButton;
+    @FXML private ProgressIndicator progressIndicator;
 
     private ObservableList<Country> allCountries = FXCollections.observableArrayList();
     private ObservableList<FirstLevelDivision> firstLevelDivisionsUS = FXCollections.observableArrayList();
@@ -61,9 +61,10 @@ public class EditCustomerController implements Initializable {
     public static Customer customerToEdit;
 
     /**
-     * The FirstLevelDivision of the customer passed to this screen for editing.
+     * The FirstLevelDivision of the customer passed to this screen for editing. Loaded in the background when the
+     * screen opens.
      */
-    public FirstLevelDivision customerFLD = CustomerDAO.getFLDbyId(customerToEdit.getDivisionId().getValue());
+    public FirstLevelDivision customerFLD;
 
     /**
      * Handler called when the "Save" button is clicked.
@@ -95,14 +96,29 @@ public class EditCustomerController implements Initializable {
             }
             else{
                 Customer editedCustomer = new Customer(customerId, name, address, postalCode, phone, new ReadOnlyObjectWrapper<>(fld.getDivisionId()));
-                CustomerDAO.updateCustomer(customerToEdit.getCustomerId().getValue(), editedCustomer);
-
-                Parent CustomerParent = FXMLLoader.load(Objects.requireNonNull(getClass().getResource("/view/CustomersView.fxml")));
-                Scene CustomerScene = new Scene(CustomerParent);
+                int customerToEditId = customerToEdit.getCustomerId().getValue();
                 Stage CustomerWindow = (Stage) ((Node) event.getSource()).getScene().getWindow();
 
-                CustomerWindow.setScene(CustomerScene);
-                CustomerWindow.show();
+                saveButton.setDisable(true);
+                progressIndicator.setVisible(true);
+                AsyncDAO.onFxThread(AsyncDAO.supply(() -> CustomerDAO.updateCustomer(customerToEditId, editedCustomer)),
+                        updated -> {
+                            try {
+                                Parent CustomerParent = FXMLLoader.load(Objects.requireNonNull(getClass().getResource("/view/CustomersView.fxml")));
+                                Scene CustomerScene = new Scene(CustomerParent);
+
+                                CustomerWindow.setScene(CustomerScene);
+                                CustomerWindow.show();
+                            }
+                            catch (Exception e) {
+                                e.printStackTrace();
+                            }
+                        },
+                        error -> {
+                            saveButton.setDisable(false);
+                            progressIndicator.setVisible(false);
+                            error.printStackTrace();
+                        });
             }
         }
         catch (Exception e) {
@@ -129,19 +145,7 @@ public class EditCustomerController implements Initializable {
      */
     public void populateAllCountries() {
         try {
-            Connection conn = DBConnection.getConnection();
-            String sqlStatement = "SELECT * FROM countries";
-            Query.setPreparedStatement(conn, sqlStatement);
-            PreparedStatement ps = Query.getPreparedStatement();
-
-            ResultSet rs = ps.executeQuery(sqlStatement);
-
-            while (rs.next()) {
-                int countryId = rs.getInt("Country_ID");
-                String countryName = rs.getString("Country");
-                Country country = new Country(countryId, countryName);
-                allCountries.add(country);
-            }
+            allCountries.setAll(ReferenceData.getCountries());
         }
         catch (SQLException e) {
             System.out.println(e.getMessage());
@@ -170,50 +174,12 @@ public class EditCustomerController implements Initializable {
      */
     public void populateFLDs() {
         try {
-            Connection conn = DBConnection.getConnection();
-            String sqlStatement = "SELECT * FROM first_level_divisions WHERE COUNTRY_ID = ?";
-            Query.setPreparedStatement(conn, sqlStatement);
-            PreparedStatement ps = Query.getPreparedStatement();
-
-            //Populate US FLD list
-            ps.setInt(1, 1);
-            ResultSet rs = ps.executeQuery();
-
-            while (rs.next()) {
-                int divisionId = rs.getInt("Division_ID");
-                String divisionName = rs.getString("Division");
-                int countryId = rs.getInt("COUNTRY_ID");
-                FirstLevelDivision fld = new FirstLevelDivision(divisionId, divisionName, countryId);
-                firstLevelDivisionsUS.add(fld);
-            }
-
-            //Populate UK FLD list
-            ps.setInt(1, 2);
-            rs = ps.executeQuery();
-
-            while (rs.next()) {
-                int divisionId = rs.getInt("Division_ID");
-                String divisionName = rs.getString("Division");
-                int countryId = rs.getInt("COUNTRY_ID");
-                FirstLevelDivision fld = new FirstLevelDivision(divisionId, divisionName, countryId);
-                firstLevelDivisionsCanada.add(fld);
-            }
-
-            //Populate Canada FLD list
-            ps.setInt(1, 3);
-            rs = ps.executeQuery();
-
-            while (rs.next()) {
-                int divisionId = rs.getInt("Division_ID");
-                String divisionName = rs.getString("Division");
-                int countryId = rs.getInt("COUNTRY_ID");
-                FirstLevelDivision fld = new FirstLevelDivision(divisionId, divisionName, countryId);
-                firstLevelDivisionsUK.add(fld);
-            }
-
+            firstLevelDivisionsUS.setAll(ReferenceData.getDivisions(1));
+            firstLevelDivisionsCanada.setAll(ReferenceData.getDivisions(2));
+            firstLevelDivisionsUK.setAll(ReferenceData.getDivisions(3));
         }
         catch (SQLException e) {
-            e.getStackTrace();
+            e.printStackTrace();
         }
     }
 
@@ -225,16 +191,32 @@ public class EditCustomerController implements Initializable {
      */
     @Override
     public void initialize(URL url, ResourceBundle resourceBundle) {
-        populateAllCountries();
-        countryComboBox.setItems(allCountries);
-        populateFLDs();
-
         idBox.setText(Integer.toString(customerToEdit.getCustomerId().getValue()));
         nameBox.setText(customerToEdit.getCustomerName().getValue());
         addressBox.setText(customerToEdit.getAddress().getValue());
         postalCodeBox.setText(customerToEdit.getPostalCode().getValue());
         phoneBox.setText(customerToEdit.getPhone().getValue());
-        countryComboBox.getSelectionModel().select(customerFLD.getCountryId() - 1);
-        stateComboBox.getSelectionModel().select(customerFLD);
+
+        // The lists are filled in the background and only handed to the ComboBoxes once they are complete.
+        int divisionId = customerToEdit.getDivisionId().getValue();
+        saveButton.setDisable(true);
+        progressIndicator.setVisible(true);
+        AsyncDAO.onFxThread(AsyncDAO.supply(() -> {
+                    populateAllCountries();
+                    populateFLDs();
+                    return CustomerDAO.getFLDbyId(divisionId);
+                }),
+                fld -> {
+                    progressIndicator.setVisible(false);
+                    saveButton.setDisable(false);
+                    customerFLD = fld;
+                    countryComboBox.setItems(allCountries);
+                    countryComboBox.getSelectionModel().select(customerFLD.getCountryId() - 1);
+                    stateComboBox.getSelectionModel().select(customerFLD);
+                },
+                error -> {
+                    progressIndicator.setVisible(false);
+                    error.printStackTrace();
+                });
     }
 }
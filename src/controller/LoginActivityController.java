@@ -0,0 +1,189 @@
+package controller;
+
+import DAO.AsyncDAO;
+import javafx.collections.FXCollections;
+import javafx.collections.ObservableList;
+import javafx.event.ActionEvent;
+import javafx.fxml.FXML;
+import javafx.fxml.FXMLLoader;
+import javafx.fxml.Initializable;
+import javafx.scene.Node;
+import javafx.scene.Parent;
+import javafx.scene.Scene;
+import javafx.scene.control.Button;
+import javafx.scene.control.ComboBox;
+import javafx.scene.control.Label;
+import javafx.scene.control.ProgressIndicator;
+import javafx.scene.control.TableColumn;
+import javafx.scene.control.TableView;
+import javafx.scene.control.cell.PropertyValueFactory;
+import javafx.stage.Stage;
+import util.LoginActivityIndex;
+import util.Logger;
+import util.TimeZone;
+
+import java.net.URL;
+import java.nio.file.Paths;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.ResourceBundle;
+
+/**
+ * Controller for the Login Activity screen.
+ * @author James Carney
+ */
+public class LoginActivityController implements Initializable {
+    private static final String byHour = "Hour";
+    private static final String byDay = "Day";
+    private static final DateTimeFormatter dayFormatter = DateTimeFormatter.ofPattern("yyyy-MM-dd");
+
+    // Shared by every visit to the screen, so each visit only reads what was logged since the last one.
+    private static final LoginActivityIndex index = new LoginActivityIndex(Paths.get(Logger.loginActivityFileName));
+
+    private List<LoginActivityIndex.Bucket> buckets;
+
+    @FXML private Label ActivityLabel;
+    @FXML private ComboBox<String> bucketBox;
+    @FXML private TableView<ActivityRow> activityTable;
+    @FXML private TableColumn<ActivityRow, String> activityUserColumn;
+    @FXML private TableColumn<ActivityRow, String> activityTimeColumn;
+    @FXML private TableColumn<ActivityRow, Integer> activitySuccessfulColumn;
+    @FXML private TableColumn<ActivityRow, Integer> activityFailedColumn;
+
+    @FXML private Label BurstsLabel;
+    @FXML private TableView<ActivityRow> burstTable;
+    @FXML private TableColumn<ActivityRow, String> burstUserColumn;
+    @FXML private TableColumn<ActivityRow, String> burstTimeColumn;
+    @FXML private TableColumn<ActivityRow, Integer> burstFailedColumn;
+    @FXML private TableColumn<ActivityRow, Integer> burstPeakColumn;
+
+    @FXML private Button cancelButton;
+    @FXML private ProgressIndicator progressIndicator;
+
+    /**
+     * One row of the login activity tables: the attempts by one user in one hour or day.
+     */
+    public static class ActivityRow {
+        private final String userName;
+        private final String time;
+        private int successful;
+        private int failed;
+        private int peakFailed;
+
+        private ActivityRow(String userName, String time) {
+            this.userName = userName;
+            this.time = time;
+        }
+
+        public String getUserName() {
+            return userName;
+        }
+
+        public String getTime() {
+            return time;
+        }
+
+        public int getSuccessful() {
+            return successful;
+        }
+
+        public int getFailed() {
+            return failed;
+        }
+
+        public int getPeakFailed() {
+            return peakFailed;
+        }
+    }
+
+    /**
+     * Handler called when the "Cancel" button is clicked.
+     * @param event The click event used to trigger a change to the new scene.
+     * @throws Exception A generic exception.
+     */
+    public void onCancelButtonClicked(ActionEvent event) throws Exception {
+        Parent MainParent = FXMLLoader.load(Objects.requireNonNull(getClass().getResource("/view/MainView.fxml")));
+        Scene MainScene = new Scene(MainParent);
+        Stage MainWindow = (Stage) ((Node) event.getSource()).getScene().getWindow();
+
+        MainWindow.setScene(MainScene);
+        MainWindow.show();
+    }
+
+    /**
+     * Initializes the Login Activity screen.
+     *
+     * @param url The path of the root object.
+     * @param resourceBundle The ResourceBundle of the root object.
+     */
+    @Override
+    public void initialize(URL url, ResourceBundle resourceBundle) {
+        activityUserColumn.setCellValueFactory(new PropertyValueFactory<>("userName"));
+        activityTimeColumn.setCellValueFactory(new PropertyValueFactory<>("time"));
+        activitySuccessfulColumn.setCellValueFactory(new PropertyValueFactory<>("successful"));
+        activityFailedColumn.setCellValueFactory(new PropertyValueFactory<>("failed"));
+
+        burstUserColumn.setCellValueFactory(new PropertyValueFactory<>("userName"));
+        burstTimeColumn.setCellValueFactory(new PropertyValueFactory<>("time"));
+        burstFailedColumn.setCellValueFactory(new PropertyValueFactory<>("failed"));
+        burstPeakColumn.setCellValueFactory(new PropertyValueFactory<>("peakFailed"));
+
+        bucketBox.setItems(FXCollections.observableArrayList(byHour, byDay));
+        bucketBox.setValue(byHour);
+        bucketBox.setOnAction(event -> showActivity());
+
+        // Reading the log is left to a background thread; only lines logged since the last visit are read.
+        progressIndicator.setVisible(true);
+        AsyncDAO.onFxThread(AsyncDAO.supply(() -> {
+                    index.update();
+                    return index.getBuckets();
+                }),
+                loaded -> {
+                    buckets = loaded;
+                    showActivity();
+                    progressIndicator.setVisible(false);
+                },
+                error -> {
+                    progressIndicator.setVisible(false);
+                    error.printStackTrace();
+                });
+    }
+
+    /**
+     * Fills both tables from the indexed buckets, rolling the hours up into days if days were chosen.
+     */
+    private void showActivity() {
+        if (buckets == null) {
+            return;
+        }
+        boolean days = byDay.equals(bucketBox.getValue());
+
+        // The buckets are sorted by user and then hour, so a user's hours in the same day are next to each other.
+        Map<String, ActivityRow> rows = new LinkedHashMap<>();
+        ObservableList<ActivityRow> bursts = FXCollections.observableArrayList();
+        for (LoginActivityIndex.Bucket bucket : buckets) {
+            LocalDateTime hour = bucket.getHourStart();
+            String time = days ? hour.format(dayFormatter) : hour.format(TimeZone.dtf);
+
+            ActivityRow row = rows.computeIfAbsent(bucket.getUserName() + '\n' + time,
+                    key -> new ActivityRow(bucket.getUserName(), time));
+            row.successful += bucket.getSuccessful();
+            row.failed += bucket.getFailed();
+            row.peakFailed = Math.max(row.peakFailed, bucket.getPeakFailedInWindow());
+
+            if (bucket.getPeakFailedInWindow() >= LoginActivityIndex.burstThreshold) {
+                ActivityRow burst = new ActivityRow(bucket.getUserName(), hour.format(TimeZone.dtf));
+                burst.failed = bucket.getFailed();
+                burst.peakFailed = bucket.getPeakFailedInWindow();
+                bursts.add(burst);
+            }
+        }
+
+        activityTable.setItems(FXCollections.observableArrayList(rows.values()));
+        burstTable.setItems(bursts);
+    }
+}
@@ -1,5 +1,8 @@
 package controller;
 
+import DAO.AsyncDAO;
+import DAO.ReferenceData;
+import DAO.ReportAggregates;
 import DAO.UserDAO;
 import javafx.event.ActionEvent;
 import javafx.fxml.FXML;
@@ -12,7 +15,9 @@ import javafx.scene.control.*;
 import javafx.stage.Stage;
 import model.User;
 import util.Logger;
+import util.Session;
 
+import java.io.IOException;
 import java.net.URL;
 import java.time.LocalDateTime;
 import java.time.ZoneId;
@@ -33,6 +38,7 @@ public class LoginController implements Initializable {
     @FXML private Button exitButton;
     @FXML private Label zoneHeaderLabel;
     @FXML private Label zoneIdLabel;
+    @FXML private ProgressIndicator progressIndicator;
 
     /**
      * Handler called when the "Login" button is clicked.
@@ -42,18 +48,56 @@ public class LoginController implements Initializable {
     public void onLoginButtonClicked(ActionEvent event) throws Exception {
         String username = userNameField.getText();
         String password = passwordField.getText();
-        User returnedUser = UserDAO.getUser(username);
+        Stage MainWindow = (Stage) ((Node) event.getSource()).getScene().getWindow();
+
+        loginButton.setDisable(true);
+        progressIndicator.setVisible(true);
+        AsyncDAO.onFxThread(AsyncDAO.supply(() -> UserDAO.getUser(username)),
+                returnedUser -> {
+                    progressIndicator.setVisible(false);
+                    loginButton.setDisable(false);
+                    try {
+                        completeLogin(MainWindow, returnedUser, username, password);
+                    }
+                    catch (IOException e) {
+                        e.printStackTrace();
+                    }
+                },
+                error -> {
+                    progressIndicator.setVisible(false);
+                    loginButton.setDisable(false);
+                    error.printStackTrace();
+                });
+    }
+
+    /**
+     * Checks the entered credentials against the user looked up in the database, and either opens the Main screen or
+     * warns the user.
+     *
+     * @param MainWindow The window to show the Main screen in.
+     * @param returnedUser The user with the entered user name, or null if there isn't one.
+     * @param username The entered user name.
+     * @param password The entered password.
+     * @throws IOException An exception related to the login activity log or loading the Main screen.
+     */
+    private void completeLogin(Stage MainWindow, User returnedUser, String username, String password) throws IOException {
         boolean success = false;
-        String fileName = "login_activity.txt";
-        Logger logger = new Logger(fileName);
+        Logger logger = new Logger(Logger.loginActivityFileName);
 
         if ((returnedUser != null) && (Objects.equals(returnedUser.getUserName(), username)) && (Objects.equals(returnedUser.getPassword(), password))) {
             success = true;
             logger.recordLoginAttempt(LocalDateTime.now(), username, success);
+            Session.start(returnedUser);
+
+            // Warm the reference-data cache and the report aggregates now, so the screens opened from the Main screen
+            // don't have to query.
+            AsyncDAO.onFxThread(AsyncDAO.run(() -> {
+                        ReferenceData.load();
+                        ReportAggregates.load();
+                    }), loaded -> {}, Throwable::printStackTrace);
 
             Parent MainParent = FXMLLoader.load(getClass().getResource("/view/MainView.fxml"));
             Scene MainScene = new Scene(MainParent);
-            Stage MainWindow = (Stage) ((Node) event.getSource()).getScene().getWindow();
 
             MainWindow.setScene(MainScene);
             MainWindow.show();
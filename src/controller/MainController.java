@@ -1,7 +1,7 @@
 package controller;
 
-import DAO.AppointmentDAO;
-import javafx.collections.ObservableList;
+import DAO.AsyncDAO;
+import javafx.application.Platform;
 import javafx.event.ActionEvent;
 import javafx.fxml.FXML;
 import javafx.fxml.FXMLLoader;
@@ -12,13 +12,16 @@ import javafx.scene.Scene;
 import javafx.scene.control.Alert;
 import javafx.scene.control.Button;
 import javafx.scene.control.ButtonType;
+import javafx.scene.control.ProgressIndicator;
 import javafx.stage.Stage;
 import main.Main;
 import model.Appointment;
+import util.ReminderScheduler;
+import util.Session;
 import util.TimeZone;
 
 import java.net.URL;
-import java.time.LocalDateTime;
+import java.util.List;
 import java.util.Optional;
 import java.util.ResourceBundle;
 
@@ -30,12 +33,10 @@ public class MainController implements Initializable {
     @FXML private Button CustomersButton;
     @FXML private Button AppointmentsButton;
     @FXML private Button ReportsButton;
+    @FXML private Button LoginActivityButton;
+    @FXML private Button OfflineChangesButton;
     @FXML private Button LogOutButton;
-
-    /**
-     * A list of all appointments currently scheduled.
-     */
-    public ObservableList<Appointment> allAppointments = AppointmentDAO.getAllAppointments();
+    @FXML private ProgressIndicator progressIndicator;
 
     /**
      * Handler called when the "Customers" button is clicked.
@@ -79,6 +80,34 @@ public class MainController implements Initializable {
         ReportsWindow.show();
     }
 
+    /**
+     * Handler called when the "Login Activity" button is clicked.
+     * @param event The click event used to trigger a change to the new scene.
+     * @throws Exception A generic exception.
+     */
+    public void onLoginActivityButtonClicked(ActionEvent event) throws Exception {
+        Parent LoginActivityParent = FXMLLoader.load(getClass().getResource("/view/LoginActivityView.fxml"), Main.rb);
+        Scene LoginActivityScene = new Scene(LoginActivityParent);
+        Stage LoginActivityWindow = (Stage) ((Node) event.getSource()).getScene().getWindow();
+
+        LoginActivityWindow.setScene(LoginActivityScene);
+        LoginActivityWindow.show();
+    }
+
+    /**
+     * Handler called when the "Offline Changes" button is clicked.
+     * @param event The click event used to trigger a change to the new scene.
+     * @throws Exception A generic exception.
+     */
+    public void onOfflineChangesButtonClicked(ActionEvent event) throws Exception {
+        Parent OfflineChangesParent = FXMLLoader.load(getClass().getResource("/view/OfflineChangesView.fxml"), Main.rb);
+        Scene OfflineChangesScene = new Scene(OfflineChangesParent);
+        Stage OfflineChangesWindow = (Stage) ((Node) event.getSource()).getScene().getWindow();
+
+        OfflineChangesWindow.setScene(OfflineChangesScene);
+        OfflineChangesWindow.show();
+    }
+
     /**
      * Handler called when the "Logout" button is clicked.
      * @param event The click event used to trigger a change to the new scene.
@@ -91,6 +120,8 @@ public class MainController implements Initializable {
         Optional<ButtonType> result = exitAlert.showAndWait();
 
         if (result.isPresent() && result.get() == ButtonType.OK) {
+            ReminderScheduler.stop();
+            Session.end();
             Parent LoginParent = FXMLLoader.load(getClass().getResource("/view/LoginView.fxml"), Main.rb);
             Scene LoginScene = new Scene(LoginParent);
             Stage LoginWindow = (Stage) ((Node) event.getSource()).getScene().getWindow();
@@ -101,34 +132,41 @@ public class MainController implements Initializable {
     }
 
     /**
-     * Queries the database for all scheduled appointments.
-     * @return An appointment starting less than 15 minutes from now.
+     * Initializes the Main screen. The first time it opens after login, the appointment reminders are started and the
+     * user is told whether any appointment starts in the next 15 minutes; later reminders appear as they fall due.
+     *
+     * @param url The path of the root object.
+     * @param resourceBundle The ResourceBundle of the root object.
      */
-    public Appointment checkForUpcomingAppointments() {
-        LocalDateTime nowPlus15 = LocalDateTime.now().plusMinutes(15);
-
-        for (Appointment appointment : allAppointments) {
-            if ((appointment.getStart().getValue().toLocalDateTime().isBefore(nowPlus15)) && (appointment.getStart().getValue().toLocalDateTime().isAfter(LocalDateTime.now()))) {
-                return appointment;
-            }
+    @Override
+    public void initialize (URL url, ResourceBundle resourceBundle) {
+        if (ReminderScheduler.isRunning()) {
+            return;
         }
-        return null;
+
+        progressIndicator.setVisible(true);
+        AsyncDAO.onFxThread(AsyncDAO.supply(() -> ReminderScheduler.start(MainController::showReminder)),
+                dueNow -> {
+                    progressIndicator.setVisible(false);
+                    // Null if another visit to this screen started the reminders first.
+                    if (dueNow != null) {
+                        showUpcomingAppointmentAlert(dueNow);
+                    }
+                },
+                error -> {
+                    progressIndicator.setVisible(false);
+                    error.printStackTrace();
+                });
     }
 
     /**
-     * Initializes the Main screen.
+     * Tells the user whether an appointment starts in the next 15 minutes.
      *
-     * @param url The path of the root object.
-     * @param resourceBundle The ResourceBundle of the root object.
+     * @param upcoming The appointments starting in the next 15 minutes.
      */
-    @Override
-    public void initialize (URL url, ResourceBundle resourceBundle) {
-        if (checkForUpcomingAppointments() != null) {
-            Appointment appointmentToAlert = checkForUpcomingAppointments();
-            Alert appointmentAlert = new Alert(Alert.AlertType.CONFIRMATION);
-            appointmentAlert.setTitle("Upcoming Appointment");
-            appointmentAlert.setContentText("Appointment soon: " + appointmentToAlert.getAppointmentId().getValue().toString() + " - " + appointmentToAlert.getStart().getValue().toLocalDateTime().format(TimeZone.dtf));
-            appointmentAlert.showAndWait();
+    private void showUpcomingAppointmentAlert(List<Appointment> upcoming) {
+        if (!upcoming.isEmpty()) {
+            showReminderAlert(upcoming.get(0));
         }
         else {
             Alert noAppointmentAlert = new Alert(Alert.AlertType.CONFIRMATION);
@@ -137,4 +175,25 @@ public class MainController implements Initializable {
             noAppointmentAlert.showAndWait();
         }
     }
+
+    /**
+     * Receives reminders from the scheduler's thread and shows them on the JavaFX thread.
+     *
+     * @param appointment The appointment starting soon.
+     */
+    private static void showReminder(Appointment appointment) {
+        Platform.runLater(() -> showReminderAlert(appointment));
+    }
+
+    /**
+     * Tells the user an appointment starts soon.
+     *
+     * @param appointment The appointment.
+     */
+    private static void showReminderAlert(Appointment appointment) {
+        Alert appointmentAlert = new Alert(Alert.AlertType.CONFIRMATION);
+        appointmentAlert.setTitle("Upcoming Appointment");
+        appointmentAlert.setContentText("Appointment soon: " + appointment.getAppointmentId() + " - " + appointment.getStart().toLocalDateTime().format(TimeZone.dtf));
+        appointmentAlert.showAndWait();
+    }
 }
@@ -0,0 +1,175 @@
+package controller;
+
+import DAO.AsyncDAO;
+import DAO.OfflineJournal;
+import javafx.collections.FXCollections;
+import javafx.event.ActionEvent;
+import javafx.fxml.FXML;
+import javafx.fxml.FXMLLoader;
+import javafx.fxml.Initializable;
+import javafx.scene.Node;
+import javafx.scene.Parent;
+import javafx.scene.Scene;
+import javafx.scene.control.Alert;
+import javafx.scene.control.Button;
+import javafx.scene.control.Label;
+import javafx.scene.control.ProgressIndicator;
+import javafx.scene.control.TableColumn;
+import javafx.scene.control.TableView;
+import javafx.scene.control.cell.PropertyValueFactory;
+import javafx.stage.Stage;
+
+import java.net.URL;
+import java.util.Objects;
+import java.util.ResourceBundle;
+
+/**
+ * Controller for the Offline Changes screen, which lists the appointment and customer changes made while the database
+ * couldn't be reached and lets the user resolve those that conflict with the database.
+ * @author James Carney
+ */
+public class OfflineChangesController implements Initializable {
+
+    @FXML private Label ChangesLabel;
+    @FXML private TableView<OfflineJournal.Change> changesTable;
+    @FXML private TableColumn<OfflineJournal.Change, Long> changeSequenceColumn;
+    @FXML private TableColumn<OfflineJournal.Change, String> changeDescriptionColumn;
+    @FXML private TableColumn<OfflineJournal.Change, String> changeStatusColumn;
+    @FXML private Label statusLabel;
+
+    @FXML private Button syncButton;
+    @FXML private Button forceButton;
+    @FXML private Button discardButton;
+    @FXML private Button cancelButton;
+    @FXML private ProgressIndicator progressIndicator;
+
+    /**
+     * Handler called when the "Cancel" button is clicked.
+     * @param event The click event used to trigger a change to the new scene.
+     * @throws Exception A generic exception.
+     */
+    public void onCancelButtonClicked(ActionEvent event) throws Exception {
+        Parent MainParent = FXMLLoader.load(Objects.requireNonNull(getClass().getResource("/view/MainView.fxml")));
+        Scene MainScene = new Scene(MainParent);
+        Stage MainWindow = (Stage) ((Node) event.getSource()).getScene().getWindow();
+
+        MainWindow.setScene(MainScene);
+        MainWindow.show();
+    }
+
+    /**
+     * Handler called when the "Sync Now" button is clicked. Applies the waiting changes to the database in the
+     * background.
+     */
+    public void onSyncButtonClicked() {
+        synchronize();
+    }
+
+    /**
+     * Handler called when the "Apply Anyway" button is clicked. Applies the selected conflicting change without
+     * checking it for overlaps.
+     */
+    public void onForceButtonClicked() {
+        OfflineJournal.Change change = getSelectedConflict("apply");
+        if (change != null) {
+            setBusy(true);
+            AsyncDAO.onFxThread(AsyncDAO.run(() -> OfflineJournal.force(change)),
+                    forced -> synchronize(),
+                    this::onFailed);
+        }
+    }
+
+    /**
+     * Handler called when the "Discard" button is clicked. Drops the selected conflicting change.
+     */
+    public void onDiscardButtonClicked() {
+        OfflineJournal.Change change = getSelectedConflict("discard");
+        if (change != null) {
+            setBusy(true);
+            AsyncDAO.onFxThread(AsyncDAO.run(() -> OfflineJournal.discard(change)),
+                    discarded -> {
+                        setBusy(false);
+                        statusLabel.setText("Discarded " + change.getDescription() + ".");
+                        loadChanges();
+                    },
+                    this::onFailed);
+        }
+    }
+
+    /**
+     * Gets the selected change, if it is one that conflicts with the database.
+     *
+     * @param action What the user is trying to do with it, for the warning.
+     * @return The change, or null if none or a waiting one is selected.
+     */
+    private OfflineJournal.Change getSelectedConflict(String action) {
+        OfflineJournal.Change change = changesTable.getSelectionModel().getSelectedItem();
+        if (change == null || change.getConflict() == null) {
+            Alert noConflictSelectedAlert = new Alert(Alert.AlertType.WARNING);
+            noConflictSelectedAlert.setTitle("Warning");
+            noConflictSelectedAlert.setContentText("You must select a conflicting change in order to " + action + " it.");
+            noConflictSelectedAlert.showAndWait();
+            return null;
+        }
+        return change;
+    }
+
+    /**
+     * Synchronizes the journal in the background and shows the outcome.
+     */
+    private void synchronize() {
+        setBusy(true);
+        AsyncDAO.onFxThread(AsyncDAO.supply(OfflineJournal::synchronize),
+                result -> {
+                    setBusy(false);
+                    statusLabel.setText(result.toString());
+                    loadChanges();
+                },
+                this::onFailed);
+    }
+
+    /**
+     * Loads the changes still in the journal in the background and shows them in the table. The journal is read from
+     * its file on first use, and may be busy synchronizing, so it isn't touched on the FX thread.
+     */
+    private void loadChanges() {
+        progressIndicator.setVisible(true);
+        AsyncDAO.onFxThread(AsyncDAO.supply(OfflineJournal::getChanges),
+                changes -> {
+                    progressIndicator.setVisible(false);
+                    changesTable.setItems(FXCollections.observableArrayList(changes));
+                    if (changes.isEmpty()) {
+                        statusLabel.setText("Every change has been synchronized.");
+                    }
+                },
+                this::onFailed);
+    }
+
+    private void setBusy(boolean busy) {
+        syncButton.setDisable(busy);
+        forceButton.setDisable(busy);
+        discardButton.setDisable(busy);
+        progressIndicator.setVisible(busy);
+    }
+
+    private void onFailed(Throwable error) {
+        setBusy(false);
+        error.printStackTrace();
+        statusLabel.setText("Error: " + error.getMessage());
+    }
+
+    /**
+     * Initializes the Offline Changes screen.
+     *
+     * @param url The path of the root object.
+     * @param resourceBundle The ResourceBundle of the root object.
+     */
+    @Override
+    public void initialize(URL url, ResourceBundle resourceBundle) {
+        changeSequenceColumn.setCellValueFactory(new PropertyValueFactory<>("sequence"));
+        changeDescriptionColumn.setCellValueFactory(new PropertyValueFactory<>("description"));
+        changeStatusColumn.setCellValueFactory(new PropertyValueFactory<>("status"));
+
+        loadChanges();
+    }
+}
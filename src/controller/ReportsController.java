@@ -1,5 +1,11 @@
 package controller;
 
+import DAO.AsyncDAO;
+import DAO.ReferenceData;
+import DAO.ReportCube;
+import javafx.beans.property.ReadOnlyObjectWrapper;
+import javafx.collections.FXCollections;
+import javafx.collections.ObservableList;
 import javafx.event.ActionEvent;
 import javafx.fxml.FXML;
 import javafx.fxml.FXMLLoader;
@@ -7,17 +13,31 @@ import javafx.fxml.Initializable;
 import javafx.scene.Node;
 import javafx.scene.Parent;
 import javafx.scene.Scene;
+import javafx.scene.control.Alert;
+import javafx.scene.control.Button;
+import javafx.scene.control.ComboBox;
 import javafx.scene.control.Label;
+import javafx.scene.control.ProgressIndicator;
 import javafx.scene.control.TableColumn;
 import javafx.scene.control.TableView;
 import javafx.scene.control.cell.PropertyValueFactory;
+import javafx.stage.DirectoryChooser;
 import javafx.stage.Stage;
+import model.Contact;
+import model.Customer;
+import util.AppointmentCube;
+import util.CalendarFeed;
+import util.ReportExporter;
 import util.ReportGenerator;
 
+import java.io.File;
 import java.net.URL;
 import java.time.ZonedDateTime;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.Objects;
 import java.util.ResourceBundle;
+import java.util.concurrent.CompletableFuture;
 
 /**
  * Controller for the Reports screen.
@@ -25,6 +45,7 @@ import java.util.ResourceBundle;
  */
 public class ReportsController implements Initializable {
     private ReportGenerator rg = new ReportGenerator();
+    private AppointmentCube cube;
 
     @FXML private Label ByTypeLabel;
     @FXML private TableView<ReportGenerator.AppointmentsByType> ByTypeTable;
@@ -48,6 +69,16 @@ public class ReportsController implements Initializable {
     @FXML private TableColumn<ReportGenerator.ScheduleByContact, ZonedDateTime> ScheduleEndColumn;
     @FXML private TableColumn<ReportGenerator.ScheduleByContact, Integer> ScheduleCustomerIdColumn;
 
+    @FXML private Label PivotLabel;
+    @FXML private ComboBox<AppointmentCube.Dimension> pivotRowsBox;
+    @FXML private ComboBox<AppointmentCube.Dimension> pivotColumnsBox;
+    @FXML private TableView<List<String>> pivotTable;
+
+    @FXML private Button exportCsvButton;
+    @FXML private Button exportJsonButton;
+    @FXML private Button exportCalendarsButton;
+    @FXML private ProgressIndicator progressIndicator;
+
     /**
      * Handler called when the "Cancel" button is clicked.
      * @param event The click event used to trigger a change to the new scene.
@@ -62,6 +93,126 @@ public class ReportsController implements Initializable {
         MainWindow.show();
     }
 
+    /**
+     * Handler called when the "Export CSV" button is clicked.
+     * @param event The click event.
+     */
+    public void onExportCsvButtonClicked(ActionEvent event) {
+        exportReports(event, ReportExporter.Format.CSV);
+    }
+
+    /**
+     * Handler called when the "Export JSON" button is clicked.
+     * @param event The click event.
+     */
+    public void onExportJsonButtonClicked(ActionEvent event) {
+        exportReports(event, ReportExporter.Format.JSON);
+    }
+
+    /**
+     * Handler called when the "Export Calendars" button is clicked. Asks for a directory and writes an iCalendar feed
+     * for every contact and every customer into it in the background. Feeds whose appointments haven't changed since
+     * they were last exported are written from the cache without querying the database.
+     *
+     * @param event The click event, used to find the window to show the directory picker over.
+     */
+    public void onExportCalendarsButtonClicked(ActionEvent event) {
+        DirectoryChooser chooser = new DirectoryChooser();
+        chooser.setTitle("Export calendars to");
+        File directory = chooser.showDialog(((Node) event.getSource()).getScene().getWindow());
+        if (directory == null) {
+            return;
+        }
+
+        exportCalendarsButton.setDisable(true);
+        progressIndicator.setVisible(true);
+        AsyncDAO.onFxThread(AsyncDAO.supply(() -> {
+                    int feeds = 0;
+                    int cached = 0;
+                    long events = 0;
+                    for (Contact contact : ReferenceData.getContacts()) {
+                        CalendarFeed.Result result = CalendarFeed.export(CalendarFeed.Owner.CONTACT, contact.getContactId(), directory.toPath());
+                        feeds++;
+                        cached += result.isCached() ? 1 : 0;
+                        events += result.getEvents();
+                    }
+                    for (Customer customer : ReferenceData.getCustomers()) {
+                        CalendarFeed.Result result = CalendarFeed.export(CalendarFeed.Owner.CUSTOMER, customer.getCustomerId().getValue(), directory.toPath());
+                        feeds++;
+                        cached += result.isCached() ? 1 : 0;
+                        events += result.getEvents();
+                    }
+                    return feeds + " calendars written with " + events + " appointments (" + cached + " unchanged since the last export).";
+                }),
+                summary -> {
+                    exportCalendarsButton.setDisable(false);
+                    progressIndicator.setVisible(false);
+
+                    Alert exported = new Alert(Alert.AlertType.INFORMATION);
+                    exported.setTitle("Export complete");
+                    exported.setContentText(summary);
+                    exported.showAndWait();
+                },
+                error -> {
+                    exportCalendarsButton.setDisable(false);
+                    progressIndicator.setVisible(false);
+                    error.printStackTrace();
+
+                    Alert failed = new Alert(Alert.AlertType.ERROR);
+                    failed.setTitle("Export failed");
+                    failed.setContentText(error.getMessage());
+                    failed.showAndWait();
+                });
+    }
+
+    /**
+     * Asks for a directory and exports every report into it in the background, streaming the rows straight from the
+     * database to the files.
+     *
+     * @param event The click event, used to find the window to show the directory picker over.
+     * @param format The file format.
+     */
+    private void exportReports(ActionEvent event, ReportExporter.Format format) {
+        DirectoryChooser chooser = new DirectoryChooser();
+        chooser.setTitle("Export reports to");
+        File directory = chooser.showDialog(((Node) event.getSource()).getScene().getWindow());
+        if (directory == null) {
+            return;
+        }
+
+        exportCsvButton.setDisable(true);
+        exportJsonButton.setDisable(true);
+        progressIndicator.setVisible(true);
+        AsyncDAO.onFxThread(AsyncDAO.supply(() -> {
+                    StringBuilder summary = new StringBuilder();
+                    for (ReportExporter.Report report : ReportExporter.Report.values()) {
+                        summary.append(ReportExporter.export(report, format, directory.toPath())).append('\n');
+                    }
+                    return summary.toString();
+                }),
+                summary -> {
+                    exportCsvButton.setDisable(false);
+                    exportJsonButton.setDisable(false);
+                    progressIndicator.setVisible(false);
+
+                    Alert exported = new Alert(Alert.AlertType.INFORMATION);
+                    exported.setTitle("Export complete");
+                    exported.setContentText(summary);
+                    exported.showAndWait();
+                },
+                error -> {
+                    exportCsvButton.setDisable(false);
+                    exportJsonButton.setDisable(false);
+                    progressIndicator.setVisible(false);
+                    error.printStackTrace();
+
+                    Alert failed = new Alert(Alert.AlertType.ERROR);
+                    failed.setTitle("Export failed");
+                    failed.setContentText(error.getMessage());
+                    failed.showAndWait();
+                });
+    }
+
     /**
      * Initializes the Reports screen.
      *
@@ -70,19 +221,13 @@ public class ReportsController implements Initializable {
      */
     @Override
     public void initialize(URL url, ResourceBundle resourceBundle) {
-        rg.processAppointmentsByType();
-        ByTypeTable.setItems(rg.getAppointmentsByType());
         ByTypeMonthColumn.setCellValueFactory(new PropertyValueFactory<>("monthString"));
         ByTypeTypeColumn.setCellValueFactory(new PropertyValueFactory<>("type"));
         ByTypeCountColumn.setCellValueFactory(new PropertyValueFactory<>("count"));
 
-        rg.processCustomersByCountry();
-        customersByCountryTable.setItems(rg.getCustomersByCountry());
         cbcCountryColumn.setCellValueFactory(new PropertyValueFactory<>("countryName"));
         cbcCustomersColumn.setCellValueFactory(new PropertyValueFactory<>("customerCount"));
 
-        rg.processScheduleByContact();
-        ScheduleTable.setItems(rg.getSchedulesByContact());
         ScheduleContactIdColumn.setCellValueFactory(new PropertyValueFactory<>("contactId"));
         ScheduleAppointmentIdColumn.setCellValueFactory(new PropertyValueFactory<>("appointmentId"));
         ScheduleTitleColumn.setCellValueFactory(new PropertyValueFactory<>("title"));
@@ -91,5 +236,85 @@ public class ReportsController implements Initializable {
         ScheduleStartColumn.setCellValueFactory(new PropertyValueFactory<>("start"));
         ScheduleEndColumn.setCellValueFactory(new PropertyValueFactory<>("end"));
         ScheduleCustomerIdColumn.setCellValueFactory(new PropertyValueFactory<>("customerId"));
+
+        pivotRowsBox.setItems(FXCollections.observableArrayList(AppointmentCube.Dimension.values()));
+        pivotColumnsBox.setItems(FXCollections.observableArrayList(AppointmentCube.Dimension.values()));
+        pivotRowsBox.setValue(AppointmentCube.Dimension.MONTH);
+        pivotColumnsBox.setValue(AppointmentCube.Dimension.TYPE);
+        pivotRowsBox.setOnAction(event -> showPivot());
+        pivotColumnsBox.setOnAction(event -> showPivot());
+
+        // Each report runs in the background on its own connection and fills its table as soon as it's ready.
+        // The pivot is built from the cached cube, so choosing other dimensions afterwards doesn't query.
+        progressIndicator.setVisible(true);
+        CompletableFuture<AppointmentCube> loadCube = AsyncDAO.supply(ReportCube::getCube);
+        AsyncDAO.onFxThread(loadCube, loaded -> {
+            cube = loaded;
+            showPivot();
+        }, Throwable::printStackTrace);
+
+        CompletableFuture<Void> reports = rg.processAll(ByTypeTable::setItems, ScheduleTable::setItems, customersByCountryTable::setItems);
+        AsyncDAO.onFxThread(CompletableFuture.allOf(reports, loadCube),
+                generated -> progressIndicator.setVisible(false),
+                error -> {
+                    progressIndicator.setVisible(false);
+                    error.printStackTrace();
+                });
+    }
+
+    /**
+     * Fills the pivot table with the two dimensions chosen, one row per member of the first and one column per member
+     * of the second, plus totals.
+     */
+    private void showPivot() {
+        AppointmentCube.Dimension rows = pivotRowsBox.getValue();
+        AppointmentCube.Dimension columns = pivotColumnsBox.getValue();
+        if (cube == null || rows == null || columns == null) {
+            return;
+        }
+
+        AppointmentCube.Pivot pivot = cube.pivot(rows, columns);
+        List<AppointmentCube.Member> columnMembers = pivot.getColumnMembers();
+
+        pivotTable.getColumns().clear();
+        pivotTable.getColumns().add(pivotColumn(rows + " / " + columns, 0));
+        for (int c = 0; c < columnMembers.size(); c++) {
+            pivotTable.getColumns().add(pivotColumn(columnMembers.get(c).toString(), c + 1));
+        }
+        pivotTable.getColumns().add(pivotColumn("Total", columnMembers.size() + 1));
+
+        ObservableList<List<String>> pivotRows = FXCollections.observableArrayList();
+        for (int r = 0; r < pivot.getRowMembers().size(); r++) {
+            List<String> row = new ArrayList<>();
+            row.add(pivot.getRowMembers().get(r).toString());
+            for (int c = 0; c < columnMembers.size(); c++) {
+                row.add(String.valueOf(pivot.getCount(r, c)));
+            }
+            row.add(String.valueOf(pivot.getRowTotal(r)));
+            pivotRows.add(row);
+        }
+
+        List<String> totals = new ArrayList<>();
+        totals.add("Total");
+        for (int c = 0; c < columnMembers.size(); c++) {
+            totals.add(String.valueOf(pivot.getColumnTotal(c)));
+        }
+        totals.add(String.valueOf(pivot.getTotal()));
+        pivotRows.add(totals);
+
+        pivotTable.setItems(pivotRows);
+    }
+
+    /**
+     * Creates a pivot table column that shows one position of each row.
+     *
+     * @param heading The column heading.
+     * @param index The position in each row the column shows.
+     * @return The column.
+     */
+    private TableColumn<List<String>, String> pivotColumn(String heading, int index) {
+        TableColumn<List<String>, String> column = new TableColumn<>(heading);
+        column.setCellValueFactory(cell -> new ReadOnlyObjectWrapper<>(cell.getValue().get(index)));
+        return column;
     }
 }
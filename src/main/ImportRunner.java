@@ -0,0 +1,116 @@
+package main;
+
+import DAO.DBConnection;
+import DAO.SchemaMigrator;
+import util.AppointmentImporter;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+
+/**
+ * A command-line entry point that imports appointments from a CSV or iCalendar file without a display, e.g. to load
+ * a calendar migrated from another system.
+ *
+ * Usage:
+ * <pre>
+ *     java -cp &lt;classpath&gt; main.ImportRunner --file &lt;file&gt; [--format csv|icalendar] [--chunk-size n]
+ * </pre>
+ * The format is worked out from the file name unless given. Any pending schema migrations are applied first. Progress is printed after each chunk, and each rejected
+ * row is printed with its line and the reason at the end. The exit status is 0 if every row was imported, 1 if any
+ * row was rejected or the import failed and 2 if the arguments were wrong.
+ *
+ * @author James Carney
+ */
+public class ImportRunner {
+
+    private static final String usage = "Usage: main.ImportRunner --file <file> [--format csv|icalendar] [--chunk-size n]";
+
+    /**
+     * Entry point for the headless importer.
+     *
+     * @param args The command-line arguments, described in the class documentation.
+     */
+    public static void main(String[] args) {
+        System.exit(run(args));
+    }
+
+    /**
+     * Parses the arguments and imports the file.
+     *
+     * @param args The command-line arguments.
+     * @return The exit status.
+     */
+    public static int run(String[] args) {
+        Path file = null;
+        AppointmentImporter.Format format = null;
+        int chunkSize = AppointmentImporter.defaultChunkSize;
+
+        for (int i = 0; i < args.length; i++) {
+            String name = args[i];
+            if (i + 1 >= args.length) {
+                return usageError("Missing value for " + name);
+            }
+            String value = args[++i];
+
+            try {
+                switch (name) {
+                    case "--file":
+                        file = Paths.get(value);
+                        break;
+                    case "--format":
+                        format = AppointmentImporter.Format.valueOf(value.toUpperCase());
+                        break;
+                    case "--chunk-size":
+                        chunkSize = Integer.parseInt(value);
+                        if (chunkSize <= 0) {
+                            return usageError("--chunk-size must be positive");
+                        }
+                        break;
+                    default:
+                        return usageError("Unknown argument: " + name);
+                }
+            }
+            catch (NumberFormatException e) {
+                return usageError("--chunk-size must be a whole number");
+            }
+            catch (IllegalArgumentException e) {
+                return usageError("Format must be csv or icalendar");
+            }
+        }
+
+        if (file == null) {
+            return usageError("--file is required");
+        }
+        if (!Files.isRegularFile(file)) {
+            return usageError("No such file: " + file);
+        }
+
+        try {
+            SchemaMigrator.migrate();
+            AppointmentImporter.Result result = AppointmentImporter.importFile(file,
+                    format == null ? AppointmentImporter.Format.forFile(file) : format, chunkSize,
+                    (rowsRead, imported, rejected, rowsPerSecond) -> System.out.printf(
+                            "%d read, %d imported, %d rejected (%.0f rows/s)%n", rowsRead, imported, rejected, rowsPerSecond));
+
+            for (AppointmentImporter.Rejection rejection : result.getRejections()) {
+                System.out.println(rejection);
+            }
+            System.out.println(result);
+            return result.getRejections().isEmpty() ? 0 : 1;
+        }
+        catch (Exception e) {
+            System.out.println("Import failed: " + e.getMessage());
+            return 1;
+        }
+        finally {
+            DBConnection.closePool();
+        }
+    }
+
+    private static int usageError(String message) {
+        System.out.println(message);
+        System.out.println(usage);
+        return 2;
+    }
+}
@@ -1,10 +1,16 @@
 package main;
 
+import DAO.AsyncDAO;
+import DAO.DBConnection;
+import DAO.OfflineJournal;
+import DAO.SchemaMigrator;
 import javafx.application.Application;
 import javafx.fxml.FXMLLoader;
 import javafx.scene.Parent;
 import javafx.scene.Scene;
 import javafx.stage.Stage;
+import util.Logger;
+import util.ReminderScheduler;
 
 import java.util.Locale;
 import java.util.ResourceBundle;
@@ -28,12 +34,29 @@ public class Main extends Application {
      */
     @Override
     public void start(Stage stage) throws Exception {
+        // Migrate in the background, so a database that can't be reached doesn't hold up the login window.
+        AsyncDAO.onFxThread(AsyncDAO.run(SchemaMigrator::migrate), migrated -> {},
+                error -> System.out.println("Schema migration failed: " + error.getMessage()));
+        OfflineJournal.start();
+
         Parent root = FXMLLoader.load(getClass().getResource("/view/LoginView.fxml"), rb);
         stage.setTitle("Appointment Scheduling System");
         stage.setScene(new Scene(root, 400, 250));
         stage.show();
     }
 
+    /**
+     * Called when the program exits. Stops the appointment reminders and offline synchronization, flushes the login log and closes any pooled database connections.
+     */
+    @Override
+    public void stop() {
+        ReminderScheduler.stop();
+        OfflineJournal.stop();
+        Logger.shutdown();
+        AsyncDAO.shutdown();
+        DBConnection.closePool();
+    }
+
     /**
      * Main method, the entry point for the program.
      *
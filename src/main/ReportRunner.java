@@ -0,0 +1,182 @@
+package main;
+
+import DAO.DBConnection;
+import DAO.SchemaMigrator;
+import util.ReportExporter;
+import util.TimeZone;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * A command-line entry point that exports reports without a display, e.g. from a nightly scheduled job.
+ *
+ * Usage:
+ * <pre>
+ *     java -cp &lt;classpath&gt; main.ReportRunner --out &lt;directory&gt; [--from yyyy-MM-dd] [--to yyyy-MM-dd]
+ *         [--reports all|appointments_by_type,schedule_by_contact,customers_by_country] [--format csv|json]
+ * </pre>
+ * The date range covers appointments starting from the beginning of the --from day up to the end of the --to day, in
+ * the local time zone; without it, every appointment is included. The reports are exported at the same time, each on
+ * its own pooled connection, and streamed to their files, after any pending schema migrations are applied. The exit status is 0 if every report was exported, 1 if
+ * any failed and 2 if the arguments were wrong.
+ *
+ * No JavaFX classes are used, so no display or FX runtime is needed.
+ *
+ * @author James Carney
+ */
+public class ReportRunner {
+
+    private static final String usage = "Usage: main.ReportRunner --out <directory> [--from yyyy-MM-dd] [--to yyyy-MM-dd] "
+            + "[--reports all|appointments_by_type,schedule_by_contact,customers_by_country] [--format csv|json]";
+
+    /**
+     * Entry point for the headless report runner.
+     *
+     * @param args The command-line arguments, described in the class documentation.
+     */
+    public static void main(String[] args) {
+        System.exit(run(args));
+    }
+
+    /**
+     * Parses the arguments and exports the reports.
+     *
+     * @param args The command-line arguments.
+     * @return The exit status.
+     */
+    public static int run(String[] args) {
+        Path directory = null;
+        LocalDate fromDay = null;
+        LocalDate toDay = null;
+        Set<ReportExporter.Report> reports = EnumSet.allOf(ReportExporter.Report.class);
+        ReportExporter.Format format = ReportExporter.Format.CSV;
+
+        try {
+            for (int i = 0; i < args.length; i++) {
+                String name = args[i];
+                if (i + 1 >= args.length) {
+                    return usageError("Missing value for " + name);
+                }
+                String value = args[++i];
+
+                switch (name) {
+                    case "--out":
+                        directory = Paths.get(value);
+                        break;
+                    case "--from":
+                        fromDay = LocalDate.parse(value);
+                        break;
+                    case "--to":
+                        toDay = LocalDate.parse(value);
+                        break;
+                    case "--format":
+                        format = ReportExporter.Format.valueOf(value.toUpperCase());
+                        break;
+                    case "--reports":
+                        if (!value.equalsIgnoreCase("all")) {
+                            reports = EnumSet.noneOf(ReportExporter.Report.class);
+                            for (String reportName : value.split(",")) {
+                                ReportExporter.Report report = ReportExporter.Report.fromFileName(reportName.trim());
+                                if (report == null) {
+                                    return usageError("Unknown report: " + reportName);
+                                }
+                                reports.add(report);
+                            }
+                        }
+                        break;
+                    default:
+                        return usageError("Unknown argument: " + name);
+                }
+            }
+        }
+        catch (DateTimeParseException e) {
+            return usageError("Dates must be written as yyyy-MM-dd: " + e.getParsedString());
+        }
+        catch (IllegalArgumentException e) {
+            return usageError("Format must be csv or json");
+        }
+
+        if (directory == null) {
+            return usageError("--out is required");
+        }
+        if (reports.isEmpty()) {
+            return usageError("--reports must name at least one report");
+        }
+        if ((fromDay == null) != (toDay == null)) {
+            return usageError("--from and --to must be given together");
+        }
+        if (fromDay != null && toDay.isBefore(fromDay)) {
+            return usageError("--to is before --from");
+        }
+
+        Instant from = fromDay == null ? null : fromDay.atStartOfDay(TimeZone.userZoneId).toInstant();
+        Instant to = toDay == null ? null : toDay.plusDays(1).atStartOfDay(TimeZone.userZoneId).toInstant();
+
+        return export(reports, format, directory, from, to);
+    }
+
+    /**
+     * Exports the reports in parallel and prints how each one went.
+     *
+     * @param reports The reports to export.
+     * @param format The file format.
+     * @param directory The directory to write the files in.
+     * @param from The start of the date range, or null for all appointments.
+     * @param to The end of the date range, or null for all appointments.
+     * @return The exit status.
+     */
+    private static int export(Set<ReportExporter.Report> reports, ReportExporter.Format format, Path directory, Instant from, Instant to) {
+        long started = System.nanoTime();
+        int status = 0;
+        ExecutorService executor = Executors.newFixedThreadPool(reports.size());
+
+        try {
+            SchemaMigrator.migrate();
+            Files.createDirectories(directory);
+
+            List<Future<ReportExporter.Result>> results = new ArrayList<>();
+            for (ReportExporter.Report report : reports) {
+                results.add(executor.submit(() -> ReportExporter.export(report, format, directory, from, to)));
+            }
+
+            for (Future<ReportExporter.Result> result : results) {
+                try {
+                    result.get();
+                }
+                catch (Exception e) {
+                    status = 1;
+                    System.out.println("Report failed: " + (e.getCause() == null ? e : e.getCause()));
+                }
+            }
+        }
+        catch (Exception e) {
+            status = 1;
+            System.out.println("Export failed: " + e.getMessage());
+        }
+        finally {
+            executor.shutdown();
+            DBConnection.closePool();
+        }
+
+        System.out.printf("Finished in %.2f s%n", (System.nanoTime() - started) / 1_000_000_000.0);
+        return status;
+    }
+
+    private static int usageError(String message) {
+        System.out.println(message);
+        System.out.println(usage);
+        return 2;
+    }
+}
@@ -1,42 +1,67 @@
 package model;
 
-import javafx.beans.value.ObservableValue;
+import javafx.beans.property.ReadOnlyObjectProperty;
+import javafx.beans.property.ReadOnlyObjectWrapper;
+import util.TimeZone;
+
+import java.time.Instant;
 import java.time.ZonedDateTime;
 
 /**
  * A class representing an appointment
  *
+ * IDs are stored as ints and times as epoch seconds, so an appointment is a handful of primitives and four strings.
+ * The JavaFX properties used by TableView are only created for the rows it actually renders, the first time each
+ * one is asked for.
+ *
  * @author James Carney
  */
 public class Appointment {
-    private ObservableValue<Integer> appointmentId;
-    private ObservableValue<String> title;
-    private ObservableValue<String> description;
-    private ObservableValue<String> location;
-    private ObservableValue<String> type;
-    private ObservableValue<ZonedDateTime> start;
-    private ObservableValue<ZonedDateTime> end;
-    private ObservableValue<Integer> customerId;
-    private ObservableValue<Integer> userId;
-    private ObservableValue<Integer> contactId;
+    private int appointmentId;
+    private String title;
+    private String description;
+    private String location;
+    private String type;
+    private long start;
+    private long end;
+    private int customerId;
+    private int userId;
+    private int contactId;
+
+    private Properties properties;
 
     /**
-     * Class constructor with associated appointmentId. Used when editing an existing appointment.
+     * The JavaFX properties of an appointment, created one at a time on demand.
+     */
+    private static class Properties {
+        private ReadOnlyObjectWrapper<Integer> appointmentId;
+        private ReadOnlyObjectWrapper<String> title;
+        private ReadOnlyObjectWrapper<String> description;
+        private ReadOnlyObjectWrapper<String> location;
+        private ReadOnlyObjectWrapper<String> type;
+        private ReadOnlyObjectWrapper<ZonedDateTime> start;
+        private ReadOnlyObjectWrapper<ZonedDateTime> end;
+        private ReadOnlyObjectWrapper<Integer> customerId;
+        private ReadOnlyObjectWrapper<Integer> userId;
+        private ReadOnlyObjectWrapper<Integer> contactId;
+    }
+
+    /**
+     * Class constructor with associated appointmentId. Used when loading an appointment from the database.
      *
      * @param appointmentId The ID of the appointment.
      * @param title The title of the appoingment.
      * @param description A description of the appointment.
      * @param location The location of the appointment.
      * @param type The type of appointment.
-     * @param start The appointment start time.
-     * @param end The appointment end time.
+     * @param start The appointment start time, in epoch seconds.
+     * @param end The appointment end time, in epoch seconds.
      * @param customerId The ID of the customer with whom the appointment is scheduled.
      * @param userId The ID of the user making the appointment.
      * @param contactId The contact info of a person related to the appointment.
      */
-    public Appointment(ObservableValue<Integer> appointmentId, ObservableValue<String> title, ObservableValue<String> description,
-                       ObservableValue<String> location, ObservableValue<String> type, ObservableValue<ZonedDateTime> start, ObservableValue<ZonedDateTime> end,
-                       ObservableValue<Integer> customerId, ObservableValue<Integer> userId, ObservableValue<Integer> contactId) {
+    public Appointment(int appointmentId, String title, String description, String location, String type, long start,
+                       long end, int customerId, int userId, int contactId) {
         this.appointmentId = appointmentId;
         this.title = title;
         this.description = description;
@@ -49,6 +74,25 @@ public class Appointment {
         this.contactId = contactId;
     }
 
+    /**
+     * Class constructor with associated appointmentId. Used when editing an existing appointment.
+     *
+     * @param appointmentId The ID of the appointment.
+     * @param title The title of the appoingment.
+     * @param description A description of the appointment.
+     * @param location The location of the appointment.
+     * @param type The type of appointment.
+     * @param start The appointment start time.
+     * @param end The appointment end time.
+     * @param customerId The ID of the customer with whom the appointment is scheduled.
+     * @param userId The ID of the user making the appointment.
+     * @param contactId The contact info of a person related to the appointment.
+     */
+    public Appointment(int appointmentId, String title, String description, String location, String type,
+                       ZonedDateTime start, ZonedDateTime end, int customerId, int userId, int contactId) {
+        this(appointmentId, title, description, location, type, start.toEpochSecond(), end.toEpochSecond(), customerId, userId, contactId);
+    }
+
     /**
      * Class constructor without appointment ID. Used during creating of a new appointment.
      *
@@ -62,18 +106,9 @@ public class Appointment {
      * @param userId The ID of the user making the appointment.
      * @param contactId The contact info of a person related to the appointment.
      */
-    public Appointment(ObservableValue<String> title, ObservableValue<String> description,
-                       ObservableValue<String> location, ObservableValue<String> type, ObservableValue<ZonedDateTime> start, ObservableValue<ZonedDateTime> end,
-                       ObservableValue<Integer> customerId, ObservableValue<Integer> userId, ObservableValue<Integer> contactId) {
-        this.title = title;
-        this.description = description;
-        this.location = location;
-        this.type = type;
-        this.start = start;
-        this.end = end;
-        this.customerId = customerId;
-        this.userId = userId;
-        this.contactId = contactId;
+    public Appointment(String title, String description, String location, String type, ZonedDateTime start,
+                       ZonedDateTime end, int customerId, int userId, int contactId) {
+        this(0, title, description, location, type, start, end, customerId, userId, contactId);
     }
 
     public Appointment() {
@@ -85,7 +120,7 @@ public class Appointment {
      *
      * @return the appointment ID.
      */
-    public ObservableValue<Integer> getAppointmentId() {
+    public int getAppointmentId() {
         return appointmentId;
     }
 
@@ -94,8 +129,24 @@ public class Appointment {
      *
      * @param appointmentId The appointment ID.
      */
-    public void setAppointmentId(ObservableValue<Integer> appointmentId) {
+    public void setAppointmentId(int appointmentId) {
         this.appointmentId = appointmentId;
+        if (properties != null && properties.appointmentId != null) {
+            properties.appointmentId.set(appointmentId);
+        }
+    }
+
+    /**
+     * Gets the ID of an appointment as a property.
+     *
+     * @return the appointment ID property.
+     */
+    public ReadOnlyObjectProperty<Integer> appointmentIdProperty() {
+        Properties p = properties();
+        if (p.appointmentId == null) {
+            p.appointmentId = new ReadOnlyObjectWrapper<>(appointmentId);
+        }
+        return p.appointmentId.getReadOnlyProperty();
     }
 
     /**
@@ -103,7 +154,7 @@ public class Appointment {
      *
      * @return the title.
      */
-    public ObservableValue<String> getTitle() {
+    public String getTitle() {
         return title;
     }
 
@@ -112,8 +163,24 @@ public class Appointment {
      *
      * @param title The title to be set.
      */
-    public void setTitle(ObservableValue<String> title) {
+    public void setTitle(String title) {
         this.title = title;
+        if (properties != null && properties.title != null) {
+            properties.title.set(title);
+        }
+    }
+
+    /**
+     * Gets the title of an appointment as a property.
+     *
+     * @return the title property.
+     */
+    public ReadOnlyObjectProperty<String> titleProperty() {
+        Properties p = properties();
+        if (p.title == null) {
+            p.title = new ReadOnlyObjectWrapper<>(title);
+        }
+        return p.title.getReadOnlyProperty();
     }
 
     /**
@@ -121,7 +188,7 @@ public class Appointment {
      *
      * @return the description.
      */
-    public ObservableValue<String> getDescription() {
+    public String getDescription() {
         return description;
     }
 
@@ -130,8 +197,24 @@ public class Appointment {
      *
      * @param description The appointment description.
      */
-    public void setDescription(ObservableValue<String> description) {
+    public void setDescription(String description) {
         this.description = description;
+        if (properties != null && properties.description != null) {
+            properties.description.set(description);
+        }
+    }
+
+    /**
+     * Gets a description of the appointment as a property.
+     *
+     * @return the description property.
+     */
+    public ReadOnlyObjectProperty<String> descriptionProperty() {
+        Properties p = properties();
+        if (p.description == null) {
+            p.description = new ReadOnlyObjectWrapper<>(description);
+        }
+        return p.description.getReadOnlyProperty();
     }
 
     /**
@@ -139,7 +222,7 @@ public class Appointment {
      *
      * @return the location.
      */
-    public ObservableValue<String> getLocation() {
+    public String getLocation() {
         return location;
     }
 
@@ -148,8 +231,24 @@ public class Appointment {
      *
      * @param location The location.
      */
-    public void setLocation(ObservableValue<String> location) {
+    public void setLocation(String location) {
         this.location = location;
+        if (properties != null && properties.location != null) {
+            properties.location.set(location);
+        }
+    }
+
+    /**
+     * Gets the location of an appointment as a property.
+     *
+     * @return the location property.
+     */
+    public ReadOnlyObjectProperty<String> locationProperty() {
+        Properties p = properties();
+        if (p.location == null) {
+            p.location = new ReadOnlyObjectWrapper<>(location);
+        }
+        return p.location.getReadOnlyProperty();
     }
 
     /**
@@ -157,7 +256,7 @@ public class Appointment {
      *
      * @return The type.
      */
-    public ObservableValue<String> getType() {
+    public String getType() {
         return type;
     }
 
@@ -166,16 +265,41 @@ public class Appointment {
      *
      * @param type The appointment type.
      */
-    public void setType(ObservableValue<String> type) {
+    public void setType(String type) {
         this.type = type;
+        if (properties != null && properties.type != null) {
+            properties.type.set(type);
+        }
     }
 
     /**
-     * Gets the start time of an appointment.
+     * Gets the type of appointment as a property.
+     *
+     * @return The type property.
+     */
+    public ReadOnlyObjectProperty<String> typeProperty() {
+        Properties p = properties();
+        if (p.type == null) {
+            p.type = new ReadOnlyObjectWrapper<>(type);
+        }
+        return p.type.getReadOnlyProperty();
+    }
+
+    /**
+     * Gets the start time of an appointment, in the user's time zone.
      *
      * @return The start time.
      */
-    public ObservableValue<ZonedDateTime> getStart() {
+    public ZonedDateTime getStart() {
+        return toUserTime(start);
+    }
+
+    /**
+     * Gets the start time of an appointment.
+     *
+     * @return The start time, in epoch seconds.
+     */
+    public long getStartEpochSecond() {
         return start;
     }
 
@@ -184,16 +308,41 @@ public class Appointment {
      *
      * @param start The start time.
      */
-    public void setStart(ObservableValue<ZonedDateTime> start) {
-        this.start = start;
+    public void setStart(ZonedDateTime start) {
+        this.start = start.toEpochSecond();
+        if (properties != null && properties.start != null) {
+            properties.start.set(getStart());
+        }
     }
 
     /**
-     * Gets the end time of an appointment.
+     * Gets the start time of an appointment as a property.
+     *
+     * @return The start time property.
+     */
+    public ReadOnlyObjectProperty<ZonedDateTime> startProperty() {
+        Properties p = properties();
+        if (p.start == null) {
+            p.start = new ReadOnlyObjectWrapper<>(getStart());
+        }
+        return p.start.getReadOnlyProperty();
+    }
+
+    /**
+     * Gets the end time of an appointment, in the user's time zone.
      *
      * @return The end time.
      */
-    public ObservableValue<ZonedDateTime> getEnd() {
+    public ZonedDateTime getEnd() {
+        return toUserTime(end);
+    }
+
+    /**
+     * Gets the end time of an appointment.
+     *
+     * @return The end time, in epoch seconds.
+     */
+    public long getEndEpochSecond() {
         return end;
     }
 
@@ -202,8 +351,24 @@ public class Appointment {
      *
      * @param end The end time.
      */
-    public void setEnd(ObservableValue<ZonedDateTime> end) {
-        this.end = end;
+    public void setEnd(ZonedDateTime end) {
+        this.end = end.toEpochSecond();
+        if (properties != null && properties.end != null) {
+            properties.end.set(getEnd());
+        }
+    }
+
+    /**
+     * Gets the end time of an appointment as a property.
+     *
+     * @return The end time property.
+     */
+    public ReadOnlyObjectProperty<ZonedDateTime> endProperty() {
+        Properties p = properties();
+        if (p.end == null) {
+            p.end = new ReadOnlyObjectWrapper<>(getEnd());
+        }
+        return p.end.getReadOnlyProperty();
     }
 
     /**
@@ -211,7 +376,7 @@ public class Appointment {
      *
      * @return The customer ID.
      */
-    public ObservableValue<Integer> getCustomerId() {
+    public int getCustomerId() {
         return customerId;
     }
 
@@ -220,8 +385,24 @@ public class Appointment {
      *
      * @param customerId The customer ID.
      */
-    public void setCustomerId(ObservableValue<Integer> customerId) {
+    public void setCustomerId(int customerId) {
         this.customerId = customerId;
+        if (properties != null && properties.customerId != null) {
+            properties.customerId.set(customerId);
+        }
+    }
+
+    /**
+     * Gets the ID of the customer associated with the appointment as a property.
+     *
+     * @return The customer ID property.
+     */
+    public ReadOnlyObjectProperty<Integer> customerIdProperty() {
+        Properties p = properties();
+        if (p.customerId == null) {
+            p.customerId = new ReadOnlyObjectWrapper<>(customerId);
+        }
+        return p.customerId.getReadOnlyProperty();
     }
 
     /**
@@ -229,7 +410,7 @@ public class Appointment {
      *
      * @return The user ID.
      */
-    public ObservableValue<Integer> getUserId() {
+    public int getUserId() {
         return userId;
     }
 
@@ -238,8 +419,24 @@ public class Appointment {
      *
      * @param userId The user ID.
      */
-    public void setUserId(ObservableValue<Integer> userId) {
+    public void setUserId(int userId) {
         this.userId = userId;
+        if (properties != null && properties.userId != null) {
+            properties.userId.set(userId);
+        }
+    }
+
+    /**
+     * Gets the ID of the user who created the appointment as a property.
+     *
+     * @return The user ID property.
+     */
+    public ReadOnlyObjectProperty<Integer> userIdProperty() {
+        Properties p = properties();
+        if (p.userId == null) {
+            p.userId = new ReadOnlyObjectWrapper<>(userId);
+        }
+        return p.userId.getReadOnlyProperty();
     }
 
     /**
@@ -247,7 +444,7 @@ public class Appointment {
      *
      * @return The contact ID.
      */
-    public ObservableValue<Integer> getContactId() {
+    public int getContactId() {
         return contactId;
     }
 
@@ -256,7 +453,34 @@ public class Appointment {
      *
      * @param contactId The contact ID.
      */
-    public void setContactId(ObservableValue<Integer> contactId) {
+    public void setContactId(int contactId) {
         this.contactId = contactId;
+        if (properties != null && properties.contactId != null) {
+            properties.contactId.set(contactId);
+        }
+    }
+
+    /**
+     * Gets the ID of a contact associated with the appointment as a property.
+     *
+     * @return The contact ID property.
+     */
+    public ReadOnlyObjectProperty<Integer> contactIdProperty() {
+        Properties p = properties();
+        if (p.contactId == null) {
+            p.contactId = new ReadOnlyObjectWrapper<>(contactId);
+        }
+        return p.contactId.getReadOnlyProperty();
+    }
+
+    private Properties properties() {
+        if (properties == null) {
+            properties = new Properties();
+        }
+        return properties;
+    }
+
+    private static ZonedDateTime toUserTime(long epochSecond) {
+        return Instant.ofEpochSecond(epochSecond).atZone(TimeZone.userZoneId);
     }
 }
@@ -0,0 +1,3 @@
+-- Composite indexes that keep appointment conflict checks (AppointmentDAO.hasConflict) as index range scans.
+CREATE INDEX idx_appointments_contact_start_end ON appointments (Contact_ID, Start, End);
+CREATE INDEX idx_appointments_customer_start_end ON appointments (Customer_ID, Start, End);
@@ -0,0 +1,4 @@
+-- Indexes that let the weekly/monthly views and per-user range queries read only the requested time window.
+-- Contact and customer range queries are served by the composite indexes from V1.
+CREATE INDEX idx_appointments_start ON appointments (Start);
+CREATE INDEX idx_appointments_user_start ON appointments (User_ID, Start);
@@ -0,0 +1,60 @@
+-- The client_schedule tables, for the embedded database. The MySQL schema is created outside the program.
+CREATE TABLE IF NOT EXISTS countries (
+    Country_ID INT AUTO_INCREMENT PRIMARY KEY,
+    Country VARCHAR(50),
+    Create_Date DATETIME DEFAULT CURRENT_TIMESTAMP,
+    Created_By VARCHAR(50),
+    Last_Update TIMESTAMP DEFAULT CURRENT_TIMESTAMP,
+    Last_Updated_By VARCHAR(50)
+);
+CREATE TABLE IF NOT EXISTS first_level_divisions (
+    Division_ID INT AUTO_INCREMENT PRIMARY KEY,
+    Division VARCHAR(50),
+    Create_Date DATETIME DEFAULT CURRENT_TIMESTAMP,
+    Created_By VARCHAR(50),
+    Last_Update TIMESTAMP DEFAULT CURRENT_TIMESTAMP,
+    Last_Updated_By VARCHAR(50),
+    COUNTRY_ID INT NOT NULL REFERENCES countries (Country_ID)
+);
+CREATE TABLE IF NOT EXISTS customers (
+    Customer_ID INT AUTO_INCREMENT PRIMARY KEY,
+    Customer_Name VARCHAR(50),
+    Address VARCHAR(100),
+    Postal_Code VARCHAR(50),
+    Phone VARCHAR(50),
+    Create_Date DATETIME DEFAULT CURRENT_TIMESTAMP,
+    Created_By VARCHAR(50),
+    Last_Update TIMESTAMP DEFAULT CURRENT_TIMESTAMP,
+    Last_Updated_By VARCHAR(50),
+    Division_ID INT NOT NULL REFERENCES first_level_divisions (Division_ID)
+);
+CREATE TABLE IF NOT EXISTS users (
+    User_ID INT AUTO_INCREMENT PRIMARY KEY,
+    User_Name VARCHAR(50) UNIQUE,
+    Password TEXT,
+    Create_Date DATETIME DEFAULT CURRENT_TIMESTAMP,
+    Created_By VARCHAR(50),
+    Last_Update TIMESTAMP DEFAULT CURRENT_TIMESTAMP,
+    Last_Updated_By VARCHAR(50)
+);
+CREATE TABLE IF NOT EXISTS contacts (
+    Contact_ID INT AUTO_INCREMENT PRIMARY KEY,
+    Contact_Name VARCHAR(50),
+    Email VARCHAR(50)
+);
+CREATE TABLE IF NOT EXISTS appointments (
+    Appointment_ID INT AUTO_INCREMENT PRIMARY KEY,
+    Title VARCHAR(50),
+    Description VARCHAR(50),
+    Location VARCHAR(50),
+    Type VARCHAR(50),
+    Start DATETIME,
+    End DATETIME,
+    Create_Date DATETIME DEFAULT CURRENT_TIMESTAMP,
+    Created_By VARCHAR(50),
+    Last_Update TIMESTAMP DEFAULT CURRENT_TIMESTAMP,
+    Last_Updated_By VARCHAR(50),
+    Customer_ID INT NOT NULL REFERENCES customers (Customer_ID),
+    User_ID INT NOT NULL REFERENCES users (User_ID),
+    Contact_ID INT NOT NULL REFERENCES contacts (Contact_ID)
+);
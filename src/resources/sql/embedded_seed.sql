@@ -0,0 +1,74 @@
+-- The reference data a new embedded database starts with: the countries and divisions customers can be in, and the
+-- contacts and users appointments can be booked with.
+INSERT INTO countries(Country) VALUES ('U.S'), ('UK'), ('Canada');
+INSERT INTO first_level_divisions(Division, COUNTRY_ID) VALUES
+    ('Alabama', 1),
+    ('Alaska', 1),
+    ('Arizona', 1),
+    ('Arkansas', 1),
+    ('California', 1),
+    ('Colorado', 1),
+    ('Connecticut', 1),
+    ('Delaware', 1),
+    ('District of Columbia', 1),
+    ('Florida', 1),
+    ('Georgia', 1),
+    ('Hawaii', 1),
+    ('Idaho', 1),
+    ('Illinois', 1),
+    ('Indiana', 1),
+    ('Iowa', 1),
+    ('Kansas', 1),
+    ('Kentucky', 1),
+    ('Louisiana', 1),
+    ('Maine', 1),
+    ('Maryland', 1),
+    ('Massachusetts', 1),
+    ('Michigan', 1),
+    ('Minnesota', 1),
+    ('Mississippi', 1),
+    ('Missouri', 1),
+    ('Montana', 1),
+    ('Nebraska', 1),
+    ('Nevada', 1),
+    ('New Hampshire', 1),
+    ('New Jersey', 1),
+    ('New Mexico', 1),
+    ('New York', 1),
+    ('North Carolina', 1),
+    ('North Dakota', 1),
+    ('Ohio', 1),
+    ('Oklahoma', 1),
+    ('Oregon', 1),
+    ('Pennsylvania', 1),
+    ('Rhode Island', 1),
+    ('South Carolina', 1),
+    ('South Dakota', 1),
+    ('Tennessee', 1),
+    ('Texas', 1),
+    ('Utah', 1),
+    ('Vermont', 1),
+    ('Virginia', 1),
+    ('Washington', 1),
+    ('West Virginia', 1),
+    ('Wisconsin', 1),
+    ('Wyoming', 1),
+    ('Alberta', 3),
+    ('British Columbia', 3),
+    ('Manitoba', 3),
+    ('New Brunswick', 3),
+    ('Newfoundland and Labrador', 3),
+    ('Northwest Territories', 3),
+    ('Nova Scotia', 3),
+    ('Nunavut', 3),
+    ('Ontario', 3),
+    ('Prince Edward Island', 3),
+    ('Québec', 3),
+    ('Saskatchewan', 3),
+    ('Yukon', 3),
+    ('England', 2),
+    ('Wales', 2),
+    ('Scotland', 2),
+    ('Northern Ireland', 2);
+INSERT INTO contacts(Contact_Name, Email) VALUES ('Anika Costa', 'acosta@company.com'), ('Daniel Garcia', 'dgarcia@company.com'), ('Li Lee', 'llee@company.com');
+INSERT INTO users(User_Name, Password) VALUES ('test', 'test'), ('admin', 'admin');
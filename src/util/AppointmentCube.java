@@ -0,0 +1,498 @@
+package util;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.SortedMap;
+import java.util.TreeMap;
+
+/**
+ * A pre-aggregated cube of appointment counts over seven dimensions: month, week, type, contact, customer country,
+ * division and user.
+ *
+ * The cube is filled once with {@link #add(Member[], int)}, one call per distinct combination of members, and is then
+ * queried from memory. Members are identified by their key, e.g. a contact's ID, so two contacts with the same name
+ * stay apart, and are sorted by name. Each member is stored as a small integer code, numbered in sorted order, so cells
+ * are plain int arrays and results come out sorted without a further sort. Two-dimension pivots over the whole cube are cached the
+ * first time they are asked for; pivots and roll-ups over a slice scan the cells, which costs O(cells), not a query.
+ *
+ * @author James Carney
+ */
+public class AppointmentCube {
+    /**
+     * The dimensions of the cube.
+     */
+    public enum Dimension {
+        MONTH("Month"),
+        WEEK("Week"),
+        TYPE("Type"),
+        CONTACT("Contact"),
+        COUNTRY("Customer Country"),
+        DIVISION("Division"),
+        USER("User");
+
+        private final String label;
+
+        Dimension(String label) {
+            this.label = label;
+        }
+
+        /**
+         * Gets the name of the dimension as shown to the user.
+         *
+         * @return The name.
+         */
+        @Override
+        public String toString() {
+            return label;
+        }
+    }
+
+    /**
+     * A member of a dimension: the key that identifies it and the name shown for it.
+     */
+    public static class Member implements Comparable<Member> {
+        // Sorted by name, appointments without a type first, and by key when two members share a name.
+        private static final Comparator<Member> order = Comparator
+                .comparing((Member m) -> m.name, Comparator.nullsFirst(Comparator.naturalOrder()))
+                .thenComparing(m -> m.key, Comparator.nullsFirst(Comparator.naturalOrder()));
+
+        private final String key;
+        private final String name;
+
+        /**
+         * Class constructor.
+         *
+         * @param key The key identifying the member within its dimension, e.g. an ID. May be null.
+         * @param name The name shown for the member. May be null.
+         */
+        public Member(String key, String name) {
+            this.key = key;
+            this.name = name;
+        }
+
+        /**
+         * Class constructor for a member identified by its name, e.g. a month or an appointment type.
+         *
+         * @param name The name of the member. May be null.
+         */
+        public Member(String name) {
+            this(name, name);
+        }
+
+        /**
+         * Gets the key identifying the member.
+         *
+         * @return The key.
+         */
+        public String getKey() {
+            return key;
+        }
+
+        /**
+         * Gets the name shown for the member.
+         *
+         * @return The name.
+         */
+        public String getName() {
+            return name;
+        }
+
+        @Override
+        public int compareTo(Member other) {
+            return order.compare(this, other);
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            return o instanceof Member && Objects.equals(key, ((Member) o).key);
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hashCode(key);
+        }
+
+        /**
+         * Gets the name of the member as shown to the user.
+         *
+         * @return The name, or "(none)" if the member has none.
+         */
+        @Override
+        public String toString() {
+            return name == null ? "(none)" : name;
+        }
+    }
+
+    private static final int dimensionCount = Dimension.values().length;
+
+    // Member key -> code for each dimension; while the cube is being filled the codes are in the order members were
+    // added, and once it is frozen they are in sorted order.
+    private final List<Map<String, Integer>> codes = new ArrayList<>();
+    // While the cube is being filled: the members of each dimension in the order they were added, and member codes ->
+    // count for each cell.
+    private List<List<Member>> added = new ArrayList<>();
+    private Map<CellKey, Integer> pending = new HashMap<>();
+
+    // Once it is frozen: sorted members for each dimension, and the cells as parallel arrays.
+    private Member[][] members;
+    private int[][] cellCodes;
+    private int[] cellCounts;
+    private int total;
+
+    private final Map<Dimension, Map<Dimension, Pivot>> pivotCache = new EnumMap<>(Dimension.class);
+
+    /**
+     * Creates an empty cube.
+     */
+    public AppointmentCube() {
+        for (int d = 0; d < dimensionCount; d++) {
+            codes.add(new HashMap<>());
+            added.add(new ArrayList<>());
+        }
+    }
+
+    /**
+     * Adds appointments to the cube. Must not be called once the cube has been queried.
+     *
+     * @param cellMembers The member of each dimension, in the order of {@link Dimension#values()}.
+     * @param count The number of appointments with those members.
+     */
+    public synchronized void add(Member[] cellMembers, int count) {
+        if (pending == null) {
+            throw new IllegalStateException("The cube has already been queried.");
+        }
+        if (cellMembers.length != dimensionCount) {
+            throw new IllegalArgumentException("Expected " + dimensionCount + " members, got " + cellMembers.length);
+        }
+
+        int[] key = new int[dimensionCount];
+        for (int d = 0; d < dimensionCount; d++) {
+            Map<String, Integer> dimensionCodes = codes.get(d);
+            List<Member> dimensionMembers = added.get(d);
+            Member member = cellMembers[d];
+            key[d] = dimensionCodes.computeIfAbsent(member.getKey(), k -> {
+                dimensionMembers.add(member);
+                return dimensionMembers.size() - 1;
+            });
+        }
+        pending.merge(new CellKey(key), count, Integer::sum);
+    }
+
+    /**
+     * Gets the members of a dimension.
+     *
+     * @param dimension The dimension.
+     * @return The members in sorted order.
+     */
+    public synchronized List<Member> getMembers(Dimension dimension) {
+        freeze();
+        return Collections.unmodifiableList(Arrays.asList(members[dimension.ordinal()]));
+    }
+
+    /**
+     * Gets the number of appointments in the cube.
+     *
+     * @return The total.
+     */
+    public synchronized int getTotal() {
+        freeze();
+        return total;
+    }
+
+    /**
+     * Rolls the cube up to a single dimension.
+     *
+     * @param dimension The dimension to keep.
+     * @param slice The member each other dimension is restricted to; dimensions not in the map are not restricted.
+     * @return The count for each member with any appointments, sorted by member.
+     */
+    public synchronized SortedMap<Member, Integer> rollUp(Dimension dimension, Map<Dimension, Member> slice) {
+        freeze();
+        int d = dimension.ordinal();
+        int[] counts = new int[members[d].length];
+
+        int[] filter = toFilter(slice);
+        if (filter != null) {
+            for (int c = 0; c < cellCounts.length; c++) {
+                if (matches(cellCodes[c], filter)) {
+                    counts[cellCodes[c][d]] += cellCounts[c];
+                }
+            }
+        }
+
+        TreeMap<Member, Integer> result = new TreeMap<>();
+        for (int m = 0; m < counts.length; m++) {
+            if (counts[m] > 0) {
+                result.put(members[d][m], counts[m]);
+            }
+        }
+        return Collections.unmodifiableSortedMap(result);
+    }
+
+    /**
+     * Drills down from one member of a dimension into another dimension, e.g. from a country into its divisions.
+     *
+     * @param from The dimension being drilled into.
+     * @param member The member of that dimension.
+     * @param to The dimension to break the member down by.
+     * @return The count for each member of the second dimension, sorted by member.
+     */
+    public SortedMap<Member, Integer> drillDown(Dimension from, Member member, Dimension to) {
+        Map<Dimension, Member> slice = new EnumMap<>(Dimension.class);
+        slice.put(from, member);
+        return rollUp(to, slice);
+    }
+
+    /**
+     * Builds a two-dimension pivot over the whole cube. The result is cached.
+     *
+     * @param rows The dimension whose members become rows.
+     * @param columns The dimension whose members become columns.
+     * @return The pivot.
+     */
+    public synchronized Pivot pivot(Dimension rows, Dimension columns) {
+        return pivotCache.computeIfAbsent(rows, r -> new EnumMap<>(Dimension.class))
+                .computeIfAbsent(columns, c -> pivot(rows, columns, Collections.emptyMap()));
+    }
+
+    /**
+     * Builds a two-dimension pivot over a slice of the cube.
+     *
+     * @param rows The dimension whose members become rows.
+     * @param columns The dimension whose members become columns.
+     * @param slice The member each other dimension is restricted to; dimensions not in the map are not restricted.
+     * @return The pivot.
+     */
+    public synchronized Pivot pivot(Dimension rows, Dimension columns, Map<Dimension, Member> slice) {
+        freeze();
+        int r = rows.ordinal();
+        int c = columns.ordinal();
+        int[][] counts = new int[members[r].length][members[c].length];
+
+        int[] filter = toFilter(slice);
+        if (filter != null) {
+            for (int cell = 0; cell < cellCounts.length; cell++) {
+                if (matches(cellCodes[cell], filter)) {
+                    counts[cellCodes[cell][r]][cellCodes[cell][c]] += cellCounts[cell];
+                }
+            }
+        }
+        return new Pivot(members[r], members[c], counts);
+    }
+
+    /**
+     * Converts a slice into a code for each dimension, -1 meaning unrestricted.
+     *
+     * @param slice The slice.
+     * @return The codes, or null if the slice names a member the cube doesn't have.
+     */
+    private int[] toFilter(Map<Dimension, Member> slice) {
+        int[] filter = new int[dimensionCount];
+        Arrays.fill(filter, -1);
+        for (Map.Entry<Dimension, Member> entry : slice.entrySet()) {
+            int d = entry.getKey().ordinal();
+            Integer code = codes.get(d).get(entry.getValue().getKey());
+            if (code == null) {
+                return null;
+            }
+            filter[d] = code;
+        }
+        return filter;
+    }
+
+    private static boolean matches(int[] cell, int[] filter) {
+        for (int d = 0; d < dimensionCount; d++) {
+            if (filter[d] >= 0 && cell[d] != filter[d]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Renumbers the members of each dimension in sorted order and moves the cells into arrays. Runs on the first query.
+     */
+    private void freeze() {
+        if (pending == null) {
+            return;
+        }
+
+        members = new Member[dimensionCount][];
+        int[][] renumber = new int[dimensionCount][];
+        for (int d = 0; d < dimensionCount; d++) {
+            Map<String, Integer> dimensionCodes = codes.get(d);
+            Member[] sorted = added.get(d).toArray(new Member[0]);
+            Arrays.sort(sorted);
+            renumber[d] = new int[sorted.length];
+            for (int m = 0; m < sorted.length; m++) {
+                renumber[d][dimensionCodes.get(sorted[m].getKey())] = m;
+                dimensionCodes.put(sorted[m].getKey(), m);
+            }
+            members[d] = sorted;
+        }
+
+        cellCodes = new int[pending.size()][];
+        cellCounts = new int[pending.size()];
+        int cell = 0;
+        for (Map.Entry<CellKey, Integer> entry : pending.entrySet()) {
+            int[] key = entry.getKey().codes;
+            for (int d = 0; d < dimensionCount; d++) {
+                key[d] = renumber[d][key[d]];
+            }
+            cellCodes[cell] = key;
+            cellCounts[cell] = entry.getValue();
+            total += entry.getValue();
+            cell++;
+        }
+
+        added = null;
+        pending = null;
+    }
+
+    /**
+     * The member codes of one cell, usable as a map key.
+     */
+    private static class CellKey {
+        private final int[] codes;
+        private final int hash;
+
+        private CellKey(int[] codes) {
+            this.codes = codes;
+            this.hash = Arrays.hashCode(codes);
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            return o instanceof CellKey && Arrays.equals(codes, ((CellKey) o).codes);
+        }
+
+        @Override
+        public int hashCode() {
+            return hash;
+        }
+    }
+
+    /**
+     * A two-dimension pivot of appointment counts. Rows and columns with no appointments are left out.
+     */
+    public static class Pivot {
+        private final List<Member> rowMembers;
+        private final List<Member> columnMembers;
+        private final int[][] counts;
+        private final int[] rowTotals;
+        private final int[] columnTotals;
+        private final int total;
+
+        private Pivot(Member[] allRows, Member[] allColumns, int[][] allCounts) {
+            int[] rowSums = new int[allRows.length];
+            int[] columnSums = new int[allColumns.length];
+            for (int r = 0; r < allRows.length; r++) {
+                for (int c = 0; c < allColumns.length; c++) {
+                    rowSums[r] += allCounts[r][c];
+                    columnSums[c] += allCounts[r][c];
+                }
+            }
+
+            List<Member> rowNames = new ArrayList<>();
+            List<Integer> rowIndexes = new ArrayList<>();
+            for (int r = 0; r < allRows.length; r++) {
+                if (rowSums[r] > 0) {
+                    rowNames.add(allRows[r]);
+                    rowIndexes.add(r);
+                }
+            }
+            List<Member> columnNames = new ArrayList<>();
+            List<Integer> columnIndexes = new ArrayList<>();
+            for (int c = 0; c < allColumns.length; c++) {
+                if (columnSums[c] > 0) {
+                    columnNames.add(allColumns[c]);
+                    columnIndexes.add(c);
+                }
+            }
+
+            counts = new int[rowIndexes.size()][columnIndexes.size()];
+            rowTotals = new int[rowIndexes.size()];
+            columnTotals = new int[columnIndexes.size()];
+            int sum = 0;
+            for (int r = 0; r < rowIndexes.size(); r++) {
+                rowTotals[r] = rowSums[rowIndexes.get(r)];
+                sum += rowTotals[r];
+                for (int c = 0; c < columnIndexes.size(); c++) {
+                    counts[r][c] = allCounts[rowIndexes.get(r)][columnIndexes.get(c)];
+                }
+            }
+            for (int c = 0; c < columnIndexes.size(); c++) {
+                columnTotals[c] = columnSums[columnIndexes.get(c)];
+            }
+
+            rowMembers = Collections.unmodifiableList(rowNames);
+            columnMembers = Collections.unmodifiableList(columnNames);
+            total = sum;
+        }
+
+        /**
+         * Gets the row headings.
+         *
+         * @return The members of the row dimension, sorted.
+         */
+        public List<Member> getRowMembers() {
+            return rowMembers;
+        }
+
+        /**
+         * Gets the column headings.
+         *
+         * @return The members of the column dimension, sorted.
+         */
+        public List<Member> getColumnMembers() {
+            return columnMembers;
+        }
+
+        /**
+         * Gets the count in one cell of the pivot.
+         *
+         * @param row The index of the row.
+         * @param column The index of the column.
+         * @return The number of appointments.
+         */
+        public int getCount(int row, int column) {
+            return counts[row][column];
+        }
+
+        /**
+         * Gets the total of a row.
+         *
+         * @param row The index of the row.
+         * @return The number of appointments.
+         */
+        public int getRowTotal(int row) {
+            return rowTotals[row];
+        }
+
+        /**
+         * Gets the total of a column.
+         *
+         * @param column The index of the column.
+         * @return The number of appointments.
+         */
+        public int getColumnTotal(int column) {
+            return columnTotals[column];
+        }
+
+        /**
+         * Gets the total of the whole pivot.
+         *
+         * @return The number of appointments.
+         */
+        public int getTotal() {
+            return total;
+        }
+    }
+}
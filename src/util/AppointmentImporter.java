@@ -0,0 +1,817 @@
+package util;
+
+import DAO.AppointmentDAO;
+import DAO.AppointmentIndex;
+import DAO.ReferenceData;
+import model.Appointment;
+import model.Contact;
+import model.Customer;
+import model.User;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.sql.SQLException;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.time.ZoneOffset;
+import java.time.ZonedDateTime;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Imports appointments in bulk from CSV or iCalendar files, e.g. when moving a calendar over from another system.
+ *
+ * The import is a pipeline of three stages working on chunks of {@code chunkSize} rows. The calling thread parses the
+ * file one record at a time. Each chunk is then validated in parallel: times are parsed and checked against business
+ * hours, the contact, customer and user must exist, and the appointment mustn't overlap one already in the
+ * {@link AppointmentIndex}. Rows are also checked, in file order, against the rows accepted earlier in the same import.
+ * Finally the accepted rows are written by a single writer thread with {@link AppointmentDAO#createAppointments(List)},
+ * one JDBC batch and one transaction per chunk, while the next chunk is being parsed and validated.
+ *
+ * Rows that can't be imported are rejected with the line they start on and the reason, and the rest of the file is
+ * still imported. If a chunk fails to write, every row in it is rejected and nothing from it is saved.
+ *
+ * CSV files need a header row naming the columns Title, Description, Location, Type, Start, End, Customer_ID, User_ID
+ * and Contact_ID, in any order. Start and End are written as {@code yyyy-MM-dd HH:mm:ss} in the local time zone, or as
+ * ISO-8601 with an offset. iCalendar files are read one VEVENT at a time: SUMMARY, DESCRIPTION, LOCATION, the first
+ * CATEGORIES value as the type, DTSTART and DTEND or DURATION, and the IDs from X-CUSTOMER-ID, X-USER-ID and
+ * X-CONTACT-ID.
+ *
+ * @author James Carney
+ */
+public class AppointmentImporter {
+    /**
+     * The number of rows validated and written together, if no other size is given.
+     */
+    public static final int defaultChunkSize = 500;
+
+    private static final String[] csvColumns = {"title", "description", "location", "type", "start", "end", "customerid", "userid", "contactid"};
+    private static final DateTimeFormatter icalDateTime = DateTimeFormatter.ofPattern("yyyyMMdd'T'HHmmss");
+
+    /**
+     * The file formats appointments can be imported from.
+     */
+    public enum Format {
+        CSV,
+        ICALENDAR;
+
+        /**
+         * Works out a file's format from its name.
+         *
+         * @param file The file.
+         * @return ICALENDAR for .ics and .ical files, otherwise CSV.
+         */
+        public static Format forFile(Path file) {
+            String name = file.getFileName().toString().toLowerCase(Locale.ROOT);
+            return name.endsWith(".ics") || name.endsWith(".ical") ? ICALENDAR : CSV;
+        }
+    }
+
+    /**
+     * Receives the progress of an import after each chunk is written.
+     */
+    @FunctionalInterface
+    public interface ProgressListener {
+        /**
+         * Called on the importing thread after each chunk.
+         *
+         * @param rowsRead The number of rows read so far.
+         * @param imported The number of rows saved so far.
+         * @param rejected The number of rows rejected so far.
+         * @param rowsPerSecond The number of rows read per second so far.
+         */
+        void onProgress(long rowsRead, long imported, long rejected, double rowsPerSecond);
+    }
+
+    /**
+     * A row that couldn't be imported.
+     */
+    public static class Rejection {
+        private final long line;
+        private final String reason;
+
+        private Rejection(long line, String reason) {
+            this.line = line;
+            this.reason = reason;
+        }
+
+        /**
+         * Gets the line of the file the row starts on.
+         *
+         * @return The line number, counting from 1.
+         */
+        public long getLine() {
+            return line;
+        }
+
+        /**
+         * Gets why the row was rejected.
+         *
+         * @return The reason.
+         */
+        public String getReason() {
+            return reason;
+        }
+
+        @Override
+        public String toString() {
+            return "Line " + line + ": " + reason;
+        }
+    }
+
+    /**
+     * The outcome of an import.
+     */
+    public static class Result {
+        private final long rowsRead;
+        private final long imported;
+        private final List<Rejection> rejections;
+        private final long elapsedNanos;
+
+        private Result(long rowsRead, long imported, List<Rejection> rejections, long elapsedNanos) {
+            this.rowsRead = rowsRead;
+            this.imported = imported;
+            this.rejections = rejections;
+            this.elapsedNanos = elapsedNanos;
+        }
+
+        /**
+         * Gets the number of rows read from the file.
+         *
+         * @return The row count.
+         */
+        public long getRowsRead() {
+            return rowsRead;
+        }
+
+        /**
+         * Gets the number of rows saved as appointments.
+         *
+         * @return The row count.
+         */
+        public long getImported() {
+            return imported;
+        }
+
+        /**
+         * Gets the rows that weren't imported, in file order.
+         *
+         * @return The rejected rows.
+         */
+        public List<Rejection> getRejections() {
+            return rejections;
+        }
+
+        /**
+         * Gets how many rows were read per second, from the start of the import to the end.
+         *
+         * @return The rate.
+         */
+        public double getRowsPerSecond() {
+            return elapsedNanos == 0 ? 0 : rowsRead * 1_000_000_000.0 / elapsedNanos;
+        }
+
+        @Override
+        public String toString() {
+            return String.format("Imported %d of %d row(s), rejected %d, in %.2f s (%.0f rows/s)",
+                    imported, rowsRead, rejections.size(), elapsedNanos / 1_000_000_000.0, getRowsPerSecond());
+        }
+    }
+
+    /**
+     * A record read from the file: either an appointment to validate, or the reason it couldn't be read.
+     */
+    private static class Row {
+        private final long line;
+        private final Appointment appointment;
+        private String reason;
+
+        private Row(long line, Appointment appointment, String reason) {
+            this.line = line;
+            this.appointment = appointment;
+            this.reason = reason;
+        }
+    }
+
+    /**
+     * Reads one record at a time from a file.
+     */
+    private interface RowReader {
+        /**
+         * Reads the next record.
+         *
+         * @return The record, or null at the end of the file.
+         * @throws IOException An exception related to reading the file.
+         */
+        Row next() throws IOException;
+    }
+
+    /**
+     * Imports the appointments in a file, working out its format from its name.
+     *
+     * @param file The file to import.
+     * @param chunkSize The number of rows validated and written together.
+     * @param listener Receives progress after each chunk, or null.
+     * @return The number of rows imported, the rows rejected and how fast.
+     * @throws IOException An exception related to reading the file.
+     * @throws SQLException An exception related to loading the contacts, customers and users.
+     */
+    public static Result importFile(Path file, int chunkSize, ProgressListener listener) throws IOException, SQLException {
+        return importFile(file, Format.forFile(file), chunkSize, listener);
+    }
+
+    /**
+     * Imports the appointments in a file.
+     *
+     * @param file The file to import.
+     * @param format The file format.
+     * @param chunkSize The number of rows validated and written together.
+     * @param listener Receives progress after each chunk, or null.
+     * @return The number of rows imported, the rows rejected and how fast.
+     * @throws IOException An exception related to reading the file.
+     * @throws SQLException An exception related to loading the contacts, customers and users.
+     */
+    public static Result importFile(Path file, Format format, int chunkSize, ProgressListener listener) throws IOException, SQLException {
+        if (chunkSize <= 0) {
+            throw new IllegalArgumentException("The chunk size must be positive");
+        }
+        long started = System.nanoTime();
+
+        Set<Integer> contactIds = new HashSet<>();
+        for (Contact contact : ReferenceData.getContacts()) {
+            contactIds.add(contact.getContactId());
+        }
+        Set<Integer> customerIds = new HashSet<>();
+        for (Customer customer : ReferenceData.getCustomers()) {
+            customerIds.add(customer.getCustomerId().getValue());
+        }
+        Set<Integer> userIds = new HashSet<>();
+        for (User user : ReferenceData.getUsers()) {
+            userIds.add(user.getUserId());
+        }
+
+        // The rows accepted so far in this import, which later rows mustn't overlap either.
+        Map<Integer, IntervalTree> acceptedByContact = new HashMap<>();
+        Map<Integer, IntervalTree> acceptedByCustomer = new HashMap<>();
+
+        long rowsRead = 0;
+        long imported = 0;
+        List<Rejection> rejections = new ArrayList<>();
+        ExecutorService writer = Executors.newSingleThreadExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "appointment-import-writer");
+            thread.setDaemon(true);
+            return thread;
+        });
+        Future<Integer> pendingWrite = null;
+        List<Row> pendingRows = null;
+
+        try (BufferedReader in = Files.newBufferedReader(file, StandardCharsets.UTF_8)) {
+            RowReader reader = format == Format.ICALENDAR ? new ICalendarReader(in) : new CsvReader(in);
+            List<Row> chunk = new ArrayList<>(chunkSize);
+            boolean endOfFile = false;
+
+            while (!endOfFile) {
+                chunk.clear();
+                Row row;
+                while (chunk.size() < chunkSize && (row = reader.next()) != null) {
+                    chunk.add(row);
+                }
+                endOfFile = chunk.size() < chunkSize;
+                rowsRead += chunk.size();
+
+                chunk.parallelStream()
+                        .filter(candidate -> candidate.reason == null)
+                        .forEach(candidate -> candidate.reason = validate(candidate.appointment, contactIds, customerIds, userIds));
+
+                // Wait for the previous chunk before checking this one against the rows accepted so far, so the rows of
+                // a chunk that was rolled back are no longer among them. At most one chunk is waiting on the database.
+                imported += finishWrite(pendingWrite, pendingRows, rejections, acceptedByContact, acceptedByCustomer);
+                pendingWrite = null;
+
+                List<Row> accepted = new ArrayList<>();
+                for (Row candidate : chunk) {
+                    if (candidate.reason == null && overlapsAccepted(candidate, acceptedByContact, acceptedByCustomer)) {
+                        candidate.reason = "Overlaps an earlier appointment in the file with the same contact or customer";
+                    }
+                    if (candidate.reason != null) {
+                        rejections.add(new Rejection(candidate.line, candidate.reason));
+                    }
+                    else {
+                        accepted.add(candidate);
+                    }
+                }
+
+                List<Appointment> appointments = new ArrayList<>(accepted.size());
+                for (Row candidate : accepted) {
+                    appointments.add(candidate.appointment);
+                }
+                pendingWrite = writer.submit(() -> AppointmentDAO.createAppointments(appointments));
+                pendingRows = accepted;
+
+                if (listener != null) {
+                    listener.onProgress(rowsRead, imported, rejections.size(),
+                            rowsRead * 1_000_000_000.0 / Math.max(1, System.nanoTime() - started));
+                }
+            }
+            imported += finishWrite(pendingWrite, pendingRows, rejections, acceptedByContact, acceptedByCustomer);
+            pendingWrite = null;
+        }
+        finally {
+            if (pendingWrite != null) {
+                // Reading the file failed; let the chunk already handed to the writer finish.
+                try {
+                    pendingWrite.get();
+                }
+                catch (InterruptedException | ExecutionException e) {
+                    e.printStackTrace();
+                }
+            }
+            writer.shutdown();
+        }
+
+        rejections.sort((a, b) -> Long.compare(a.line, b.line));
+        Result result = new Result(rowsRead, imported, Collections.unmodifiableList(rejections), System.nanoTime() - started);
+        if (listener != null) {
+            listener.onProgress(rowsRead, imported, rejections.size(), result.getRowsPerSecond());
+        }
+        return result;
+    }
+
+    /**
+     * Waits for a chunk to be written. If it failed, its transaction was rolled back, so its rows are rejected with the
+     * database's error and no longer count as accepted.
+     *
+     * @param write The write, or null if there is none.
+     * @param rows The rows being written.
+     * @param rejections The rejected rows, which the chunk's rows are added to if it failed.
+     * @param byContact The accepted rows, by contact.
+     * @param byCustomer The accepted rows, by customer.
+     * @return The number of rows written.
+     */
+    private static int finishWrite(Future<Integer> write, List<Row> rows, List<Rejection> rejections,
+                                   Map<Integer, IntervalTree> byContact, Map<Integer, IntervalTree> byCustomer) {
+        if (write == null) {
+            return 0;
+        }
+        try {
+            return write.get();
+        }
+        catch (InterruptedException | ExecutionException e) {
+            if (e instanceof InterruptedException) {
+                Thread.currentThread().interrupt();
+            }
+            Throwable cause = e.getCause() == null ? e : e.getCause();
+            for (Row row : rows) {
+                rejections.add(new Rejection(row.line, "Couldn't be saved: " + cause.getMessage()));
+                long start = row.appointment.getStartEpochSecond();
+                byContact.get(row.appointment.getContactId()).remove((int) row.line, start);
+                byCustomer.get(row.appointment.getCustomerId()).remove((int) row.line, start);
+            }
+            return 0;
+        }
+    }
+
+    /**
+     * Checks an appointment against everything that doesn't depend on the rest of the file.
+     *
+     * @param appointment The appointment.
+     * @param contactIds The IDs of every contact.
+     * @param customerIds The IDs of every customer.
+     * @param userIds The IDs of every user.
+     * @return The reason the appointment can't be imported, or null if it can.
+     */
+    private static String validate(Appointment appointment, Set<Integer> contactIds, Set<Integer> customerIds, Set<Integer> userIds) {
+        if (appointment.getEndEpochSecond() <= appointment.getStartEpochSecond()) {
+            return "Ends before it starts";
+        }
+        if (!TimeZone.validateAppointmentAgainstEST(appointment.getStart(), appointment.getEnd())) {
+            return "Outside business hours";
+        }
+        if (!contactIds.contains(appointment.getContactId())) {
+            return "No contact with ID " + appointment.getContactId();
+        }
+        if (!customerIds.contains(appointment.getCustomerId())) {
+            return "No customer with ID " + appointment.getCustomerId();
+        }
+        if (!userIds.contains(appointment.getUserId())) {
+            return "No user with ID " + appointment.getUserId();
+        }
+        if (AppointmentIndex.hasOverlap(appointment.getContactId(), appointment.getCustomerId(),
+                appointment.getStartEpochSecond(), appointment.getEndEpochSecond(), 0)) {
+            return "Overlaps an existing appointment with the same contact or customer";
+        }
+        return null;
+    }
+
+    /**
+     * Checks a row against the rows accepted earlier in the import, and records it as accepted if it doesn't overlap
+     * any of them.
+     *
+     * @param row The row.
+     * @param byContact The accepted rows, by contact.
+     * @param byCustomer The accepted rows, by customer.
+     * @return true if the row overlaps an accepted row.
+     */
+    private static boolean overlapsAccepted(Row row, Map<Integer, IntervalTree> byContact, Map<Integer, IntervalTree> byCustomer) {
+        Appointment appointment = row.appointment;
+        long start = appointment.getStartEpochSecond();
+        long end = appointment.getEndEpochSecond();
+        IntervalTree contactTree = byContact.computeIfAbsent(appointment.getContactId(), id -> new IntervalTree());
+        IntervalTree customerTree = byCustomer.computeIfAbsent(appointment.getCustomerId(), id -> new IntervalTree());
+        if (contactTree.overlaps(start, end, 0) || customerTree.overlaps(start, end, 0)) {
+            return true;
+        }
+        contactTree.insert((int) row.line, start, end);
+        customerTree.insert((int) row.line, start, end);
+        return false;
+    }
+
+    /**
+     * Builds an appointment from the values read for a record.
+     *
+     * @param line The line the record starts on.
+     * @param values The values, by lower-case name without spaces or underscores.
+     * @param start The start time.
+     * @param end The end time.
+     * @return The row, or a rejected row if a value is missing or an ID isn't a number.
+     */
+    private static Row toRow(long line, Map<String, String> values, ZonedDateTime start, ZonedDateTime end) {
+        for (String column : csvColumns) {
+            if (!column.equals("start") && !column.equals("end") && values.get(column) == null) {
+                return new Row(line, null, "Missing " + column);
+            }
+        }
+        int customerId;
+        int userId;
+        int contactId;
+        try {
+            customerId = Integer.parseInt(values.get("customerid").trim());
+            userId = Integer.parseInt(values.get("userid").trim());
+            contactId = Integer.parseInt(values.get("contactid").trim());
+        }
+        catch (NumberFormatException e) {
+            return new Row(line, null, "IDs must be whole numbers");
+        }
+        Appointment appointment = new Appointment(0, values.get("title"), values.get("description"), values.get("location"),
+                values.get("type"), start.toEpochSecond(), end.toEpochSecond(), customerId, userId, contactId);
+        return new Row(line, appointment, null);
+    }
+
+    /**
+     * Reads a time written as {@code yyyy-MM-dd HH:mm:ss} in the local time zone, or as ISO-8601 with or without an
+     * offset.
+     *
+     * @param text The time.
+     * @return The time in the user's time zone.
+     * @throws DateTimeParseException If the time isn't in any of those forms.
+     */
+    private static ZonedDateTime parseTime(String text) {
+        String trimmed = text.trim();
+        try {
+            return LocalDateTime.parse(trimmed, TimeZone.dtf).atZone(TimeZone.userZoneId);
+        }
+        catch (DateTimeParseException e) {
+            try {
+                return ZonedDateTime.parse(trimmed, DateTimeFormatter.ISO_OFFSET_DATE_TIME).withZoneSameInstant(TimeZone.userZoneId);
+            }
+            catch (DateTimeParseException notOffset) {
+                return LocalDateTime.parse(trimmed, DateTimeFormatter.ISO_LOCAL_DATE_TIME).atZone(TimeZone.userZoneId);
+            }
+        }
+    }
+
+    private static String normalise(String name) {
+        return name.trim().toLowerCase(Locale.ROOT).replace("_", "").replace(" ", "");
+    }
+
+    /**
+     * Reads CSV records, as described in RFC 4180. Quoted values may contain commas, doubled quotes and line breaks.
+     */
+    private static class CsvReader implements RowReader {
+        private final BufferedReader in;
+        private final List<String> header;
+        private long line = 1;
+
+        private CsvReader(BufferedReader in) throws IOException {
+            this.in = in;
+            List<String> names = readRecord();
+            if (names == null) {
+                throw new IOException("The file is empty");
+            }
+            header = new ArrayList<>();
+            for (String name : names) {
+                header.add(normalise(name));
+            }
+            for (String column : csvColumns) {
+                if (!header.contains(column)) {
+                    throw new IOException("The header row has no " + column + " column");
+                }
+            }
+        }
+
+        @Override
+        public Row next() throws IOException {
+            List<String> fields;
+            long recordLine;
+            do {
+                recordLine = line;
+                fields = readRecord();
+                if (fields == null) {
+                    return null;
+                }
+            } while (fields.size() == 1 && fields.get(0).isEmpty());
+
+            if (fields.size() != header.size()) {
+                return new Row(recordLine, null, "Expected " + header.size() + " values but found " + fields.size());
+            }
+            Map<String, String> values = new HashMap<>();
+            for (int i = 0; i < fields.size(); i++) {
+                values.put(header.get(i), fields.get(i));
+            }
+
+            ZonedDateTime start;
+            ZonedDateTime end;
+            try {
+                start = parseTime(values.get("start"));
+                end = parseTime(values.get("end"));
+            }
+            catch (DateTimeParseException e) {
+                return new Row(recordLine, null, "Not a date and time: " + e.getParsedString());
+            }
+            return toRow(recordLine, values, start, end);
+        }
+
+        /**
+         * Reads the values of one record.
+         *
+         * @return The values, or null at the end of the file.
+         */
+        private List<String> readRecord() throws IOException {
+            int c = in.read();
+            if (c == -1) {
+                return null;
+            }
+
+            List<String> fields = new ArrayList<>();
+            StringBuilder field = new StringBuilder();
+            boolean quoted = false;
+            while (true) {
+                if (c == -1) {
+                    fields.add(field.toString());
+                    return fields;
+                }
+                if (quoted) {
+                    if (c == '"') {
+                        in.mark(1);
+                        int following = in.read();
+                        if (following == '"') {
+                            field.append('"');
+                        }
+                        else {
+                            quoted = false;
+                            in.reset();
+                        }
+                    }
+                    else {
+                        if (c == '\n') {
+                            line++;
+                        }
+                        field.append((char) c);
+                    }
+                }
+                else if (c == '"' && field.length() == 0) {
+                    quoted = true;
+                }
+                else if (c == ',') {
+                    fields.add(field.toString());
+                    field.setLength(0);
+                }
+                else if (c == '\n' || c == '\r') {
+                    if (c == '\r') {
+                        in.mark(1);
+                        if (in.read() != '\n') {
+                            in.reset();
+                        }
+                    }
+                    line++;
+                    fields.add(field.toString());
+                    return fields;
+                }
+                else {
+                    field.append((char) c);
+                }
+                c = in.read();
+            }
+        }
+    }
+
+    /**
+     * Reads the VEVENT components of an iCalendar file, as described in RFC 5545.
+     */
+    private static class ICalendarReader implements RowReader {
+        private final BufferedReader in;
+        private String lookahead;
+        private long lookaheadLine;
+        private long line;
+
+        private ICalendarReader(BufferedReader in) throws IOException {
+            this.in = in;
+            readPhysicalLine();
+        }
+
+        @Override
+        public Row next() throws IOException {
+            String contentLine;
+            while ((contentLine = readContentLine()) != null && !contentLine.equalsIgnoreCase("BEGIN:VEVENT")) {
+                // Skip everything outside events.
+            }
+            if (contentLine == null) {
+                return null;
+            }
+            long eventLine = line;
+
+            Map<String, String> values = new HashMap<>();
+            String[] dtStart = null;
+            String[] dtEnd = null;
+            String duration = null;
+            int depth = 0;
+            while ((contentLine = readContentLine()) != null) {
+                String[] property = split(contentLine);
+                String name = property[0];
+                if (name.equals("BEGIN")) {
+                    // Nested components, such as alarms, have properties of their own.
+                    depth++;
+                    continue;
+                }
+                if (name.equals("END")) {
+                    if (depth-- == 0) {
+                        break;
+                    }
+                    continue;
+                }
+                if (depth > 0) {
+                    continue;
+                }
+                switch (name) {
+                    case "SUMMARY":
+                        values.put("title", unescape(property[2]));
+                        break;
+                    case "DESCRIPTION":
+                        values.put("description", unescape(property[2]));
+                        break;
+                    case "LOCATION":
+                        values.put("location", unescape(property[2]));
+                        break;
+                    case "CATEGORIES":
+                        values.putIfAbsent("type", unescape(property[2].split("(?<!\\\\),")[0]));
+                        break;
+                    case "X-CUSTOMER-ID":
+                        values.put("customerid", property[2]);
+                        break;
+                    case "X-USER-ID":
+                        values.put("userid", property[2]);
+                        break;
+                    case "X-CONTACT-ID":
+                        values.put("contactid", property[2]);
+                        break;
+                    case "DTSTART":
+                        dtStart = property;
+                        break;
+                    case "DTEND":
+                        dtEnd = property;
+                        break;
+                    case "DURATION":
+                        duration = property[2];
+                        break;
+                    default:
+                        break;
+                }
+            }
+            if (contentLine == null) {
+                return new Row(eventLine, null, "The event has no END:VEVENT");
+            }
+
+            if (dtStart == null || (dtEnd == null && duration == null)) {
+                return new Row(eventLine, null, "The event needs DTSTART and DTEND or DURATION");
+            }
+            ZonedDateTime start;
+            ZonedDateTime end;
+            try {
+                start = parseDateTime(dtStart);
+                end = dtEnd != null ? parseDateTime(dtEnd) : start.plus(Duration.parse(duration.trim()));
+            }
+            catch (DateTimeParseException e) {
+                return new Row(eventLine, null, "Not a date and time: " + e.getParsedString());
+            }
+            catch (RuntimeException e) {
+                return new Row(eventLine, null, e.getMessage());
+            }
+            // Calendar programs often leave these out.
+            values.putIfAbsent("description", "");
+            values.putIfAbsent("location", "");
+            return toRow(eventLine, values, start, end);
+        }
+
+        /**
+         * Reads a DTSTART or DTEND value: UTC if it ends in Z, in the zone named by its TZID parameter if it has one,
+         * and otherwise in the local time zone.
+         */
+        private static ZonedDateTime parseDateTime(String[] property) {
+            String value = property[2].trim();
+            String parameters = property[1].toUpperCase(Locale.ROOT);
+            if (parameters.contains("VALUE=DATE") && !parameters.contains("VALUE=DATE-TIME")) {
+                throw new IllegalArgumentException("All-day events can't be imported");
+            }
+            if (value.endsWith("Z")) {
+                return LocalDateTime.parse(value.substring(0, value.length() - 1), icalDateTime)
+                        .atZone(ZoneOffset.UTC).withZoneSameInstant(TimeZone.userZoneId);
+            }
+            ZoneId zone = TimeZone.userZoneId;
+            for (String parameter : property[1].split(";")) {
+                if (parameter.toUpperCase(Locale.ROOT).startsWith("TZID=")) {
+                    zone = ZoneId.of(parameter.substring(5).replace("\"", ""));
+                }
+            }
+            return LocalDateTime.parse(value, icalDateTime).atZone(zone).withZoneSameInstant(TimeZone.userZoneId);
+        }
+
+        /**
+         * Splits a content line into its upper-case name, its parameters and its value. Colons inside quoted parameter
+         * values don't end the parameters.
+         */
+        private static String[] split(String contentLine) {
+            boolean quoted = false;
+            int colon = -1;
+            for (int i = 0; i < contentLine.length() && colon < 0; i++) {
+                char c = contentLine.charAt(i);
+                if (c == '"') {
+                    quoted = !quoted;
+                }
+                else if (c == ':' && !quoted) {
+                    colon = i;
+                }
+            }
+            String head = colon < 0 ? contentLine : contentLine.substring(0, colon);
+            String value = colon < 0 ? "" : contentLine.substring(colon + 1);
+            int semicolon = head.indexOf(';');
+            String name = (semicolon < 0 ? head : head.substring(0, semicolon)).toUpperCase(Locale.ROOT);
+            String parameters = semicolon < 0 ? "" : head.substring(semicolon + 1);
+            return new String[] {name, parameters, value};
+        }
+
+        private static String unescape(String text) {
+            StringBuilder unescaped = new StringBuilder(text.length());
+            for (int i = 0; i < text.length(); i++) {
+                char c = text.charAt(i);
+                if (c == '\\' && i + 1 < text.length()) {
+                    char next = text.charAt(++i);
+                    unescaped.append(next == 'n' || next == 'N' ? '\n' : next);
+                }
+                else {
+                    unescaped.append(c);
+                }
+            }
+            return unescaped.toString();
+        }
+
+        /**
+         * Reads one content line, joining the physical lines it was folded across.
+         *
+         * @return The line, or null at the end of the file.
+         */
+        private String readContentLine() throws IOException {
+            if (lookahead == null) {
+                return null;
+            }
+            StringBuilder contentLine = new StringBuilder(lookahead);
+            line = lookaheadLine;
+            readPhysicalLine();
+            while (lookahead != null && !lookahead.isEmpty() && (lookahead.charAt(0) == ' ' || lookahead.charAt(0) == '\t')) {
+                contentLine.append(lookahead, 1, lookahead.length());
+                readPhysicalLine();
+            }
+            return contentLine.toString();
+        }
+
+        private void readPhysicalLine() throws IOException {
+            lookahead = in.readLine();
+            lookaheadLine++;
+        }
+    }
+}
@@ -0,0 +1,277 @@
+package util;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Appends lines to a log file in the background.
+ *
+ * Callers only add the line to a bounded, lock-free queue, so they never wait on the disk. A single appender thread
+ * drains the queue in batches, writes each batch with one call, and forces it to disk according to the
+ * {@link SyncPolicy}. When the file grows past its size limit it is rotated: {@code name} becomes {@code name.1},
+ * {@code name.1} becomes {@code name.2} and so on, and the oldest is deleted. If the queue is full, lines are dropped
+ * rather than blocking the caller, and a note of how many were dropped is written with the next batch.
+ *
+ * {@link #close()} writes everything still queued and forces it to disk. It is also run by a shutdown hook, so lines
+ * aren't lost when the program exits through System.exit.
+ *
+ * @author James Carney
+ */
+public class AuditLogWriter implements AutoCloseable {
+    /**
+     * When written lines are forced to disk.
+     */
+    public enum SyncPolicy {
+        /** After every batch. Nothing acknowledged is lost, at the cost of one fsync per batch. */
+        EVERY_BATCH,
+        /** At most once per sync interval, and on close. */
+        INTERVAL,
+        /** Only on rotation and close; otherwise left to the operating system. */
+        NEVER
+    }
+
+    private final Path file;
+    private final int capacity;
+    private final int batchSize;
+    private final SyncPolicy syncPolicy;
+    private final long syncIntervalNanos;
+    private final long maxFileBytes;
+    private final int maxBackups;
+
+    private final ConcurrentLinkedQueue<String> queue = new ConcurrentLinkedQueue<>();
+    private final AtomicInteger queued = new AtomicInteger();
+    private final AtomicLong dropped = new AtomicLong();
+    private final AtomicLong unreportedDrops = new AtomicLong();
+    // Calls to append that may have seen the writer open but not yet queued their line.
+    private final AtomicInteger appending = new AtomicInteger();
+    private final Thread appender;
+    private final Thread shutdownHook;
+    private volatile boolean closing;
+
+    private FileChannel channel;
+    private long fileBytes;
+    private long lastSync = System.nanoTime();
+    private boolean unsynced;
+
+    /**
+     * Opens a log file for appending and starts its appender thread.
+     *
+     * @param file The log file. It is created if it doesn't exist.
+     * @param capacity The most lines that can be waiting to be written.
+     * @param batchSize The most lines written at once.
+     * @param syncPolicy When lines are forced to disk.
+     * @param syncIntervalMillis The longest time between forces under {@link SyncPolicy#INTERVAL}.
+     * @param maxFileBytes The size at which the file is rotated.
+     * @param maxBackups The number of rotated files kept.
+     * @throws IOException An exception related to opening the file.
+     */
+    public AuditLogWriter(Path file, int capacity, int batchSize, SyncPolicy syncPolicy, long syncIntervalMillis,
+                          long maxFileBytes, int maxBackups) throws IOException {
+        this.file = file;
+        this.capacity = capacity;
+        this.batchSize = batchSize;
+        this.syncPolicy = syncPolicy;
+        this.syncIntervalNanos = TimeUnit.MILLISECONDS.toNanos(syncIntervalMillis);
+        this.maxFileBytes = maxFileBytes;
+        this.maxBackups = maxBackups;
+        open();
+
+        appender = new Thread(this::runAppender, "audit-log-" + file.getFileName());
+        appender.setDaemon(true);
+        appender.start();
+
+        shutdownHook = new Thread(this::close, "audit-log-flush-" + file.getFileName());
+        Runtime.getRuntime().addShutdownHook(shutdownHook);
+    }
+
+    /**
+     * Queues a line to be appended. Never blocks.
+     *
+     * @param line The line, without a line separator.
+     * @return false if the queue was full or the writer is closed and the line was dropped.
+     */
+    public boolean append(String line) {
+        // Counted before closing is read, so the appender thread doesn't close the file until this line is queued.
+        appending.incrementAndGet();
+        try {
+            if (closing) {
+                dropped.incrementAndGet();
+                return false;
+            }
+            if (queued.incrementAndGet() > capacity) {
+                queued.decrementAndGet();
+                dropped.incrementAndGet();
+                unreportedDrops.incrementAndGet();
+                return false;
+            }
+            queue.offer(line);
+        }
+        finally {
+            appending.decrementAndGet();
+        }
+        LockSupport.unpark(appender);
+        return true;
+    }
+
+    /**
+     * Gets the number of lines dropped so far because the queue was full or the writer was closed.
+     *
+     * @return The count.
+     */
+    public long getDroppedCount() {
+        return dropped.get();
+    }
+
+    /**
+     * Writes every queued line, forces the file to disk and closes it. Lines appended afterwards are dropped.
+     */
+    @Override
+    public void close() {
+        synchronized (this) {
+            if (closing) {
+                return;
+            }
+            closing = true;
+        }
+
+        LockSupport.unpark(appender);
+        try {
+            appender.join(TimeUnit.SECONDS.toMillis(5));
+        }
+        catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+
+        if (Thread.currentThread() != shutdownHook) {
+            try {
+                Runtime.getRuntime().removeShutdownHook(shutdownHook);
+            }
+            catch (IllegalStateException e) {
+                // Already shutting down.
+            }
+        }
+    }
+
+    /**
+     * The appender thread: waits for lines, writes them in batches and closes the file once the writer is closed.
+     */
+    private void runAppender() {
+        StringBuilder batch = new StringBuilder();
+        while (true) {
+            boolean finishing = closing;
+            try {
+                int lines = drain(batch);
+                if (lines > 0) {
+                    write(batch);
+                }
+                if (unsynced && (syncPolicy == SyncPolicy.EVERY_BATCH
+                        || (syncPolicy == SyncPolicy.INTERVAL && System.nanoTime() - lastSync >= syncIntervalNanos))) {
+                    sync();
+                }
+                // An append that saw the writer open may still be about to queue its line, so wait for it first.
+                if (finishing && appending.get() == 0 && queue.isEmpty()) {
+                    sync();
+                    channel.close();
+                    return;
+                }
+                if (finishing) {
+                    Thread.yield();
+                }
+                else if (lines == 0) {
+                    // Woken early by append or close; otherwise wake in time for the next interval sync.
+                    LockSupport.parkNanos(this, unsynced ? syncIntervalNanos : TimeUnit.SECONDS.toNanos(60));
+                }
+            }
+            catch (IOException e) {
+                e.printStackTrace();
+                if (finishing) {
+                    return;
+                }
+                LockSupport.parkNanos(this, TimeUnit.SECONDS.toNanos(1));
+            }
+        }
+    }
+
+    /**
+     * Moves up to one batch of lines from the queue into a buffer.
+     *
+     * @param batch The buffer, which is cleared first.
+     * @return The number of lines taken from the queue.
+     */
+    private int drain(StringBuilder batch) {
+        batch.setLength(0);
+        long lost = unreportedDrops.getAndSet(0);
+        if (lost > 0) {
+            batch.append('\n').append(lost).append(" log line(s) dropped because the log queue was full");
+        }
+
+        int lines = 0;
+        String line;
+        while (lines < batchSize && (line = queue.poll()) != null) {
+            batch.append('\n').append(line);
+            lines++;
+        }
+        queued.addAndGet(-lines);
+        return lines + (lost > 0 ? 1 : 0);
+    }
+
+    private void write(CharSequence text) throws IOException {
+        ByteBuffer bytes = StandardCharsets.UTF_8.encode(text.toString());
+        if (fileBytes > 0 && fileBytes + bytes.remaining() > maxFileBytes) {
+            rotate();
+        }
+        while (bytes.hasRemaining()) {
+            fileBytes += channel.write(bytes);
+        }
+        unsynced = true;
+    }
+
+    private void sync() throws IOException {
+        if (unsynced) {
+            channel.force(false);
+            unsynced = false;
+        }
+        lastSync = System.nanoTime();
+    }
+
+    private void rotate() throws IOException {
+        sync();
+        channel.close();
+
+        for (int i = maxBackups; i >= 1; i--) {
+            Path older = backup(i);
+            Path newer = i == 1 ? file : backup(i - 1);
+            if (i == maxBackups) {
+                Files.deleteIfExists(older);
+            }
+            if (Files.exists(newer)) {
+                Files.move(newer, older, StandardCopyOption.REPLACE_EXISTING);
+            }
+        }
+        if (maxBackups == 0) {
+            Files.deleteIfExists(file);
+        }
+        open();
+    }
+
+    private Path backup(int number) {
+        return Paths.get(file.toString() + "." + number);
+    }
+
+    private void open() throws IOException {
+        channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.APPEND);
+        fileBytes = channel.size();
+    }
+}
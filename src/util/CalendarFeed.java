@@ -0,0 +1,412 @@
+package util;
+
+import DAO.DBConnection;
+import DAO.Query;
+
+import java.io.BufferedWriter;
+import java.io.ByteArrayOutputStream;
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.time.LocalDate;
+import java.time.ZonedDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Generates iCalendar (RFC 5545) feeds of one contact's or one customer's appointments, for calendar programs to
+ * subscribe to or import.
+ *
+ * A feed is streamed straight from a forward-only range query, one VEVENT per row, so memory use doesn't grow with the
+ * number of appointments. Times are written in UTC. Each contact and customer has a change version, which
+ * AppointmentDAO bumps whenever one of their appointments is created, edited or deleted; generated feeds are kept,
+ * up to {@link #maxCachedFeedBytes} bytes each, and served again without querying until the version changes. The
+ * versions only see this client's changes, so a cached feed is also regenerated once it is
+ * {@link #cachedFeedExpiryMillis} milliseconds old, to pick up changes made by other clients.
+ *
+ * The events carry the customer, user and contact IDs as X-CUSTOMER-ID, X-USER-ID and X-CONTACT-ID, so a feed can be
+ * imported again with {@link AppointmentImporter}.
+ *
+ * @author James Carney
+ */
+public class CalendarFeed {
+    /**
+     * The number of rows fetched from the database at a time.
+     */
+    public static final int fetchSize = 500;
+
+    /**
+     * The number of days before today a feed covers, if no range is given.
+     */
+    public static final int defaultPastDays = 30;
+
+    /**
+     * The number of days after today a feed covers, if no range is given.
+     */
+    public static final int defaultFutureDays = 365;
+
+    /**
+     * The largest feed that is cached. Larger feeds are generated every time.
+     */
+    public static final int maxCachedFeedBytes = 512 * 1024;
+
+    /**
+     * How long, in milliseconds, a cached feed is served before it is generated again.
+     */
+    public static final long cachedFeedExpiryMillis = 5 * 60 * 1000;
+
+    private static final int maxCachedFeeds = 128;
+    private static final int maxLineOctets = 75;
+    private static final DateTimeFormatter utcFormatter = DateTimeFormatter.ofPattern("yyyyMMdd'T'HHmmss'Z'");
+
+    // The change version of each contact's and each customer's appointments, by ID.
+    private static final Map<Integer, AtomicLong> contactVersions = new ConcurrentHashMap<>();
+    private static final Map<Integer, AtomicLong> customerVersions = new ConcurrentHashMap<>();
+    // Bumped when appointments change without their contacts being known, which makes every contact feed stale.
+    private static final AtomicLong contactsGeneration = new AtomicLong();
+
+    // Generated feeds, by owner, ID and range, least recently used first.
+    private static final Map<String, CachedFeed> cachedFeeds = new LinkedHashMap<>(16, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, CachedFeed> eldest) {
+            return size() > maxCachedFeeds;
+        }
+    };
+
+    /**
+     * Whose appointments a feed holds.
+     */
+    public enum Owner {
+        CONTACT("contact", "Contact_ID"),
+        CUSTOMER("customer", "Customer_ID");
+
+        private final String fileName;
+        private final String column;
+
+        Owner(String fileName, String column) {
+            this.fileName = fileName;
+            this.column = column;
+        }
+    }
+
+    /**
+     * A generated feed, the change versions it was generated at and when it was generated.
+     */
+    private static class CachedFeed {
+        private final long version;
+        private final long generation;
+        private final long generatedAt;
+        private final byte[] body;
+        private final long events;
+
+        private CachedFeed(long version, long generation, long generatedAt, byte[] body, long events) {
+            this.version = version;
+            this.generation = generation;
+            this.generatedAt = generatedAt;
+            this.body = body;
+            this.events = events;
+        }
+
+        private boolean isCurrent(long version, long generation) {
+            return this.version == version && this.generation == generation
+                    && System.currentTimeMillis() - generatedAt < cachedFeedExpiryMillis;
+        }
+    }
+
+    /**
+     * The outcome of writing a feed.
+     */
+    public static class Result {
+        private final long events;
+        private final long bytes;
+        private final boolean cached;
+
+        private Result(long events, long bytes, boolean cached) {
+            this.events = events;
+            this.bytes = bytes;
+            this.cached = cached;
+        }
+
+        /**
+         * Gets the number of appointments in the feed.
+         *
+         * @return The event count.
+         */
+        public long getEvents() {
+            return events;
+        }
+
+        /**
+         * Gets the size of the feed.
+         *
+         * @return The size in bytes.
+         */
+        public long getBytes() {
+            return bytes;
+        }
+
+        /**
+         * Gets whether the feed was served from the cache rather than generated.
+         *
+         * @return true if the database wasn't queried.
+         */
+        public boolean isCached() {
+            return cached;
+        }
+    }
+
+    /**
+     * Writes the feed of a contact's or customer's appointments from {@link #defaultPastDays} days ago to
+     * {@link #defaultFutureDays} days from now to a file in a directory, named e.g. {@code contact_3.ics}.
+     *
+     * @param owner Whether the ID is a contact's or a customer's.
+     * @param id The ID of the contact or customer.
+     * @param directory The directory to write the file in.
+     * @return The number of events written and whether the feed came from the cache.
+     * @throws SQLException An exception related to the database query.
+     * @throws IOException An exception related to writing the file.
+     */
+    public static Result export(Owner owner, int id, Path directory) throws SQLException, IOException {
+        LocalDate today = LocalDate.now(TimeZone.userZoneId);
+        Path file = directory.resolve(owner.fileName + "_" + id + ".ics");
+        try (OutputStream out = Files.newOutputStream(file)) {
+            return write(owner, id, today.minusDays(defaultPastDays), today.plusDays(defaultFutureDays), out);
+        }
+    }
+
+    /**
+     * Writes the feed of a contact's or customer's appointments starting within a range of days.
+     *
+     * @param owner Whether the ID is a contact's or a customer's.
+     * @param id The ID of the contact or customer.
+     * @param from The first day, in the user's time zone.
+     * @param to The last day, in the user's time zone.
+     * @param out Receives the feed. It is flushed but not closed.
+     * @return The number of events written and whether the feed came from the cache.
+     * @throws SQLException An exception related to the database query.
+     * @throws IOException An exception related to writing the feed.
+     */
+    public static Result write(Owner owner, int id, LocalDate from, LocalDate to, OutputStream out) throws SQLException, IOException {
+        String key = owner + ":" + id + ":" + from + ":" + to;
+        long version = version(owner, id).get();
+        long generation = owner == Owner.CONTACT ? contactsGeneration.get() : 0;
+        long generatedAt = System.currentTimeMillis();
+
+        CachedFeed cached;
+        synchronized (cachedFeeds) {
+            cached = cachedFeeds.get(key);
+        }
+        if (cached != null && cached.isCurrent(version, generation)) {
+            out.write(cached.body);
+            out.flush();
+            return new Result(cached.events, cached.body.length, true);
+        }
+
+        TeeOutputStream tee = new TeeOutputStream(out, maxCachedFeedBytes);
+        long events = generate(owner, id, from, to, tee);
+
+        byte[] body = tee.getCopy();
+        if (body != null) {
+            synchronized (cachedFeeds) {
+                // Stored with the versions and time read before the query, so a change made meanwhile makes it stale
+                // at once and the expiry counts from when the rows were read.
+                cachedFeeds.put(key, new CachedFeed(version, generation, generatedAt, body, events));
+            }
+        }
+        return new Result(events, tee.getCount(), false);
+    }
+
+    /**
+     * Marks the feeds of an appointment's contact and customer as stale. Called by AppointmentDAO after every change to
+     * an appointment, with both the old and the new contact and customer if they changed.
+     *
+     * @param contactId The ID of the appointment's contact.
+     * @param customerId The ID of the appointment's customer.
+     */
+    public static void appointmentChanged(int contactId, int customerId) {
+        version(Owner.CONTACT, contactId).incrementAndGet();
+        version(Owner.CUSTOMER, customerId).incrementAndGet();
+    }
+
+    /**
+     * Marks a customer's feed and every contact's feed as stale. Called by AppointmentDAO after deleting all of a
+     * customer's appointments, since which contacts they were with isn't known.
+     *
+     * @param customerId The ID of the customer.
+     */
+    public static void customerAppointmentsDeleted(int customerId) {
+        version(Owner.CUSTOMER, customerId).incrementAndGet();
+        contactsGeneration.incrementAndGet();
+    }
+
+    private static AtomicLong version(Owner owner, int id) {
+        return (owner == Owner.CONTACT ? contactVersions : customerVersions).computeIfAbsent(id, key -> new AtomicLong());
+    }
+
+    /**
+     * Queries the appointments and writes them as a calendar.
+     *
+     * @return The number of events written.
+     */
+    private static long generate(Owner owner, int id, LocalDate from, LocalDate to, OutputStream out) throws SQLException, IOException {
+        String sqlStatement = "SELECT Appointment_ID, Title, Description, Location, Type, Start, End, Customer_ID, User_ID, Contact_ID "
+                + "FROM appointments WHERE " + owner.column + " = ? AND Start >= ? AND Start < ? ORDER BY Start";
+        String stamp = ZonedDateTime.now(TimeZone.UTC).format(utcFormatter);
+        long events = 0;
+
+        Writer writer = new BufferedWriter(new OutputStreamWriter(out, StandardCharsets.UTF_8));
+        try (Connection conn = DBConnection.getConnection();
+             PreparedStatement ps = Query.prepareStreaming(conn, sqlStatement, fetchSize)) {
+            ps.setInt(1, id);
+            ps.setTimestamp(2, Timestamp.valueOf(from.atStartOfDay()));
+            ps.setTimestamp(3, Timestamp.valueOf(to.plusDays(1).atStartOfDay()));
+            ResultSet rs = ps.executeQuery();
+
+            writeLine(writer, "BEGIN:VCALENDAR");
+            writeLine(writer, "VERSION:2.0");
+            writeLine(writer, "PRODID:-//Scheduler//Appointments//EN");
+            writeLine(writer, "CALSCALE:GREGORIAN");
+            writeLine(writer, "X-WR-CALNAME:" + escape("Appointments for " + owner.fileName + " " + id));
+
+            while (rs.next()) {
+                writeLine(writer, "BEGIN:VEVENT");
+                writeLine(writer, "UID:appointment-" + rs.getInt(1) + "@scheduler");
+                writeLine(writer, "DTSTAMP:" + stamp);
+                writeLine(writer, "DTSTART:" + toUtc(rs.getTimestamp(6)));
+                writeLine(writer, "DTEND:" + toUtc(rs.getTimestamp(7)));
+                writeLine(writer, "SUMMARY:" + escape(rs.getString(2)));
+                writeLine(writer, "DESCRIPTION:" + escape(rs.getString(3)));
+                writeLine(writer, "LOCATION:" + escape(rs.getString(4)));
+                writeLine(writer, "CATEGORIES:" + escape(rs.getString(5)));
+                writeLine(writer, "X-CUSTOMER-ID:" + rs.getInt(8));
+                writeLine(writer, "X-USER-ID:" + rs.getInt(9));
+                writeLine(writer, "X-CONTACT-ID:" + rs.getInt(10));
+                writeLine(writer, "END:VEVENT");
+                events++;
+            }
+            writeLine(writer, "END:VCALENDAR");
+        }
+        writer.flush();
+        return events;
+    }
+
+    /**
+     * Converts a time stored in the database, which is in the user's time zone, to UTC.
+     */
+    private static String toUtc(Timestamp timestamp) {
+        return timestamp.toLocalDateTime().atZone(TimeZone.userZoneId).withZoneSameInstant(TimeZone.UTC).format(utcFormatter);
+    }
+
+    private static String escape(String text) {
+        if (text == null) {
+            return "";
+        }
+        StringBuilder escaped = new StringBuilder(text.length());
+        for (int i = 0; i < text.length(); i++) {
+            char c = text.charAt(i);
+            switch (c) {
+                case '\\':
+                case ';':
+                case ',':
+                    escaped.append('\\').append(c);
+                    break;
+                case '\n':
+                    escaped.append("\\n");
+                    break;
+                case '\r':
+                    break;
+                default:
+                    escaped.append(c);
+            }
+        }
+        return escaped.toString();
+    }
+
+    /**
+     * Writes a content line, folding it onto continuation lines so no line is longer than 75 octets.
+     */
+    private static void writeLine(Writer out, String line) throws IOException {
+        int octets = 0;
+        for (int i = 0; i < line.length(); ) {
+            int codePoint = line.codePointAt(i);
+            int size = codePoint < 0x80 ? 1 : codePoint < 0x800 ? 2 : codePoint < 0x10000 ? 3 : 4;
+            if (octets + size > maxLineOctets) {
+                out.write("\r\n ");
+                octets = 1;
+            }
+            out.write(line, i, Character.charCount(codePoint));
+            octets += size;
+            i += Character.charCount(codePoint);
+        }
+        out.write("\r\n");
+    }
+
+    /**
+     * Passes bytes through to another stream while keeping a copy of them, until the copy would exceed a limit.
+     */
+    private static class TeeOutputStream extends FilterOutputStream {
+        private final int limit;
+        private ByteArrayOutputStream copy = new ByteArrayOutputStream();
+        private long count;
+
+        private TeeOutputStream(OutputStream out, int limit) {
+            super(out);
+            this.limit = limit;
+        }
+
+        @Override
+        public void write(int b) throws IOException {
+            out.write(b);
+            count++;
+            if (copy != null) {
+                if (copy.size() + 1 > limit) {
+                    copy = null;
+                }
+                else {
+                    copy.write(b);
+                }
+            }
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            out.write(b, off, len);
+            count += len;
+            if (copy != null) {
+                if (copy.size() + len > limit) {
+                    copy = null;
+                }
+                else {
+                    copy.write(b, off, len);
+                }
+            }
+        }
+
+        @Override
+        public void close() throws IOException {
+            // The caller closes the underlying stream.
+            flush();
+        }
+
+        private byte[] getCopy() {
+            return copy == null ? null : copy.toByteArray();
+        }
+
+        private long getCount() {
+            return count;
+        }
+    }
+}
@@ -0,0 +1,247 @@
+package util;
+
+/**
+ * A balanced (AVL) interval tree over half-open time intervals [start, end).
+ *
+ * Each node is keyed by its start time and an ID, and records the largest end time in its subtree, which lets
+ * overlap searches skip any subtree that ends before the interval being searched for. An overlap test costs
+ * O(log n + k), where k is the number of overlapping intervals that have to be skipped.
+ *
+ * @author James Carney
+ */
+public class IntervalTree {
+    private Node root;
+    private int size;
+
+    /**
+     * Receives intervals found by {@link #forEachOverlapping(long, long, IntervalConsumer)}.
+     */
+    @FunctionalInterface
+    public interface IntervalConsumer {
+        /**
+         * Called once for each interval found.
+         *
+         * @param id The ID stored with the interval.
+         * @param start The start of the interval.
+         * @param end The end of the interval.
+         */
+        void accept(int id, long start, long end);
+    }
+
+    /**
+     * A node of the tree.
+     */
+    private static class Node {
+        private final int id;
+        private final long start;
+        private final long end;
+        private long maxEnd;
+        private int height = 1;
+        private Node left;
+        private Node right;
+
+        private Node(int id, long start, long end) {
+            this.id = id;
+            this.start = start;
+            this.end = end;
+            this.maxEnd = end;
+        }
+    }
+
+    /**
+     * Gets the number of intervals in the tree.
+     *
+     * @return The size of the tree.
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Adds an interval to the tree.
+     *
+     * @param id The ID stored with the interval. Together with the start it must be unique within the tree.
+     * @param start The start of the interval.
+     * @param end The end of the interval.
+     */
+    public void insert(int id, long start, long end) {
+        root = insert(root, new Node(id, start, end));
+        size++;
+    }
+
+    /**
+     * Removes an interval from the tree.
+     *
+     * @param id The ID stored with the interval.
+     * @param start The start of the interval.
+     * @return boolean representing whether the interval was found and removed.
+     */
+    public boolean remove(int id, long start) {
+        int sizeBefore = size;
+        root = remove(root, id, start);
+        return size < sizeBefore;
+    }
+
+    /**
+     * Checks whether any interval other than the excluded one overlaps [start, end).
+     *
+     * @param start The start of the interval being tested.
+     * @param end The end of the interval being tested.
+     * @param excludeId The ID of an interval to ignore, such as an appointment being edited.
+     * @return boolean representing whether an overlap was found.
+     */
+    public boolean overlaps(long start, long end, int excludeId) {
+        return overlaps(root, start, end, excludeId);
+    }
+
+    /**
+     * Visits every interval that overlaps [start, end), in order of start time.
+     *
+     * @param start The start of the search interval.
+     * @param end The end of the search interval.
+     * @param consumer Receives each overlapping interval.
+     */
+    public void forEachOverlapping(long start, long end, IntervalConsumer consumer) {
+        forEachOverlapping(root, start, end, consumer);
+    }
+
+    private static boolean overlaps(Node node, long start, long end, int excludeId) {
+        while (node != null && node.maxEnd > start) {
+            if (node.left != null && node.left.maxEnd > start && overlaps(node.left, start, end, excludeId)) {
+                return true;
+            }
+            if (node.start >= end) {
+                // Everything to the right starts even later.
+                return false;
+            }
+            if (node.end > start && node.id != excludeId) {
+                return true;
+            }
+            node = node.right;
+        }
+        return false;
+    }
+
+    private static void forEachOverlapping(Node node, long start, long end, IntervalConsumer consumer) {
+        if (node == null || node.maxEnd <= start) {
+            return;
+        }
+        forEachOverlapping(node.left, start, end, consumer);
+        if (node.start >= end) {
+            return;
+        }
+        if (node.end > start) {
+            consumer.accept(node.id, node.start, node.end);
+        }
+        forEachOverlapping(node.right, start, end, consumer);
+    }
+
+    private static int compare(long start, int id, Node node) {
+        int byStart = Long.compare(start, node.start);
+        return byStart != 0 ? byStart : Integer.compare(id, node.id);
+    }
+
+    private static Node insert(Node node, Node added) {
+        if (node == null) {
+            return added;
+        }
+        if (compare(added.start, added.id, node) < 0) {
+            node.left = insert(node.left, added);
+        }
+        else {
+            node.right = insert(node.right, added);
+        }
+        return rebalance(node);
+    }
+
+    private Node remove(Node node, int id, long start) {
+        if (node == null) {
+            return null;
+        }
+        int comparison = compare(start, id, node);
+        if (comparison < 0) {
+            node.left = remove(node.left, id, start);
+        }
+        else if (comparison > 0) {
+            node.right = remove(node.right, id, start);
+        }
+        else {
+            size--;
+            if (node.left == null) {
+                return node.right;
+            }
+            if (node.right == null) {
+                return node.left;
+            }
+            Node successor = node.right;
+            while (successor.left != null) {
+                successor = successor.left;
+            }
+            Node replacement = new Node(successor.id, successor.start, successor.end);
+            replacement.right = removeMinimum(node.right);
+            replacement.left = node.left;
+            return rebalance(replacement);
+        }
+        return rebalance(node);
+    }
+
+    private static Node removeMinimum(Node node) {
+        if (node.left == null) {
+            return node.right;
+        }
+        node.left = removeMinimum(node.left);
+        return rebalance(node);
+    }
+
+    private static int height(Node node) {
+        return node == null ? 0 : node.height;
+    }
+
+    private static void update(Node node) {
+        node.height = 1 + Math.max(height(node.left), height(node.right));
+        long maxEnd = node.end;
+        if (node.left != null) {
+            maxEnd = Math.max(maxEnd, node.left.maxEnd);
+        }
+        if (node.right != null) {
+            maxEnd = Math.max(maxEnd, node.right.maxEnd);
+        }
+        node.maxEnd = maxEnd;
+    }
+
+    private static Node rotateRight(Node node) {
+        Node pivot = node.left;
+        node.left = pivot.right;
+        pivot.right = node;
+        update(node);
+        update(pivot);
+        return pivot;
+    }
+
+    private static Node rotateLeft(Node node) {
+        Node pivot = node.right;
+        node.right = pivot.left;
+        pivot.left = node;
+        update(node);
+        update(pivot);
+        return pivot;
+    }
+
+    private static Node rebalance(Node node) {
+        update(node);
+        int balance = height(node.left) - height(node.right);
+        if (balance > 1) {
+            if (height(node.left.left) < height(node.left.right)) {
+                node.left = rotateLeft(node.left);
+            }
+            return rotateRight(node);
+        }
+        if (balance < -1) {
+            if (height(node.right.right) < height(node.right.left)) {
+                node.right = rotateRight(node.right);
+            }
+            return rotateLeft(node);
+        }
+        return node;
+    }
+}
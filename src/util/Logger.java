@@ -1,16 +1,34 @@
 package util;
 
-import java.io.BufferedWriter;
-import java.io.FileWriter;
 import java.io.IOException;
+import java.nio.file.Paths;
 import java.time.LocalDateTime;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 
 /**
  * Handles the logging of user login attempts.
  *
+ * Attempts are handed to an {@link AuditLogWriter}, shared by every Logger writing to the same file, which appends them
+ * in the background; recording an attempt never waits on the disk.
+ *
  * @author James Carney
  */
 public class Logger {
+    /**
+     * The file login attempts are recorded in.
+     */
+    public static final String loginActivityFileName = "login_activity.txt";
+
+    private static final int queueCapacity = 10_000;
+    private static final int batchSize = 256;
+    private static final AuditLogWriter.SyncPolicy syncPolicy = AuditLogWriter.SyncPolicy.INTERVAL;
+    private static final long syncIntervalMillis = 1000;
+    private static final long maxFileBytes = 5 * 1024 * 1024;
+    private static final int maxBackups = 5;
+
+    private static final Map<String, AuditLogWriter> writers = new ConcurrentHashMap<>();
+
     private String fileName;
     private String getFileName() {
         return fileName;
@@ -26,12 +44,12 @@ public class Logger {
     }
 
     /**
-     * Writes information about login attempts to the file stored in fileName.
+     * Queues information about a login attempt to be written to the file stored in fileName.
      *
      * @param now The exact time of the login attempt.
      * @param userName The name entered by the person logging in.
      * @param success boolean returning true for successful login and false for failed login.
-     * @throws IOException An exception related to improper input characters.
+     * @throws IOException An exception related to opening the log file.
      */
     public void recordLoginAttempt(LocalDateTime now, String userName, boolean success) throws IOException {
         String successValue;
@@ -40,10 +58,32 @@ public class Logger {
         if (success) { successValue = "Login Successful"; }
         else { successValue = "Login Failed"; }
 
-        BufferedWriter writer = new BufferedWriter(new FileWriter(getFileName(), true));
         valueToWrite = "Login attempt - User: " + userName + " Time: " + now.format(TimeZone.dtf) + " " + successValue;
-        writer.append('\n');
-        writer.append(valueToWrite);
-        writer.close();
+        getWriter().append(valueToWrite);
+    }
+
+    /**
+     * Writes every queued login attempt to disk and closes the log files. Called when the program exits.
+     */
+    public static void shutdown() {
+        for (AuditLogWriter writer : writers.values()) {
+            writer.close();
+        }
+        writers.clear();
+    }
+
+    private AuditLogWriter getWriter() throws IOException {
+        AuditLogWriter writer = writers.get(getFileName());
+        if (writer == null) {
+            synchronized (writers) {
+                writer = writers.get(getFileName());
+                if (writer == null) {
+                    writer = new AuditLogWriter(Paths.get(getFileName()), queueCapacity, batchSize, syncPolicy,
+                            syncIntervalMillis, maxFileBytes, maxBackups);
+                    writers.put(getFileName(), writer);
+                }
+            }
+        }
+        return writer;
     }
 }
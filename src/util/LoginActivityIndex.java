@@ -0,0 +1,458 @@
+package util;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * An on-disk index of the login activity log, with a count of successful and failed attempts for each user and hour.
+ *
+ * The log and its rotated segments ({@code name.1}, {@code name.2}, ...) are read oldest first, one line at a time.
+ * The index remembers how far into each segment it has read, identifying segments by file key and first line so a
+ * segment is still recognised after it is rotated, and {@link #update()} only reads what has been appended since. The
+ * counts are kept after a segment is rotated away, so the index covers more history than the log files do.
+ *
+ * Each hour also records the most failed attempts by its user within any {@link #burstWindowMinutes}-minute window
+ * ending in that hour; hours where that reaches {@link #burstThreshold} are reported as suspicious bursts.
+ *
+ * @author James Carney
+ */
+public class LoginActivityIndex {
+    /**
+     * The length of the sliding window failed attempts are counted in for burst detection.
+     */
+    public static final int burstWindowMinutes = 5;
+
+    /**
+     * The number of failed attempts within the window that counts as a suspicious burst.
+     */
+    public static final int burstThreshold = 5;
+
+    private static final int fileFormatVersion = 1;
+    private static final int maxSegments = 100;
+    private static final String linePrefix = "Login attempt - User: ";
+    private static final String timeMarker = " Time: ";
+    private static final String successSuffix = " Login Successful";
+    private static final String failureSuffix = " Login Failed";
+
+    private final Path logFile;
+    private final Path indexFile;
+    private boolean loaded;
+
+    // Segment identity -> bytes of it already indexed.
+    private Map<String, Long> segmentOffsets = new HashMap<>();
+    // User -> hour (hours since the epoch, in local time) -> counts.
+    private final Map<String, TreeMap<Long, Bucket>> buckets = new HashMap<>();
+    // User -> times (seconds since the epoch, in local time) of their failed attempts within the last window.
+    private final Map<String, ArrayDeque<Long>> recentFailures = new HashMap<>();
+
+    /**
+     * The attempts by one user in one hour.
+     */
+    public static class Bucket {
+        private final String userName;
+        private final long hour;
+        private int successful;
+        private int failed;
+        private int peakFailedInWindow;
+
+        private Bucket(String userName, long hour) {
+            this.userName = userName;
+            this.hour = hour;
+        }
+
+        private Bucket(Bucket other) {
+            this(other.userName, other.hour);
+            this.successful = other.successful;
+            this.failed = other.failed;
+            this.peakFailedInWindow = other.peakFailedInWindow;
+        }
+
+        /**
+         * Gets the user name entered.
+         *
+         * @return The user name.
+         */
+        public String getUserName() {
+            return userName;
+        }
+
+        /**
+         * Gets the start of the hour.
+         *
+         * @return The local date and time the hour starts.
+         */
+        public LocalDateTime getHourStart() {
+            return LocalDateTime.ofEpochSecond(hour * 3600, 0, ZoneOffset.UTC);
+        }
+
+        /**
+         * Gets the number of successful attempts.
+         *
+         * @return The count.
+         */
+        public int getSuccessful() {
+            return successful;
+        }
+
+        /**
+         * Gets the number of failed attempts.
+         *
+         * @return The count.
+         */
+        public int getFailed() {
+            return failed;
+        }
+
+        /**
+         * Gets the most failed attempts within any burst window ending in this hour.
+         *
+         * @return The count.
+         */
+        public int getPeakFailedInWindow() {
+            return peakFailedInWindow;
+        }
+    }
+
+    /**
+     * Creates an index for a log file. The index is kept next to it, as {@code <log file>.idx}.
+     *
+     * @param logFile The login activity log.
+     */
+    public LoginActivityIndex(Path logFile) {
+        this.logFile = logFile;
+        this.indexFile = Paths.get(logFile.toString() + ".idx");
+    }
+
+    /**
+     * Reads whatever has been appended to the log since the last update and saves the index.
+     *
+     * @return The number of log lines indexed.
+     * @throws IOException An exception related to reading the log or writing the index.
+     */
+    public synchronized long update() throws IOException {
+        if (!loaded) {
+            load();
+            loaded = true;
+        }
+
+        List<Path> segments = new ArrayList<>();
+        for (int i = maxSegments; i >= 1; i--) {
+            Path segment = Paths.get(logFile.toString() + "." + i);
+            if (Files.exists(segment)) {
+                segments.add(segment);
+            }
+        }
+        if (Files.exists(logFile)) {
+            segments.add(logFile);
+        }
+
+        long lines = 0;
+        Map<String, Long> offsets = new LinkedHashMap<>();
+        for (Path segment : segments) {
+            String identity = identify(segment);
+            if (identity == null) {
+                // Nothing complete in it yet.
+                continue;
+            }
+            long[] progress = {segmentOffsets.getOrDefault(identity, 0L), 0};
+            indexSegment(segment, progress);
+            offsets.put(identity, progress[0]);
+            lines += progress[1];
+        }
+
+        // Segments that have been rotated away are forgotten; their counts are kept.
+        segmentOffsets = offsets;
+        if (lines > 0) {
+            save();
+        }
+        return lines;
+    }
+
+    /**
+     * Gets every user and hour with any attempts.
+     *
+     * @return Copies of the buckets, sorted by user name and then hour.
+     */
+    public synchronized List<Bucket> getBuckets() {
+        List<Bucket> all = new ArrayList<>();
+        new TreeMap<>(buckets).values().forEach(hours -> hours.values().forEach(bucket -> all.add(new Bucket(bucket))));
+        return all;
+    }
+
+    /**
+     * Gets the hours in which a user reached {@link #burstThreshold} failed attempts within the burst window.
+     *
+     * @return Copies of the buckets, sorted by user name and then hour.
+     */
+    public synchronized List<Bucket> getBursts() {
+        List<Bucket> bursts = new ArrayList<>();
+        for (Bucket bucket : getBuckets()) {
+            if (bucket.peakFailedInWindow >= burstThreshold) {
+                bursts.add(bucket);
+            }
+        }
+        return bursts;
+    }
+
+    /**
+     * Reads a segment from an offset, counting each complete line.
+     *
+     * @param segment The segment.
+     * @param progress The offset to start at, updated to the end of the last complete line, and the number of lines
+     *                 read.
+     * @throws IOException An exception related to reading the segment.
+     */
+    private void indexSegment(Path segment, long[] progress) throws IOException {
+        try (FileChannel channel = FileChannel.open(segment, StandardOpenOption.READ)) {
+            if (progress[0] >= channel.size()) {
+                return;
+            }
+            channel.position(progress[0]);
+
+            ByteBuffer buffer = ByteBuffer.allocate(64 * 1024);
+            ByteArrayOutputStream carried = new ByteArrayOutputStream(128);
+            long bufferStart = progress[0];
+            while (channel.read(buffer) != -1) {
+                buffer.flip();
+                byte[] bytes = buffer.array();
+                int lineStart = 0;
+                for (int i = 0; i < buffer.limit(); i++) {
+                    if (bytes[i] != '\n') {
+                        continue;
+                    }
+                    String line;
+                    if (carried.size() > 0) {
+                        carried.write(bytes, lineStart, i - lineStart);
+                        line = carried.toString(StandardCharsets.UTF_8.name());
+                        carried.reset();
+                    }
+                    else {
+                        line = new String(bytes, lineStart, i - lineStart, StandardCharsets.UTF_8);
+                    }
+                    if (!line.isEmpty()) {
+                        record(line);
+                        progress[1]++;
+                    }
+                    lineStart = i + 1;
+                    progress[0] = bufferStart + lineStart;
+                }
+                carried.write(bytes, lineStart, buffer.limit() - lineStart);
+                bufferStart += buffer.limit();
+                buffer.clear();
+            }
+
+            // The writer puts the line break before each line, so the last line has none. Count it only if it is
+            // complete, which a line still being written won't be.
+            String last = carried.toString(StandardCharsets.UTF_8.name());
+            if (!last.isEmpty() && parse(last) != null) {
+                record(last);
+                progress[1]++;
+                progress[0] = bufferStart;
+            }
+        }
+    }
+
+    /**
+     * Counts one log line.
+     *
+     * @param line The line.
+     */
+    private void record(String line) {
+        Object[] parsed = parse(line);
+        if (parsed == null) {
+            return;
+        }
+        String userName = (String) parsed[0];
+        long second = ((LocalDateTime) parsed[1]).toEpochSecond(ZoneOffset.UTC);
+        boolean success = (Boolean) parsed[2];
+
+        Bucket bucket = buckets.computeIfAbsent(userName, u -> new TreeMap<>())
+                .computeIfAbsent(Math.floorDiv(second, 3600), h -> new Bucket(userName, h));
+        if (success) {
+            bucket.successful++;
+            return;
+        }
+        bucket.failed++;
+
+        ArrayDeque<Long> recent = recentFailures.computeIfAbsent(userName, u -> new ArrayDeque<>());
+        recent.addLast(second);
+        while (recent.peekFirst() <= second - burstWindowMinutes * 60L) {
+            recent.removeFirst();
+        }
+        bucket.peakFailedInWindow = Math.max(bucket.peakFailedInWindow, recent.size());
+    }
+
+    /**
+     * Splits a log line into its parts.
+     *
+     * @param line The line.
+     * @return The user name, time and whether the attempt succeeded, or null if the line isn't a login attempt.
+     */
+    private static Object[] parse(String line) {
+        if (!line.startsWith(linePrefix)) {
+            return null;
+        }
+        boolean success;
+        int end;
+        if (line.endsWith(successSuffix)) {
+            success = true;
+            end = line.length() - successSuffix.length();
+        }
+        else if (line.endsWith(failureSuffix)) {
+            success = false;
+            end = line.length() - failureSuffix.length();
+        }
+        else {
+            return null;
+        }
+
+        int time = line.lastIndexOf(timeMarker, end);
+        if (time < linePrefix.length()) {
+            return null;
+        }
+        try {
+            LocalDateTime when = LocalDateTime.parse(line.substring(time + timeMarker.length(), end), TimeZone.dtf);
+            return new Object[] {line.substring(linePrefix.length(), time), when, success};
+        }
+        catch (DateTimeParseException e) {
+            return null;
+        }
+    }
+
+    /**
+     * Identifies a segment by its file key, where the file system has one, and its first complete line. Both survive
+     * the segment being renamed by rotation.
+     *
+     * @param segment The segment.
+     * @return The identity, or null if the segment has no complete line yet.
+     * @throws IOException An exception related to reading the segment.
+     */
+    private static String identify(Path segment) throws IOException {
+        Object fileKey = Files.readAttributes(segment, BasicFileAttributes.class).fileKey();
+
+        try (InputStream in = new BufferedInputStream(Files.newInputStream(segment))) {
+            ByteArrayOutputStream first = new ByteArrayOutputStream(128);
+            int b;
+            while ((b = in.read()) != -1) {
+                if (b == '\n') {
+                    if (first.size() > 0) {
+                        break;
+                    }
+                    continue;
+                }
+                first.write(b);
+            }
+            String line = first.toString(StandardCharsets.UTF_8.name());
+            if (line.isEmpty() || (b == -1 && parse(line) == null)) {
+                return null;
+            }
+            return (fileKey == null ? "" : fileKey + "|") + line;
+        }
+    }
+
+    /**
+     * Reads the index file, if there is one.
+     *
+     * @throws IOException An exception related to reading the index.
+     */
+    private void load() throws IOException {
+        if (!Files.exists(indexFile)) {
+            return;
+        }
+
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(indexFile)))) {
+            if (in.readInt() != fileFormatVersion) {
+                // Written by a different version; start again from the log files.
+                return;
+            }
+
+            int segmentCount = in.readInt();
+            for (int i = 0; i < segmentCount; i++) {
+                segmentOffsets.put(in.readUTF(), in.readLong());
+            }
+
+            int userCount = in.readInt();
+            for (int u = 0; u < userCount; u++) {
+                String userName = in.readUTF();
+                TreeMap<Long, Bucket> hours = new TreeMap<>();
+                int hourCount = in.readInt();
+                for (int h = 0; h < hourCount; h++) {
+                    Bucket bucket = new Bucket(userName, in.readLong());
+                    bucket.successful = in.readInt();
+                    bucket.failed = in.readInt();
+                    bucket.peakFailedInWindow = in.readInt();
+                    hours.put(bucket.hour, bucket);
+                }
+                buckets.put(userName, hours);
+
+                ArrayDeque<Long> recent = new ArrayDeque<>();
+                int recentCount = in.readInt();
+                for (int r = 0; r < recentCount; r++) {
+                    recent.addLast(in.readLong());
+                }
+                recentFailures.put(userName, recent);
+            }
+        }
+    }
+
+    /**
+     * Writes the index file, replacing the old one only once the new one is complete.
+     *
+     * @throws IOException An exception related to writing the index.
+     */
+    private void save() throws IOException {
+        Path temporary = Paths.get(indexFile.toString() + ".tmp");
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(temporary)))) {
+            out.writeInt(fileFormatVersion);
+
+            out.writeInt(segmentOffsets.size());
+            for (Map.Entry<String, Long> segment : segmentOffsets.entrySet()) {
+                out.writeUTF(segment.getKey());
+                out.writeLong(segment.getValue());
+            }
+
+            out.writeInt(buckets.size());
+            for (Map.Entry<String, TreeMap<Long, Bucket>> user : buckets.entrySet()) {
+                out.writeUTF(user.getKey());
+                out.writeInt(user.getValue().size());
+                for (Bucket bucket : user.getValue().values()) {
+                    out.writeLong(bucket.hour);
+                    out.writeInt(bucket.successful);
+                    out.writeInt(bucket.failed);
+                    out.writeInt(bucket.peakFailedInWindow);
+                }
+
+                ArrayDeque<Long> recent = recentFailures.getOrDefault(user.getKey(), new ArrayDeque<>());
+                out.writeInt(recent.size());
+                for (long second : recent) {
+                    out.writeLong(second);
+                }
+            }
+        }
+        Files.move(temporary, indexFile, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+}
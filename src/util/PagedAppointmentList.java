@@ -0,0 +1,253 @@
+package util;
+
+import DAO.AppointmentDAO;
+import DAO.AsyncDAO;
+import javafx.collections.ObservableListBase;
+import model.Appointment;
+
+import java.sql.SQLException;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * A read-only list of appointments that loads itself from the database one page at a time.
+ *
+ * The list starts with just the first page. TableView only asks for the rows it is drawing, so when a row near the
+ * end of the loaded range is requested, the next page is fetched in the background and appended. Pages are fetched
+ * with keyset pagination on (Start, Appointment_ID) and only the most recently used pages are kept in memory; an
+ * evicted page is fetched again in the background, from its remembered key, if it is scrolled back into view. Until
+ * it arrives its rows are null, which the table shows as blank rows that can't be selected for editing. A page is
+ * fetched again as the whole range between its first key and the next page's, so rows added to that range since it was
+ * first read are inserted into the list when it comes back, and rows deleted since are removed.
+ *
+ * All methods must be called on the JavaFX application thread.
+ *
+ * @author James Carney
+ */
+public class PagedAppointmentList extends ObservableListBase<Appointment> {
+    private final int pageSize;
+    private final int maxResidentPages;
+
+    // For each page, the key of the last row of the page before it, how many rows the page holds and the index of
+    // its first row.
+    private final List<Instant> pageAfterStart = new ArrayList<>();
+    private final List<Integer> pageAfterId = new ArrayList<>();
+    private final List<Integer> pageRowCounts = new ArrayList<>();
+    private final List<Integer> pageFirstRows = new ArrayList<>();
+    private final LinkedHashMap<Integer, List<Appointment>> residentPages = new LinkedHashMap<>(16, 0.75f, true);
+    private final Set<Integer> loadingPages = new HashSet<>();
+
+    // The key of the last row appended, which the next page continues from.
+    private Instant lastStart = null;
+    private int lastId = 0;
+
+    private int size = 0;
+    private boolean lastPageLoaded = false;
+    private boolean prefetching = false;
+
+    /**
+     * Class constructor. Loads the first page, so it should be called off the FX thread.
+     *
+     * @param pageSize The number of appointments fetched per query.
+     * @param maxResidentPages The number of pages kept in memory.
+     * @throws SQLException An exception related to the database query.
+     */
+    public PagedAppointmentList(int pageSize, int maxResidentPages) throws SQLException {
+        this.pageSize = pageSize;
+        this.maxResidentPages = Math.max(2, maxResidentPages);
+        appendPage(AppointmentDAO.getAppointmentPage(null, 0, pageSize), null, 0);
+    }
+
+    /**
+     * Gets an appointment, or null if its page is still being fetched.
+     *
+     * @param index The index of the appointment.
+     * @return The appointment, or null until its page has loaded.
+     */
+    @Override
+    public Appointment get(int index) {
+        if (index < 0 || index >= size) {
+            throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + size);
+        }
+        if (index >= size - pageSize / 2) {
+            prefetchNextPage();
+        }
+
+        int pageNumber = pageOf(index);
+        List<Appointment> page = residentPages.get(pageNumber);
+        if (page == null) {
+            reloadPage(pageNumber);
+            return null;
+        }
+        return page.get(index - pageFirstRows.get(pageNumber));
+    }
+
+    @Override
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Finds the page holding a row.
+     *
+     * @param index The index of the row.
+     * @return The page number. Pages left empty by deletions are skipped, because they share their first row with
+     * the page after them.
+     */
+    private int pageOf(int index) {
+        int low = 0;
+        int high = pageFirstRows.size() - 1;
+        while (low < high) {
+            int middle = (low + high + 1) >>> 1;
+            if (pageFirstRows.get(middle) <= index) {
+                low = middle;
+            }
+            else {
+                high = middle - 1;
+            }
+        }
+        return low;
+    }
+
+    /**
+     * Fetches the page after the last loaded one on a background thread and appends it on the FX thread.
+     */
+    private void prefetchNextPage() {
+        if (prefetching || lastPageLoaded) {
+            return;
+        }
+        prefetching = true;
+
+        Instant afterStart = lastStart;
+        int afterId = lastId;
+        AsyncDAO.onFxThread(AsyncDAO.supply(() -> AppointmentDAO.getAppointmentPage(afterStart, afterId, pageSize)),
+                page -> {
+                    prefetching = false;
+                    appendPage(page, afterStart, afterId);
+                },
+                error -> {
+                    error.printStackTrace();
+                    prefetching = false;
+                });
+    }
+
+    /**
+     * Adds a newly fetched page to the end of the list.
+     *
+     * @param page The rows of the page.
+     * @param afterStart The start time of the last row of the previous page.
+     * @param afterId The ID of the last row of the previous page.
+     */
+    private void appendPage(List<Appointment> page, Instant afterStart, int afterId) {
+        if (page.size() < pageSize) {
+            lastPageLoaded = true;
+        }
+        if (page.isEmpty()) {
+            return;
+        }
+
+        int pageNumber = pageRowCounts.size();
+        pageAfterStart.add(afterStart);
+        pageAfterId.add(afterId);
+        pageRowCounts.add(page.size());
+        pageFirstRows.add(size);
+        residentPages.put(pageNumber, page);
+        evictPages(pageNumber);
+
+        Appointment lastRow = page.get(page.size() - 1);
+        lastStart = lastRow.getStart().toInstant();
+        lastId = lastRow.getAppointmentId();
+
+        int oldSize = size;
+        size += page.size();
+        beginChange();
+        nextAdd(oldSize, size);
+        endChange();
+    }
+
+    /**
+     * Fetches a page that was evicted, as every row from its remembered key through the key of its old last row, on a
+     * background thread. Its rows are null until it arrives.
+     *
+     * @param pageNumber The page to fetch.
+     */
+    private void reloadPage(int pageNumber) {
+        if (!loadingPages.add(pageNumber)) {
+            return;
+        }
+
+        Instant afterStart = pageAfterStart.get(pageNumber);
+        int afterId = pageAfterId.get(pageNumber);
+        // The page's old last row is the key the next page continues from.
+        boolean hasNextPage = pageNumber + 1 < pageRowCounts.size();
+        Instant throughStart = hasNextPage ? pageAfterStart.get(pageNumber + 1) : lastStart;
+        int throughId = hasNextPage ? pageAfterId.get(pageNumber + 1) : lastId;
+
+        AsyncDAO.onFxThread(AsyncDAO.supply(() -> AppointmentDAO.getAppointmentRange(afterStart, afterId, throughStart, throughId)),
+                page -> {
+                    loadingPages.remove(pageNumber);
+                    showReloadedPage(pageNumber, page);
+                },
+                error -> {
+                    // The rows stay blank, and the page is asked for again the next time the table draws them.
+                    loadingPages.remove(pageNumber);
+                    error.printStackTrace();
+                });
+    }
+
+    /**
+     * Puts a reloaded page in place of its blank rows, inserting the rows of appointments added to its range and
+     * removing the rows of appointments deleted from it since the page was first read.
+     *
+     * @param pageNumber The page.
+     * @param page The rows of the page as they are now.
+     */
+    private void showReloadedPage(int pageNumber, List<Appointment> page) {
+        int firstRow = pageFirstRows.get(pageNumber);
+        int oldRows = pageRowCounts.get(pageNumber);
+        int addedRows = page.size() - oldRows;
+        residentPages.put(pageNumber, page);
+        evictPages(pageNumber);
+
+        beginChange();
+        for (int i = 0; i < Math.min(oldRows, page.size()); i++) {
+            nextSet(firstRow + i, null);
+        }
+        if (addedRows != 0) {
+            pageRowCounts.set(pageNumber, page.size());
+            for (int i = pageNumber + 1; i < pageFirstRows.size(); i++) {
+                pageFirstRows.set(i, pageFirstRows.get(i) + addedRows);
+            }
+            size += addedRows;
+            if (addedRows > 0) {
+                nextAdd(firstRow + oldRows, firstRow + page.size());
+            }
+            else {
+                nextRemove(firstRow + page.size(), Collections.nCopies(-addedRows, (Appointment) null));
+            }
+        }
+        endChange();
+    }
+
+    /**
+     * Drops the least recently used pages once more than maxResidentPages are in memory.
+     *
+     * @param keep A page that must stay resident, such as the one just loaded.
+     */
+    private void evictPages(int keep) {
+        Iterator<Map.Entry<Integer, List<Appointment>>> iterator = residentPages.entrySet().iterator();
+        while (residentPages.size() > maxResidentPages && iterator.hasNext()) {
+            Map.Entry<Integer, List<Appointment>> eldest = iterator.next();
+            if (eldest.getKey() != keep) {
+                iterator.remove();
+            }
+        }
+    }
+}
@@ -0,0 +1,327 @@
+package util;
+
+import DAO.AppointmentDAO;
+import model.Appointment;
+
+import java.sql.SQLException;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Consumer;
+
+/**
+ * Reminds the user of appointments {@link #leadTimeSeconds} seconds before they start.
+ *
+ * The upcoming appointments are kept in a min-heap ordered by when their reminder is due. A single daemon thread sleeps
+ * until the earliest reminder is due, hands it to the listener and goes back to sleep, so nothing runs between
+ * reminders. AppointmentDAO reports every appointment it creates, updates or deletes, and the heap is updated in
+ * O(log n) without another query; the thread is woken only if the earliest reminder changed.
+ *
+ * Appointments created, edited or deleted while {@link #start(Consumer)} is still loading are queued and applied once
+ * the upcoming appointments are loaded, so none of them are missed.
+ *
+ * Edited and deleted appointments are removed lazily: the heap keeps their old entries, which are skipped when they
+ * reach the top because they no longer match the appointment recorded for that ID.
+ *
+ * @author James Carney
+ */
+public class ReminderScheduler {
+    /**
+     * How long before an appointment starts the user is reminded of it, in seconds.
+     */
+    public static final long leadTimeSeconds = 15 * 60;
+
+    private static final ReentrantLock lock = new ReentrantLock();
+    private static final Condition changed = lock.newCondition();
+
+    private static final PriorityQueue<Reminder> reminders = new PriorityQueue<>();
+    // The current version of each appointment with a reminder still to come, by ID.
+    private static final Map<Integer, Appointment> pending = new HashMap<>();
+
+    // Changes reported while the upcoming appointments are being loaded, applied in order once they are.
+    private static final List<Runnable> changesWhileStarting = new ArrayList<>();
+
+    private static Thread thread;
+    private static Consumer<Appointment> listener;
+    private static boolean starting = false;
+    // Incremented by every start and stop, so a start that was stopped while loading doesn't go on to run.
+    private static long generation = 0;
+
+    /**
+     * A reminder in the heap.
+     */
+    private static class Reminder implements Comparable<Reminder> {
+        private final long dueEpochSecond;
+        private final Appointment appointment;
+
+        private Reminder(long dueEpochSecond, Appointment appointment) {
+            this.dueEpochSecond = dueEpochSecond;
+            this.appointment = appointment;
+        }
+
+        @Override
+        public int compareTo(Reminder other) {
+            return Long.compare(dueEpochSecond, other.dueEpochSecond);
+        }
+    }
+
+    /**
+     * Loads the upcoming appointments and starts sending reminders. Does nothing if the scheduler is already running or
+     * starting, so it can be called each time the Main screen opens.
+     *
+     * @param onDue Called on the scheduler's thread with each appointment as its reminder falls due.
+     * @return The appointments starting within the lead time, whose reminders are already due, or null if the scheduler
+     *         was already running or starting. These are returned rather than passed to the listener, so the caller can
+     *         show them together.
+     * @throws SQLException An exception related to the database query.
+     */
+    public static List<Appointment> start(Consumer<Appointment> onDue) throws SQLException {
+        long startGeneration;
+        lock.lock();
+        try {
+            if (thread != null || starting) {
+                return null;
+            }
+            starting = true;
+            startGeneration = ++generation;
+        }
+        finally {
+            lock.unlock();
+        }
+
+        Instant now = Instant.now();
+        List<Appointment> upcoming;
+        try {
+            upcoming = AppointmentDAO.getAppointmentsStartingAfter(now);
+        }
+        catch (SQLException | RuntimeException e) {
+            lock.lock();
+            try {
+                if (generation == startGeneration) {
+                    starting = false;
+                    changesWhileStarting.clear();
+                }
+            }
+            finally {
+                lock.unlock();
+            }
+            throw e;
+        }
+        List<Appointment> dueNow = new ArrayList<>();
+
+        lock.lock();
+        try {
+            if (generation != startGeneration) {
+                // Stopped while loading.
+                return null;
+            }
+            starting = false;
+
+            for (Appointment appointment : upcoming) {
+                if (appointment.getStartEpochSecond() - leadTimeSeconds <= now.getEpochSecond()) {
+                    dueNow.add(appointment);
+                }
+                else {
+                    add(appointment);
+                }
+            }
+            for (Runnable change : changesWhileStarting) {
+                change.run();
+            }
+            changesWhileStarting.clear();
+
+            listener = onDue;
+            thread = new Thread(ReminderScheduler::runReminders, "appointment-reminders");
+            thread.setDaemon(true);
+            thread.start();
+        }
+        finally {
+            lock.unlock();
+        }
+        return dueNow;
+    }
+
+    /**
+     * Stops sending reminders and forgets every appointment. Called when the user logs out and when the program exits.
+     */
+    public static void stop() {
+        lock.lock();
+        try {
+            if (thread != null) {
+                thread.interrupt();
+                thread = null;
+            }
+            generation++;
+            starting = false;
+            changesWhileStarting.clear();
+            listener = null;
+            reminders.clear();
+            pending.clear();
+        }
+        finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Gets whether reminders are being sent.
+     *
+     * @return true between {@link #start(Consumer)} and {@link #stop()}, including while the appointments are loading.
+     */
+    public static boolean isRunning() {
+        lock.lock();
+        try {
+            return thread != null || starting;
+        }
+        finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Schedules the reminder for a new or edited appointment, replacing any earlier reminder for the same ID. Does
+     * nothing unless the scheduler is running or starting.
+     *
+     * @param appointment The appointment.
+     */
+    public static void schedule(Appointment appointment) {
+        lock.lock();
+        try {
+            if (starting) {
+                changesWhileStarting.add(() -> schedule(appointment));
+                return;
+            }
+            if (thread == null) {
+                return;
+            }
+            pending.remove(appointment.getAppointmentId());
+            if (appointment.getStartEpochSecond() > Instant.now().getEpochSecond()) {
+                add(appointment);
+            }
+        }
+        finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Cancels the reminder for a deleted appointment.
+     *
+     * @param appointmentId The ID of the appointment.
+     */
+    public static void cancel(int appointmentId) {
+        lock.lock();
+        try {
+            if (starting) {
+                changesWhileStarting.add(() -> cancel(appointmentId));
+                return;
+            }
+            pending.remove(appointmentId);
+        }
+        finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Cancels the reminders for every appointment with a customer, after the customer's appointments are deleted.
+     *
+     * @param customerId The ID of the customer.
+     */
+    public static void cancelCustomer(int customerId) {
+        lock.lock();
+        try {
+            if (starting) {
+                changesWhileStarting.add(() -> cancelCustomer(customerId));
+                return;
+            }
+            pending.values().removeIf(appointment -> appointment.getCustomerId() == customerId);
+        }
+        finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Adds an appointment's reminder to the heap, waking the thread if it is now the earliest. The lock must be held.
+     *
+     * @param appointment The appointment.
+     */
+    private static void add(Appointment appointment) {
+        Reminder reminder = new Reminder(appointment.getStartEpochSecond() - leadTimeSeconds, appointment);
+        pending.put(appointment.getAppointmentId(), appointment);
+        reminders.add(reminder);
+        if (reminders.peek() == reminder) {
+            changed.signal();
+        }
+
+        // Drop the entries left behind by edits and deletes once they outnumber the live ones.
+        if (reminders.size() > 2 * pending.size() + 16) {
+            reminders.removeIf(r -> pending.get(r.appointment.getAppointmentId()) != r.appointment);
+        }
+    }
+
+    /**
+     * The scheduler thread: waits for the earliest reminder to fall due and passes it to the listener.
+     */
+    private static void runReminders() {
+        Thread self = Thread.currentThread();
+        while (true) {
+            Appointment due = null;
+            Consumer<Appointment> notify;
+
+            lock.lock();
+            try {
+                while (due == null) {
+                    if (thread != self) {
+                        return;
+                    }
+
+                    Reminder next = reminders.peek();
+                    if (next == null) {
+                        changed.await();
+                        continue;
+                    }
+                    if (pending.get(next.appointment.getAppointmentId()) != next.appointment) {
+                        // Edited or deleted since it was scheduled.
+                        reminders.poll();
+                        continue;
+                    }
+
+                    long waitSeconds = next.dueEpochSecond - Instant.now().getEpochSecond();
+                    if (waitSeconds > 0) {
+                        changed.await(waitSeconds, TimeUnit.SECONDS);
+                        continue;
+                    }
+
+                    reminders.poll();
+                    pending.remove(next.appointment.getAppointmentId());
+                    due = next.appointment;
+                }
+                notify = listener;
+            }
+            catch (InterruptedException e) {
+                return;
+            }
+            finally {
+                lock.unlock();
+            }
+
+            // Called without the lock, so the listener can't hold up the DAOs.
+            if (notify != null) {
+                try {
+                    notify.accept(due);
+                }
+                catch (RuntimeException e) {
+                    e.printStackTrace();
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,360 @@
+package util;
+
+import DAO.DBConnection;
+import DAO.Query;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.text.DateFormatSymbols;
+import java.time.Instant;
+import java.time.ZonedDateTime;
+
+/**
+ * Exports the reports to CSV or JSON files.
+ *
+ * Unlike {@link ReportGenerator}, nothing is collected into lists: each row is read from a forward-only result set,
+ * fetched {@link #fetchSize} rows at a time, and written straight to the file, so memory use stays the same however
+ * many rows a report has.
+ *
+ * @author James Carney
+ */
+public class ReportExporter {
+    /**
+     * The number of rows fetched from the database at a time.
+     */
+    public static final int fetchSize = 500;
+
+    private static final String[] monthNames = new DateFormatSymbols().getMonths();
+
+    /**
+     * The file formats reports can be exported in.
+     */
+    public enum Format {
+        CSV("csv"),
+        JSON("json");
+
+        private final String extension;
+
+        Format(String extension) {
+            this.extension = extension;
+        }
+
+        /**
+         * Gets the file name extension for the format.
+         *
+         * @return The extension, without a dot.
+         */
+        public String getExtension() {
+            return extension;
+        }
+    }
+
+    /**
+     * The reports that can be exported.
+     */
+    public enum Report {
+        APPOINTMENTS_BY_TYPE("appointments_by_type", true,
+                "SELECT month(Start), Type, COUNT(*) FROM appointments%s GROUP BY month(Start), Type ORDER BY month(Start), Type",
+                "Month", "Type", "Count"),
+        SCHEDULE_BY_CONTACT("schedule_by_contact", true,
+                "SELECT Contact_ID, Appointment_ID, Title, Type, Description, Start, End, Customer_ID FROM appointments%s ORDER BY Contact_ID, Start",
+                "Contact ID", "Appointment ID", "Title", "Type", "Description", "Start", "End", "Customer ID"),
+        CUSTOMERS_BY_COUNTRY("customers_by_country", false,
+                "SELECT countries.Country, COUNT(*) FROM customers INNER JOIN first_level_divisions ON customers.Division_ID = first_level_divisions.Division_ID INNER JOIN countries ON first_level_divisions.COUNTRY_ID = countries.Country_ID GROUP BY countries.Country_ID, countries.Country ORDER BY countries.Country_ID",
+                "Country", "Customers");
+
+        private final String fileName;
+        private final boolean dated;
+        private final String sqlStatement;
+        private final String[] headings;
+
+        /**
+         * Enum constructor.
+         *
+         * @param fileName The name the report is exported under.
+         * @param dated Whether the report covers appointments and can be limited to a date range. If so, its SQL has
+         *              a %s where the WHERE clause goes.
+         * @param sqlStatement The query that produces the report.
+         * @param headings The column headings.
+         */
+        Report(String fileName, boolean dated, String sqlStatement, String... headings) {
+            this.fileName = fileName;
+            this.dated = dated;
+            this.sqlStatement = sqlStatement;
+            this.headings = headings;
+        }
+
+        /**
+         * Finds a report by the name it is exported under.
+         *
+         * @param fileName The file name, e.g. "schedule_by_contact".
+         * @return The report, or null if there is none by that name.
+         */
+        public static Report fromFileName(String fileName) {
+            for (Report report : values()) {
+                if (report.fileName.equalsIgnoreCase(fileName)) {
+                    return report;
+                }
+            }
+            return null;
+        }
+
+        /**
+         * Gets whether the report can be limited to a date range.
+         *
+         * @return true if the report covers appointments.
+         */
+        public boolean isDated() {
+            return dated;
+        }
+
+        /**
+         * Gets the name the report is exported under, without an extension.
+         *
+         * @return The file name.
+         */
+        public String getFileName() {
+            return fileName;
+        }
+    }
+
+    /**
+     * The outcome of one export.
+     */
+    public static class Result {
+        private final Report report;
+        private final Path file;
+        private final long rows;
+        private final long elapsedNanos;
+
+        private Result(Report report, Path file, long rows, long elapsedNanos) {
+            this.report = report;
+            this.file = file;
+            this.rows = rows;
+            this.elapsedNanos = elapsedNanos;
+        }
+
+        /**
+         * Gets the report that was exported.
+         *
+         * @return The report.
+         */
+        public Report getReport() {
+            return report;
+        }
+
+        /**
+         * Gets the file the report was written to.
+         *
+         * @return The file.
+         */
+        public Path getFile() {
+            return file;
+        }
+
+        /**
+         * Gets the number of rows written.
+         *
+         * @return The row count.
+         */
+        public long getRows() {
+            return rows;
+        }
+
+        /**
+         * Gets the rate the report was exported at, from running the query to closing the file.
+         *
+         * @return Rows per second.
+         */
+        public double getRowsPerSecond() {
+            return elapsedNanos == 0 ? 0 : rows * 1_000_000_000.0 / elapsedNanos;
+        }
+
+        @Override
+        public String toString() {
+            return String.format("%s: %d rows to %s (%.0f rows/s)", report.getFileName(), rows, file, getRowsPerSecond());
+        }
+    }
+
+    /**
+     * Exports a report into a directory, as {@code <report file name>.<format extension>}.
+     *
+     * @param report The report to export.
+     * @param format The file format.
+     * @param directory The directory to write the file in.
+     * @return The number of rows written and how fast.
+     * @throws SQLException An exception related to the database query.
+     * @throws IOException An exception related to writing the file.
+     */
+    public static Result export(Report report, Format format, Path directory) throws SQLException, IOException {
+        return export(report, format, directory, null, null);
+    }
+
+    /**
+     * Exports a report into a directory, as {@code <report file name>.<format extension>}, counting only appointments
+     * that start within a time window. Reports that don't cover appointments ignore the window.
+     *
+     * @param report The report to export.
+     * @param format The file format.
+     * @param directory The directory to write the file in.
+     * @param from The start of the window, inclusive, or null for all appointments.
+     * @param to The end of the window, exclusive, or null for all appointments.
+     * @return The number of rows written and how fast.
+     * @throws SQLException An exception related to the database query.
+     * @throws IOException An exception related to writing the file.
+     */
+    public static Result export(Report report, Format format, Path directory, Instant from, Instant to) throws SQLException, IOException {
+        boolean ranged = report.isDated() && from != null && to != null;
+        String sqlStatement = report.isDated()
+                ? String.format(report.sqlStatement, ranged ? " WHERE Start >= ? AND Start < ?" : "")
+                : report.sqlStatement;
+        Path file = directory.resolve(report.getFileName() + "." + format.getExtension());
+        long started = System.nanoTime();
+        long rows = 0;
+
+        try (Connection conn = DBConnection.getConnection();
+             PreparedStatement ps = Query.prepareStreaming(conn, sqlStatement, fetchSize);
+             BufferedWriter out = Files.newBufferedWriter(file, StandardCharsets.UTF_8)) {
+            if (ranged) {
+                ps.setTimestamp(1, Timestamp.from(from));
+                ps.setTimestamp(2, Timestamp.from(to));
+            }
+            ResultSet rs = ps.executeQuery();
+            Object[] row = new Object[report.headings.length];
+
+            if (format == Format.CSV) {
+                writeCsvRow(out, report.headings);
+            }
+            else {
+                out.write('[');
+            }
+
+            while (rs.next()) {
+                readRow(report, rs, row);
+                if (format == Format.CSV) {
+                    writeCsvRow(out, row);
+                }
+                else {
+                    if (rows > 0) {
+                        out.write(',');
+                    }
+                    out.newLine();
+                    writeJsonObject(out, report.headings, row);
+                }
+                rows++;
+            }
+
+            if (format == Format.JSON) {
+                out.newLine();
+                out.write(']');
+                out.newLine();
+            }
+        }
+
+        Result result = new Result(report, file, rows, System.nanoTime() - started);
+        System.out.println("Exported " + result);
+        return result;
+    }
+
+    /**
+     * Reads the current row of a report's result set, converting it to what is written to the file.
+     *
+     * @param report The report being exported.
+     * @param rs The result set, positioned on a row.
+     * @param row Receives the values, in the order of the report's headings.
+     * @throws SQLException An exception related to the database query.
+     */
+    private static void readRow(Report report, ResultSet rs, Object[] row) throws SQLException {
+        switch (report) {
+            case APPOINTMENTS_BY_TYPE:
+                row[0] = monthNames[rs.getInt(1) - 1];
+                row[1] = rs.getString(2);
+                row[2] = rs.getInt(3);
+                break;
+            case SCHEDULE_BY_CONTACT:
+                row[0] = rs.getInt(1);
+                row[1] = rs.getInt(2);
+                row[2] = rs.getString(3);
+                row[3] = rs.getString(4);
+                row[4] = rs.getString(5);
+                row[5] = ZonedDateTime.ofInstant(rs.getTimestamp(6).toInstant(), TimeZone.userZoneId).toOffsetDateTime().toString();
+                row[6] = ZonedDateTime.ofInstant(rs.getTimestamp(7).toInstant(), TimeZone.userZoneId).toOffsetDateTime().toString();
+                row[7] = rs.getInt(8);
+                break;
+            case CUSTOMERS_BY_COUNTRY:
+                row[0] = rs.getString(1);
+                row[1] = rs.getInt(2);
+                break;
+        }
+    }
+
+    private static void writeCsvRow(Writer out, Object[] values) throws IOException {
+        for (int i = 0; i < values.length; i++) {
+            if (i > 0) {
+                out.write(',');
+            }
+            String value = values[i] == null ? "" : values[i].toString();
+            if (value.indexOf(',') >= 0 || value.indexOf('"') >= 0 || value.indexOf('\n') >= 0 || value.indexOf('\r') >= 0) {
+                out.write('"');
+                out.write(value.replace("\"", "\"\""));
+                out.write('"');
+            }
+            else {
+                out.write(value);
+            }
+        }
+        out.write("\r\n");
+    }
+
+    private static void writeJsonObject(Writer out, String[] names, Object[] values) throws IOException {
+        out.write("  {");
+        for (int i = 0; i < values.length; i++) {
+            if (i > 0) {
+                out.write(", ");
+            }
+            writeJsonString(out, names[i]);
+            out.write(": ");
+            if (values[i] == null) {
+                out.write("null");
+            }
+            else if (values[i] instanceof Number) {
+                out.write(values[i].toString());
+            }
+            else {
+                writeJsonString(out, values[i].toString());
+            }
+        }
+        out.write('}');
+    }
+
+    private static void writeJsonString(Writer out, String value) throws IOException {
+        out.write('"');
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            switch (c) {
+                case '"': out.write("\\\""); break;
+                case '\\': out.write("\\\\"); break;
+                case '\n': out.write("\\n"); break;
+                case '\r': out.write("\\r"); break;
+                case '\t': out.write("\\t"); break;
+                default:
+                    if (c < 0x20) {
+                        out.write(String.format("\\u%04x", (int) c));
+                    }
+                    else {
+                        out.write(c);
+                    }
+            }
+        }
+        out.write('"');
+    }
+}
@@ -1,7 +1,9 @@
 package util;
 
+import DAO.AsyncDAO;
 import DAO.DBConnection;
 import DAO.Query;
+import DAO.ReportAggregates;
 import javafx.collections.FXCollections;
 import javafx.collections.ObservableList;
 
@@ -9,6 +11,8 @@ import java.sql.*;
 import java.text.DateFormatSymbols;
 
 import java.time.ZonedDateTime;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Consumer;
 
 /**
  * Generates reports for the Report screen.
@@ -245,26 +249,12 @@ public class ReportGenerator {
     }
 
     /**
-     * Queries the database to populate the "Appointments by Type" report.
+     * Populates the "Appointments by Type" report from the in-memory aggregates.
      */
     public void processAppointmentsByType() {
         try {
-            Connection conn = DBConnection.getConnection();
-            String sqlStatement = "SELECT month(Start), Type, COUNT(Start) FROM appointments GROUP BY Type ORDER BY Start";
-            Query.setPreparedStatement(conn, sqlStatement);
-            PreparedStatement ps = Query.getPreparedStatement();
-
-            ps.execute();
-            ResultSet rs = ps.getResultSet();
-
-            while (rs.next()) {
-                int month = rs.getInt(1);
-                String type = rs.getString(2);
-                int count = rs.getInt(3);
-
-                AppointmentsByType result = new AppointmentsByType(month, type, count);
-                allByType.add(result);
-            }
+            ReportAggregates.getAppointmentsByMonthAndType().forEach((month, types) ->
+                    types.forEach((type, count) -> allByType.add(new AppointmentsByType(month, type, count))));
         } catch (Exception e) {
             e.printStackTrace();
         }
@@ -283,11 +273,9 @@ public class ReportGenerator {
      * Queries the database to populate the "Schedule by Contact" report.
      */
     public void processScheduleByContact() {
-        try {
-            Connection conn = DBConnection.getConnection();
+        try (Connection conn = DBConnection.getConnection()) {
             String sqlStatement = "SELECT Contact_ID, Appointment_Id, Title, Type, Description,  Start, End, Customer_ID FROM appointments  ORDER BY Contact_ID, Start";
-            Query.setPreparedStatement(conn, sqlStatement);
-            PreparedStatement ps = Query.getPreparedStatement();
+            PreparedStatement ps = Query.prepare(conn, sqlStatement);
 
             ps.execute();
             ResultSet rs = ps.getResultSet();
@@ -324,25 +312,11 @@ public class ReportGenerator {
     public ObservableList<ScheduleByContact> getSchedulesByContact() { return allSchedules; }
 
     /**
-     * Queries the database to populate the "Customers by Country" report.
+     * Populates the "Customers by Country" report from the in-memory aggregates.
      */
     public void processCustomersByCountry() {
         try {
-            Connection conn = DBConnection.getConnection();
-            String sqlStatement = "SELECT first_level_divisions.COUNTRY_ID, COUNT(*) FROM customers INNER JOIN first_level_divisions ON customers.Division_ID = first_level_divisions.Division_ID GROUP BY COUNTRY_ID ORDER BY COUNTRY_ID";
-            Query.setPreparedStatement(conn, sqlStatement);
-            PreparedStatement ps = Query.getPreparedStatement();
-
-            ps.execute();
-            ResultSet rs = ps.getResultSet();
-
-            while (rs.next()) {
-                int countryId = rs.getInt(1);
-                int count = rs.getInt(2);
-
-                CustomersByCountry cbc = new CustomersByCountry(countryId, count);
-                allCountries.add(cbc);
-            }
+            ReportAggregates.getCustomersByCountry().forEach((countryId, count) -> allCountries.add(new CustomersByCountry(countryId, count)));
         } catch (Exception e) {
             e.printStackTrace();
         }
@@ -354,5 +328,28 @@ public class ReportGenerator {
      * @return The list.
      */
     public ObservableList<CustomersByCountry> getCustomersByCountry() { return allCountries; }
-}
 
+    /**
+     * Generates all three reports at once. Each report runs in the background on its own pooled connection and is
+     * handed to its callback on the JavaFX thread as soon as it's complete, so one slow report doesn't hold up the
+     * others.
+     *
+     * @param onAppointmentsByType Called with the "Appointments by Type" report.
+     * @param onSchedulesByContact Called with the "Schedule by Contact" report.
+     * @param onCustomersByCountry Called with the "Customers by Country" report.
+     * @return A future completed once all three reports have been generated.
+     */
+    public CompletableFuture<Void> processAll(Consumer<ObservableList<AppointmentsByType>> onAppointmentsByType,
+                                              Consumer<ObservableList<ScheduleByContact>> onSchedulesByContact,
+                                              Consumer<ObservableList<CustomersByCountry>> onCustomersByCountry) {
+        CompletableFuture<Void> byType = AsyncDAO.run(this::processAppointmentsByType);
+        CompletableFuture<Void> schedules = AsyncDAO.run(this::processScheduleByContact);
+        CompletableFuture<Void> countries = AsyncDAO.run(this::processCustomersByCountry);
+
+        AsyncDAO.onFxThread(byType, done -> onAppointmentsByType.accept(allByType), Throwable::printStackTrace);
+        AsyncDAO.onFxThread(schedules, done -> onSchedulesByContact.accept(allSchedules), Throwable::printStackTrace);
+        AsyncDAO.onFxThread(countries, done -> onCustomersByCountry.accept(allCountries), Throwable::printStackTrace);
+
+        return CompletableFuture.allOf(byType, schedules, countries);
+    }
+}
@@ -0,0 +1,78 @@
+package util;
+
+import model.User;
+
+import java.time.Instant;
+
+/**
+ * The logged-in user, kept from a successful login until logout so later screens don't have to look the user up
+ * again. The password isn't kept.
+ *
+ * @author James Carney
+ */
+public class Session {
+    private static volatile Session current;
+
+    private final User user;
+    private final Instant loggedInAt;
+
+    private Session(User user, Instant loggedInAt) {
+        this.user = user;
+        this.loggedInAt = loggedInAt;
+    }
+
+    /**
+     * Starts a session for a user who has just logged in, replacing any earlier session.
+     *
+     * @param user The user, as looked up for the login.
+     * @return The new session.
+     */
+    public static Session start(User user) {
+        Session session = new Session(new User(user.getUserId(), user.getUserName()), Instant.now());
+        current = session;
+        return session;
+    }
+
+    /**
+     * Ends the current session. Called when the user logs out.
+     */
+    public static void end() {
+        current = null;
+    }
+
+    /**
+     * Gets the current session.
+     *
+     * @return The session, or null if nobody is logged in.
+     */
+    public static Session getCurrent() {
+        return current;
+    }
+
+    /**
+     * Gets the logged-in user.
+     *
+     * @return The user, without a password.
+     */
+    public User getUser() {
+        return user;
+    }
+
+    /**
+     * Gets the logged-in user's ID.
+     *
+     * @return The ID.
+     */
+    public int getUserId() {
+        return user.getUserId();
+    }
+
+    /**
+     * Gets when the user logged in.
+     *
+     * @return The time of the login.
+     */
+    public Instant getLoggedInAt() {
+        return loggedInAt;
+    }
+}
@@ -0,0 +1,140 @@
+package util;
+
+import DAO.AppointmentIndex;
+
+import java.time.LocalDate;
+import java.time.LocalTime;
+import java.time.ZonedDateTime;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.List;
+
+/**
+ * Finds the times at which an appointment can be booked.
+ *
+ * A day in the user's time zone is divided into {@link #slotsPerDay} slots of {@link #slotMinutes} minutes, and each
+ * day's availability is a bitset with one bit per slot. The bookable slots are the business hours from
+ * {@link TimeZone#getBusinessHoursSlots(LocalDate)} less every slot the contact or the customer is already booked in,
+ * which are read from the {@link AppointmentIndex} without querying the database.
+ *
+ * @author James Carney
+ */
+public class SlotAvailability {
+    public static final int slotMinutes = 15;
+    public static final int slotsPerDay = 24 * 60 / slotMinutes;
+
+    /**
+     * Finds the slots on a day in which neither the contact nor the customer has an appointment and which lie within
+     * business hours.
+     *
+     * @param day The day, in the user's time zone.
+     * @param contactId The ID of the contact, or 0 if none has been chosen.
+     * @param customerId The ID of the customer, or 0 if none has been chosen.
+     * @param excludeAppointmentId The ID of an appointment being edited, whose own slots count as free. Use 0 for a
+     *                             new appointment.
+     * @return A bitset with a bit set for each bookable slot.
+     */
+    public static BitSet getBookableSlots(LocalDate day, int contactId, int customerId, int excludeAppointmentId) {
+        BitSet bookable = TimeZone.getBusinessHoursSlots(day);
+        if (bookable.isEmpty()) {
+            return bookable;
+        }
+
+        long[] slotStarts = getSlotStarts(day);
+        AppointmentIndex.forEachOverlapping(contactId, customerId, slotStarts[0], slotStarts[slotsPerDay],
+                excludeAppointmentId, (id, start, end) -> clearSlots(bookable, slotStarts, start, end));
+        return bookable;
+    }
+
+    /**
+     * Works out when each of a day's slots starts.
+     *
+     * @param day The day, in the user's time zone.
+     * @return The start of each slot in epoch seconds, followed by the start of the next day.
+     */
+    public static long[] getSlotStarts(LocalDate day) {
+        long[] slotStarts = new long[slotsPerDay + 1];
+        for (int slot = 0; slot < slotsPerDay; slot++) {
+            slotStarts[slot] = ZonedDateTime.of(day, slotTime(slot), TimeZone.userZoneId).toEpochSecond();
+        }
+        slotStarts[slotsPerDay] = day.plusDays(1).atStartOfDay(TimeZone.userZoneId).toEpochSecond();
+        return slotStarts;
+    }
+
+    /**
+     * Clears the bits of the slots a booked period overlaps.
+     *
+     * @param slots The slots to clear bits in.
+     * @param slotStarts The start of each slot, from {@link #getSlotStarts(LocalDate)}.
+     * @param start The start of the booked period, in epoch seconds.
+     * @param end The end of the booked period, in epoch seconds.
+     */
+    public static void clearSlots(BitSet slots, long[] slotStarts, long start, long end) {
+        long slotSeconds = slotMinutes * 60L;
+        for (int slot = slots.nextSetBit(0); slot >= 0; slot = slots.nextSetBit(slot + 1)) {
+            if (start < slotStarts[slot] + slotSeconds && end > slotStarts[slot]) {
+                slots.clear(slot);
+            }
+        }
+    }
+
+    /**
+     * Lists the start times of the bookable slots.
+     *
+     * @param bookable The bookable slots.
+     * @return The start times, in order.
+     */
+    public static List<LocalTime> getStartTimes(BitSet bookable) {
+        List<LocalTime> times = new ArrayList<>(bookable.cardinality());
+        for (int slot = bookable.nextSetBit(0); slot >= 0; slot = bookable.nextSetBit(slot + 1)) {
+            times.add(slotTime(slot));
+        }
+        return times;
+    }
+
+    /**
+     * Lists the times an appointment starting at a given time can end at without running into a slot that isn't
+     * bookable.
+     *
+     * @param bookable The bookable slots.
+     * @param start The start time.
+     * @return The end times, in order, or an empty list if the start time isn't bookable.
+     */
+    public static List<LocalTime> getEndTimes(BitSet bookable, LocalTime start) {
+        List<LocalTime> times = new ArrayList<>();
+        int first = slotOf(start);
+        if (first < 0) {
+            return times;
+        }
+        // An appointment ending at midnight can't be picked, since the end time is on the same day as the start.
+        int last = Math.min(bookable.nextClearBit(first), slotsPerDay - 1);
+        for (int slot = first + 1; slot <= last; slot++) {
+            times.add(slotTime(slot));
+        }
+        return times;
+    }
+
+    /**
+     * Gets the start time of a slot.
+     *
+     * @param slot The slot number.
+     * @return The time of day it starts at.
+     */
+    public static LocalTime slotTime(int slot) {
+        return LocalTime.ofSecondOfDay(slot * slotMinutes * 60L);
+    }
+
+    /**
+     * Gets the slot starting at a time.
+     *
+     * @param time The time of day.
+     * @return The slot number, or -1 if no slot starts at that time.
+     */
+    public static int slotOf(LocalTime time) {
+        int minutes = time.getHour() * 60 + time.getMinute();
+        if (time.getSecond() != 0 || time.getNano() != 0 || minutes % slotMinutes != 0) {
+            return -1;
+        }
+        return minutes / slotMinutes;
+    }
+}
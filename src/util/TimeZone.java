@@ -4,6 +4,9 @@ import javafx.beans.value.ObservableValue;
 
 import java.time.*;
 import java.time.format.DateTimeFormatter;
+import java.util.BitSet;
+import java.util.LinkedHashMap;
+import java.util.Map;
 
 /**
  * Simple utility class for handling storing some time zone conversion and validation information in a handy format.
@@ -14,6 +17,16 @@ public class TimeZone {
     public static final ZoneId EST = ZoneId.of("America/New_York");
     public static final ZoneId userZoneId = ZoneOffset.systemDefault();
     public static final DateTimeFormatter dtf = DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss");
+    public static final LocalTime businessStart = LocalTime.of(8, 0);
+    public static final LocalTime businessEnd = LocalTime.of(22, 0);
+
+    // Business-hours masks already worked out, by day. Only the most recently used days are kept.
+    private static final Map<LocalDate, BitSet> businessHoursSlots = new LinkedHashMap<>(16, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<LocalDate, BitSet> eldest) {
+            return size() > 64;
+        }
+    };
 
     /**
      * Validates times the user enters for an appointment against the company's business hours (EST).
@@ -23,11 +36,20 @@ public class TimeZone {
      * @return boolean representing whether the appointment is during business hours.
      */
     public static boolean validateAppointmentAgainstEST(ObservableValue<ZonedDateTime> start, ObservableValue<ZonedDateTime> end) {
-        ZonedDateTime estStartTime = start.getValue().withZoneSameInstant(EST);
-        ZonedDateTime estEndTime = end.getValue().withZoneSameInstant(EST);
+        return validateAppointmentAgainstEST(start.getValue(), end.getValue());
+    }
+
+    /**
+     * Validates the times of an appointment against the company's business hours (EST).
+     *
+     * @param start The start time.
+     * @param end The end time.
+     * @return boolean representing whether the appointment is during business hours.
+     */
+    public static boolean validateAppointmentAgainstEST(ZonedDateTime start, ZonedDateTime end) {
+        ZonedDateTime estStartTime = start.withZoneSameInstant(EST);
+        ZonedDateTime estEndTime = end.withZoneSameInstant(EST);
         LocalDate meetingDate = estStartTime.toLocalDate();
-        LocalTime businessStart = LocalTime.of(8, 0);
-        LocalTime businessEnd = LocalTime.of(22, 0);
         ZonedDateTime validMeetingStart = ZonedDateTime.of(meetingDate, businessStart, EST);
         ZonedDateTime validMeetingEnd = ZonedDateTime.of(meetingDate, businessEnd, EST);
 
@@ -40,4 +62,43 @@ public class TimeZone {
         }
         else return true;
     }
+
+    /**
+     * Works out which of a day's slots, in the user's time zone, lie entirely within the company's business hours
+     * (EST). Slot i starts i * {@link SlotAvailability#slotMinutes} minutes after midnight. Slots skipped by a
+     * daylight saving change are never within business hours.
+     *
+     * @param day The day, in the user's time zone.
+     * @return A bitset with a bit set for each slot within business hours. The caller may modify it.
+     */
+    public static BitSet getBusinessHoursSlots(LocalDate day) {
+        synchronized (businessHoursSlots) {
+            BitSet cached = businessHoursSlots.get(day);
+            if (cached != null) {
+                return (BitSet) cached.clone();
+            }
+        }
+
+        BitSet slots = new BitSet(SlotAvailability.slotsPerDay);
+        for (int slot = 0; slot < SlotAvailability.slotsPerDay; slot++) {
+            LocalTime time = SlotAvailability.slotTime(slot);
+            ZonedDateTime start = ZonedDateTime.of(day, time, userZoneId);
+            if (!start.toLocalTime().equals(time)) {
+                continue;
+            }
+
+            ZonedDateTime estStart = start.withZoneSameInstant(EST);
+            ZonedDateTime estEnd = estStart.plusMinutes(SlotAvailability.slotMinutes);
+            if (!estStart.toLocalTime().isBefore(businessStart)
+                    && estEnd.toLocalDate().equals(estStart.toLocalDate())
+                    && !estEnd.toLocalTime().isAfter(businessEnd)) {
+                slots.set(slot);
+            }
+        }
+
+        synchronized (businessHoursSlots) {
+            businessHoursSlots.put(day, slots);
+        }
+        return (BitSet) slots.clone();
+    }
 }